@@ -14,3 +14,64 @@
 -- limitations under the License.
 --
 
+CREATE TABLE IF NOT EXISTS compressed_ts_kv
+(
+    entity_id   uuid   NOT NULL,
+    key         int    NOT NULL,
+    block_start bigint NOT NULL,
+    block_end   bigint NOT NULL,
+    points      int    NOT NULL,
+    data        bytea  NOT NULL,
+    CONSTRAINT compressed_ts_kv_pkey PRIMARY KEY (entity_id, key, block_start, block_end)
+);
+
+CREATE INDEX IF NOT EXISTS idx_compressed_ts_kv_block_end ON compressed_ts_kv(block_end);
+
+CREATE TABLE IF NOT EXISTS rollup_ts_kv
+(
+    entity_id   uuid             NOT NULL,
+    key         int              NOT NULL,
+    interval_ms bigint           NOT NULL,
+    bucket_ts   bigint           NOT NULL,
+    last_ts     bigint           NOT NULL,
+    bool_count  bigint           NOT NULL,
+    str_count   bigint           NOT NULL,
+    json_count  bigint           NOT NULL,
+    long_count  bigint           NOT NULL,
+    dbl_count   bigint           NOT NULL,
+    long_sum    bigint           NOT NULL,
+    dbl_sum     double precision NOT NULL,
+    long_min    bigint           NOT NULL,
+    long_max    bigint           NOT NULL,
+    dbl_min     double precision NOT NULL,
+    dbl_max     double precision NOT NULL,
+    str_min     varchar(10000000),
+    str_max     varchar(10000000),
+    CONSTRAINT rollup_ts_kv_pkey PRIMARY KEY (entity_id, key, interval_ms, bucket_ts)
+);
+
+CREATE INDEX IF NOT EXISTS idx_rollup_ts_kv_bucket_ts ON rollup_ts_kv(bucket_ts);
+
+CREATE TABLE IF NOT EXISTS rollup_ts_kv_key
+(
+    key      int    NOT NULL,
+    since_ts bigint NOT NULL,
+    built_ts bigint NOT NULL,
+    CONSTRAINT rollup_ts_kv_key_pkey PRIMARY KEY (key)
+);
+
+CREATE TABLE IF NOT EXISTS rollup_ts_kv_entity
+(
+    key       int  NOT NULL,
+    entity_id uuid NOT NULL,
+    CONSTRAINT rollup_ts_kv_entity_pkey PRIMARY KEY (key, entity_id)
+);
+
+CREATE TABLE IF NOT EXISTS rollup_ts_kv_stale
+(
+    entity_id uuid   NOT NULL,
+    key       int    NOT NULL,
+    period_ts bigint NOT NULL,
+    marked_ts bigint NOT NULL,
+    CONSTRAINT rollup_ts_kv_stale_pkey PRIMARY KEY (entity_id, key, period_ts)
+);
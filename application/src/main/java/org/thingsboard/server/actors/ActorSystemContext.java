@@ -55,6 +55,8 @@ import org.winstarcloud.server.common.msg.notification.NotificationRuleProcessor
 import org.winstarcloud.server.common.msg.queue.ServiceType;
 import org.winstarcloud.server.common.msg.queue.TopicPartitionInfo;
 import org.winstarcloud.server.common.msg.tools.TbRateLimits;
+import org.winstarcloud.server.common.stats.DefaultCounter;
+import org.winstarcloud.server.common.stats.StatsFactory;
 import org.winstarcloud.server.common.stats.TbApiUsageReportClient;
 import org.winstarcloud.server.dao.alarm.AlarmCommentService;
 import org.winstarcloud.server.dao.asset.AssetProfileService;
@@ -124,6 +126,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @Component
@@ -166,6 +169,9 @@ public class ActorSystemContext {
     @Getter
     private TbApiUsageReportClient apiUsageClient;
 
+    @Autowired
+    private StatsFactory statsFactory;
+
     @Autowired
     @Getter
     @Setter
@@ -505,6 +511,8 @@ public class ActorSystemContext {
     @PostConstruct
     public void init() {
         this.localCacheType = "caffeine".equals(cacheType);
+        this.activeDeviceActors = statsFactory.createGauge("actors.device.active", new AtomicInteger());
+        this.passivatedDeviceActors = statsFactory.createDefaultCounter("actors.device.passivated");
     }
 
     @Scheduled(fixedDelayString = "${actors.statistics.js_print_interval_ms}")
@@ -538,6 +546,20 @@ public class ActorSystemContext {
     @Getter
     private long sessionReportTimeout;
 
+    @Value("${actors.device.passivation.enabled:false}")
+    @Getter
+    private boolean devicePassivationEnabled;
+
+    @Value("${actors.device.passivation.idle_timeout_ms:3600000}")
+    @Getter
+    private long devicePassivationIdleTimeout;
+
+    @Getter
+    private AtomicInteger activeDeviceActors;
+
+    @Getter
+    private DefaultCounter passivatedDeviceActors;
+
     @Value("${actors.rule.chain.debug_mode_rate_limits_per_tenant.enabled:true}")
     @Getter
     private boolean debugPerTenantEnabled;
@@ -25,7 +25,9 @@ import org.winstarcloud.server.actors.TbActorException;
 import org.winstarcloud.server.actors.service.ContextAwareActor;
 import org.winstarcloud.server.common.data.id.DeviceId;
 import org.winstarcloud.server.common.data.id.TenantId;
+import org.winstarcloud.server.common.msg.MsgType;
 import org.winstarcloud.server.common.msg.TbActorMsg;
+import org.winstarcloud.server.common.msg.TbActorStopReason;
 import org.winstarcloud.server.common.msg.timeout.DeviceActorServerSideRpcTimeoutMsg;
 import org.winstarcloud.server.common.msg.rpc.FromDeviceRpcResponseActorMsg;
 import org.winstarcloud.server.common.msg.rpc.RemoveRpcActorMsg;
@@ -36,10 +38,14 @@ import org.winstarcloud.server.service.transport.msg.TransportToDeviceActorMsgWr
 public class DeviceActor extends ContextAwareActor {
 
     private final DeviceActorMessageProcessor processor;
+    private long lastActivityTime;
+    private boolean passivationRequested;
 
     DeviceActor(ActorSystemContext systemContext, TenantId tenantId, DeviceId deviceId) {
         super(systemContext);
         this.processor = new DeviceActorMessageProcessor(systemContext, tenantId, deviceId);
+        this.lastActivityTime = System.currentTimeMillis();
+        systemContext.getActiveDeviceActors().incrementAndGet();
     }
 
     @Override
@@ -55,8 +61,16 @@ public class DeviceActor extends ContextAwareActor {
         }
     }
 
+    @Override
+    public void destroy(TbActorStopReason stopReason, Throwable cause) {
+        systemContext.getActiveDeviceActors().decrementAndGet();
+    }
+
     @Override
     protected boolean doProcess(TbActorMsg msg) {
+        if (msg.getMsgType() != MsgType.SESSION_TIMEOUT_MSG && msg.getMsgType() != MsgType.DEVICE_ACTOR_PASSIVATE_MSG) {
+            lastActivityTime = System.currentTimeMillis();
+        }
         switch (msg.getMsgType()) {
             case TRANSPORT_TO_DEVICE_ACTOR_MSG:
                 processor.process((TransportToDeviceActorMsgWrapper) msg);
@@ -82,19 +96,51 @@ public class DeviceActor extends ContextAwareActor {
             case DEVICE_ACTOR_SERVER_SIDE_RPC_TIMEOUT_MSG:
                 processor.processServerSideRpcTimeout((DeviceActorServerSideRpcTimeoutMsg) msg);
                 break;
-            case SESSION_TIMEOUT_MSG:
-                processor.checkSessionsTimeout();
-                break;
             case DEVICE_EDGE_UPDATE_TO_DEVICE_ACTOR_MSG:
                 processor.processEdgeUpdate((DeviceEdgeUpdateMsg) msg);
                 break;
             case REMOVE_RPC_TO_DEVICE_ACTOR_MSG:
                 processor.processRemoveRpc((RemoveRpcActorMsg) msg);
                 break;
+            case SESSION_TIMEOUT_MSG:
+                processor.checkSessionsTimeout();
+                checkPassivation();
+                break;
+            case DEVICE_ACTOR_PASSIVATE_MSG:
+                passivate((DeviceActorPassivateMsg) msg);
+                break;
             default:
                 return false;
         }
         return true;
     }
 
+    private void checkPassivation() {
+        if (systemContext.isDevicePassivationEnabled() && !passivationRequested && isIdle()) {
+            log.debug("[{}][{}] Device actor is idle, requesting passivation.", processor.tenantId, processor.deviceId);
+            passivationRequested = true;
+            ctx.getParentRef().tellWithHighPriority(new DeviceActorPassivationRequestMsg(processor.deviceId));
+        }
+    }
+
+    private void passivate(DeviceActorPassivateMsg msg) {
+        passivationRequested = false;
+        boolean stop = false;
+        try {
+            stop = isIdle();
+            if (stop) {
+                log.debug("[{}][{}] Passivating device actor.", processor.tenantId, processor.deviceId);
+                systemContext.getPassivatedDeviceActors().increment();
+                ctx.stop(ctx.getSelf());
+            }
+        } finally {
+            // The tenant actor holds new messages for the device until it receives the result.
+            msg.getTenantActorRef().tellWithHighPriority(new DeviceActorPassivationResultMsg(processor.deviceId, stop));
+        }
+    }
+
+    private boolean isIdle() {
+        return System.currentTimeMillis() - lastActivityTime > systemContext.getDevicePassivationIdleTimeout() && processor.isIdle();
+    }
+
 }
@@ -1025,6 +1025,10 @@ public class DeviceActorMessageProcessor extends AbstractContextAwareMsgProcesso
         } while (pageData.hasNext());
     }
 
+    boolean isIdle() {
+        return sessions.isEmpty() && attributeSubscriptions.isEmpty() && rpcSubscriptions.isEmpty() && toDeviceRpcPendingMap.isEmpty();
+    }
+
     void checkSessionsTimeout() {
         final long expTime = System.currentTimeMillis() - systemContext.getSessionInactivityTimeout();
         List<UUID> expiredIds = null;
@@ -0,0 +1,44 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.actors.device;
+
+import lombok.Data;
+import org.winstarcloud.server.actors.TbActorRef;
+import org.winstarcloud.server.common.data.id.DeviceId;
+import org.winstarcloud.server.common.msg.MsgType;
+import org.winstarcloud.server.common.msg.TbActorMsg;
+import org.winstarcloud.server.common.msg.TbActorStopReason;
+
+/**
+ * Sent by the Tenant Actor to the Device Actor once the Tenant Actor started to hold new messages for the device.
+ * Since the message has normal priority, it is processed after all the messages routed to the device before it.
+ */
+@Data
+public class DeviceActorPassivateMsg implements TbActorMsg {
+
+    private final TbActorRef tenantActorRef;
+    private final DeviceId deviceId;
+
+    @Override
+    public MsgType getMsgType() {
+        return MsgType.DEVICE_ACTOR_PASSIVATE_MSG;
+    }
+
+    @Override
+    public void onTbActorStopped(TbActorStopReason reason) {
+        tenantActorRef.tellWithHighPriority(new DeviceActorPassivationResultMsg(deviceId, true));
+    }
+}
@@ -24,6 +24,8 @@ import org.winstarcloud.common.util.WinstarCloudExecutors;
 import org.winstarcloud.common.util.WinstarCloudThreadFactory;
 import org.winstarcloud.server.actors.ActorSystemContext;
 import org.winstarcloud.server.actors.DefaultTbActorSystem;
+import org.winstarcloud.server.actors.MailboxOverflowStrategy;
+import org.winstarcloud.server.actors.TbActorMailboxSettings;
 import org.winstarcloud.server.actors.TbActorRef;
 import org.winstarcloud.server.actors.TbActorSystem;
 import org.winstarcloud.server.actors.TbActorSystemSettings;
@@ -38,6 +40,7 @@ import org.winstarcloud.server.queue.util.AfterStartUp;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -78,11 +81,28 @@ public class DefaultActorService extends TbApplicationEventListener<PartitionCha
     @Value("${actors.system.rule_dispatcher_pool_size:8}")
     private int ruleDispatcherSize;
 
+    @Value("${actors.system.device_dispatcher_mailbox_capacity:0}")
+    private int deviceMailboxCapacity;
+
+    @Value("${actors.system.device_dispatcher_mailbox_overflow_strategy:REJECT}")
+    private MailboxOverflowStrategy deviceMailboxOverflowStrategy;
+
+    @Value("${actors.system.rule_dispatcher_mailbox_capacity:0}")
+    private int ruleMailboxCapacity;
+
+    @Value("${actors.system.rule_dispatcher_mailbox_overflow_strategy:REJECT}")
+    private MailboxOverflowStrategy ruleMailboxOverflowStrategy;
+
+    @Value("${actors.system.mailbox_backpressure_timeout_ms:1000}")
+    private long mailboxBackpressureTimeoutMs;
+
     @PostConstruct
     public void initActorSystem() {
         log.info("Initializing actor system.");
         actorContext.setActorService(this);
-        TbActorSystemSettings settings = new TbActorSystemSettings(actorThroughput, schedulerPoolSize, maxActorInitAttempts);
+        TbActorSystemSettings settings = new TbActorSystemSettings(actorThroughput, schedulerPoolSize, maxActorInitAttempts, Map.of(
+                DEVICE_DISPATCHER_NAME, new TbActorMailboxSettings(deviceMailboxCapacity, deviceMailboxOverflowStrategy, mailboxBackpressureTimeoutMs),
+                RULE_DISPATCHER_NAME, new TbActorMailboxSettings(ruleMailboxCapacity, ruleMailboxOverflowStrategy, mailboxBackpressureTimeoutMs)));
         system = new DefaultTbActorSystem(settings);
 
         system.createDispatcher(APP_DISPATCHER_NAME, initDispatcherExecutor(APP_DISPATCHER_NAME, appDispatcherSize));
@@ -15,6 +15,7 @@
  */
 package org.winstarcloud.server.actors.tenant;
 
+import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.winstarcloud.server.actors.ActorSystemContext;
 import org.winstarcloud.server.actors.ProcessFailureStrategy;
@@ -27,6 +28,9 @@ import org.winstarcloud.server.actors.TbActorRef;
 import org.winstarcloud.server.actors.TbEntityActorId;
 import org.winstarcloud.server.actors.TbEntityTypeActorIdPredicate;
 import org.winstarcloud.server.actors.device.DeviceActorCreator;
+import org.winstarcloud.server.actors.device.DeviceActorPassivateMsg;
+import org.winstarcloud.server.actors.device.DeviceActorPassivationRequestMsg;
+import org.winstarcloud.server.actors.device.DeviceActorPassivationResultMsg;
 import org.winstarcloud.server.actors.ruleChain.RuleChainManagerActor;
 import org.winstarcloud.server.actors.service.ContextBasedCreator;
 import org.winstarcloud.server.actors.service.DefaultActorService;
@@ -58,8 +62,11 @@ import org.winstarcloud.server.common.msg.rule.engine.DeviceDeleteMsg;
 import org.winstarcloud.server.service.edge.rpc.EdgeRpcService;
 import org.winstarcloud.server.service.transport.msg.TransportToDeviceActorMsgWrapper;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 @Slf4j
@@ -70,10 +77,12 @@ public class TenantActor extends RuleChainManagerActor {
     private ApiUsageState apiUsageState;
 
     private Set<DeviceId> deletedDevices;
+    private final Map<DeviceId, List<PendingDeviceMsg>> passivatingDevices;
 
     private TenantActor(ActorSystemContext systemContext, TenantId tenantId) {
         super(systemContext, tenantId);
         this.deletedDevices = new HashSet<>();
+        this.passivatingDevices = new HashMap<>();
     }
 
     boolean cantFindTenant = false;
@@ -117,6 +126,8 @@ public class TenantActor extends RuleChainManagerActor {
     @Override
     public void destroy(TbActorStopReason stopReason, Throwable cause) {
         log.info("[{}] Stopping tenant actor.", tenantId);
+        passivatingDevices.values().forEach(pendingMsgs -> failPendingMsgs(pendingMsgs, stopReason));
+        passivatingDevices.clear();
     }
 
     @Override
@@ -158,6 +169,12 @@ public class TenantActor extends RuleChainManagerActor {
             case SESSION_TIMEOUT_MSG:
                 ctx.broadcastToChildrenByType(msg, EntityType.DEVICE);
                 break;
+            case DEVICE_ACTOR_PASSIVATION_REQUEST_MSG:
+                onDeviceActorPassivationRequest((DeviceActorPassivationRequestMsg) msg);
+                break;
+            case DEVICE_ACTOR_PASSIVATION_RESULT_MSG:
+                onDeviceActorPassivationResult((DeviceActorPassivationResultMsg) msg);
+                break;
             case RULE_CHAIN_INPUT_MSG:
             case RULE_CHAIN_OUTPUT_MSG:
             case RULE_CHAIN_TO_RULE_CHAIN_MSG:
@@ -221,6 +238,11 @@ public class TenantActor extends RuleChainManagerActor {
             log.debug("RECEIVED MESSAGE FOR DELETED DEVICE: {}", msg);
             return;
         }
+        List<PendingDeviceMsg> pendingMsgs = passivatingDevices.get(msg.getDeviceId());
+        if (pendingMsgs != null) {
+            pendingMsgs.add(new PendingDeviceMsg(msg, priority));
+            return;
+        }
         TbActorRef deviceActor = getOrCreateDeviceActor(msg.getDeviceId());
         if (priority) {
             deviceActor.tellWithHighPriority(msg);
@@ -229,6 +251,34 @@ public class TenantActor extends RuleChainManagerActor {
         }
     }
 
+    private void onDeviceActorPassivationRequest(DeviceActorPassivationRequestMsg msg) {
+        DeviceId deviceId = msg.getDeviceId();
+        TbActorRef deviceActor = ctx.getOrCreateChildActor(new TbEntityActorId(deviceId), null, null, () -> false);
+        if (deviceActor != null && !passivatingDevices.containsKey(deviceId)) {
+            passivatingDevices.put(deviceId, new ArrayList<>());
+            deviceActor.tell(new DeviceActorPassivateMsg(ctx, deviceId));
+        }
+    }
+
+    private void onDeviceActorPassivationResult(DeviceActorPassivationResultMsg msg) {
+        List<PendingDeviceMsg> pendingMsgs = passivatingDevices.remove(msg.getDeviceId());
+        if (pendingMsgs != null) {
+            log.trace("[{}][{}] Device actor passivation completed, stopped: {}, pending messages: {}", tenantId, msg.getDeviceId(), msg.isStopped(), pendingMsgs.size());
+            if (deletedDevices.contains(msg.getDeviceId())) {
+                if (!msg.isStopped()) {
+                    ctx.stop(new TbEntityActorId(msg.getDeviceId()));
+                }
+                failPendingMsgs(pendingMsgs, TbActorStopReason.STOPPED);
+            } else {
+                pendingMsgs.forEach(pendingMsg -> onToDeviceActorMsg(pendingMsg.getMsg(), pendingMsg.isPriority()));
+            }
+        }
+    }
+
+    private void failPendingMsgs(List<PendingDeviceMsg> pendingMsgs, TbActorStopReason stopReason) {
+        pendingMsgs.forEach(pendingMsg -> pendingMsg.getMsg().onTbActorStopped(stopReason));
+    }
+
     private void onPartitionChangeMsg(PartitionChangeMsg msg) {
         ServiceType serviceType = msg.getServiceType();
         if (ServiceType.TB_RULE_ENGINE.equals(serviceType)) {
@@ -255,6 +305,13 @@ public class TenantActor extends RuleChainManagerActor {
                 }
             });
             deviceActorIds.forEach(id -> ctx.stop(id));
+            passivatingDevices.entrySet().removeIf(entry -> {
+                if (isMyPartition(entry.getKey())) {
+                    return false;
+                }
+                failPendingMsgs(entry.getValue(), TbActorStopReason.STOPPED);
+                return true;
+            });
         }
     }
 
@@ -348,4 +405,10 @@ public class TenantActor extends RuleChainManagerActor {
         }
     }
 
+    @Data
+    private static class PendingDeviceMsg {
+        private final DeviceAwareMsg msg;
+        private final boolean priority;
+    }
+
 }
@@ -32,8 +32,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.PongMessage;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.adapter.NativeWebSocketSession;
@@ -57,6 +59,7 @@ import org.winstarcloud.server.service.security.model.UserPrincipal;
 import org.winstarcloud.server.service.subscription.SubscriptionErrorCode;
 import org.winstarcloud.server.service.ws.AuthCmd;
 import org.winstarcloud.server.service.ws.SessionEvent;
+import org.winstarcloud.server.service.ws.WebSocketCborUtil;
 import org.winstarcloud.server.service.ws.WebSocketMsgEndpoint;
 import org.winstarcloud.server.service.ws.WebSocketService;
 import org.winstarcloud.server.service.ws.WebSocketSessionRef;
@@ -64,10 +67,14 @@ import org.winstarcloud.server.service.ws.WebSocketSessionType;
 import org.winstarcloud.server.service.ws.WsCommandsWrapper;
 import org.winstarcloud.server.service.ws.notification.cmd.NotificationCmdsWrapper;
 import org.winstarcloud.server.service.ws.telemetry.cmd.TelemetryCmdsWrapper;
+import org.winstarcloud.server.service.ws.telemetry.sub.TelemetrySubscriptionUpdate;
 
 import javax.annotation.PostConstruct;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.security.InvalidParameterException;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.Set;
@@ -87,7 +94,7 @@ import static org.winstarcloud.server.service.ws.DefaultWebSocketService.NUMBER_
 @TbCoreComponent
 @Slf4j
 @RequiredArgsConstructor
-public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocketMsgEndpoint {
+public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocketMsgEndpoint, SubProtocolCapable {
 
     private final ConcurrentMap<String, SessionMetaData> internalSessionMap = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, String> externalSessionMap = new ConcurrentHashMap<>();
@@ -107,6 +114,10 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
     private long pingTimeout;
     @Value("${server.ws.max_queue_messages_per_session:1000}")
     private int wsMaxQueueMessagesPerSession;
+    @Value("${server.ws.conflate_updates:true}")
+    private boolean conflateUpdates;
+    @Value("${server.ws.binary_protocol_enabled:true}")
+    private boolean binaryProtocolEnabled;
     @Value("${server.ws.auth_timeout_ms:10000}")
     private int authTimeoutMs;
 
@@ -140,6 +151,11 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
         internalSessionMap.clear();
     }
 
+    @Override
+    public List<String> getSubProtocols() {
+        return binaryProtocolEnabled ? List.of(WebSocketCborUtil.SUB_PROTOCOL) : Collections.emptyList();
+    }
+
     @Override
     public void handleTextMessage(WebSocketSession session, TextMessage message) {
         try {
@@ -155,6 +171,37 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
         }
     }
 
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+        try {
+            SessionMetaData sessionMd = getSessionMd(session.getId());
+            if (sessionMd == null) {
+                log.trace("[{}] Failed to find session", session.getId());
+                session.close(CloseStatus.SERVER_ERROR.withReason("Session not found!"));
+                return;
+            }
+            if (!sessionMd.sessionRef.isBinary()) {
+                session.close(CloseStatus.NOT_ACCEPTABLE.withReason("Binary messages not supported"));
+                return;
+            }
+            String msg;
+            try {
+                ByteBuffer payload = message.getPayload();
+                byte[] bytes = new byte[payload.remaining()];
+                payload.get(bytes);
+                // commands are rare, so they are transcoded to JSON and processed the same way as the text ones
+                msg = WebSocketCborUtil.toJson(bytes);
+            } catch (Exception e) {
+                log.debug("{} Failed to decode binary msg: {}", sessionMd.sessionRef, e.getMessage());
+                close(sessionMd.sessionRef, CloseStatus.BAD_DATA.withReason("Failed to decode the payload"));
+                return;
+            }
+            sessionMd.onMsg(msg);
+        } catch (IOException e) {
+            log.warn("IO error", e);
+        }
+    }
+
     void processMsg(SessionMetaData sessionMd, String msg) throws IOException {
         WebSocketSessionRef sessionRef = sessionMd.sessionRef;
         WsCommandsWrapper cmdsWrapper;
@@ -338,6 +385,7 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
                 .localAddress(session.getLocalAddress())
                 .remoteAddress(session.getRemoteAddress())
                 .sessionType(sessionType)
+                .binary(WebSocketCborUtil.SUB_PROTOCOL.equals(session.getAcceptedProtocol()))
                 .build();
     }
 
@@ -357,6 +405,7 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
         final AtomicBoolean isSending = new AtomicBoolean(false);
         private final Queue<TbWebSocketMsg<?>> outboundMsgQueue = new ConcurrentLinkedQueue<>();
         private final AtomicInteger outboundMsgQueueSize = new AtomicInteger();
+        private final ConcurrentMap<Integer, TbWebSocketUpdateMsg> pendingUpdates = new ConcurrentHashMap<>();
         @Setter
         private int maxMsgQueueSize = wsMaxQueueMessagesPerSession;
 
@@ -396,6 +445,7 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
                 log.trace("{} Session transport error", sessionRef, ioe);
             } finally {
                 outboundMsgQueue.clear();
+                pendingUpdates.clear();
             }
         }
 
@@ -404,7 +454,11 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
         }
 
         void sendMsg(String msg) {
-            sendMsg(new TbWebSocketTextMsg(msg));
+            if (sessionRef.isBinary()) {
+                sendMsg(new TbWebSocketBinaryMsg(WebSocketCborUtil.fromJson(msg)));
+            } else {
+                sendMsg(new TbWebSocketTextMsg(msg));
+            }
         }
 
         void sendMsg(TbWebSocketMsg<?> msg) {
@@ -418,12 +472,31 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
             }
         }
 
+        /**
+         * Once the queue is half full, the update is merged into the queued update of the same subscription (if any),
+         * so that the slow session receives the latest value of each key instead of being closed.
+         */
+        void sendUpdate(TelemetrySubscriptionUpdate update) {
+            int subscriptionId = update.getSubscriptionId();
+            if (conflateUpdates && outboundMsgQueueSize.get() >= maxMsgQueueSize / 2) {
+                TbWebSocketUpdateMsg pending = pendingUpdates.get(subscriptionId);
+                if (pending != null && pending.merge(update)) {
+                    log.trace("{} Conflated update of subscription {}", sessionRef, subscriptionId);
+                    return;
+                }
+            }
+            TbWebSocketUpdateMsg msg = new TbWebSocketUpdateMsg(update, sessionRef.isBinary());
+            pendingUpdates.put(subscriptionId, msg);
+            sendMsg(msg);
+        }
+
         private void sendMsgInternal(TbWebSocketMsg<?> msg) {
             try {
                 if (TbWebSocketMsgType.TEXT.equals(msg.getType())) {
-                    TbWebSocketTextMsg textMsg = (TbWebSocketTextMsg) msg;
-                    this.asyncRemote.sendText(textMsg.getMsg(), this);
+                    this.asyncRemote.sendText((String) msg.getMsg(), this);
                     // isSending status will be reset in the onResult method by call back
+                } else if (TbWebSocketMsgType.BINARY.equals(msg.getType())) {
+                    this.asyncRemote.sendBinary((ByteBuffer) msg.getMsg(), this);
                 } else {
                     TbWebSocketPingMsg pingMsg = (TbWebSocketPingMsg) msg;
                     this.asyncRemote.sendPing(pingMsg.getMsg()); // blocking call
@@ -455,6 +528,9 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
             TbWebSocketMsg<?> msg = outboundMsgQueue.poll();
             if (msg != null) {
                 outboundMsgQueueSize.decrementAndGet();
+                if (msg instanceof TbWebSocketUpdateMsg) {
+                    pendingUpdates.remove(((TbWebSocketUpdateMsg) msg).getSubscriptionId(), msg);
+                }
                 sendMsgInternal(msg);
             } else {
                 isSending.set(false);
@@ -487,6 +563,31 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
     @Override
     public void send(WebSocketSessionRef sessionRef, int subscriptionId, String msg) throws IOException {
         log.debug("{} Sending {}", sessionRef, msg);
+        SessionMetaData sessionMd = getSessionMdForUpdate(sessionRef, subscriptionId);
+        if (sessionMd != null) {
+            sessionMd.sendMsg(msg);
+        }
+    }
+
+    @Override
+    public void send(WebSocketSessionRef sessionRef, int subscriptionId, byte[] msg) throws IOException {
+        log.debug("{} Sending binary msg of {} bytes", sessionRef, msg.length);
+        SessionMetaData sessionMd = getSessionMdForUpdate(sessionRef, subscriptionId);
+        if (sessionMd != null) {
+            sessionMd.sendMsg(new TbWebSocketBinaryMsg(msg));
+        }
+    }
+
+    @Override
+    public void send(WebSocketSessionRef sessionRef, TelemetrySubscriptionUpdate update) throws IOException {
+        log.debug("{} Sending {}", sessionRef, update);
+        SessionMetaData sessionMd = getSessionMdForUpdate(sessionRef, update.getSubscriptionId());
+        if (sessionMd != null) {
+            sessionMd.sendUpdate(update);
+        }
+    }
+
+    private SessionMetaData getSessionMdForUpdate(WebSocketSessionRef sessionRef, int subscriptionId) {
         String externalId = sessionRef.getSessionId();
         String internalId = externalSessionMap.get(externalId);
         if (internalId != null) {
@@ -498,18 +599,19 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
                         log.info("{} Failed to process session update. Max session updates limit reached", sessionRef);
                         sessionMd.sendMsg("{\"subscriptionId\":" + subscriptionId + ", \"errorCode\":" + WinstarcloudErrorCode.TOO_MANY_UPDATES.getErrorCode() + ", \"errorMsg\":\"Too many updates!\"}");
                     }
-                    return;
+                    return null;
                 } else {
                     log.debug("{} Session is no longer blacklisted.", sessionRef);
                     blacklistedSessions.remove(externalId);
                 }
-                sessionMd.sendMsg(msg);
+                return sessionMd;
             } else {
                 log.warn("[{}][{}] Failed to find session by internal id", externalId, internalId);
             }
         } else {
             log.warn("[{}] Failed to find session by external id", externalId);
         }
+        return null;
     }
 
     @Override
@@ -17,5 +17,5 @@ package org.winstarcloud.server.controller.plugin;
 
 public enum TbWebSocketMsgType {
 
-    PING, TEXT
+    PING, TEXT, BINARY
 }
@@ -0,0 +1,65 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.controller.plugin;
+
+import org.winstarcloud.server.service.ws.telemetry.sub.TelemetrySubscriptionUpdate;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Subscription update that is serialized only when it is sent, so that newer updates of the same subscription
+ * may be merged into it while it waits in the session queue.
+ */
+public class TbWebSocketUpdateMsg implements TbWebSocketMsg<Object> {
+
+    private final int subscriptionId;
+    private final boolean binary;
+    private TelemetrySubscriptionUpdate update;
+    private boolean sent;
+
+    public TbWebSocketUpdateMsg(TelemetrySubscriptionUpdate update, boolean binary) {
+        this.subscriptionId = update.getSubscriptionId();
+        this.update = update;
+        this.binary = binary;
+    }
+
+    public int getSubscriptionId() {
+        return subscriptionId;
+    }
+
+    @Override
+    public TbWebSocketMsgType getType() {
+        return binary ? TbWebSocketMsgType.BINARY : TbWebSocketMsgType.TEXT;
+    }
+
+    @Override
+    public synchronized Object getMsg() {
+        sent = true;
+        return binary ? ByteBuffer.wrap(update.toCbor()) : update.toJson();
+    }
+
+    /**
+     * @return false if the message is already being sent or either update is not a live one, so the newer update should be queued separately
+     */
+    public synchronized boolean merge(TelemetrySubscriptionUpdate newer) {
+        if (sent || !update.canBeConflated() || !newer.canBeConflated()) {
+            return false;
+        }
+        update = update.merge(newer);
+        return true;
+    }
+
+}
@@ -48,6 +48,7 @@ import org.winstarcloud.server.common.msg.TbMsg;
 import org.winstarcloud.server.common.msg.TbMsgDataType;
 import org.winstarcloud.server.common.msg.TbMsgMetaData;
 import org.winstarcloud.server.common.msg.rule.engine.DeviceCredentialsUpdateNotificationMsg;
+import org.winstarcloud.server.dao.dictionary.KeyDictionaryEntryCreatedEvent;
 import org.winstarcloud.server.dao.eventsourcing.ActionEntityEvent;
 import org.winstarcloud.server.dao.eventsourcing.DeleteEntityEvent;
 import org.winstarcloud.server.dao.eventsourcing.SaveEntityEvent;
@@ -180,6 +181,12 @@ public class EntityStateSourcingListener {
         }
     }
 
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleEvent(KeyDictionaryEntryCreatedEvent event) {
+        log.trace("Handling key dictionary entry created event: {}", event);
+        tbClusterService.onKeyDictionaryEntryCreated(event.getKey(), event.getKeyId());
+    }
+
     @TransactionalEventListener(fallbackExecution = true)
     public void handleEvent(ActionEntityEvent<?> event) {
         log.trace("[{}] ActionEntityEvent called: {}", event.getTenantId(), event);
@@ -371,6 +371,36 @@ public class DefaultTbClusterService implements TbClusterService {
         }
     }
 
+    @Override
+    public void onKeyDictionaryEntryCreated(String key, int keyId) {
+        log.trace("Processing key dictionary entry created: [{}] -> [{}]", key, keyId);
+        TransportProtos.KeyDictionaryUpdateMsg keyDictionaryUpdateMsg = TransportProtos.KeyDictionaryUpdateMsg.newBuilder()
+                .addEntries(TransportProtos.KeyDictionaryEntryProto.newBuilder()
+                        .setKey(key)
+                        .setKeyId(keyId)
+                        .build())
+                .build();
+        UUID msgId = UUID.randomUUID();
+        TbQueueProducer<TbProtoQueueMsg<ToCoreNotificationMsg>> toCoreNfProducer = producerProvider.getTbCoreNotificationsMsgProducer();
+        Set<String> tbCoreServices = partitionService.getAllServiceIds(ServiceType.TB_CORE);
+        ToCoreNotificationMsg toCoreMsg = ToCoreNotificationMsg.newBuilder().setKeyDictionaryUpdateMsg(keyDictionaryUpdateMsg).build();
+        for (String serviceId : tbCoreServices) {
+            TopicPartitionInfo tpi = topicService.getNotificationsTopic(ServiceType.TB_CORE, serviceId);
+            toCoreNfProducer.send(tpi, new TbProtoQueueMsg<>(msgId, toCoreMsg), null);
+            toCoreNfs.incrementAndGet();
+        }
+        TbQueueProducer<TbProtoQueueMsg<ToRuleEngineNotificationMsg>> toRuleEngineProducer = producerProvider.getRuleEngineNotificationsMsgProducer();
+        Set<String> tbRuleEngineServices = partitionService.getAllServiceIds(ServiceType.TB_RULE_ENGINE);
+        // No need to push notifications twice
+        tbRuleEngineServices.removeAll(tbCoreServices);
+        ToRuleEngineNotificationMsg toRuleEngineMsg = ToRuleEngineNotificationMsg.newBuilder().setKeyDictionaryUpdateMsg(keyDictionaryUpdateMsg).build();
+        for (String serviceId : tbRuleEngineServices) {
+            TopicPartitionInfo tpi = topicService.getNotificationsTopic(ServiceType.TB_RULE_ENGINE, serviceId);
+            toRuleEngineProducer.send(tpi, new TbProtoQueueMsg<>(msgId, toRuleEngineMsg), null);
+            toRuleEngineNfs.incrementAndGet();
+        }
+    }
+
     private <T> void broadcastEntityChangeToTransport(TenantId tenantId, EntityId entityid, T entity, TbQueueCallback callback) {
         String entityName = (entity instanceof HasName) ? ((HasName) entity).getName() : entity.getClass().getName();
         log.trace("[{}][{}][{}] Processing [{}] change event", tenantId, entityid.getEntityType(), entityid.getId(), entityName);
@@ -55,6 +55,7 @@ import org.winstarcloud.server.common.msg.rpc.ToDeviceRpcRequestActorMsg;
 import org.winstarcloud.server.common.stats.StatsFactory;
 import org.winstarcloud.server.common.util.KvProtoUtil;
 import org.winstarcloud.server.common.util.ProtoUtils;
+import org.winstarcloud.server.dao.dictionary.KeyDictionaryDao;
 import org.winstarcloud.server.dao.resource.ImageCacheKey;
 import org.winstarcloud.server.dao.tenant.TbTenantProfileCache;
 import org.winstarcloud.server.gen.transport.TransportProtos;
@@ -177,9 +178,10 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
                                         JwtSettingsService jwtSettingsService,
                                         NotificationSchedulerService notificationSchedulerService,
                                         NotificationRuleProcessor notificationRuleProcessor,
-                                        TbImageService imageService) {
+                                        TbImageService imageService,
+                                        KeyDictionaryDao keyDictionaryDao) {
         super(actorContext, tenantProfileCache, deviceProfileCache, assetProfileCache, apiUsageStateService, partitionService,
-                eventPublisher, jwtSettingsService);
+                eventPublisher, jwtSettingsService, keyDictionaryDao);
         this.stateService = stateService;
         this.localSubscriptionService = localSubscriptionService;
         this.subscriptionManagerService = subscriptionManagerService;
@@ -407,6 +409,9 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
             callback.onSuccess();
         } else if (toCoreNotification.hasResourceCacheInvalidateMsg()) {
             forwardToResourceService(toCoreNotification.getResourceCacheInvalidateMsg(), callback);
+        } else if (toCoreNotification.hasKeyDictionaryUpdateMsg()) {
+            handleKeyDictionaryUpdateMsg(toCoreNotification.getKeyDictionaryUpdateMsg());
+            callback.onSuccess();
         }
         if (statsEnabled) {
             stats.log(toCoreNotification);
@@ -33,6 +33,7 @@ import org.winstarcloud.server.common.msg.queue.ServiceType;
 import org.winstarcloud.server.common.msg.queue.TbCallback;
 import org.winstarcloud.server.common.msg.rpc.FromDeviceRpcResponse;
 import org.winstarcloud.server.common.util.ProtoUtils;
+import org.winstarcloud.server.dao.dictionary.KeyDictionaryDao;
 import org.winstarcloud.server.dao.queue.QueueService;
 import org.winstarcloud.server.dao.tenant.TbTenantProfileCache;
 import org.winstarcloud.server.gen.transport.TransportProtos;
@@ -83,8 +84,9 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
                                               TbApiUsageStateService apiUsageStateService,
                                               PartitionService partitionService,
                                               ApplicationEventPublisher eventPublisher,
-                                              JwtSettingsService jwtSettingsService) {
-        super(actorContext, tenantProfileCache, deviceProfileCache, assetProfileCache, apiUsageStateService, partitionService, eventPublisher, jwtSettingsService);
+                                              JwtSettingsService jwtSettingsService,
+                                              KeyDictionaryDao keyDictionaryDao) {
+        super(actorContext, tenantProfileCache, deviceProfileCache, assetProfileCache, apiUsageStateService, partitionService, eventPublisher, jwtSettingsService, keyDictionaryDao);
         this.ctx = ctx;
         this.tbDeviceRpcService = tbDeviceRpcService;
         this.queueService = queueService;
@@ -183,6 +185,9 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
         } else if (nfMsg.getQueueDeleteMsgsCount() > 0) {
             deleteQueues(nfMsg.getQueueDeleteMsgsList());
             callback.onSuccess();
+        } else if (nfMsg.hasKeyDictionaryUpdateMsg()) {
+            handleKeyDictionaryUpdateMsg(nfMsg.getKeyDictionaryUpdateMsg());
+            callback.onSuccess();
         } else {
             log.trace("Received notification with missing handler");
             callback.onSuccess();
@@ -56,6 +56,8 @@ public class TbMsgPackProcessingContext {
     private final ConcurrentMap<UUID, RuleNodeInfo> lastRuleNodeMap = new ConcurrentHashMap<>();
 
     private volatile boolean canceled = false;
+    @Getter
+    private volatile long completedTs;
 
     public TbMsgPackProcessingContext(String queueName, TbRuleEngineSubmitStrategy submitStrategy, boolean skipTimeoutMsgsPossible) {
         this.queueName = queueName;
@@ -74,6 +76,10 @@ public class TbMsgPackProcessingContext {
         return success;
     }
 
+    public boolean isCompleted() {
+        return processingTimeoutLatch.getCount() == 0;
+    }
+
     public void onSuccess(UUID id) {
         TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg> msg;
         boolean empty = false;
@@ -84,6 +90,7 @@ public class TbMsgPackProcessingContext {
             submitStrategy.onSuccess(id);
         }
         if (empty) {
+            completedTs = System.currentTimeMillis();
             processingTimeoutLatch.countDown();
         }
     }
@@ -98,6 +105,7 @@ public class TbMsgPackProcessingContext {
             exceptionsMap.putIfAbsent(tenantId, e);
         }
         if (empty) {
+            completedTs = System.currentTimeMillis();
             processingTimeoutLatch.countDown();
         }
     }
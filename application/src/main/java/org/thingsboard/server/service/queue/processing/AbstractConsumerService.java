@@ -34,7 +34,9 @@ import org.winstarcloud.server.common.data.plugin.ComponentLifecycleEvent;
 import org.winstarcloud.server.common.msg.plugin.ComponentLifecycleMsg;
 import org.winstarcloud.server.common.msg.queue.ServiceType;
 import org.winstarcloud.server.common.msg.queue.TbCallback;
+import org.winstarcloud.server.dao.dictionary.KeyDictionaryDao;
 import org.winstarcloud.server.dao.tenant.TbTenantProfileCache;
+import org.winstarcloud.server.gen.transport.TransportProtos;
 import org.winstarcloud.server.queue.TbQueueConsumer;
 import org.winstarcloud.server.queue.common.TbProtoQueueMsg;
 import org.winstarcloud.server.queue.common.consumer.QueueConsumerManager;
@@ -49,7 +51,9 @@ import org.winstarcloud.server.service.queue.TbPackCallback;
 import org.winstarcloud.server.service.queue.TbPackProcessingContext;
 import org.winstarcloud.server.service.security.auth.jwt.settings.JwtSettingsService;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -72,6 +76,7 @@ public abstract class AbstractConsumerService<N extends com.google.protobuf.Gene
     protected final PartitionService partitionService;
     protected final ApplicationEventPublisher eventPublisher;
     protected final JwtSettingsService jwtSettingsService;
+    protected final KeyDictionaryDao keyDictionaryDao;
 
     protected QueueConsumerManager<TbProtoQueueMsg<N>> nfConsumer;
 
@@ -196,6 +201,15 @@ public abstract class AbstractConsumerService<N extends com.google.protobuf.Gene
         actorContext.tellWithHighPriority(componentLifecycleMsg);
     }
 
+    protected final void handleKeyDictionaryUpdateMsg(TransportProtos.KeyDictionaryUpdateMsg msg) {
+        log.trace("Received key dictionary update: {}", msg);
+        Map<String, Integer> keyIds = new HashMap<>(msg.getEntriesCount() * 2);
+        for (TransportProtos.KeyDictionaryEntryProto entry : msg.getEntriesList()) {
+            keyIds.put(entry.getKey(), entry.getKeyId());
+        }
+        keyDictionaryDao.addKeys(keyIds);
+    }
+
     protected abstract void handleNotification(UUID id, TbProtoQueueMsg<N> msg, TbCallback callback) throws Exception;
 
     @PreDestroy
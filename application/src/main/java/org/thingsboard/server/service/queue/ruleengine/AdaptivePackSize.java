@@ -0,0 +1,53 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.service.queue.ruleengine;
+
+/**
+ * Sizes rule engine message packs from the observed pack processing latency.
+ * The size grows by a quarter while full packs are processed within the target latency
+ * and is halved when a pack takes longer than the target or times out.
+ * Not thread-safe, used by a single consumer thread.
+ */
+class AdaptivePackSize {
+
+    private final int minSize;
+    private final int maxSize;
+    private final long targetLatencyMs;
+    private int size;
+
+    AdaptivePackSize(int minSize, int maxSize, long targetLatencyMs) {
+        this.minSize = Math.max(1, minSize);
+        this.maxSize = Math.max(this.minSize, maxSize);
+        this.targetLatencyMs = targetLatencyMs;
+        this.size = this.maxSize;
+    }
+
+    int get() {
+        return size;
+    }
+
+    void onPackProcessed(int packSize, long latencyMs, boolean timeout) {
+        if (targetLatencyMs <= 0) {
+            return;
+        }
+        if (timeout || latencyMs > targetLatencyMs) {
+            size = Math.max(minSize, size / 2);
+        } else if (packSize >= size) {
+            size = Math.min(maxSize, size + Math.max(1, size / 4));
+        }
+    }
+
+}
@@ -49,6 +49,16 @@ public class TbRuleEngineConsumerContext {
     private int topicDeletionDelayInSec;
     @Value("${queue.rule-engine.management-thread-pool-size:12}")
     private int mgmtThreadPoolSize;
+    @Value("${queue.rule-engine.pipeline.enabled:false}")
+    private boolean pipelineEnabled;
+    @Value("${queue.rule-engine.pipeline.max-packs-in-flight:4}")
+    private int pipelineMaxPacksInFlight;
+    @Value("${queue.rule-engine.pipeline.min-pack-size:16}")
+    private int pipelineMinPackSize;
+    @Value("${queue.rule-engine.pipeline.max-pack-size:1024}")
+    private int pipelineMaxPackSize;
+    @Value("${queue.rule-engine.pipeline.target-pack-latency:250}")
+    private long pipelineTargetPackLatency;
 
     private final ActorSystemContext actorContext;
     private final StatsFactory statsFactory;
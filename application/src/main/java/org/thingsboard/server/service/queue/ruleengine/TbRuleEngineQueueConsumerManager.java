@@ -15,6 +15,7 @@
  */
 package org.winstarcloud.server.service.queue.ruleengine;
 
+import com.google.common.collect.Lists;
 import com.google.protobuf.ProtocolStringList;
 import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
@@ -22,6 +23,7 @@ import org.winstarcloud.server.common.data.id.EntityId;
 import org.winstarcloud.server.common.data.id.EntityIdFactory;
 import org.winstarcloud.server.common.data.id.TenantId;
 import org.winstarcloud.server.common.data.queue.Queue;
+import org.winstarcloud.server.common.data.queue.SubmitStrategyType;
 import org.winstarcloud.server.common.msg.TbMsg;
 import org.winstarcloud.server.common.msg.gen.MsgProtos;
 import org.winstarcloud.server.common.msg.queue.QueueToRuleEngineMsg;
@@ -43,12 +45,16 @@ import org.winstarcloud.server.service.queue.processing.TbRuleEngineProcessingRe
 import org.winstarcloud.server.service.queue.processing.TbRuleEngineProcessingStrategy;
 import org.winstarcloud.server.service.queue.processing.TbRuleEngineSubmitStrategy;
 
+import java.util.ArrayDeque;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -62,6 +68,7 @@ public class TbRuleEngineQueueConsumerManager extends MainQueueConsumerManager<T
 
     private final TbRuleEngineConsumerContext ctx;
     private final TbRuleEngineConsumerStats stats;
+    private final ConcurrentMap<TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>>, PackPipeline> pipelines = new ConcurrentHashMap<>();
 
     @Builder(builderMethodName = "create") // not to conflict with super.builder()
     public TbRuleEngineQueueConsumerManager(TbRuleEngineConsumerContext ctx,
@@ -119,6 +126,16 @@ public class TbRuleEngineQueueConsumerManager extends MainQueueConsumerManager<T
     protected void processMsgs(List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs,
                                TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer,
                                Queue queue) throws Exception {
+        if (isPipelined(consumer, queue)) {
+            processMsgsPipelined(msgs, consumer, queue);
+            return;
+        }
+        PackPipeline pipeline = pipelines.remove(consumer);
+        if (pipeline != null) {
+            // the queue is no longer pipelined, finish the packs in flight before committing everything that was polled
+            completePacks(pipeline, consumer, queue, pipeline.size());
+            pipeline.packs.forEach(InFlightPack::cancel);
+        }
         TbRuleEngineSubmitStrategy submitStrategy = getSubmitStrategy(queue);
         TbRuleEngineProcessingStrategy ackStrategy = getProcessingStrategy(queue);
         submitStrategy.init(msgs);
@@ -128,32 +145,129 @@ public class TbRuleEngineQueueConsumerManager extends MainQueueConsumerManager<T
 
             final boolean timeout = !packCtx.await(queue.getPackProcessingTimeout(), TimeUnit.MILLISECONDS);
 
-            TbRuleEngineProcessingResult result = new TbRuleEngineProcessingResult(queue.getName(), timeout, packCtx);
-            if (timeout) {
-                printFirstOrAll(packCtx, packCtx.getPendingMap(), "Timeout");
-            }
-            if (!packCtx.getFailedMap().isEmpty()) {
-                printFirstOrAll(packCtx, packCtx.getFailedMap(), "Failed");
+            TbRuleEngineProcessingDecision decision = analyze(packCtx, ackStrategy, timeout, queue);
+            if (decision.isCommit()) {
+                submitStrategy.stop();
+                consumer.commit();
+                break;
+            } else {
+                submitStrategy.update(decision.getReprocessMap());
             }
-            packCtx.printProfilerStats();
+        }
+    }
 
-            TbRuleEngineProcessingDecision decision = ackStrategy.analyze(result);
-            if (ctx.isStatsEnabled()) {
-                stats.log(result, decision.isCommit());
+    /*
+     * Splits the polled messages into packs of adaptive size and keeps up to the configured number of packs in flight,
+     * so a slow message delays the commit of its pack but not the processing of the packs that follow it.
+     * Packs are analyzed and committed strictly in the order they were submitted. Only used with the burst submit strategy,
+     * because the other strategies promise an order of processing that concurrent packs would break.
+     */
+    private void processMsgsPipelined(List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs,
+                                      TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer,
+                                      Queue queue) throws Exception {
+        PackPipeline pipeline = pipelines.computeIfAbsent(consumer, c -> new PackPipeline(new AdaptivePackSize(
+                ctx.getPipelineMinPackSize(), ctx.getPipelineMaxPackSize(), ctx.getPipelineTargetPackLatency())));
+        int maxPacksInFlight = Math.max(1, ctx.getPipelineMaxPacksInFlight());
+        List<List<TbProtoQueueMsg<ToRuleEngineMsg>>> packs = Lists.partition(msgs, pipeline.packSize.get());
+        for (int i = 0; i < packs.size(); i++) {
+            completePacks(pipeline, consumer, queue, pipeline.size() - maxPacksInFlight + 1);
+            if (stopped || consumer.isStopped()) {
+                return;
             }
+            InFlightPack pack = new InFlightPack(packs.get(i), i == packs.size() - 1, getSubmitStrategy(queue), getProcessingStrategy(queue));
+            submitPack(pack, queue);
+            pipeline.packs.add(pack);
+        }
+        completePacks(pipeline, consumer, queue, 0);
+    }
 
-            packCtx.cleanup();
+    @Override
+    protected void onEmptyPoll(TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer, Queue queue) throws Exception {
+        PackPipeline pipeline = pipelines.get(consumer);
+        if (pipeline != null) {
+            completePacks(pipeline, consumer, queue, 0);
+        }
+    }
+
+    @Override
+    protected void onConsumerStopped(TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer) {
+        PackPipeline pipeline = pipelines.remove(consumer);
+        if (pipeline != null) {
+            pipeline.packs.forEach(InFlightPack::cancel);
+            pipeline.packs.clear();
+        }
+    }
+
+    private boolean isPipelined(TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer, Queue queue) {
+        return ctx.isPipelineEnabled() && consumer.isPollCommitSupported() &&
+                queue.getSubmitStrategy() != null && queue.getSubmitStrategy().getType() == SubmitStrategyType.BURST;
+    }
 
+    /**
+     * Analyzes the packs at the head of the pipeline as they complete, re-submitting the messages to reprocess
+     * and committing the polls whose packs are all done.
+     *
+     * @param minPacksToComplete number of packs to wait for, the packs that already completed are handled in any case
+     */
+    private void completePacks(PackPipeline pipeline, TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer,
+                               Queue queue, int minPacksToComplete) throws InterruptedException {
+        int completed = 0;
+        while (!pipeline.packs.isEmpty()) {
+            InFlightPack pack = pipeline.packs.peek();
+            boolean stopping = stopped || consumer.isStopped();
+            boolean wait = completed < minPacksToComplete && !stopping;
+            boolean done = wait ? pack.await() : pack.packCtx.isCompleted();
+            boolean timeout = !done && (wait || pack.isExpired());
+            if (!done && !timeout) {
+                return;
+            }
+            TbRuleEngineProcessingDecision decision = analyze(pack.packCtx, pack.ackStrategy, timeout, queue);
             if (decision.isCommit()) {
-                submitStrategy.stop();
-                consumer.commit();
-                break;
+                pack.submitStrategy.stop();
+                pipeline.packs.poll();
+                long completedTs = timeout ? System.currentTimeMillis() : pack.packCtx.getCompletedTs();
+                pipeline.packSize.onPackProcessed(pack.size, completedTs - pack.submitTs, timeout);
+                if (pack.lastOfPoll) {
+                    consumer.commitOldestPoll();
+                }
+                completed++;
+            } else if (stopping) {
+                return;
             } else {
-                submitStrategy.update(decision.getReprocessMap());
+                pack.submitStrategy.update(decision.getReprocessMap());
+                submitPack(pack, queue);
             }
         }
     }
 
+    private void submitPack(InFlightPack pack, Queue queue) {
+        TbMsgPackProcessingContext packCtx = new TbMsgPackProcessingContext(queue.getName(), pack.submitStrategy, pack.ackStrategy.isSkipTimeoutMsgs());
+        pack.packCtx = packCtx;
+        pack.submitTs = System.currentTimeMillis();
+        pack.deadlineTs = pack.submitTs + queue.getPackProcessingTimeout();
+        pack.submitStrategy.submitAttempt((id, msg) -> submitMessage(packCtx, id, msg));
+    }
+
+    private TbRuleEngineProcessingDecision analyze(TbMsgPackProcessingContext packCtx, TbRuleEngineProcessingStrategy ackStrategy,
+                                                   boolean timeout, Queue queue) {
+        TbRuleEngineProcessingResult result = new TbRuleEngineProcessingResult(queue.getName(), timeout, packCtx);
+        if (timeout) {
+            printFirstOrAll(packCtx, packCtx.getPendingMap(), "Timeout");
+        }
+        if (!packCtx.getFailedMap().isEmpty()) {
+            printFirstOrAll(packCtx, packCtx.getFailedMap(), "Failed");
+        }
+        packCtx.printProfilerStats();
+
+        TbRuleEngineProcessingDecision decision = ackStrategy.analyze(result);
+        if (ctx.isStatsEnabled()) {
+            stats.log(result, decision.isCommit());
+        }
+
+        packCtx.cleanup();
+        return decision;
+    }
+
     private TbRuleEngineSubmitStrategy getSubmitStrategy(Queue queue) {
         return ctx.getSubmitStrategyFactory().newInstance(queue.getName(), queue.getSubmitStrategy());
     }
@@ -216,6 +330,56 @@ public class TbRuleEngineQueueConsumerManager extends MainQueueConsumerManager<T
         stats.reset();
     }
 
+    private static class PackPipeline {
+
+        private final Deque<InFlightPack> packs = new ArrayDeque<>();
+        private final AdaptivePackSize packSize;
+
+        PackPipeline(AdaptivePackSize packSize) {
+            this.packSize = packSize;
+        }
+
+        int size() {
+            return packs.size();
+        }
+
+    }
+
+    private static class InFlightPack {
+
+        private final int size;
+        private final boolean lastOfPoll;
+        private final TbRuleEngineSubmitStrategy submitStrategy;
+        private final TbRuleEngineProcessingStrategy ackStrategy;
+        private TbMsgPackProcessingContext packCtx;
+        private long submitTs;
+        private long deadlineTs;
+
+        InFlightPack(List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs, boolean lastOfPoll,
+                     TbRuleEngineSubmitStrategy submitStrategy, TbRuleEngineProcessingStrategy ackStrategy) {
+            this.size = msgs.size();
+            this.lastOfPoll = lastOfPoll;
+            this.submitStrategy = submitStrategy;
+            this.ackStrategy = ackStrategy;
+            submitStrategy.init(msgs);
+        }
+
+        boolean await() throws InterruptedException {
+            long timeLeft = deadlineTs - System.currentTimeMillis();
+            return timeLeft > 0 ? packCtx.await(timeLeft, TimeUnit.MILLISECONDS) : packCtx.isCompleted();
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() >= deadlineTs;
+        }
+
+        void cancel() {
+            submitStrategy.stop();
+            packCtx.cleanup();
+        }
+
+    }
+
     private void drainQueue(List<TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>>> consumers) {
         long finishTs = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(ctx.getTopicDeletionDelayInSec());
         try {
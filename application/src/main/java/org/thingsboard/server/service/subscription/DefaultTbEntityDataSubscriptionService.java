@@ -18,7 +18,6 @@ package org.winstarcloud.server.service.subscription;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.MoreExecutors;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.ArrayUtils;
@@ -30,6 +29,7 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.socket.CloseStatus;
 import org.winstarcloud.common.util.WinstarCloudThreadFactory;
+import org.winstarcloud.server.common.data.id.EntityId;
 import org.winstarcloud.server.common.data.kv.BaseReadTsKvQuery;
 import org.winstarcloud.server.common.data.kv.ReadTsKvQuery;
 import org.winstarcloud.server.common.data.kv.ReadTsKvQueryResult;
@@ -70,6 +70,8 @@ import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -646,7 +648,7 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
                     .filter(key -> key.getType().equals(EntityKeyType.TIME_SERIES))
                     .map(EntityKey::getKey).collect(Collectors.toList());
 
-            Map<EntityData, ListenableFuture<Map<String, TsValue>>> missingTelemetryFutures = new HashMap<>();
+            Map<EntityId, Collection<String>> missingTsKeysByEntityId = new HashMap<>();
             for (EntityData entityData : ctx.getData().getData()) {
                 Map<EntityKeyType, Map<String, TsValue>> latestEntityData = entityData.getLatest();
                 Map<String, TsValue> tsEntityData = latestEntityData.get(EntityKeyType.TIME_SERIES);
@@ -658,19 +660,24 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
                     latestEntityData.put(EntityKeyType.TIME_SERIES, tsEntityData);
                 }
 
-                ListenableFuture<List<TsKvEntry>> missingTsData = tsService.findLatest(ctx.getTenantId(), entityData.getEntityId(), missingTsKeys);
-                missingTelemetryFutures.put(entityData, Futures.transform(missingTsData, this::toTsValue, MoreExecutors.directExecutor()));
+                if (!missingTsKeys.isEmpty()) {
+                    missingTsKeysByEntityId.put(entityData.getEntityId(), missingTsKeys);
+                }
             }
-            Futures.addCallback(Futures.allAsList(missingTelemetryFutures.values()), new FutureCallback<>() {
+            // the values of the whole page are fetched at once instead of a query per entity
+            ListenableFuture<Map<EntityId, List<TsKvEntry>>> missingTelemetryFuture = missingTsKeysByEntityId.isEmpty() ?
+                    Futures.immediateFuture(Collections.emptyMap()) : tsService.findLatest(ctx.getTenantId(), missingTsKeysByEntityId);
+            Futures.addCallback(missingTelemetryFuture, new FutureCallback<>() {
                 @Override
-                public void onSuccess(@Nullable List<Map<String, TsValue>> result) {
-                    missingTelemetryFutures.forEach((key, value) -> {
-                        try {
-                            key.getLatest().get(EntityKeyType.TIME_SERIES).putAll(value.get());
-                        } catch (InterruptedException | ExecutionException e) {
-                            log.warn("[{}][{}] Failed to lookup latest telemetry: {}:{}", ctx.getSessionId(), ctx.getCmdId(), key.getEntityId(), allTsKeys, e);
+                public void onSuccess(@Nullable Map<EntityId, List<TsKvEntry>> result) {
+                    if (result != null) {
+                        for (EntityData entityData : ctx.getData().getData()) {
+                            List<TsKvEntry> missingTsData = result.get(entityData.getEntityId());
+                            if (missingTsData != null) {
+                                entityData.getLatest().get(EntityKeyType.TIME_SERIES).putAll(toTsValue(missingTsData));
+                            }
                         }
-                    });
+                    }
                     EntityDataUpdate update;
                     ctx.getWsLock().lock();
                     try {
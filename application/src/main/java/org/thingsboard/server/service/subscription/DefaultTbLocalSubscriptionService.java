@@ -51,9 +51,11 @@ import org.winstarcloud.server.service.ws.WebSocketService;
 import org.winstarcloud.server.service.ws.notification.sub.NotificationRequestUpdate;
 import org.winstarcloud.server.service.ws.notification.sub.NotificationsSubscriptionUpdate;
 import org.winstarcloud.server.service.ws.telemetry.sub.AlarmSubscriptionUpdate;
+import org.winstarcloud.server.service.ws.telemetry.sub.SharedTelemetryUpdateData;
 import org.winstarcloud.server.service.ws.telemetry.sub.TelemetrySubscriptionUpdate;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -294,6 +296,7 @@ public class DefaultTbLocalSubscriptionService implements TbLocalSubscriptionSer
 
     private void onTimeSeriesUpdate(UUID entityId, List<TsKvEntry> data, TbCallback callback) {
         entityUpdates.get(entityId).timeSeriesUpdateTs = System.currentTimeMillis();
+        Map<Set<String>, SharedTelemetryUpdateData> sharedData = new HashMap<>();
         processSubscriptionData(entityId,
                 sub -> TbSubscriptionType.TIMESERIES.equals(sub.getType()),
                 s -> {
@@ -312,13 +315,24 @@ public class DefaultTbLocalSubscriptionService implements TbLocalSubscriptionSer
                         }
                     }
                     if (updateData != null) {
-                        TelemetrySubscriptionUpdate update = new TelemetrySubscriptionUpdate(sub.getSubscriptionId(), updateData);
+                        TelemetrySubscriptionUpdate update = new TelemetrySubscriptionUpdate(sub.getSubscriptionId(), getSharedData(sharedData, updateData)).asLiveUpdate();
                         update.getLatestValues().forEach((key, value) -> sub.getKeyStates().put(key, value));
                         subscriptionUpdateExecutor.submit(() -> sub.getUpdateProcessor().accept(sub, update));
                     }
                 }, callback);
     }
 
+    /**
+     * Subscriptions of the same entity with the same keys share the update data, so it is serialized once for all the sessions.
+     */
+    private static SharedTelemetryUpdateData getSharedData(Map<Set<String>, SharedTelemetryUpdateData> sharedData, List<TsKvEntry> updateData) {
+        Set<String> keys = new HashSet<>();
+        for (TsKvEntry kv : updateData) {
+            keys.add(kv.getKey());
+        }
+        return sharedData.computeIfAbsent(keys, k -> new SharedTelemetryUpdateData(updateData));
+    }
+
     @Override
     public void onAttributesUpdate(TransportProtos.TbSubUpdateProto proto, TbCallback callback) {
         onAttributesUpdate(new UUID(proto.getEntityIdMSB(), proto.getEntityIdLSB()), proto.getScope(), TbSubscriptionUtils.fromProto(proto), callback);
@@ -331,6 +345,7 @@ public class DefaultTbLocalSubscriptionService implements TbLocalSubscriptionSer
 
     private void onAttributesUpdate(UUID entityId, String scope, List<TsKvEntry> data, TbCallback callback) {
         entityUpdates.get(entityId).attributesUpdateTs = System.currentTimeMillis();
+        Map<Set<String>, SharedTelemetryUpdateData> sharedData = new HashMap<>();
         processSubscriptionData(entityId,
                 sub -> TbSubscriptionType.ATTRIBUTES.equals(sub.getType()),
                 s -> {
@@ -350,7 +365,7 @@ public class DefaultTbLocalSubscriptionService implements TbLocalSubscriptionSer
                             }
                         }
                         if (updateData != null) {
-                            TelemetrySubscriptionUpdate update = new TelemetrySubscriptionUpdate(sub.getSubscriptionId(), updateData);
+                            TelemetrySubscriptionUpdate update = new TelemetrySubscriptionUpdate(sub.getSubscriptionId(), getSharedData(sharedData, updateData)).asLiveUpdate();
                             update.getLatestValues().forEach((key, value) -> sub.getKeyStates().put(key, value));
                             subscriptionUpdateExecutor.submit(() -> sub.getUpdateProcessor().accept(sub, update));
                         }
@@ -20,6 +20,7 @@ import org.winstarcloud.server.common.data.id.DeviceId;
 import org.winstarcloud.server.common.data.id.TenantId;
 import org.winstarcloud.server.common.msg.MsgType;
 import org.winstarcloud.server.common.msg.TbActorMsg;
+import org.winstarcloud.server.common.msg.TbActorStopReason;
 import org.winstarcloud.server.common.msg.aware.DeviceAwareMsg;
 import org.winstarcloud.server.common.msg.aware.TenantAwareMsg;
 import org.winstarcloud.server.common.msg.queue.TbCallback;
@@ -52,4 +53,9 @@ public class TransportToDeviceActorMsgWrapper implements TbActorMsg, DeviceAware
     public MsgType getMsgType() {
         return MsgType.TRANSPORT_TO_DEVICE_ACTOR_MSG;
     }
+
+    @Override
+    public void onTbActorStopped(TbActorStopReason reason) {
+        callback.onFailure(new RuntimeException(String.format("Device actor [%s] stopped", deviceId.getId())));
+    }
 }
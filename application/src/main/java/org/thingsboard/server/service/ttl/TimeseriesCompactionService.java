@@ -0,0 +1,48 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.service.ttl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.winstarcloud.server.dao.timeseries.TimeseriesService;
+import org.winstarcloud.server.queue.discovery.PartitionService;
+import org.winstarcloud.server.queue.util.TbCoreComponent;
+
+@TbCoreComponent
+@Slf4j
+@Service
+public class TimeseriesCompactionService extends AbstractCleanUpService {
+
+    @Value("${sql.ts.compression.enabled:false}")
+    private boolean compactionEnabled;
+
+    private final TimeseriesService timeseriesService;
+
+    public TimeseriesCompactionService(PartitionService partitionService, TimeseriesService timeseriesService) {
+        super(partitionService);
+        this.timeseriesService = timeseriesService;
+    }
+
+    @Scheduled(initialDelayString = "${sql.ts.compression.execution_interval_ms:3600000}", fixedDelayString = "${sql.ts.compression.execution_interval_ms:3600000}")
+    public void compact() {
+        if (compactionEnabled && isSystemTenantPartitionMine()) {
+            timeseriesService.compact();
+        }
+    }
+
+}
@@ -845,6 +845,27 @@ public class DefaultWebSocketService implements WebSocketService {
     }
 
     private void sendUpdate(WebSocketSessionRef sessionRef, int cmdId, Object update) {
+        if (update instanceof TelemetrySubscriptionUpdate && ((TelemetrySubscriptionUpdate) update).canBeConflated()) {
+            // serialized by the endpoint when sent, which allows to conflate the updates queued for a slow session
+            executor.submit(() -> {
+                try {
+                    msgEndpoint.send(sessionRef, (TelemetrySubscriptionUpdate) update);
+                } catch (IOException e) {
+                    log.warn("[{}] Failed to send reply: {}", sessionRef.getSessionId(), update, e);
+                }
+            });
+            return;
+        }
+        if (sessionRef.isBinary()) {
+            executor.submit(() -> {
+                try {
+                    msgEndpoint.send(sessionRef, cmdId, WebSocketCborUtil.toBytes(update));
+                } catch (Exception e) {
+                    log.warn("[{}] Failed to send reply: {}", sessionRef.getSessionId(), update, e);
+                }
+            });
+            return;
+        }
         try {
             String msg = JacksonUtil.OBJECT_MAPPER.writeValueAsString(update);
             executor.submit(() -> {
@@ -0,0 +1,66 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.service.ws;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import org.winstarcloud.common.util.JacksonUtil;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * CBOR (RFC 8949) encoding of the WebSocket messages for the sessions that negotiated the {@link #SUB_PROTOCOL}
+ * sub-protocol. The messages have the same structure as the JSON ones, only the encoding differs.
+ */
+public class WebSocketCborUtil {
+
+    public static final String SUB_PROTOCOL = "cbor";
+
+    public static final ObjectMapper CBOR_MAPPER = CBORMapper.builder()
+            .addModule(new Jdk8Module())
+            .build();
+
+    public static byte[] toBytes(Object value) {
+        try {
+            return CBOR_MAPPER.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("The given object value cannot be transformed to CBOR: " + value, e);
+        }
+    }
+
+    public static byte[] fromJson(String json) {
+        return toBytes(JacksonUtil.toJsonNode(json));
+    }
+
+    public static String toJson(byte[] cbor) {
+        try {
+            return JacksonUtil.toString(CBOR_MAPPER.readTree(cbor));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("The given CBOR value cannot be transformed to Json", e);
+        }
+    }
+
+    /**
+     * Note that {@link JsonGenerator#writeStartObject()} of the returned generator starts an indefinite-length map.
+     */
+    public static JsonGenerator createGenerator(OutputStream out) throws IOException {
+        return CBOR_MAPPER.createGenerator(out);
+    }
+
+}
@@ -16,6 +16,7 @@
 package org.winstarcloud.server.service.ws;
 
 import org.springframework.web.socket.CloseStatus;
+import org.winstarcloud.server.service.ws.telemetry.sub.TelemetrySubscriptionUpdate;
 
 import java.io.IOException;
 
@@ -26,6 +27,10 @@ public interface WebSocketMsgEndpoint {
 
     void send(WebSocketSessionRef sessionRef, int subscriptionId, String msg) throws IOException;
 
+    void send(WebSocketSessionRef sessionRef, int subscriptionId, byte[] msg) throws IOException;
+
+    void send(WebSocketSessionRef sessionRef, TelemetrySubscriptionUpdate update) throws IOException;
+
     void sendPing(WebSocketSessionRef sessionRef, long currentTime) throws IOException;
 
     void close(WebSocketSessionRef sessionRef, CloseStatus withReason) throws IOException;
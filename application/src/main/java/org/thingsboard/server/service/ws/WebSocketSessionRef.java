@@ -37,6 +37,8 @@ public class WebSocketSessionRef {
     private final InetSocketAddress localAddress;
     private final InetSocketAddress remoteAddress;
     private final WebSocketSessionType sessionType;
+    // CBOR encoded binary messages are used instead of JSON text, see WebSocketCborUtil
+    private final boolean binary;
     private final AtomicInteger sessionSubIdSeq = new AtomicInteger();
 
     @Override
@@ -0,0 +1,100 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.service.ws.telemetry.sub;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import lombok.Getter;
+import org.winstarcloud.common.util.JacksonUtil;
+import org.winstarcloud.server.common.data.kv.TsKvEntry;
+import org.winstarcloud.server.service.ws.WebSocketCborUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Data of an entity update that is delivered to all subscriptions with the same keys.
+ * The data is immutable and is serialized to JSON (or CBOR) only once, no matter how many sessions receive it.
+ */
+public class SharedTelemetryUpdateData {
+
+    @Getter
+    private final Map<String, List<Object>> data;
+    private volatile String json;
+    private volatile byte[] cbor;
+
+    public SharedTelemetryUpdateData(List<TsKvEntry> entries) {
+        Map<String, List<Object>> data = new TreeMap<>();
+        for (TsKvEntry tsEntry : entries) {
+            List<Object> values = data.computeIfAbsent(tsEntry.getKey(), k -> new ArrayList<>());
+            Object[] value = new Object[2];
+            value[0] = tsEntry.getTs();
+            value[1] = tsEntry.getValueAsString();
+            values.add(value);
+        }
+        this.data = Collections.unmodifiableMap(data);
+    }
+
+    /**
+     * @return the "data" and "latestValues" fields of {@link TelemetrySubscriptionUpdate} as a JSON fragment
+     */
+    String getJson() {
+        String result = json;
+        if (result == null) {
+            result = "\"data\":" + JacksonUtil.toString(data) + ",\"latestValues\":" + JacksonUtil.toString(getLatestValues(data));
+            json = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return the "data" and "latestValues" entries of {@link TelemetrySubscriptionUpdate} as a CBOR fragment,
+     * i.e. the content of an indefinite-length map without its start and break bytes
+     */
+    byte[] getCbor() {
+        byte[] result = cbor;
+        if (result == null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (JsonGenerator gen = WebSocketCborUtil.createGenerator(out)) {
+                gen.writeStartObject();
+                gen.writeObjectField("data", data);
+                gen.writeObjectField("latestValues", getLatestValues(data));
+                gen.writeEndObject();
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Failed to encode the update data to CBOR", e);
+            }
+            byte[] map = out.toByteArray();
+            result = Arrays.copyOfRange(map, 1, map.length - 1);
+            cbor = result;
+        }
+        return result;
+    }
+
+    static Map<String, Long> getLatestValues(Map<String, List<Object>> data) {
+        return data.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey, e -> {
+            List<Object> values = e.getValue();
+            Object[] latest = (Object[]) values.get(values.size() - 1);
+            return (long) latest[0];
+        }));
+    }
+
+}
@@ -15,17 +15,21 @@
  */
 package org.winstarcloud.server.service.ws.telemetry.sub;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import lombok.AllArgsConstructor;
+import org.winstarcloud.common.util.JacksonUtil;
 import org.winstarcloud.server.common.data.kv.TsKvEntry;
 import org.winstarcloud.server.service.subscription.SubscriptionErrorCode;
+import org.winstarcloud.server.service.ws.WebSocketCborUtil;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
-import java.util.stream.Collectors;
 
 @AllArgsConstructor
 public class TelemetrySubscriptionUpdate {
@@ -33,6 +37,8 @@ public class TelemetrySubscriptionUpdate {
     private int errorCode;
     private String errorMsg;
     private Map<String, List<Object>> data;
+    private SharedTelemetryUpdateData sharedData;
+    private boolean live;
 
     public TelemetrySubscriptionUpdate(int subscriptionId, List<TsKvEntry> data) {
         super();
@@ -55,6 +61,13 @@ public class TelemetrySubscriptionUpdate {
         this.data = data;
     }
 
+    public TelemetrySubscriptionUpdate(int subscriptionId, SharedTelemetryUpdateData sharedData) {
+        super();
+        this.subscriptionId = subscriptionId;
+        this.data = sharedData.getData();
+        this.sharedData = sharedData;
+    }
+
     public TelemetrySubscriptionUpdate(int subscriptionId, SubscriptionErrorCode errorCode) {
         this(subscriptionId, errorCode, null);
     }
@@ -78,11 +91,7 @@ public class TelemetrySubscriptionUpdate {
         if (data == null) {
             return Collections.emptyMap();
         } else {
-            return data.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey, e -> {
-                List<Object> data = e.getValue();
-                Object[] latest = (Object[]) data.get(data.size() - 1);
-                return (long) latest[0];
-            }));
+            return SharedTelemetryUpdateData.getLatestValues(data);
         }
     }
 
@@ -95,7 +104,61 @@ public class TelemetrySubscriptionUpdate {
     }
 
     public TelemetrySubscriptionUpdate copyWithNewSubscriptionId(int subscriptionId){
-        return new TelemetrySubscriptionUpdate(subscriptionId, errorCode, errorMsg, data);
+        return new TelemetrySubscriptionUpdate(subscriptionId, errorCode, errorMsg, data, sharedData, live);
+    }
+
+    /**
+     * Marks the update as pushed to a live subscription. Only such updates are conflated:
+     * the initial reply to a command carries the requested history, which must reach the client as a whole.
+     */
+    public TelemetrySubscriptionUpdate asLiveUpdate() {
+        this.live = true;
+        return this;
+    }
+
+    /**
+     * Conflates this update with a newer one of the same subscription: the values of the newer update win per key.
+     */
+    public TelemetrySubscriptionUpdate merge(TelemetrySubscriptionUpdate newer) {
+        Map<String, List<Object>> merged = new TreeMap<>(data);
+        merged.putAll(newer.data);
+        return new TelemetrySubscriptionUpdate(subscriptionId, merged).asLiveUpdate();
+    }
+
+    public boolean canBeConflated() {
+        return live && errorCode == 0 && data != null;
+    }
+
+    /**
+     * Serializes the update. The data shared between the subscriptions is serialized only once.
+     */
+    public String toJson() {
+        if (sharedData != null && errorCode == 0) {
+            return "{\"subscriptionId\":" + subscriptionId + ",\"errorCode\":0,\"errorMsg\":null," + sharedData.getJson() + "}";
+        }
+        return JacksonUtil.toString(this);
+    }
+
+    /**
+     * Serializes the update to CBOR for the sessions of the binary sub-protocol, see {@link WebSocketCborUtil}.
+     */
+    public byte[] toCbor() {
+        if (sharedData != null && errorCode == 0) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (JsonGenerator gen = WebSocketCborUtil.createGenerator(out)) {
+                gen.writeStartObject();
+                gen.writeNumberField("subscriptionId", subscriptionId);
+                gen.writeNumberField("errorCode", 0);
+                gen.writeNullField("errorMsg");
+                gen.flush();
+                out.write(sharedData.getCbor());
+                gen.writeEndObject();
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Failed to encode the update to CBOR", e);
+            }
+            return out.toByteArray();
+        }
+        return WebSocketCborUtil.toBytes(this);
     }
 
     @Override
@@ -0,0 +1,119 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.actors.device;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.winstarcloud.server.actors.ActorSystemContext;
+import org.winstarcloud.server.actors.TbActorCtx;
+import org.winstarcloud.server.actors.TbActorId;
+import org.winstarcloud.server.actors.TbActorRef;
+import org.winstarcloud.server.actors.TbEntityActorId;
+import org.winstarcloud.server.common.data.id.DeviceId;
+import org.winstarcloud.server.common.data.id.TenantId;
+import org.winstarcloud.server.common.msg.TbActorStopReason;
+import org.winstarcloud.server.common.stats.DefaultCounter;
+import org.winstarcloud.server.dao.device.DeviceService;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DeviceActorTest {
+
+    ActorSystemContext systemContext;
+    TbActorCtx ctx;
+    TbActorRef tenantActorRef;
+    TenantId tenantId = TenantId.SYS_TENANT_ID;
+    DeviceId deviceId = DeviceId.fromString("78bf9b26-74ef-4af2-9cfb-ad6cf24ad2ec");
+    TbActorId actorId = new TbEntityActorId(deviceId);
+
+    DeviceActor deviceActor;
+
+    @Before
+    public void setUp() {
+        systemContext = mock(ActorSystemContext.class);
+        ctx = mock(TbActorCtx.class);
+        tenantActorRef = mock(TbActorRef.class);
+        when(systemContext.getMaxConcurrentSessionsPerDevice()).thenReturn(10L);
+        when(systemContext.getDeviceService()).thenReturn(mock(DeviceService.class));
+        when(systemContext.getActiveDeviceActors()).thenReturn(new AtomicInteger());
+        when(systemContext.getPassivatedDeviceActors()).thenReturn(mock(DefaultCounter.class));
+        when(systemContext.isDevicePassivationEnabled()).thenReturn(true);
+        when(ctx.getSelf()).thenReturn(actorId);
+        when(ctx.getParentRef()).thenReturn(tenantActorRef);
+        deviceActor = new DeviceActor(systemContext, tenantId, deviceId);
+        ReflectionTestUtils.setField(deviceActor, "ctx", ctx);
+    }
+
+    @Test
+    public void idleDeviceActorRequestsPassivationOnceTest() {
+        when(systemContext.getDevicePassivationIdleTimeout()).thenReturn(-1L);
+
+        deviceActor.doProcess(SessionTimeoutCheckMsg.instance());
+        deviceActor.doProcess(SessionTimeoutCheckMsg.instance());
+
+        verify(tenantActorRef, times(1)).tellWithHighPriority(eq(new DeviceActorPassivationRequestMsg(deviceId)));
+    }
+
+    @Test
+    public void idleDeviceActorStopsAndRepliesOnPassivateTest() {
+        when(systemContext.getDevicePassivationIdleTimeout()).thenReturn(-1L);
+
+        deviceActor.doProcess(new DeviceActorPassivateMsg(tenantActorRef, deviceId));
+
+        verify(ctx).stop(eq(actorId));
+        verify(tenantActorRef).tellWithHighPriority(eq(new DeviceActorPassivationResultMsg(deviceId, true)));
+    }
+
+    @Test
+    public void activeDeviceActorKeepsRunningAndRepliesOnPassivateTest() {
+        when(systemContext.getDevicePassivationIdleTimeout()).thenReturn(Long.MAX_VALUE);
+
+        deviceActor.doProcess(new DeviceActorPassivateMsg(tenantActorRef, deviceId));
+
+        verify(ctx, never()).stop(any());
+        verify(tenantActorRef).tellWithHighPriority(eq(new DeviceActorPassivationResultMsg(deviceId, false)));
+    }
+
+    @Test
+    public void deviceActorRepliesOnPassivateEvenIfIdleCheckFailsTest() {
+        when(systemContext.getDevicePassivationIdleTimeout()).thenThrow(new RuntimeException("Failed to read timeout"));
+
+        try {
+            deviceActor.doProcess(new DeviceActorPassivateMsg(tenantActorRef, deviceId));
+        } catch (RuntimeException ignored) {
+        }
+
+        verify(ctx, never()).stop(any());
+        verify(tenantActorRef).tellWithHighPriority(eq(new DeviceActorPassivationResultMsg(deviceId, false)));
+    }
+
+    @Test
+    public void stoppedDeviceActorRepliesToPendingPassivateMsgTest() {
+        new DeviceActorPassivateMsg(tenantActorRef, deviceId).onTbActorStopped(TbActorStopReason.STOPPED);
+
+        verify(tenantActorRef).tellWithHighPriority(eq(new DeviceActorPassivationResultMsg(deviceId, true)));
+    }
+
+}
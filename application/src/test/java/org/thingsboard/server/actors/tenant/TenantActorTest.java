@@ -20,14 +20,24 @@ import org.junit.Test;
 import org.winstarcloud.server.actors.ActorSystemContext;
 import org.winstarcloud.server.actors.TbActorCtx;
 import org.winstarcloud.server.actors.TbActorRef;
+import org.winstarcloud.server.actors.TbEntityActorId;
+import org.winstarcloud.server.actors.device.DeviceActorPassivateMsg;
+import org.winstarcloud.server.actors.device.DeviceActorPassivationRequestMsg;
+import org.winstarcloud.server.actors.device.DeviceActorPassivationResultMsg;
 import org.winstarcloud.server.common.data.id.DeviceId;
 import org.winstarcloud.server.common.data.id.TenantId;
 import org.winstarcloud.server.common.data.plugin.ComponentLifecycleEvent;
+import org.winstarcloud.server.common.msg.TbActorStopReason;
 import org.winstarcloud.server.common.msg.plugin.ComponentLifecycleMsg;
+import org.winstarcloud.server.common.msg.queue.PartitionChangeMsg;
 import org.winstarcloud.server.common.msg.queue.ServiceType;
+import org.winstarcloud.server.common.msg.queue.TbCallback;
 import org.winstarcloud.server.common.msg.queue.TopicPartitionInfo;
 import org.winstarcloud.server.common.msg.rule.engine.DeviceDeleteMsg;
+import org.winstarcloud.server.common.msg.rule.engine.DeviceNameOrTypeUpdateMsg;
 import org.winstarcloud.server.dao.tenant.TenantService;
+import org.winstarcloud.server.gen.transport.TransportProtos;
+import org.winstarcloud.server.service.transport.msg.TransportToDeviceActorMsgWrapper;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -71,4 +81,80 @@ public class TenantActorTest {
         verify(deviceActorRef, never()).tellWithHighPriority(any());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void devicePassivationHoldsMessagesUntilCompletedTest() {
+        TbActorRef deviceActorRef = mock(TbActorRef.class);
+        when(ctx.getOrCreateChildActor(any(), any(), any(), any())).thenReturn(deviceActorRef);
+        tenantActor.doProcess(new DeviceActorPassivationRequestMsg(deviceId));
+        verify(deviceActorRef).tell(eq(new DeviceActorPassivateMsg(ctx, deviceId)));
+
+        DeviceNameOrTypeUpdateMsg updateMsg = new DeviceNameOrTypeUpdateMsg(tenantId, deviceId, "name", "type");
+        tenantActor.doProcess(updateMsg);
+        verify(deviceActorRef, never()).tellWithHighPriority(any());
+
+        TbActorRef newDeviceActorRef = mock(TbActorRef.class);
+        when(ctx.getOrCreateChildActor(any(), any(), any(), any())).thenReturn(newDeviceActorRef);
+        tenantActor.doProcess(new DeviceActorPassivationResultMsg(deviceId, true));
+        verify(newDeviceActorRef).tellWithHighPriority(eq(updateMsg));
+    }
+
+    @Test
+    public void heldDeviceMessagesAreFailedWhenTenantActorStopsTest() {
+        TbActorRef deviceActorRef = mock(TbActorRef.class);
+        when(ctx.getOrCreateChildActor(any(), any(), any(), any())).thenReturn(deviceActorRef);
+        tenantActor.doProcess(new DeviceActorPassivationRequestMsg(deviceId));
+
+        TbCallback callback = mock(TbCallback.class);
+        tenantActor.doProcess(newTransportMsg(callback));
+        verify(callback, never()).onFailure(any());
+
+        tenantActor.destroy(TbActorStopReason.STOPPED, null);
+        verify(callback).onFailure(any());
+        verify(deviceActorRef, never()).tell(any(TransportToDeviceActorMsgWrapper.class));
+    }
+
+    @Test
+    public void heldDeviceMessagesAreFailedWhenDeviceMovesToAnotherPartitionTest() {
+        TbActorRef deviceActorRef = mock(TbActorRef.class);
+        when(ctx.getOrCreateChildActor(any(), any(), any(), any())).thenReturn(deviceActorRef);
+        tenantActor.doProcess(new DeviceActorPassivationRequestMsg(deviceId));
+
+        TbCallback callback = mock(TbCallback.class);
+        tenantActor.doProcess(newTransportMsg(callback));
+
+        when(systemContext.resolve(ServiceType.TB_CORE, tenantId, deviceId)).thenReturn(new TopicPartitionInfo("Main", tenantId, 1, false));
+        tenantActor.doProcess(new PartitionChangeMsg(ServiceType.TB_CORE));
+        verify(callback).onFailure(any());
+
+        tenantActor.doProcess(new DeviceActorPassivationResultMsg(deviceId, true));
+        verify(deviceActorRef, never()).tell(any(TransportToDeviceActorMsgWrapper.class));
+    }
+
+    @Test
+    public void heldDeviceMessagesAreFailedWhenDeviceIsDeletedDuringPassivationTest() {
+        TbActorRef deviceActorRef = mock(TbActorRef.class);
+        when(systemContext.resolve(ServiceType.TB_CORE, tenantId, deviceId)).thenReturn(new TopicPartitionInfo("Main", tenantId, 0, true));
+        when(ctx.getOrCreateChildActor(any(), any(), any(), any())).thenReturn(deviceActorRef);
+        tenantActor.doProcess(new DeviceActorPassivationRequestMsg(deviceId));
+
+        TbCallback callback = mock(TbCallback.class);
+        tenantActor.doProcess(newTransportMsg(callback));
+        tenantActor.doProcess(new ComponentLifecycleMsg(tenantId, deviceId, ComponentLifecycleEvent.DELETED));
+
+        tenantActor.doProcess(new DeviceActorPassivationResultMsg(deviceId, false));
+        verify(callback).onFailure(any());
+        verify(ctx).stop(eq(new TbEntityActorId(deviceId)));
+        verify(deviceActorRef, never()).tell(any(TransportToDeviceActorMsgWrapper.class));
+    }
+
+    private TransportToDeviceActorMsgWrapper newTransportMsg(TbCallback callback) {
+        TransportProtos.SessionInfoProto sessionInfo = TransportProtos.SessionInfoProto.newBuilder()
+                .setTenantIdMSB(tenantId.getId().getMostSignificantBits())
+                .setTenantIdLSB(tenantId.getId().getLeastSignificantBits())
+                .setDeviceIdMSB(deviceId.getId().getMostSignificantBits())
+                .setDeviceIdLSB(deviceId.getId().getLeastSignificantBits())
+                .build();
+        return new TransportToDeviceActorMsgWrapper(TransportProtos.TransportToDeviceActorMsg.newBuilder().setSessionInfo(sessionInfo).build(), callback);
+    }
+
+}
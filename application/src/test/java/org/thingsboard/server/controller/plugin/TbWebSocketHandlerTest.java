@@ -15,6 +15,7 @@
  */
 package org.winstarcloud.server.controller.plugin;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import lombok.extern.slf4j.Slf4j;
 import org.awaitility.Awaitility;
 import org.junit.jupiter.api.AfterEach;
@@ -22,15 +23,24 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.socket.adapter.NativeWebSocketSession;
+import org.winstarcloud.common.util.JacksonUtil;
 import org.winstarcloud.common.util.WinstarCloudThreadFactory;
+import org.winstarcloud.server.common.data.kv.BasicTsKvEntry;
+import org.winstarcloud.server.common.data.kv.StringDataEntry;
+import org.winstarcloud.server.service.ws.WebSocketCborUtil;
 import org.winstarcloud.server.service.ws.WebSocketSessionRef;
+import org.winstarcloud.server.service.ws.telemetry.sub.SharedTelemetryUpdateData;
+import org.winstarcloud.server.service.ws.telemetry.sub.TelemetrySubscriptionUpdate;
 
 import jakarta.websocket.RemoteEndpoint;
 import jakarta.websocket.SendHandler;
 import jakarta.websocket.SendResult;
 import jakarta.websocket.Session;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.List;
@@ -163,6 +173,86 @@ class TbWebSocketHandlerTest {
         verify(asyncRemote, times(1)).sendText(anyString(), any());
     }
 
+    @Test
+    void sendHandler_sendUpdate_conflated_when_queue_is_half_full() {
+        ReflectionTestUtils.setField(wsHandler, "conflateUpdates", true);
+        List<String> outputs = new ArrayList<>();
+        willAnswer(invocation -> outputs.add(invocation.getArgument(0))).given(asyncRemote).sendText(anyString(), any());
+        sendHandler.sendMsg("first message to stay in-flight until the queue is drained");
+        IntStream.range(0, maxMsgQueuePerSession / 2).forEach(i -> sendHandler.sendMsg("hello " + i));
+
+        sendHandler.sendUpdate(new TelemetrySubscriptionUpdate(1, new SharedTelemetryUpdateData(List.of(
+                new BasicTsKvEntry(1L, new StringDataEntry("temperature", "20")),
+                new BasicTsKvEntry(1L, new StringDataEntry("humidity", "50"))))).asLiveUpdate());
+        IntStream.range(0, maxMsgQueuePerSession * 2).forEach(i -> sendHandler.sendUpdate(new TelemetrySubscriptionUpdate(1,
+                List.of(new BasicTsKvEntry(2L + i, new StringDataEntry("temperature", String.valueOf(21 + i))))).asLiveUpdate()));
+        verify(sendHandler, never()).closeSession(any());
+
+        IntStream.range(0, maxMsgQueuePerSession / 2 + 1).forEach(i -> sendHandler.onResult(new SendResult()));
+        assertThat(outputs).hasSize(maxMsgQueuePerSession / 2 + 2);
+        JsonNode update = JacksonUtil.toJsonNode(outputs.get(outputs.size() - 1));
+        assertThat(update.get("subscriptionId").asInt()).isEqualTo(1);
+        assertThat(update.get("data").get("temperature").get(0).get(1).asText()).isEqualTo(String.valueOf(20 + maxMsgQueuePerSession * 2));
+        assertThat(update.get("data").get("humidity").get(0).get(1).asText()).isEqualTo("50");
+        assertThat(update.get("latestValues").get("temperature").asLong()).isEqualTo(1L + maxMsgQueuePerSession * 2);
+    }
+
+    @Test
+    void sendHandler_sendUpdate_history_reply_is_not_conflated() {
+        ReflectionTestUtils.setField(wsHandler, "conflateUpdates", true);
+        List<String> outputs = new ArrayList<>();
+        willAnswer(invocation -> outputs.add(invocation.getArgument(0))).given(asyncRemote).sendText(anyString(), any());
+        sendHandler.sendMsg("first message to stay in-flight until the queue is drained");
+        IntStream.range(0, maxMsgQueuePerSession / 2).forEach(i -> sendHandler.sendMsg("hello " + i));
+
+        TelemetrySubscriptionUpdate history = new TelemetrySubscriptionUpdate(1, List.of(
+                new BasicTsKvEntry(1L, new StringDataEntry("temperature", "20")),
+                new BasicTsKvEntry(2L, new StringDataEntry("temperature", "21")),
+                new BasicTsKvEntry(3L, new StringDataEntry("temperature", "22"))));
+        assertThat(history.canBeConflated()).isFalse();
+        sendHandler.sendUpdate(history);
+        sendHandler.sendUpdate(new TelemetrySubscriptionUpdate(1,
+                List.of(new BasicTsKvEntry(4L, new StringDataEntry("temperature", "23")))).asLiveUpdate());
+        sendHandler.sendUpdate(new TelemetrySubscriptionUpdate(1,
+                List.of(new BasicTsKvEntry(5L, new StringDataEntry("temperature", "24")))).asLiveUpdate());
+
+        IntStream.range(0, maxMsgQueuePerSession / 2 + 2).forEach(i -> sendHandler.onResult(new SendResult()));
+        assertThat(outputs).hasSize(maxMsgQueuePerSession / 2 + 3);
+        JsonNode historyReply = JacksonUtil.toJsonNode(outputs.get(outputs.size() - 2));
+        assertThat(historyReply.get("data").get("temperature")).hasSize(3);
+        JsonNode liveUpdate = JacksonUtil.toJsonNode(outputs.get(outputs.size() - 1));
+        assertThat(liveUpdate.get("data").get("temperature")).hasSize(1);
+        assertThat(liveUpdate.get("data").get("temperature").get(0).get(1).asText()).isEqualTo("24");
+    }
+
+    @Test
+    void sendHandler_binarySession_sendsCbor() {
+        WebSocketSessionRef binarySessionRef = mock(WebSocketSessionRef.class, Mockito.RETURNS_DEEP_STUBS);
+        willReturn(true).given(binarySessionRef).isBinary();
+        TbWebSocketHandler.SessionMetaData binarySendHandler = wsHandler.new SessionMetaData(session, binarySessionRef);
+        binarySendHandler.setMaxMsgQueueSize(maxMsgQueuePerSession);
+        List<ByteBuffer> outputs = new ArrayList<>();
+        willAnswer(invocation -> {
+            outputs.add(invocation.getArgument(0));
+            SendHandler onResultHandler = invocation.getArgument(1);
+            onResultHandler.onResult(new SendResult());
+            return null;
+        }).given(asyncRemote).sendBinary(any(), any());
+
+        TelemetrySubscriptionUpdate update = new TelemetrySubscriptionUpdate(1, new SharedTelemetryUpdateData(List.of(
+                new BasicTsKvEntry(1L, new StringDataEntry("temperature", "20")),
+                new BasicTsKvEntry(2L, new StringDataEntry("temperature", "21")))));
+        binarySendHandler.sendUpdate(update);
+        binarySendHandler.sendMsg("{\"subscriptionId\":1,\"errorCode\":2}");
+
+        verify(asyncRemote, never()).sendText(anyString(), any());
+        assertThat(outputs).hasSize(2);
+        assertThat(JacksonUtil.toJsonNode(WebSocketCborUtil.toJson(outputs.get(0).array())))
+                .isEqualTo(JacksonUtil.toJsonNode(update.toJson()));
+        assertThat(JacksonUtil.toJsonNode(WebSocketCborUtil.toJson(outputs.get(1).array())))
+                .isEqualTo(JacksonUtil.toJsonNode("{\"subscriptionId\":1,\"errorCode\":2}"));
+    }
+
     @Test
     void sendHandler_onMsg_allProcessed() throws Exception {
         Deque<String> msgs = new ConcurrentLinkedDeque<>();
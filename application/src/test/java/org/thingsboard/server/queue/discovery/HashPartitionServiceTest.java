@@ -81,6 +81,7 @@ public class HashPartitionServiceTest {
     private TopicService topicService;
 
     private String hashFunctionName = "murmur3_128";
+    private String assignmentStrategy = "modulo";
 
     @BeforeEach
     public void setup() throws Exception {
@@ -394,6 +395,65 @@ public class HashPartitionServiceTest {
         });
     }
 
+    @Test
+    public void testPartitionsMovementOnScaleEvents() {
+        int partitions = 100;
+        List<ServiceInfo> servers = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            servers.add(ServiceInfo.newBuilder()
+                    .setServiceId("tb-core-" + i)
+                    .addAllServiceTypes(List.of(ServiceType.TB_CORE.name()))
+                    .build());
+        }
+        List<ServiceInfo> withoutOne = new ArrayList<>(servers);
+        withoutOne.remove(5);
+        List<ServiceInfo> withOneMore = new ArrayList<>(servers);
+        withOneMore.add(ServiceInfo.newBuilder()
+                .setServiceId("tb-core-12")
+                .addAllServiceTypes(List.of(ServiceType.TB_CORE.name()))
+                .build());
+
+        for (String strategy : List.of("modulo", "rendezvous")) {
+            assignmentStrategy = strategy;
+            partitionService = createPartitionService();
+            ReflectionTestUtils.setField(partitionService, "corePartitions", partitions);
+            partitionService.init();
+
+            Map<Integer, String> initial = getCorePartitionsAssignment(servers, partitions);
+            int movedOnRemove = countMovedPartitions(initial, getCorePartitionsAssignment(withoutOne, partitions));
+            int movedOnAdd = countMovedPartitions(initial, getCorePartitionsAssignment(withOneMore, partitions));
+            log.info("[{}] moved partitions: on remove - {}, on add - {}", strategy, movedOnRemove, movedOnAdd);
+
+            if (strategy.equals("rendezvous")) {
+                assertThat(movedOnRemove).isLessThanOrEqualTo(partitions / 4);
+                assertThat(movedOnAdd).isLessThanOrEqualTo(partitions / 4);
+            }
+        }
+    }
+
+    private Map<Integer, String> getCorePartitionsAssignment(List<ServiceInfo> servers, int partitions) {
+        int maxLoad = (partitions + servers.size() - 1) / servers.size();
+        Map<Integer, String> assignment = new HashMap<>();
+        for (ServiceInfo server : servers) {
+            List<ServiceInfo> other = new ArrayList<>(servers);
+            other.remove(server);
+            partitionService.recalculatePartitions(server, other);
+            List<Integer> myPartitions = partitionService.getMyPartitions(new QueueKey(ServiceType.TB_CORE));
+            assertThat(myPartitions).hasSizeLessThanOrEqualTo(maxLoad);
+            for (Integer partition : myPartitions) {
+                assertThat(assignment.put(partition, server.getServiceId())).as("partition " + partition + " is assigned twice").isNull();
+            }
+        }
+        assertThat(assignment).hasSize(partitions);
+        return assignment;
+    }
+
+    private int countMovedPartitions(Map<Integer, String> before, Map<Integer, String> after) {
+        return (int) before.entrySet().stream()
+                .filter(entry -> !entry.getValue().equals(after.get(entry.getKey())))
+                .count();
+    }
+
     private void verifyPartitionChangeEvent(Predicate<PartitionChangeEvent> predicate) {
         verify(applicationEventPublisher).publishEvent(argThat(event -> event instanceof PartitionChangeEvent && predicate.test((PartitionChangeEvent) event)));
     }
@@ -429,6 +489,7 @@ public class HashPartitionServiceTest {
         ReflectionTestUtils.setField(partitionService, "vcTopic", "tb.vc");
         ReflectionTestUtils.setField(partitionService, "vcPartitions", 10);
         ReflectionTestUtils.setField(partitionService, "hashFunctionName", hashFunctionName);
+        ReflectionTestUtils.setField(partitionService, "assignmentStrategy", assignmentStrategy);
         partitionService.init();
         partitionService.partitionsInit();
         return partitionService;
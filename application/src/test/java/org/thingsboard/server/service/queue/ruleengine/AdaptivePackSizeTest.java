@@ -0,0 +1,56 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.service.queue.ruleengine;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdaptivePackSizeTest {
+
+    @Test
+    public void testShrinksOnSlowPacksAndGrowsBackOnFastFullPacks() {
+        AdaptivePackSize packSize = new AdaptivePackSize(10, 100, 200);
+        assertThat(packSize.get()).isEqualTo(100);
+
+        packSize.onPackProcessed(100, 500, false);
+        assertThat(packSize.get()).isEqualTo(50);
+        packSize.onPackProcessed(50, 100, true);
+        assertThat(packSize.get()).isEqualTo(25);
+        packSize.onPackProcessed(25, 1000, false);
+        packSize.onPackProcessed(12, 1000, false);
+        assertThat(packSize.get()).isEqualTo(10);
+
+        // packs that are not full do not prove the larger size is fast enough
+        packSize.onPackProcessed(3, 10, false);
+        assertThat(packSize.get()).isEqualTo(10);
+
+        packSize.onPackProcessed(10, 50, false);
+        assertThat(packSize.get()).isEqualTo(12);
+        for (int i = 0; i < 20; i++) {
+            packSize.onPackProcessed(packSize.get(), 50, false);
+        }
+        assertThat(packSize.get()).isEqualTo(100);
+    }
+
+    @Test
+    public void testFixedSizeWhenTargetLatencyDisabled() {
+        AdaptivePackSize packSize = new AdaptivePackSize(10, 100, 0);
+        packSize.onPackProcessed(100, 5000, true);
+        assertThat(packSize.get()).isEqualTo(100);
+    }
+
+}
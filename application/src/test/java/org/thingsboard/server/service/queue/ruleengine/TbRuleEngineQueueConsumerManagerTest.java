@@ -132,6 +132,7 @@ public class TbRuleEngineQueueConsumerManagerTest {
 
     private Set<TestConsumer> consumers;
     private boolean generateQueueMsgs;
+    private boolean pollCommitSupported;
     private AtomicInteger totalConsumedMsgs;
     private AtomicInteger totalProcessedMsgs;
 
@@ -452,6 +453,25 @@ public class TbRuleEngineQueueConsumerManagerTest {
         verifyNoMoreInteractions(queueFactory);
     }
 
+    @Test
+    public void testPipelinedProcessing() {
+        ruleEngineConsumerContext.setPipelineEnabled(true);
+        ruleEngineConsumerContext.setPipelineMaxPacksInFlight(2);
+        ruleEngineConsumerContext.setPipelineMinPackSize(1);
+        ruleEngineConsumerContext.setPipelineMaxPackSize(10);
+        ruleEngineConsumerContext.setPipelineTargetPackLatency(100);
+        pollCommitSupported = true;
+        queue.setConsumerPerPartition(true);
+        consumerManager.init(queue);
+        consumerManager.update(createTpis(1, 2));
+
+        TestConsumer consumer = getConsumer(1);
+        verifySubscribedAndLaunched(consumer, 1);
+        await().atMost(5, TimeUnit.SECONDS)
+                .untilAsserted(() -> verify(consumer, atLeast(3)).commitOldestPoll());
+        verify(consumer, never()).commit();
+    }
+
     @Test
     public void testDelete_consumerPerPartition() {
         queue.setConsumerPerPartition(true);
@@ -772,6 +792,16 @@ public class TbRuleEngineQueueConsumerManagerTest {
             subscribed = false;
         }
 
+        @Override
+        public boolean isPollCommitSupported() {
+            return pollCommitSupported;
+        }
+
+        @Override
+        protected void doCommitOldestPoll() {
+            doCommit();
+        }
+
         @Override
         protected boolean isLongPollingSupported() {
             return false;
@@ -0,0 +1,102 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.rule.engine.profile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.winstarcloud.server.common.data.alarm.AlarmSeverity;
+import org.winstarcloud.server.common.data.device.profile.AlarmCondition;
+import org.winstarcloud.server.common.data.device.profile.AlarmConditionFilter;
+import org.winstarcloud.server.common.data.device.profile.AlarmConditionFilterKey;
+import org.winstarcloud.server.common.data.device.profile.AlarmConditionKeyType;
+import org.winstarcloud.server.common.data.device.profile.AlarmRule;
+import org.winstarcloud.server.common.data.query.EntityKeyValueType;
+import org.winstarcloud.server.common.data.query.FilterPredicateValue;
+import org.winstarcloud.server.common.data.query.NumericFilterPredicate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lives in the rule engine package because {@link AlarmRuleState} and {@link DataSnapshot} are package-private.
+ * The result is returned as {@link Object} since JMH generates its harness in a sub-package.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AlarmRuleStateBenchmark {
+
+    @Param({"1", "5", "20"})
+    private int conditions;
+
+    private AlarmRuleState state;
+    private DataSnapshot snapshot;
+    private List<AlarmConditionFilterKey> keys;
+
+    @Setup
+    public void setup() {
+        List<AlarmConditionFilter> filters = new ArrayList<>();
+        Set<AlarmConditionFilterKey> entityKeys = new HashSet<>();
+        keys = new ArrayList<>();
+        for (int i = 0; i < conditions; i++) {
+            AlarmConditionFilterKey key = new AlarmConditionFilterKey(AlarmConditionKeyType.TIME_SERIES, "temperature" + i);
+            AlarmConditionFilter filter = new AlarmConditionFilter();
+            filter.setKey(key);
+            filter.setValueType(EntityKeyValueType.NUMERIC);
+            NumericFilterPredicate predicate = new NumericFilterPredicate();
+            predicate.setOperation(NumericFilterPredicate.NumericOperation.GREATER);
+            predicate.setValue(new FilterPredicateValue<>(30.0));
+            filter.setPredicate(predicate);
+            filters.add(filter);
+            entityKeys.add(key);
+            keys.add(key);
+        }
+        AlarmCondition condition = new AlarmCondition();
+        condition.setCondition(filters);
+        AlarmRule rule = new AlarmRule();
+        rule.setCondition(condition);
+        state = new AlarmRuleState(AlarmSeverity.CRITICAL, rule, entityKeys, null, null);
+        snapshot = new DataSnapshot(entityKeys);
+    }
+
+    @Benchmark
+    public Object updateAndEval() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long ts = System.currentTimeMillis();
+        for (AlarmConditionFilterKey key : keys) {
+            snapshot.putValue(key, ts, EntityKeyValue.fromDouble(20 + random.nextDouble() * 20));
+        }
+        snapshot.setTs(ts);
+        return state.eval(snapshot);
+    }
+
+}
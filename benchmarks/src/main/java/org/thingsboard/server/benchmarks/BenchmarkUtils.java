@@ -0,0 +1,46 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+final class BenchmarkUtils {
+
+    private BenchmarkUtils() {
+    }
+
+    /**
+     * Builds a flat telemetry payload like the one posted by devices, mixing numeric, boolean and string values.
+     */
+    static String telemetryJson(int keys) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StringBuilder json = new StringBuilder("{");
+        for (int i = 0; i < keys; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("\"key").append(i).append("\":");
+            switch (i % 4) {
+                case 0 -> json.append(random.nextInt(1000));
+                case 1 -> json.append(random.nextDouble() * 100);
+                case 2 -> json.append(random.nextBoolean());
+                default -> json.append("\"value").append(random.nextInt(1000)).append('"');
+            }
+        }
+        return json.append('}').toString();
+    }
+
+}
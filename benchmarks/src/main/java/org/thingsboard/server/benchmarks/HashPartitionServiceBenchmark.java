@@ -0,0 +1,132 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.benchmarks;
+
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.winstarcloud.server.common.data.id.DeviceId;
+import org.winstarcloud.server.common.data.id.TenantId;
+import org.winstarcloud.server.common.msg.queue.ServiceType;
+import org.winstarcloud.server.common.msg.queue.TopicPartitionInfo;
+import org.winstarcloud.server.gen.transport.TransportProtos.ServiceInfo;
+import org.winstarcloud.server.queue.discovery.HashPartitionService;
+import org.winstarcloud.server.queue.discovery.QueueRoutingInfoService;
+import org.winstarcloud.server.queue.discovery.TbServiceInfoProvider;
+import org.winstarcloud.server.queue.discovery.TenantRoutingInfoService;
+import org.winstarcloud.server.queue.discovery.TopicService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashPartitionServiceBenchmark {
+
+    private static final int DEVICES = 1024;
+
+    @Param({"murmur3_128", "sha256"})
+    private String hashFunctionName;
+
+    @Param({"10", "100"})
+    private int partitions;
+
+    @Param({"3", "12"})
+    private int servers;
+
+    @Param({"modulo", "rendezvous"})
+    private String assignmentStrategy;
+
+    private HashPartitionService partitionService;
+    private List<ServiceInfo> otherServers;
+    private DeviceId[] devices;
+    private int idx;
+
+    @Setup
+    public void setup() {
+        TopicService topicService = mock(TopicService.class);
+        when(topicService.buildTopicName(Mockito.any())).thenAnswer(i -> i.getArguments()[0]);
+        partitionService = new HashPartitionService(mock(TbServiceInfoProvider.class),
+                mock(TenantRoutingInfoService.class),
+                mock(ApplicationEventPublisher.class),
+                mock(QueueRoutingInfoService.class),
+                topicService);
+        ReflectionTestUtils.setField(partitionService, "coreTopic", "tb.core");
+        ReflectionTestUtils.setField(partitionService, "corePartitions", partitions);
+        ReflectionTestUtils.setField(partitionService, "vcTopic", "tb.vc");
+        ReflectionTestUtils.setField(partitionService, "vcPartitions", 10);
+        ReflectionTestUtils.setField(partitionService, "hashFunctionName", hashFunctionName);
+        ReflectionTestUtils.setField(partitionService, "assignmentStrategy", assignmentStrategy);
+        partitionService.init();
+        partitionService.partitionsInit();
+
+        otherServers = new ArrayList<>();
+        for (int i = 1; i < servers; i++) {
+            otherServers.add(coreServer("tb-core-" + i));
+        }
+        partitionService.recalculatePartitions(coreServer("tb-core-0"), otherServers);
+
+        devices = new DeviceId[DEVICES];
+        for (int i = 0; i < DEVICES; i++) {
+            devices[i] = new DeviceId(UUID.randomUUID());
+        }
+    }
+
+    @Benchmark
+    public TopicPartitionInfo resolve() {
+        DeviceId deviceId = devices[idx++ & (DEVICES - 1)];
+        return partitionService.resolve(ServiceType.TB_CORE, TenantId.SYS_TENANT_ID, deviceId);
+    }
+
+    @Benchmark
+    public boolean isMyPartition() {
+        DeviceId deviceId = devices[idx++ & (DEVICES - 1)];
+        return partitionService.isMyPartition(ServiceType.TB_CORE, TenantId.SYS_TENANT_ID, deviceId);
+    }
+
+    @Benchmark
+    public void recalculatePartitions() {
+        partitionService.recalculatePartitions(coreServer("tb-core-0"), otherServers);
+    }
+
+    private static ServiceInfo coreServer(String serviceId) {
+        return ServiceInfo.newBuilder()
+                .setServiceId(serviceId)
+                .addServiceTypes(ServiceType.TB_CORE.name())
+                .build();
+    }
+
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.benchmarks;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.winstarcloud.server.common.adaptor.JsonConverter;
+import org.winstarcloud.server.gen.transport.TransportProtos.PostTelemetryMsg;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonConverterBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int keys;
+
+    private String payload;
+    private byte[] payloadBytes;
+    private JsonElement json;
+
+    @Setup
+    public void setup() {
+        payload = BenchmarkUtils.telemetryJson(keys);
+        payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        json = JsonParser.parseString(payload);
+    }
+
+    @Benchmark
+    public PostTelemetryMsg convertParsed() {
+        return JsonConverter.convertToTelemetryProto(json);
+    }
+
+    @Benchmark
+    public PostTelemetryMsg parseAndConvert() {
+        return JsonConverter.convertToTelemetryProto(JsonParser.parseString(payload));
+    }
+
+    @Benchmark
+    public PostTelemetryMsg streamingConvert() {
+        return JsonConverter.convertToTelemetryProto(new InputStreamReader(new ByteArrayInputStream(payloadBytes), StandardCharsets.UTF_8));
+    }
+
+}
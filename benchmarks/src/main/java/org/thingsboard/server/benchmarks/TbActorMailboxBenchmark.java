@@ -0,0 +1,147 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.winstarcloud.common.util.WinstarCloudExecutors;
+import org.winstarcloud.server.actors.AbstractTbActor;
+import org.winstarcloud.server.actors.DefaultTbActorSystem;
+import org.winstarcloud.server.actors.MailboxOverflowStrategy;
+import org.winstarcloud.server.actors.TbActor;
+import org.winstarcloud.server.actors.TbActorCreator;
+import org.winstarcloud.server.actors.TbActorId;
+import org.winstarcloud.server.actors.TbActorMailboxSettings;
+import org.winstarcloud.server.actors.TbActorRef;
+import org.winstarcloud.server.actors.TbActorSystem;
+import org.winstarcloud.server.actors.TbActorSystemSettings;
+import org.winstarcloud.server.actors.TbStringActorId;
+import org.winstarcloud.server.common.msg.MsgType;
+import org.winstarcloud.server.common.msg.TbActorMsg;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the mailbox enqueue and dispatch path: every invocation sends {@link #MESSAGES} messages
+ * round-robin to the actors and waits until all of them are processed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TbActorMailboxBenchmark {
+
+    private static final String DISPATCHER = "benchmark-dispatcher";
+    private static final int MESSAGES = 10000;
+
+    @Param({"1", "100", "10000"})
+    private int actors;
+
+    @Param({"5", "30"})
+    private int actorThroughput;
+
+    /**
+     * 0 keeps the default unbounded mailbox, a positive value switches to the bounded array mailbox with backpressure.
+     */
+    @Param({"0", "1024"})
+    private int mailboxCapacity;
+
+    private TbActorSystem actorSystem;
+    private ExecutorService executor;
+    private TbActorRef[] actorRefs;
+    private volatile CountDownLatch latch;
+
+    @Setup
+    public void setup() {
+        int parallelism = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+        TbActorMailboxSettings mailboxSettings = mailboxCapacity > 0 ?
+                new TbActorMailboxSettings(mailboxCapacity, MailboxOverflowStrategy.BACKPRESSURE, TimeUnit.MINUTES.toMillis(1)) :
+                TbActorMailboxSettings.UNBOUNDED;
+        actorSystem = new DefaultTbActorSystem(new TbActorSystemSettings(actorThroughput, parallelism, 42,
+                Collections.singletonMap(DISPATCHER, mailboxSettings)));
+        executor = WinstarCloudExecutors.newWorkStealingPool(parallelism, getClass());
+        actorSystem.createDispatcher(DISPATCHER, executor);
+        actorRefs = new TbActorRef[actors];
+        for (int i = 0; i < actors; i++) {
+            TbActorId actorId = new TbStringActorId("actor-" + i);
+            actorRefs[i] = actorSystem.createRootActor(DISPATCHER, new TbActorCreator() {
+                @Override
+                public TbActorId createActorId() {
+                    return actorId;
+                }
+
+                @Override
+                public TbActor createActor() {
+                    return new CountingActor();
+                }
+            });
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        actorSystem.stop();
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void tellAndProcess() throws InterruptedException {
+        latch = new CountDownLatch(MESSAGES);
+        for (int i = 0; i < MESSAGES; i++) {
+            actorRefs[i % actors].tell(BenchmarkMsg.INSTANCE);
+        }
+        if (!latch.await(1, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("Messages were not processed in time");
+        }
+    }
+
+    private class CountingActor extends AbstractTbActor {
+
+        @Override
+        public boolean process(TbActorMsg msg) {
+            latch.countDown();
+            return true;
+        }
+
+    }
+
+    private enum BenchmarkMsg implements TbActorMsg {
+        INSTANCE;
+
+        @Override
+        public MsgType getMsgType() {
+            return MsgType.QUEUE_TO_RULE_ENGINE_MSG;
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.benchmarks;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.winstarcloud.server.common.stats.DefaultMessagesStats;
+import org.winstarcloud.server.common.stats.MessagesStats;
+import org.winstarcloud.server.common.stats.StatsCounter;
+import org.winstarcloud.server.dao.sql.ScheduledLogExecutorComponent;
+import org.winstarcloud.server.dao.sql.TbSqlBlockingQueue;
+import org.winstarcloud.server.dao.sql.TbSqlBlockingQueueParams;
+import org.winstarcloud.server.dao.sql.TbSqlQueue;
+import org.winstarcloud.server.dao.sql.TbSqlRingBufferQueue;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the add/drain path of the SQL batch queues without a database: the save function only counts the
+ * elements. Every invocation adds {@link #ELEMENTS} elements and waits for the future of the last one, so the
+ * result reflects the end-to-end throughput of producers and the single draining thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class TbSqlQueueBenchmark {
+
+    private static final int ELEMENTS = 1000;
+
+    /**
+     * 0 benchmarks {@link TbSqlBlockingQueue}, a positive value benchmarks {@link TbSqlRingBufferQueue} of that size.
+     */
+    @Param({"0", "65536"})
+    private int ringBufferSize;
+
+    @Param({"1000", "10000"})
+    private int batchSize;
+
+    private ScheduledLogExecutorComponent logExecutor;
+    private TbSqlQueue<Element> queue;
+    private final LongAdder saved = new LongAdder();
+
+    @Setup
+    public void setup() {
+        TbSqlBlockingQueueParams params = TbSqlBlockingQueueParams.builder()
+                .logName("Benchmark")
+                .batchSize(batchSize)
+                .maxDelay(100)
+                .statsPrintIntervalMs(TimeUnit.HOURS.toMillis(1))
+                .statsNamePrefix("benchmark")
+                .batchSortEnabled(true)
+                .ringBufferSize(ringBufferSize)
+                .build();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        MessagesStats stats = new DefaultMessagesStats(
+                new StatsCounter(new AtomicInteger(), meterRegistry.counter("total"), "total"),
+                new StatsCounter(new AtomicInteger(), meterRegistry.counter("successful"), "successful"),
+                new StatsCounter(new AtomicInteger(), meterRegistry.counter("failed"), "failed"));
+        queue = ringBufferSize > 0 ? new TbSqlRingBufferQueue<>(params, stats) : new TbSqlBlockingQueue<>(params, stats);
+        logExecutor = new ScheduledLogExecutorComponent();
+        logExecutor.init();
+        queue.init(logExecutor, this::save, Comparator.comparing(Element::entityId).thenComparingLong(Element::ts), 0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        queue.destroy();
+        logExecutor.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ELEMENTS)
+    public void addAndDrain() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        ListenableFuture<Void> last = null;
+        for (int i = 0; i < ELEMENTS; i++) {
+            last = queue.add(new Element(new UUID(random.nextLong(), random.nextLong()), System.currentTimeMillis()));
+        }
+        last.get(1, TimeUnit.MINUTES);
+    }
+
+    private void save(List<Element> elements) {
+        saved.add(elements.size());
+    }
+
+    private record Element(UUID entityId, long ts) {
+    }
+
+}
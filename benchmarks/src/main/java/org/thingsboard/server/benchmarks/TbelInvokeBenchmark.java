@@ -0,0 +1,95 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.winstarcloud.common.util.JacksonUtil;
+import org.winstarcloud.script.api.ScriptType;
+import org.winstarcloud.script.api.tbel.DefaultTbelInvokeService;
+import org.winstarcloud.server.common.data.id.TenantId;
+import org.winstarcloud.server.common.data.msg.TbMsgType;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class TbelInvokeBenchmark {
+
+    private static final String FILTER_SCRIPT = "return msg.key0 > 500;";
+    private static final String TRANSFORM_SCRIPT = "var result = {temperatureF: msg.key1 * 1.8 + 32, deviceName: metadata.deviceName}; " +
+            "return {msg: result, metadata: metadata, msgType: msgType};";
+
+    @Param({"filter", "transform"})
+    private String script;
+
+    @Param({"10", "100"})
+    private int keys;
+
+    private DefaultTbelInvokeService invokeService;
+    private UUID scriptId;
+    private Map<?, ?> msg;
+    private Map<String, String> metadata;
+
+    @Setup
+    public void setup() throws Exception {
+        invokeService = new DefaultTbelInvokeService(Optional.empty(), Optional.empty()) {};
+        ReflectionTestUtils.setField(invokeService, "maxTotalArgsSize", 1000000L);
+        ReflectionTestUtils.setField(invokeService, "maxResultSize", 1000000L);
+        ReflectionTestUtils.setField(invokeService, "maxScriptBodySize", 50000L);
+        ReflectionTestUtils.setField(invokeService, "maxErrors", 3);
+        ReflectionTestUtils.setField(invokeService, "maxBlackListDurationSec", 60);
+        ReflectionTestUtils.setField(invokeService, "threadPoolSize", Math.max(2, Runtime.getRuntime().availableProcessors()));
+        ReflectionTestUtils.setField(invokeService, "maxMemoryLimitMb", 8L);
+        ReflectionTestUtils.setField(invokeService, "compiledScriptsCacheSize", 1000);
+        invokeService.init();
+        String body = "filter".equals(script) ? FILTER_SCRIPT : TRANSFORM_SCRIPT;
+        scriptId = invokeService.eval(TenantId.SYS_TENANT_ID, ScriptType.RULE_NODE_SCRIPT, body, "msg", "metadata", "msgType").get();
+        msg = JacksonUtil.fromString(BenchmarkUtils.telemetryJson(keys), Map.class);
+        metadata = Map.of("deviceName", "Thermostat A1", "deviceType", "thermostat");
+    }
+
+    @TearDown
+    public void tearDown() {
+        invokeService.stop();
+    }
+
+    @Benchmark
+    public Object invoke() throws Exception {
+        return invokeService.invokeScript(TenantId.SYS_TENANT_ID, null, scriptId, msg, metadata, TbMsgType.POST_TELEMETRY_REQUEST.name()).get();
+    }
+
+}
@@ -24,5 +24,10 @@ class Dispatcher {
 
     private final String dispatcherId;
     private final ExecutorService executor;
+    private final TbActorMailboxSettings mailboxSettings;
+
+    TbActorMailboxQueue newMailboxQueue() {
+        return mailboxSettings.isBounded() ? new ArrayMailboxQueue(mailboxSettings.getCapacity()) : new UnboundedMailboxQueue();
+    }
 
 }
@@ -0,0 +1,35 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.actors;
+
+public enum MailboxOverflowStrategy {
+
+    /**
+     * The new message is not enqueued and is notified via {@link org.winstarcloud.server.common.msg.TbActorMsg#onTbActorMailboxOverflow()}.
+     */
+    REJECT,
+    /**
+     * The oldest queued message is evicted and notified to free a slot for the new one.
+     */
+    DROP_OLDEST,
+    /**
+     * The producer thread (usually a queue consumer) is parked until a slot is free,
+     * which slows down polling of the queue. The message is rejected if the timeout expires.
+     * Messages sent from the actor dispatcher threads (e.g. by other actors) are rejected without parking.
+     */
+    BACKPRESSURE
+
+}
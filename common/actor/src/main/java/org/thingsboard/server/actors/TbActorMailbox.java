@@ -15,6 +15,7 @@
  */
 package org.winstarcloud.server.actors;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -28,6 +29,7 @@ import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
@@ -44,14 +46,23 @@ public final class TbActorMailbox implements TbActorCtx {
     private static final boolean NOT_READY = false;
     private static final boolean READY = true;
 
+    private static final long BACKPRESSURE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    // Set while the thread initializes an actor or processes its mailbox. Such producers are never parked by BACKPRESSURE:
+    // the thread belongs to a dispatcher pool and parking it would stall the pool that has to drain the full mailbox.
+    private static final ThreadLocal<Boolean> DISPATCHER_THREAD = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
     private final TbActorSystem system;
     private final TbActorSystemSettings settings;
     private final TbActorId selfId;
     private final TbActorRef parentRef;
     private final TbActor actor;
     private final Dispatcher dispatcher;
+    private final TbActorMailboxQueue normalPriorityMsgs;
     private final ConcurrentLinkedQueue<TbActorMsg> highPriorityMsgs = new ConcurrentLinkedQueue<>();
-    private final ConcurrentLinkedQueue<TbActorMsg> normalPriorityMsgs = new ConcurrentLinkedQueue<>();
+    @Getter(AccessLevel.NONE)
+    private final Runnable processMailboxTask = this::processMailbox;
+    @Getter(AccessLevel.NONE)
+    private final Runnable tryProcessQueueTask = () -> tryProcessQueue(false);
     private final AtomicBoolean busy = new AtomicBoolean(FREE);
     private final AtomicBoolean ready = new AtomicBoolean(NOT_READY);
     private final AtomicBoolean destroyInProgress = new AtomicBoolean();
@@ -62,6 +73,16 @@ public final class TbActorMailbox implements TbActorCtx {
     }
 
     private void tryInit(int attempt) {
+        boolean dispatcherThread = DISPATCHER_THREAD.get();
+        DISPATCHER_THREAD.set(Boolean.TRUE);
+        try {
+            doInit(attempt);
+        } finally {
+            DISPATCHER_THREAD.set(dispatcherThread);
+        }
+    }
+
+    private void doInit(int attempt) {
         try {
             log.debug("[{}] Trying to init actor, attempt: {}", selfId, attempt);
             if (!destroyInProgress.get()) {
@@ -107,8 +128,8 @@ public final class TbActorMailbox implements TbActorCtx {
         if (!destroyInProgress.get()) {
             if (highPriority) {
                 highPriorityMsgs.add(msg);
-            } else {
-                normalPriorityMsgs.add(msg);
+            } else if (!normalPriorityMsgs.offer(msg) && !offerOnOverflow(msg)) {
+                msg.onTbActorMailboxOverflow();
             }
             tryProcessQueue(true);
         } else {
@@ -128,11 +149,44 @@ public final class TbActorMailbox implements TbActorCtx {
         }
     }
 
+    private boolean offerOnOverflow(TbActorMsg msg) {
+        TbActorMailboxSettings mailboxSettings = dispatcher.getMailboxSettings();
+        switch (mailboxSettings.getOverflowStrategy()) {
+            case DROP_OLDEST:
+                do {
+                    TbActorMsg oldest = normalPriorityMsgs.poll();
+                    if (oldest != null) {
+                        log.debug("[{}] Mailbox is full, dropping the oldest message: {}", selfId, oldest);
+                        oldest.onTbActorMailboxOverflow();
+                    }
+                } while (!normalPriorityMsgs.offer(msg));
+                return true;
+            case BACKPRESSURE:
+                if (DISPATCHER_THREAD.get()) {
+                    log.debug("[{}] Mailbox is full, rejecting message sent from the dispatcher thread: {}", selfId, msg);
+                    return false;
+                }
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(mailboxSettings.getBackpressureTimeoutMs());
+                do {
+                    tryProcessQueue(false);
+                    LockSupport.parkNanos(BACKPRESSURE_PARK_NANOS);
+                    if (normalPriorityMsgs.offer(msg)) {
+                        return true;
+                    }
+                } while (System.nanoTime() - deadline < 0 && !destroyInProgress.get());
+                log.debug("[{}] Mailbox is still full after {}ms, rejecting message: {}", selfId, mailboxSettings.getBackpressureTimeoutMs(), msg);
+                return false;
+            default:
+                log.debug("[{}] Mailbox is full, rejecting message: {}", selfId, msg);
+                return false;
+        }
+    }
+
     private void tryProcessQueue(boolean newMsg) {
         if (ready.get() == READY) {
             if (newMsg || !highPriorityMsgs.isEmpty() || !normalPriorityMsgs.isEmpty()) {
                 if (busy.compareAndSet(FREE, BUSY)) {
-                    dispatcher.getExecutor().execute(this::processMailbox);
+                    dispatcher.getExecutor().execute(processMailboxTask);
                 } else {
                     log.trace("[{}] MessageBox is busy, new msg: {}", selfId, newMsg);
                 }
@@ -145,6 +199,16 @@ public final class TbActorMailbox implements TbActorCtx {
     }
 
     private void processMailbox() {
+        boolean dispatcherThread = DISPATCHER_THREAD.get();
+        DISPATCHER_THREAD.set(Boolean.TRUE);
+        try {
+            doProcessMailbox();
+        } finally {
+            DISPATCHER_THREAD.set(dispatcherThread);
+        }
+    }
+
+    private void doProcessMailbox() {
         boolean noMoreElements = false;
         for (int i = 0; i < settings.getActorThroughput(); i++) {
             TbActorMsg msg = highPriorityMsgs.poll();
@@ -172,9 +236,9 @@ public final class TbActorMailbox implements TbActorCtx {
         }
         if (noMoreElements) {
             busy.set(FREE);
-            dispatcher.getExecutor().execute(() -> tryProcessQueue(false));
+            dispatcher.getExecutor().execute(tryProcessQueueTask);
         } else {
-            dispatcher.getExecutor().execute(this::processMailbox);
+            dispatcher.getExecutor().execute(processMailboxTask);
         }
     }
 
@@ -238,7 +302,10 @@ public final class TbActorMailbox implements TbActorCtx {
                 ready.set(NOT_READY);
                 actor.destroy(stopReason, cause);
                 highPriorityMsgs.forEach(msg -> msg.onTbActorStopped(stopReason));
-                normalPriorityMsgs.forEach(msg -> msg.onTbActorStopped(stopReason));
+                TbActorMsg msg;
+                while ((msg = normalPriorityMsgs.poll()) != null) {
+                    msg.onTbActorStopped(stopReason);
+                }
             } catch (Throwable t) {
                 log.warn("[{}] Failed to destroy actor: {}", selfId, t);
             }
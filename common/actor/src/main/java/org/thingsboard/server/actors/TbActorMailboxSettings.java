@@ -0,0 +1,37 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.actors;
+
+import lombok.Data;
+
+@Data
+public class TbActorMailboxSettings {
+
+    public static final TbActorMailboxSettings UNBOUNDED = new TbActorMailboxSettings(0, MailboxOverflowStrategy.REJECT, 0);
+
+    /**
+     * Max number of normal priority messages in the mailbox. 0 means unbounded.
+     * High priority (system) messages are never limited.
+     */
+    private final int capacity;
+    private final MailboxOverflowStrategy overflowStrategy;
+    private final long backpressureTimeoutMs;
+
+    public boolean isBounded() {
+        return capacity > 0;
+    }
+
+}
@@ -15,13 +15,27 @@
  */
 package org.winstarcloud.server.actors;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
 
+import java.util.Collections;
+import java.util.Map;
+
 @Data
+@AllArgsConstructor
 public class TbActorSystemSettings {
 
     private final int actorThroughput;
     private final int schedulerPoolSize;
     private final int maxActorInitAttempts;
+    private final Map<String, TbActorMailboxSettings> dispatcherMailboxSettings;
+
+    public TbActorSystemSettings(int actorThroughput, int schedulerPoolSize, int maxActorInitAttempts) {
+        this(actorThroughput, schedulerPoolSize, maxActorInitAttempts, Collections.emptyMap());
+    }
+
+    public TbActorMailboxSettings getMailboxSettings(String dispatcherId) {
+        return dispatcherMailboxSettings.getOrDefault(dispatcherId, TbActorMailboxSettings.UNBOUNDED);
+    }
 
 }
@@ -0,0 +1,51 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.actors;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ArrayMailboxQueueTest {
+
+    @Test
+    public void testCapacityIsRoundedUpToPowerOfTwo() {
+        assertThat(new ArrayMailboxQueue(2).capacity()).isEqualTo(2);
+        assertThat(new ArrayMailboxQueue(1000).capacity()).isEqualTo(1024);
+        assertThat(new ArrayMailboxQueue(1024).capacity()).isEqualTo(1024);
+        assertThatThrownBy(() -> new ArrayMailboxQueue(1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testOfferFailsWhenFullAndKeepsFifoOrder() {
+        ArrayMailboxQueue queue = new ArrayMailboxQueue(4);
+        for (int i = 0; i < 4; i++) {
+            assertThat(queue.offer(new IntTbActorMsg(i))).isTrue();
+        }
+        assertThat(queue.offer(new IntTbActorMsg(4))).isFalse();
+        assertThat(queue.size()).isEqualTo(4);
+
+        assertThat(((IntTbActorMsg) queue.poll()).getValue()).isEqualTo(0);
+        assertThat(queue.offer(new IntTbActorMsg(4))).isTrue();
+        for (int i = 1; i <= 4; i++) {
+            assertThat(((IntTbActorMsg) queue.poll()).getValue()).isEqualTo(i);
+        }
+        assertThat(queue.poll()).isNull();
+        assertThat(queue.isEmpty()).isTrue();
+    }
+
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.actors;
+
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.winstarcloud.common.util.WinstarCloudThreadFactory;
+import org.winstarcloud.server.common.data.id.DeviceId;
+import org.winstarcloud.server.common.msg.TbActorMsg;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TbActorMailboxTest {
+
+    private static final String DISPATCHER = "bounded-dispatcher";
+    private static final int CAPACITY = 2;
+    private static final int FLOOD_MSG = -1;
+
+    private final Queue<Integer> processed = new ConcurrentLinkedQueue<>();
+    private final Queue<Integer> overflowed = new ConcurrentLinkedQueue<>();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private TbActorSystem actorSystem;
+    private ExecutorService executor;
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        if (actorSystem != null) {
+            actorSystem.stop();
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRejectOverflowStrategy() throws Exception {
+        TbActorRef actorRef = createFullMailboxActor(MailboxOverflowStrategy.REJECT, 10000);
+
+        actorRef.tell(new TestMsg(3));
+        assertThat(overflowed).containsExactly(3);
+
+        release.countDown();
+        awaitProcessed(0, 1, 2);
+    }
+
+    @Test
+    public void testDropOldestOverflowStrategy() throws Exception {
+        TbActorRef actorRef = createFullMailboxActor(MailboxOverflowStrategy.DROP_OLDEST, 10000);
+
+        actorRef.tell(new TestMsg(3));
+        assertThat(overflowed).containsExactly(1);
+
+        release.countDown();
+        awaitProcessed(0, 2, 3);
+    }
+
+    @Test
+    public void testBackpressureOverflowStrategyWaitsForFreeSlot() throws Exception {
+        TbActorRef actorRef = createFullMailboxActor(MailboxOverflowStrategy.BACKPRESSURE, 10000);
+
+        CompletableFuture<Void> producer = CompletableFuture.runAsync(() -> actorRef.tell(new TestMsg(3)));
+        Thread.sleep(100);
+        assertThat(producer).as("producer is parked while the mailbox is full").isNotDone();
+
+        release.countDown();
+        producer.get(10, TimeUnit.SECONDS);
+        awaitProcessed(0, 1, 2, 3);
+        assertThat(overflowed).isEmpty();
+    }
+
+    @Test
+    public void testBackpressureOverflowStrategyRejectsAfterTimeout() throws Exception {
+        TbActorRef actorRef = createFullMailboxActor(MailboxOverflowStrategy.BACKPRESSURE, 100);
+
+        actorRef.tell(new TestMsg(3));
+        assertThat(overflowed).containsExactly(3);
+
+        release.countDown();
+        awaitProcessed(0, 1, 2);
+    }
+
+    @Test
+    public void testBackpressureOverflowStrategyDoesNotParkDispatcherThread() {
+        TbActorRef actorRef = createActor(MailboxOverflowStrategy.BACKPRESSURE, 10000);
+        release.countDown();
+
+        long startTs = System.currentTimeMillis();
+        // the actor tells itself more messages than the mailbox can hold
+        actorRef.tell(new TestMsg(FLOOD_MSG));
+        awaitProcessed(FLOOD_MSG, 1, 2);
+        assertThat(overflowed).containsExactly(3, 4, 5);
+        assertThat(System.currentTimeMillis() - startTs).as("dispatcher thread is not parked").isLessThan(5000);
+    }
+
+    private TbActorRef createFullMailboxActor(MailboxOverflowStrategy strategy, long backpressureTimeoutMs) throws InterruptedException {
+        TbActorRef actorRef = createActor(strategy, backpressureTimeoutMs);
+        actorRef.tell(new TestMsg(0));
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+        for (int i = 1; i <= CAPACITY; i++) {
+            actorRef.tell(new TestMsg(i));
+        }
+        assertThat(overflowed).isEmpty();
+        return actorRef;
+    }
+
+    private TbActorRef createActor(MailboxOverflowStrategy strategy, long backpressureTimeoutMs) {
+        actorSystem = new DefaultTbActorSystem(new TbActorSystemSettings(5, 1, 42,
+                Map.of(DISPATCHER, new TbActorMailboxSettings(CAPACITY, strategy, backpressureTimeoutMs))));
+        executor = Executors.newSingleThreadExecutor(WinstarCloudThreadFactory.forName(getClass().getSimpleName()));
+        actorSystem.createDispatcher(DISPATCHER, executor);
+        TbActorId actorId = new TbEntityActorId(new DeviceId(UUID.randomUUID()));
+        return actorSystem.createRootActor(DISPATCHER, new TbActorCreator() {
+            @Override
+            public TbActorId createActorId() {
+                return actorId;
+            }
+
+            @Override
+            public TbActor createActor() {
+                return new BlockingActor();
+            }
+        });
+    }
+
+    private void awaitProcessed(Integer... values) {
+        Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> processed.size() >= values.length);
+        assertThat(processed).containsExactly(values);
+    }
+
+    private class BlockingActor extends AbstractTbActor {
+
+        @Override
+        public boolean process(TbActorMsg msg) {
+            int value = ((TestMsg) msg).getValue();
+            processed.add(value);
+            if (value == 0) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else if (value == FLOOD_MSG) {
+                for (int i : List.of(1, 2, 3, 4, 5)) {
+                    ctx.tell(new TestMsg(i));
+                }
+            }
+            return true;
+        }
+
+    }
+
+    private class TestMsg extends IntTbActorMsg {
+
+        TestMsg(int value) {
+            super(value);
+        }
+
+        @Override
+        public void onTbActorMailboxOverflow() {
+            overflowed.add(getValue());
+        }
+
+    }
+
+}
@@ -20,6 +20,8 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 
+import java.nio.ByteBuffer;
+
 import static org.winstarcloud.server.common.data.CacheConstants.OTA_PACKAGE_DATA_CACHE;
 
 @Service
@@ -56,6 +58,15 @@ public class CaffeineOtaPackageCache implements OtaPackageDataCache {
         return new byte[0];
     }
 
+    @Override
+    public ByteBuffer getChunk(String key, int chunkSize, int chunk) {
+        byte[] data = cacheManager.getCache(OTA_PACKAGE_DATA_CACHE).get(key, byte[].class);
+        if (data == null) {
+            return chunkSize < 1 ? null : EMPTY_CHUNK;
+        }
+        return OtaPackageDataCache.slice(ByteBuffer.wrap(data), chunkSize, chunk);
+    }
+
     @Override
     public void put(String key, byte[] value) {
         cacheManager.getCache(OTA_PACKAGE_DATA_CACHE).putIfAbsent(key, value);
@@ -0,0 +1,119 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.cache.ota;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Node-local copies of OTA package binaries kept in memory-mapped files, so the package data lives
+ * off-heap and chunks are served as read-only slices of the mapping.
+ * <p>
+ * Package data is immutable for a given package id, so a local copy never has to be refreshed;
+ * the number of kept packages is bounded and the least recently used files are deleted.
+ */
+@Slf4j
+class MappedOtaPackageDataStore {
+
+    private static final String FILE_SUFFIX = ".bin";
+    private static final String TMP_FILE_SUFFIX = ".tmp";
+
+    private final Path dir;
+    private final Cache<String, MappedPackage> packages;
+
+    MappedOtaPackageDataStore(Path dir, int maxPackages) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(file -> file.getFileName().toString().endsWith(FILE_SUFFIX) || file.getFileName().toString().endsWith(TMP_FILE_SUFFIX))
+                    .forEach(this::delete);
+        }
+        this.packages = Caffeine.newBuilder()
+                .maximumSize(maxPackages)
+                .<String, MappedPackage>removalListener((key, mappedPackage, cause) -> {
+                    if (mappedPackage != null) {
+                        delete(mappedPackage.file());
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * @param loader supplies the whole package data if there is no local copy yet
+     * @return read-only buffer over the whole package, or null if the package is not found
+     */
+    ByteBuffer get(String key, Supplier<byte[]> loader) {
+        MappedPackage mappedPackage = packages.get(key, k -> map(k, loader.get()));
+        return mappedPackage != null ? mappedPackage.data().asReadOnlyBuffer() : null;
+    }
+
+    void evict(String key) {
+        packages.invalidate(key);
+    }
+
+    void destroy() {
+        packages.invalidateAll();
+        packages.cleanUp();
+    }
+
+    private MappedPackage map(String key, byte[] data) {
+        if (data == null || data.length == 0) {
+            return null;
+        }
+        // unique name per mapping, so a late removal of an evicted copy never deletes the new one
+        Path file = dir.resolve(key + "_" + UUID.randomUUID() + FILE_SUFFIX);
+        Path tmpFile = dir.resolve(file.getFileName() + TMP_FILE_SUFFIX);
+        try {
+            Files.write(tmpFile, data);
+            Files.move(tmpFile, file, StandardCopyOption.ATOMIC_MOVE);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, data.length);
+                log.debug("[{}] Mapped OTA package data [{}] bytes to {}", key, data.length, file);
+                return new MappedPackage(file, buffer);
+            }
+        } catch (IOException e) {
+            delete(tmpFile);
+            delete(file);
+            throw new UncheckedIOException("Failed to store OTA package data " + key, e);
+        }
+    }
+
+    private void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete OTA package data file {}", file, e);
+        }
+    }
+
+    private record MappedPackage(Path file, MappedByteBuffer data) {
+    }
+
+}
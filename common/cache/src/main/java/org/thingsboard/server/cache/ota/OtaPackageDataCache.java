@@ -15,12 +15,25 @@
  */
 package org.winstarcloud.server.cache.ota;
 
+import java.nio.ByteBuffer;
+
 public interface OtaPackageDataCache {
 
+    ByteBuffer EMPTY_CHUNK = ByteBuffer.allocate(0).asReadOnlyBuffer();
+
     byte[] get(String key);
 
     byte[] get(String key, int chunkSize, int chunk);
 
+    /**
+     * Same as {@link #get(String, int, int)}, but returns a read-only buffer that implementations may back
+     * directly by the stored package data, so the chunk can be written to the transport without copying.
+     */
+    default ByteBuffer getChunk(String key, int chunkSize, int chunk) {
+        byte[] data = get(key, chunkSize, chunk);
+        return data != null ? ByteBuffer.wrap(data).asReadOnlyBuffer() : null;
+    }
+
     void put(String key, byte[] value);
 
     void evict(String key);
@@ -29,4 +42,17 @@ public interface OtaPackageDataCache {
         byte[] data = get(otaPackageId, 1, 0);
         return data != null && data.length > 0;
     }
+
+    static ByteBuffer slice(ByteBuffer data, int chunkSize, int chunk) {
+        if (chunkSize < 1) {
+            return data.asReadOnlyBuffer();
+        }
+        int length = data.remaining();
+        int startIndex = chunkSize * chunk;
+        int size = Math.min(length - startIndex, chunkSize);
+        if (startIndex < length && size > 0) {
+            return data.slice(data.position() + startIndex, size).asReadOnlyBuffer();
+        }
+        return EMPTY_CHUNK;
+    }
 }
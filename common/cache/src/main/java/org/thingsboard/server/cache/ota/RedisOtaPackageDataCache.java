@@ -15,14 +15,23 @@
  */
 package org.winstarcloud.server.cache.ota;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
 import static org.winstarcloud.server.common.data.CacheConstants.OTA_PACKAGE_DATA_CACHE;
 
+@Slf4j
 @Service
 @ConditionalOnProperty(prefix = "cache", value = "type", havingValue = "redis")
 @RequiredArgsConstructor
@@ -30,6 +39,30 @@ public class RedisOtaPackageDataCache implements OtaPackageDataCache {
 
     private final RedisConnectionFactory redisConnectionFactory;
 
+    @Value("${cache.otaPackagesDataFiles.enabled:false}")
+    private boolean mappedFilesEnabled;
+    @Value("${cache.otaPackagesDataFiles.dir:${java.io.tmpdir}/tb-ota-packages}")
+    private String mappedFilesDir;
+    @Value("${cache.otaPackagesDataFiles.maxFiles:10}")
+    private int mappedFilesMaxCount;
+
+    private MappedOtaPackageDataStore mappedStore;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (mappedFilesEnabled) {
+            mappedStore = new MappedOtaPackageDataStore(Path.of(mappedFilesDir), mappedFilesMaxCount);
+            log.info("OTA package data will be served from memory-mapped files in {}", mappedFilesDir);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (mappedStore != null) {
+            mappedStore.destroy();
+        }
+    }
+
     @Override
     public byte[] get(String key) {
         return get(key, 0, 0);
@@ -37,15 +70,31 @@ public class RedisOtaPackageDataCache implements OtaPackageDataCache {
 
     @Override
     public byte[] get(String key, int chunkSize, int chunk) {
-        try (RedisConnection connection = redisConnectionFactory.getConnection()) {
-            if (chunkSize == 0) {
-                return connection.get(toOtaPackageCacheKey(key));
-            }
+        if (mappedStore != null && chunkSize > 0) {
+            ByteBuffer slice = getChunk(key, chunkSize, chunk);
+            byte[] result = new byte[slice.remaining()];
+            slice.get(result);
+            return result;
+        }
+        return getFromRedis(key, chunkSize, chunk);
+    }
 
-            int startIndex = chunkSize * chunk;
-            int endIndex = startIndex + chunkSize - 1;
-            return connection.getRange(toOtaPackageCacheKey(key), startIndex, endIndex);
+    @Override
+    public boolean has(String otaPackageId) {
+        byte[] data = getFromRedis(otaPackageId, 1, 0);
+        return data != null && data.length > 0;
+    }
+
+    @Override
+    public ByteBuffer getChunk(String key, int chunkSize, int chunk) {
+        if (mappedStore == null) {
+            return OtaPackageDataCache.super.getChunk(key, chunkSize, chunk);
+        }
+        ByteBuffer data = mappedStore.get(key, () -> getFromRedis(key, 0, 0));
+        if (data == null) {
+            return chunkSize < 1 ? null : EMPTY_CHUNK;
         }
+        return OtaPackageDataCache.slice(data, chunkSize, chunk);
     }
 
     @Override
@@ -60,6 +109,21 @@ public class RedisOtaPackageDataCache implements OtaPackageDataCache {
         try (RedisConnection connection = redisConnectionFactory.getConnection()) {
             connection.del(toOtaPackageCacheKey(key));
         }
+        if (mappedStore != null) {
+            mappedStore.evict(key);
+        }
+    }
+
+    private byte[] getFromRedis(String key, int chunkSize, int chunk) {
+        try (RedisConnection connection = redisConnectionFactory.getConnection()) {
+            if (chunkSize == 0) {
+                return connection.get(toOtaPackageCacheKey(key));
+            }
+
+            int startIndex = chunkSize * chunk;
+            int endIndex = startIndex + chunkSize - 1;
+            return connection.getRange(toOtaPackageCacheKey(key), startIndex, endIndex);
+        }
     }
 
     private byte[] toOtaPackageCacheKey(String key) {
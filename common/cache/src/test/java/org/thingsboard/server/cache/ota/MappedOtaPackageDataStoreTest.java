@@ -0,0 +1,108 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.cache.ota;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+public class MappedOtaPackageDataStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private MappedOtaPackageDataStore store;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        store = new MappedOtaPackageDataStore(dir, 2);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        store.destroy();
+    }
+
+    @Test
+    public void givenPackage_whenGetChunks_thenSlicesAreReadOnlyViewsOfLoadedData() {
+        byte[] data = new byte[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+        AtomicInteger loads = new AtomicInteger();
+
+        ByteBuffer whole = store.get("package", () -> {
+            loads.incrementAndGet();
+            return data;
+        });
+        ByteBuffer lastChunk = OtaPackageDataCache.slice(store.get("package", () -> {
+            loads.incrementAndGet();
+            return data;
+        }), 4, 2);
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(whole.isReadOnly()).isTrue();
+        assertThat(toArray(whole)).isEqualTo(data);
+        assertThat(toArray(lastChunk)).containsExactly(8, 9);
+        assertThat(OtaPackageDataCache.slice(whole, 4, 3).remaining()).isZero();
+    }
+
+    @Test
+    public void givenMissingPackage_whenGet_thenNothingIsStored() throws Exception {
+        assertThat(store.get("missing", () -> null)).isNull();
+        assertThat(listFiles()).isEmpty();
+    }
+
+    @Test
+    public void givenMorePackagesThanLimit_whenGet_thenLeastRecentlyUsedFilesAreDeleted() {
+        for (int i = 0; i < 5; i++) {
+            store.get("package" + i, () -> new byte[]{1, 2, 3});
+        }
+        await().untilAsserted(() -> assertThat(listFiles()).hasSizeLessThanOrEqualTo(2));
+    }
+
+    @Test
+    public void givenEvictedPackage_whenGet_thenDataIsLoadedAgain() {
+        store.get("package", () -> new byte[]{1});
+        store.evict("package");
+
+        ByteBuffer reloaded = store.get("package", () -> new byte[]{2});
+
+        assertThat(toArray(reloaded)).containsExactly(2);
+    }
+
+    private List<Path> listFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.toList();
+        }
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] result = new byte[buffer.remaining()];
+        buffer.duplicate().get(result);
+        return result;
+    }
+
+}
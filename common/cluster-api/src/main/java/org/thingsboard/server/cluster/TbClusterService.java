@@ -92,6 +92,8 @@ public interface TbClusterService extends TbQueueClusterService {
 
     void onResourceDeleted(TbResourceInfo resource, TbQueueCallback callback);
 
+    void onKeyDictionaryEntryCreated(String key, int keyId);
+
     void onEdgeEventUpdate(TenantId tenantId, EdgeId edgeId);
 
     void pushEdgeSyncRequestToCore(ToEdgeSyncRequest toEdgeSyncRequest);
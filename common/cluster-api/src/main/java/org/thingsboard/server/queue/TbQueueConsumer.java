@@ -36,6 +36,23 @@ public interface TbQueueConsumer<T extends TbQueueMsg> {
 
     void commit();
 
+    /**
+     * Whether {@link #commitOldestPoll()} is supported, so that messages of several polls
+     * can be processed concurrently and committed in the order they were polled.
+     */
+    default boolean isPollCommitSupported() {
+        return false;
+    }
+
+    /**
+     * Commits the messages returned by the oldest non-empty poll that is not committed yet,
+     * leaving the messages of the later polls uncommitted.
+     * Consumers that do not support poll commits commit everything that was polled.
+     */
+    default void commitOldestPoll() {
+        commit();
+    }
+
     boolean isStopped();
 
     List<String> getFullTopicNames();
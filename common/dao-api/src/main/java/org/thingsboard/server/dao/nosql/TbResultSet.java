@@ -34,6 +34,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 public class TbResultSet implements AsyncResultSet {
@@ -124,6 +125,49 @@ public class TbResultSet implements AsyncResultSet {
         }
     }
 
+    /**
+     * Passes the rows to the consumer page by page without keeping the already processed pages in memory.
+     * The next page is requested only after the consumer has processed the current one.
+     */
+    public ListenableFuture<Void> forEachRow(Consumer<Row> consumer, Executor executor) {
+        SettableFuture<Void> resultFuture = SettableFuture.create();
+        this.processRows(originalStatement, delegate, consumer, resultFuture, executor);
+        return resultFuture;
+    }
+
+    private void processRows(Statement statement,
+                             AsyncResultSet resultSet,
+                             Consumer<Row> consumer,
+                             SettableFuture<Void> resultFuture,
+                             Executor executor) {
+        try {
+            resultSet.currentPage().forEach(consumer);
+        } catch (Throwable t) {
+            resultFuture.setException(t);
+            return;
+        }
+        if (resultSet.hasMorePages()) {
+            ByteBuffer nextPagingState = resultSet.getExecutionInfo().getPagingState();
+            Statement<?> nextStatement = statement.setPagingState(nextPagingState);
+            TbResultSetFuture resultSetFuture = executeAsyncFunction.apply(nextStatement);
+            Futures.addCallback(resultSetFuture,
+                    new FutureCallback<TbResultSet>() {
+                        @Override
+                        public void onSuccess(@Nullable TbResultSet result) {
+                            processRows(nextStatement, result, consumer, resultFuture, executor);
+                        }
+
+                        @Override
+                        public void onFailure(Throwable t) {
+                            resultFuture.setException(t);
+                        }
+                    }, executor != null ? executor : MoreExecutors.directExecutor()
+            );
+        } else {
+            resultFuture.set(null);
+        }
+    }
+
     List<Row> loadRows(AsyncResultSet resultSet) {
         return Lists.newArrayList(resultSet.currentPage());
     }
@@ -73,6 +73,8 @@ public enum TbMsgType {
     DEVICE_PROFILE_PERIODIC_SELF_MSG(null, true),
     DEVICE_PROFILE_UPDATE_SELF_MSG(null, true),
     DEVICE_UPDATE_SELF_MSG(null, true),
+    DEVICE_PROFILE_SNAPSHOT_LOADED_SELF_MSG(null, true),
+    DEVICE_PROFILE_STATE_FLUSH_SELF_MSG(null, true),
     DEDUPLICATION_TIMEOUT_SELF_MSG(null, true),
     DELAY_TIMEOUT_SELF_MSG(null, true),
     MSG_COUNT_SELF_MSG(null, true),
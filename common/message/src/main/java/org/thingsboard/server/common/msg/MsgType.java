@@ -107,6 +107,14 @@ public enum MsgType {
 
     REMOVE_RPC_TO_DEVICE_ACTOR_MSG,
 
+    /**
+     * Messages that are exchanged between the Tenant Actor and an idle Device Actor
+     * to stop the latter without losing messages that are routed to the device in the meantime.
+     */
+    DEVICE_ACTOR_PASSIVATION_REQUEST_MSG,
+    DEVICE_ACTOR_PASSIVATE_MSG,
+    DEVICE_ACTOR_PASSIVATION_RESULT_MSG,
+
     /**
      * Message that is sent from the Device Actor to Rule Engine. Requires acknowledgement
      */
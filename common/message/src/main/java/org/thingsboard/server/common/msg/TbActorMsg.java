@@ -30,4 +30,12 @@ public interface TbActorMsg {
     default void onTbActorStopped(TbActorStopReason reason) {
     }
 
+    /**
+     * Executed when the message is rejected or evicted because the bounded mailbox of the target TbActor is full.
+     * By default, the message is handled the same way as if the target actor was stopped.
+     */
+    default void onTbActorMailboxOverflow() {
+        onTbActorStopped(TbActorStopReason.STOPPED);
+    }
+
 }
@@ -0,0 +1,71 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.common.msg;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.winstarcloud.server.common.data.id.DeviceId;
+import org.winstarcloud.server.common.data.msg.TbMsgType;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TbMsgTest {
+
+    private final DeviceId deviceId = new DeviceId(UUID.randomUUID());
+
+    @Test
+    public void testGetDataAsJson_parsedOnceAndShared() {
+        TbMsg msg = TbMsg.newMsg(TbMsgType.POST_TELEMETRY_REQUEST, deviceId, TbMsgMetaData.EMPTY, "{\"temperature\":42}");
+
+        JsonNode json = msg.getDataAsJson();
+        assertThat(json.get("temperature").asInt()).isEqualTo(42);
+        assertThat(msg.getDataAsJson()).isSameAs(json);
+
+        TbMsg withMetadata = TbMsg.transformMsgMetadata(msg, new TbMsgMetaData());
+        assertThat(withMetadata.getDataAsJson()).isSameAs(json);
+        assertThat(msg.copyWithNewCtx().getDataAsJson()).isSameAs(json);
+    }
+
+    @Test
+    public void testGetDataAsJson_reparsedWhenDataChanged() {
+        TbMsg msg = TbMsg.newMsg(TbMsgType.POST_TELEMETRY_REQUEST, deviceId, TbMsgMetaData.EMPTY, "{\"temperature\":42}");
+        JsonNode json = msg.getDataAsJson();
+
+        TbMsg transformed = TbMsg.transformMsgData(msg, "{\"humidity\":10}");
+        assertThat(transformed.getDataAsJson()).isNotSameAs(json);
+        assertThat(transformed.getDataAsJson().get("humidity").asInt()).isEqualTo(10);
+
+        TbMsg rebuilt = msg.toBuilder().data("{\"pressure\":1}").build();
+        assertThat(rebuilt.getDataAsJson().has("pressure")).isTrue();
+    }
+
+    @Test
+    public void testGetDataAsJson_afterDeserialization() {
+        TbMsg msg = TbMsg.newMsg(TbMsgType.POST_TELEMETRY_REQUEST, deviceId, TbMsgMetaData.EMPTY, "[1,2]");
+        TbMsg restored = TbMsg.fromBytes(msg.getQueueName(), TbMsg.toByteArray(msg), null);
+        assertThat(restored.getDataAsJson().size()).isEqualTo(2);
+    }
+
+    @Test
+    public void testGetDataAsJson_invalidJson() {
+        TbMsg msg = TbMsg.newMsg(TbMsgType.POST_TELEMETRY_REQUEST, deviceId, TbMsgMetaData.EMPTY, "{\"temperature\":");
+        assertThatThrownBy(msg::getDataAsJson).isInstanceOf(IllegalArgumentException.class);
+    }
+
+}
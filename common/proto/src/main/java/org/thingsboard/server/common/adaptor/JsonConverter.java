@@ -15,6 +15,7 @@
  */
 package org.winstarcloud.server.common.adaptor;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
@@ -22,6 +23,8 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.google.gson.JsonPrimitive;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.winstarcloud.server.common.data.DataConstants;
 import org.winstarcloud.server.common.data.StringUtils;
@@ -51,10 +54,14 @@ import org.winstarcloud.server.gen.transport.TransportProtos.ValidateBasicMqttCr
 import org.winstarcloud.server.gen.transport.TransportProtos.ValidateDeviceTokenRequestMsg;
 import org.winstarcloud.server.gen.transport.TransportProtos.ValidateDeviceX509CertRequestMsg;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -68,6 +75,8 @@ public class JsonConverter {
     private static final Gson GSON = new Gson();
     private static final String CAN_T_PARSE_VALUE = "Can't parse value: ";
     private static final String DEVICE_PROPERTY = "device";
+    private static final String TS = "ts";
+    private static final String VALUES = "values";
 
     private static boolean isTypeCastEnabled = true;
 
@@ -83,6 +92,45 @@ public class JsonConverter {
         return convertToTelemetryProto(jsonElement, System.currentTimeMillis());
     }
 
+    /**
+     * Streaming counterpart of {@link #convertToTelemetryProto(JsonElement, long)}. Reads the payload token by token
+     * and builds the key-value protos directly, without materializing the JSON tree first.
+     * Only nested JSON values and the "values" object that precedes "ts" are parsed into a tree.
+     */
+    public static PostTelemetryMsg convertToTelemetryProto(Reader reader, long ts) throws JsonSyntaxException {
+        PostTelemetryMsg.Builder builder = PostTelemetryMsg.newBuilder();
+        JsonReader jsonReader = new JsonReader(reader);
+        jsonReader.setLenient(true);
+        try {
+            JsonToken token = jsonReader.peek();
+            if (token == JsonToken.BEGIN_OBJECT) {
+                builder.addTsKvList(parseTsKvList(jsonReader, ts));
+            } else if (token == JsonToken.BEGIN_ARRAY) {
+                jsonReader.beginArray();
+                while (jsonReader.hasNext()) {
+                    if (jsonReader.peek() == JsonToken.BEGIN_OBJECT) {
+                        builder.addTsKvList(parseTsKvList(jsonReader, ts));
+                    } else {
+                        throw new JsonSyntaxException(CAN_T_PARSE_VALUE + JsonParser.parseReader(jsonReader));
+                    }
+                }
+                jsonReader.endArray();
+            } else {
+                throw new JsonSyntaxException(CAN_T_PARSE_VALUE + JsonParser.parseReader(jsonReader));
+            }
+            if (jsonReader.peek() != JsonToken.END_DOCUMENT) {
+                throw new JsonSyntaxException("Did not consume the entire document.");
+            }
+        } catch (IOException e) {
+            throw new JsonSyntaxException(e);
+        }
+        return builder.build();
+    }
+
+    public static PostTelemetryMsg convertToTelemetryProto(Reader reader) throws JsonSyntaxException {
+        return convertToTelemetryProto(reader, System.currentTimeMillis());
+    }
+
     private static void convertToTelemetry(JsonElement jsonElement, long systemTs, Map<Long, List<KvEntry>> result, PostTelemetryMsg.Builder builder) {
         if (jsonElement.isJsonObject()) {
             parseObject(systemTs, result, builder, jsonElement.getAsJsonObject());
@@ -185,47 +233,148 @@ public class JsonConverter {
         request.addTsKvList(builder.build());
     }
 
-    private static List<KeyValueProto> parseProtoValues(JsonObject valuesObject) {
-        List<KeyValueProto> result = new ArrayList<>();
-        for (Entry<String, JsonElement> valueEntry : valuesObject.entrySet()) {
-            JsonElement element = valueEntry.getValue();
-            if (element.isJsonPrimitive()) {
-                JsonPrimitive value = element.getAsJsonPrimitive();
-                if (value.isString()) {
-                    if (maxStringValueLength > 0 && value.getAsString().length() > maxStringValueLength) {
-                        String message = String.format("String value length [%d] for key [%s] is greater than maximum allowed [%d]", value.getAsString().length(), valueEntry.getKey(), maxStringValueLength);
-                        throw new JsonSyntaxException(message);
-                    }
-                    if (isTypeCastEnabled && NumberUtils.isParsable(value.getAsString())) {
-                        try {
-                            result.add(buildNumericKeyValueProto(value, valueEntry.getKey()));
-                        } catch (RuntimeException th) {
-                            result.add(KeyValueProto.newBuilder().setKey(valueEntry.getKey()).setType(KeyValueType.STRING_V)
-                                    .setStringV(value.getAsString()).build());
-                        }
-                    } else {
-                        result.add(KeyValueProto.newBuilder().setKey(valueEntry.getKey()).setType(KeyValueType.STRING_V)
-                                .setStringV(value.getAsString()).build());
+    private static TsKvListProto parseTsKvList(JsonReader reader, long systemTs) throws IOException {
+        List<KeyValueProto> kvs = new ArrayList<>();
+        JsonElement tsElement = null;
+        JsonElement valuesElement = null;
+        List<KeyValueProto> values = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if (TS.equals(key)) {
+                tsElement = JsonParser.parseReader(reader);
+                if (values == null && valuesElement == null) {
+                    addProtoValue(kvs, key, tsElement);
+                }
+            } else if (VALUES.equals(key)) {
+                if (tsElement != null && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    values = parseProtoValues(reader);
+                    valuesElement = null;
+                } else {
+                    valuesElement = JsonParser.parseReader(reader);
+                    values = null;
+                    if (tsElement == null) {
+                        addProtoValue(kvs, key, valuesElement);
                     }
-                } else if (value.isBoolean()) {
-                    result.add(KeyValueProto.newBuilder().setKey(valueEntry.getKey()).setType(KeyValueType.BOOLEAN_V)
-                            .setBoolV(value.getAsBoolean()).build());
-                } else if (value.isNumber()) {
-                    result.add(buildNumericKeyValueProto(value, valueEntry.getKey()));
-                } else if (!value.isJsonNull()) {
-                    throw new JsonSyntaxException(CAN_T_PARSE_VALUE + value);
                 }
-            } else if (element.isJsonObject() || element.isJsonArray()) {
-                result.add(KeyValueProto.newBuilder().setKey(valueEntry.getKey()).setType(KeyValueType.JSON_V).setJsonV(element.toString()).build());
-            } else if (!element.isJsonNull()) {
-                throw new JsonSyntaxException(CAN_T_PARSE_VALUE + element);
+            } else if (tsElement != null && (values != null || valuesElement != null)) {
+                // the object is in the {"ts": ..., "values": {...}} format, other keys are ignored
+                reader.skipValue();
+            } else {
+                addProtoValue(kvs, key, reader);
             }
         }
+        reader.endObject();
+        TsKvListProto.Builder builder = TsKvListProto.newBuilder();
+        if (tsElement != null && (values != null || valuesElement != null)) {
+            builder.setTs(tsElement.getAsLong());
+            builder.addAllKv(values != null ? values : parseProtoValues(valuesElement.getAsJsonObject()));
+        } else {
+            builder.setTs(systemTs);
+            builder.addAllKv(removeDuplicateKeys(kvs));
+        }
+        return builder.build();
+    }
+
+    private static List<KeyValueProto> parseProtoValues(JsonReader reader) throws IOException {
+        List<KeyValueProto> result = new ArrayList<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            addProtoValue(result, reader.nextName(), reader);
+        }
+        reader.endObject();
+        return removeDuplicateKeys(result);
+    }
+
+    private static void addProtoValue(List<KeyValueProto> result, String key, JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case STRING:
+                result.add(buildStringKeyValueProto(reader.nextString(), key));
+                break;
+            case NUMBER:
+                result.add(buildNumericKeyValueProto(reader.nextString(), key));
+                break;
+            case BOOLEAN:
+                result.add(KeyValueProto.newBuilder().setKey(key).setType(KeyValueType.BOOLEAN_V)
+                        .setBoolV(reader.nextBoolean()).build());
+                break;
+            case NULL:
+                reader.nextNull();
+                break;
+            case BEGIN_OBJECT:
+            case BEGIN_ARRAY:
+                result.add(KeyValueProto.newBuilder().setKey(key).setType(KeyValueType.JSON_V)
+                        .setJsonV(JsonParser.parseReader(reader).toString()).build());
+                break;
+            default:
+                throw new JsonSyntaxException(CAN_T_PARSE_VALUE + reader.peek());
+        }
+    }
+
+    /*
+     * JsonObject keeps the last value of a duplicated key at the position of the first one,
+     * the streaming parser has to do the same to produce identical telemetry.
+     */
+    private static List<KeyValueProto> removeDuplicateKeys(List<KeyValueProto> kvs) {
+        if (kvs.size() < 2) {
+            return kvs;
+        }
+        Set<String> keys = new HashSet<>();
+        for (KeyValueProto kv : kvs) {
+            if (!keys.add(kv.getKey())) {
+                Map<String, KeyValueProto> unique = new LinkedHashMap<>();
+                kvs.forEach(entry -> unique.put(entry.getKey(), entry));
+                return new ArrayList<>(unique.values());
+            }
+        }
+        return kvs;
+    }
+
+    private static List<KeyValueProto> parseProtoValues(JsonObject valuesObject) {
+        List<KeyValueProto> result = new ArrayList<>();
+        for (Entry<String, JsonElement> valueEntry : valuesObject.entrySet()) {
+            addProtoValue(result, valueEntry.getKey(), valueEntry.getValue());
+        }
         return result;
     }
 
-    private static KeyValueProto buildNumericKeyValueProto(JsonPrimitive value, String key) {
-        String valueAsString = value.getAsString();
+    private static void addProtoValue(List<KeyValueProto> result, String key, JsonElement element) {
+        if (element.isJsonPrimitive()) {
+            JsonPrimitive value = element.getAsJsonPrimitive();
+            if (value.isString()) {
+                result.add(buildStringKeyValueProto(value.getAsString(), key));
+            } else if (value.isBoolean()) {
+                result.add(KeyValueProto.newBuilder().setKey(key).setType(KeyValueType.BOOLEAN_V)
+                        .setBoolV(value.getAsBoolean()).build());
+            } else if (value.isNumber()) {
+                result.add(buildNumericKeyValueProto(value.getAsString(), key));
+            } else if (!value.isJsonNull()) {
+                throw new JsonSyntaxException(CAN_T_PARSE_VALUE + value);
+            }
+        } else if (element.isJsonObject() || element.isJsonArray()) {
+            result.add(KeyValueProto.newBuilder().setKey(key).setType(KeyValueType.JSON_V).setJsonV(element.toString()).build());
+        } else if (!element.isJsonNull()) {
+            throw new JsonSyntaxException(CAN_T_PARSE_VALUE + element);
+        }
+    }
+
+    private static KeyValueProto buildStringKeyValueProto(String value, String key) {
+        if (maxStringValueLength > 0 && value.length() > maxStringValueLength) {
+            String message = String.format("String value length [%d] for key [%s] is greater than maximum allowed [%d]", value.length(), key, maxStringValueLength);
+            throw new JsonSyntaxException(message);
+        }
+        if (isTypeCastEnabled && NumberUtils.isParsable(value)) {
+            try {
+                return buildNumericKeyValueProto(value, key);
+            } catch (RuntimeException th) {
+                return KeyValueProto.newBuilder().setKey(key).setType(KeyValueType.STRING_V).setStringV(value).build();
+            }
+        } else {
+            return KeyValueProto.newBuilder().setKey(key).setType(KeyValueType.STRING_V).setStringV(value).build();
+        }
+    }
+
+    private static KeyValueProto buildNumericKeyValueProto(String valueAsString, String key) {
         KeyValueProto.Builder builder = KeyValueProto.newBuilder().setKey(key);
         var bd = new BigDecimal(valueAsString);
         if (bd.stripTrailingZeros().scale() <= 0 && !isSimpleDouble(valueAsString)) {
@@ -260,8 +409,10 @@ public class JsonConverter {
     }
 
     private static void parseNumericValue(List<KvEntry> result, Entry<String, JsonElement> valueEntry, JsonPrimitive value) {
-        String valueAsString = value.getAsString();
-        String key = valueEntry.getKey();
+        parseNumericValue(result, valueEntry.getKey(), value.getAsString());
+    }
+
+    private static void parseNumericValue(List<KvEntry> result, String key, String valueAsString) {
         var bd = new BigDecimal(valueAsString);
         if (bd.stripTrailingZeros().scale() <= 0 && !isSimpleDouble(valueAsString)) {
             try {
@@ -501,6 +652,16 @@ public class JsonConverter {
         return result;
     }
 
+    public static Set<AttributeKvEntry> convertToAttributes(JsonNode node) {
+        if (node == null || !node.isObject()) {
+            throw new JsonSyntaxException(CAN_T_PARSE_VALUE + node);
+        }
+        Set<AttributeKvEntry> result = new HashSet<>();
+        long ts = System.currentTimeMillis();
+        result.addAll(parseValues(node).stream().map(kv -> new BaseAttributeKvEntry(kv, ts)).collect(Collectors.toList()));
+        return result;
+    }
+
     private static List<KvEntry> parseValues(JsonObject valuesObject) {
         List<KvEntry> result = new ArrayList<>();
         for (Entry<String, JsonElement> valueEntry : valuesObject.entrySet()) {
@@ -537,6 +698,41 @@ public class JsonConverter {
         return result;
     }
 
+    private static List<KvEntry> parseValues(JsonNode valuesNode) {
+        List<KvEntry> result = new ArrayList<>();
+        Iterator<Entry<String, JsonNode>> fields = valuesNode.fields();
+        while (fields.hasNext()) {
+            Entry<String, JsonNode> valueEntry = fields.next();
+            String key = valueEntry.getKey();
+            JsonNode value = valueEntry.getValue();
+            if (value.isTextual()) {
+                String valueAsString = value.asText();
+                if (maxStringValueLength > 0 && valueAsString.length() > maxStringValueLength) {
+                    String message = String.format("String value length [%d] for key [%s] is greater than maximum allowed [%d]", valueAsString.length(), key, maxStringValueLength);
+                    throw new JsonSyntaxException(message);
+                }
+                if (isTypeCastEnabled && NumberUtils.isParsable(valueAsString)) {
+                    try {
+                        parseNumericValue(result, key, valueAsString);
+                    } catch (RuntimeException th) {
+                        result.add(new StringDataEntry(key, valueAsString));
+                    }
+                } else {
+                    result.add(new StringDataEntry(key, valueAsString));
+                }
+            } else if (value.isBoolean()) {
+                result.add(new BooleanDataEntry(key, value.asBoolean()));
+            } else if (value.isNumber()) {
+                parseNumericValue(result, key, value.asText());
+            } else if (value.isObject() || value.isArray()) {
+                result.add(new JsonDataEntry(key, value.toString()));
+            } else {
+                throw new JsonSyntaxException(CAN_T_PARSE_VALUE + value);
+            }
+        }
+        return result;
+    }
+
     public static Map<Long, List<KvEntry>> convertToTelemetry(JsonElement jsonElement, long systemTs) throws
             JsonSyntaxException {
         return convertToTelemetry(jsonElement, systemTs, false);
@@ -554,6 +750,52 @@ public class JsonConverter {
         return result;
     }
 
+    /**
+     * Same as {@link #convertToTelemetry(JsonElement, long)} for an already parsed Jackson tree,
+     * for example {@code TbMsg.getDataAsJson()}. Numbers are converted the same way only if the tree keeps floating point
+     * numbers as exact decimals; a tree parsed into doubles loses the original notation (e.g. {@code 1E+1} becomes {@code 10.0}).
+     */
+    public static Map<Long, List<KvEntry>> convertToTelemetry(JsonNode node, long systemTs) throws JsonSyntaxException {
+        return convertToTelemetry(node, systemTs, false);
+    }
+
+    public static Map<Long, List<KvEntry>> convertToSortedTelemetry(JsonNode node, long systemTs) throws JsonSyntaxException {
+        return convertToTelemetry(node, systemTs, true);
+    }
+
+    public static Map<Long, List<KvEntry>> convertToTelemetry(JsonNode node, long systemTs, boolean sorted) throws JsonSyntaxException {
+        Map<Long, List<KvEntry>> result = sorted ? new TreeMap<>() : new HashMap<>();
+        if (node != null && node.isObject()) {
+            parseObject(result, systemTs, node);
+        } else if (node != null && node.isArray()) {
+            node.forEach(element -> {
+                if (element.isObject()) {
+                    parseObject(result, systemTs, element);
+                } else {
+                    throw new JsonSyntaxException(CAN_T_PARSE_VALUE + element);
+                }
+            });
+        } else {
+            throw new JsonSyntaxException(CAN_T_PARSE_VALUE + node);
+        }
+        return result;
+    }
+
+    private static void parseObject(Map<Long, List<KvEntry>> result, long systemTs, JsonNode node) {
+        long ts = systemTs;
+        JsonNode valuesNode = node;
+        if (node.has(TS) && node.has(VALUES)) {
+            ts = node.get(TS).asLong();
+            valuesNode = node.get(VALUES);
+            if (!valuesNode.isObject()) {
+                throw new JsonSyntaxException(CAN_T_PARSE_VALUE + valuesNode);
+            }
+        }
+        for (KvEntry entry : parseValues(valuesNode)) {
+            result.computeIfAbsent(ts, tmp -> new ArrayList<>()).add(entry);
+        }
+    }
+
 
     private static void parseObject(Map<Long, List<KvEntry>> result, long systemTs, JsonObject jo) {
         if (jo.has("ts") && jo.has("values")) {
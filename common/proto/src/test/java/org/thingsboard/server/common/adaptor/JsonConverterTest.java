@@ -22,8 +22,14 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.parallel.Isolated;
+import org.winstarcloud.server.common.data.id.DeviceId;
+import org.winstarcloud.server.common.data.msg.TbMsgType;
+import org.winstarcloud.server.common.msg.TbMsg;
+import org.winstarcloud.server.common.msg.TbMsgMetaData;
 
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.UUID;
 
 @Isolated("JsonConverter static settings being modified")
 public class JsonConverterTest {
@@ -108,4 +114,62 @@ public class JsonConverterTest {
             JsonConverter.convertToTelemetry(JsonParser.parseString("{\"meterReadingDelta\": 9.9701010061400066E19}"), 0L);
         });
     }
+
+    @Test
+    public void testStreamingTelemetryMatchesTreeConversion() {
+        String[] payloads = {
+                "{\"a\":1,\"b\":2.5,\"c\":\"x\",\"d\":true,\"e\":null,\"f\":{\"g\":[1,{\"h\":\"i\"}]},\"j\":\"42\",\"k\":1E+1,\"l\":99701010061400066001}",
+                "{\"ts\":1000,\"values\":{\"a\":1,\"b\":\"s\"}}",
+                "{\"values\":{\"a\":1},\"ts\":1000,\"x\":5}",
+                "{\"ts\":1000,\"x\":5}",
+                "{\"values\":{\"a\":1},\"x\":5}",
+                "[{\"ts\":1,\"values\":{\"a\":1}},{\"ts\":2,\"values\":{\"a\":2}},{\"b\":3}]",
+                "{\"a\":1,\"a\":2,\"b\":3}",
+                "{\"ts\":\"1000\",\"values\":{\"a\":1}}",
+                "{a:unquoted, 'b':'q'}",
+                "[]",
+                "{}"
+        };
+        for (String payload : payloads) {
+            Assertions.assertEquals(JsonConverter.convertToTelemetryProto(JsonParser.parseString(payload), 0L),
+                    JsonConverter.convertToTelemetryProto(new StringReader(payload), 0L), payload);
+        }
+    }
+
+    @Test
+    public void testMsgDataTelemetryMatchesGsonConversion() {
+        String[] payloads = {
+                "{\"a\":1,\"b\":2.5,\"c\":\"x\",\"d\":true,\"f\":{\"g\":[1,{\"h\":\"i\"}]},\"j\":\"42\",\"k\":1E+1,\"l\":99701010061400066001}",
+                "{\"a\":42.0,\"b\":101E-1,\"c\":9.9701010061400066E19,\"d\":1E19,\"e\":0.12345678901234567890,\"f\":1.50}",
+                "{\"ts\":1000,\"values\":{\"a\":1,\"b\":\"s\"}}",
+                "{\"values\":{\"a\":1},\"ts\":1000,\"x\":5}",
+                "{\"ts\":1000,\"x\":5}",
+                "[{\"ts\":1,\"values\":{\"a\":1}},{\"ts\":2,\"values\":{\"a\":2}},{\"b\":3}]",
+                "{\"a\":1,\"a\":2,\"b\":3}",
+                "{\"ts\":\"1000\",\"values\":{\"a\":1}}",
+                "[]",
+                "{}"
+        };
+        for (String payload : payloads) {
+            TbMsg msg = TbMsg.newMsg(TbMsgType.POST_TELEMETRY_REQUEST, new DeviceId(UUID.randomUUID()), TbMsgMetaData.EMPTY, payload);
+            Assertions.assertEquals(JsonConverter.convertToTelemetry(JsonParser.parseString(payload), 0L),
+                    JsonConverter.convertToTelemetry(msg.getDataAsJson(), 0L), payload);
+        }
+    }
+
+    @Test
+    public void testMsgDataTelemetryRejectsInvalidPayload() {
+        for (String payload : new String[]{"5", "[1]", "{\"a\":null}", "{\"ts\":1000,\"values\":5}"}) {
+            TbMsg msg = TbMsg.newMsg(TbMsgType.POST_TELEMETRY_REQUEST, new DeviceId(UUID.randomUUID()), TbMsgMetaData.EMPTY, payload);
+            Assertions.assertThrows(JsonSyntaxException.class, () -> JsonConverter.convertToTelemetry(msg.getDataAsJson(), 0L), payload);
+        }
+    }
+
+    @Test
+    public void testStreamingTelemetryRejectsInvalidPayload() {
+        for (String payload : new String[]{"", "5", "[1]", "{", "{\"a\":1}{"}) {
+            Assertions.assertThrows(JsonSyntaxException.class, () -> JsonConverter.convertToTelemetryProto(new StringReader(payload), 0L), payload);
+        }
+        Assertions.assertThrows(IllegalStateException.class, () -> JsonConverter.convertToTelemetryProto(new StringReader("{\"ts\":1000,\"values\":5}"), 0L));
+    }
 }
@@ -109,7 +109,18 @@ public abstract class AbstractTbQueueConsumerTemplate<R, T extends TbQueueMsg> i
             return sleepAndReturnEmpty(startNanos, durationInMillis);
         }
 
-        return decodeRecords(records);
+        try {
+            return decodeRecords(records);
+        } catch (RuntimeException e) {
+            // the records of this poll will never be processed, so the poll must not be committed separately
+            consumerLock.lock();
+            try {
+                doDiscardLastPoll();
+            } finally {
+                consumerLock.unlock();
+            }
+            throw e;
+        }
     }
 
     @Nonnull
@@ -159,6 +170,19 @@ public abstract class AbstractTbQueueConsumerTemplate<R, T extends TbQueueMsg> i
         }
     }
 
+    @Override
+    public void commitOldestPoll() {
+        if (consumerLock.isLocked()) {
+            log.error("commitOldestPoll. consumerLock is locked. will wait with no timeout. it looks like a race conditions or deadlock topic " + topic, new RuntimeException("stacktrace"));
+        }
+        consumerLock.lock();
+        try {
+            doCommitOldestPoll();
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
     @Override
     public void stop() {
         stopped = true;
@@ -191,6 +215,13 @@ public abstract class AbstractTbQueueConsumerTemplate<R, T extends TbQueueMsg> i
 
     abstract protected void doCommit();
 
+    protected void doCommitOldestPoll() {
+        doCommit();
+    }
+
+    protected void doDiscardLastPoll() {
+    }
+
     abstract protected void doUnsubscribe();
 
     @Override
@@ -67,6 +67,8 @@ public class HashPartitionService implements PartitionService {
     private Integer vcPartitions;
     @Value("${queue.partitions.hash_function_name:murmur3_128}")
     private String hashFunctionName;
+    @Value("${queue.partitions.assignment_strategy:modulo}")
+    private String assignmentStrategy;
 
     private final ApplicationEventPublisher applicationEventPublisher;
     private final TbServiceInfoProvider serviceInfoProvider;
@@ -87,6 +89,7 @@ public class HashPartitionService implements PartitionService {
     private volatile Map<TenantProfileId, List<ServiceInfo>> responsibleServices = Collections.emptyMap();
 
     private HashFunction hashFunction;
+    private boolean rendezvousAssignment;
 
     public HashPartitionService(TbServiceInfoProvider serviceInfoProvider,
                                 TenantRoutingInfoService tenantRoutingInfoService,
@@ -103,6 +106,7 @@ public class HashPartitionService implements PartitionService {
     @PostConstruct
     public void init() {
         this.hashFunction = forName(hashFunctionName);
+        this.rendezvousAssignment = isRendezvousAssignment(assignmentStrategy);
         QueueKey coreKey = new QueueKey(ServiceType.TB_CORE);
         partitionSizesMap.put(coreKey, corePartitions);
         partitionTopicsMap.put(coreKey, coreTopic);
@@ -365,16 +369,17 @@ public class HashPartitionService implements PartitionService {
 
         final ConcurrentMap<QueueKey, List<Integer>> newPartitions = new ConcurrentHashMap<>();
         partitionSizesMap.forEach((queueKey, size) -> {
-            for (int i = 0; i < size; i++) {
-                try {
-                    ServiceInfo serviceInfo = resolveByPartitionIdx(queueServicesMap.get(queueKey), queueKey, i, responsibleServices);
+            try {
+                ServiceInfo[] servers = resolvePartitions(queueServicesMap.get(queueKey), queueKey, size, responsibleServices);
+                for (int i = 0; i < size; i++) {
+                    ServiceInfo serviceInfo = servers[i];
                     log.trace("Server responsible for {}[{}] - {}", queueKey, i, serviceInfo != null ? serviceInfo.getServiceId() : "none");
                     if (currentService.equals(serviceInfo)) {
                         newPartitions.computeIfAbsent(queueKey, key -> new ArrayList<>()).add(i);
                     }
-                } catch (Exception e) {
-                    log.warn("Failed to resolve server responsible for {}[{}]", queueKey, i, e);
                 }
+            } catch (Exception e) {
+                log.warn("Failed to resolve servers responsible for {}", queueKey, e);
             }
         });
         this.responsibleServices = responsibleServices;
@@ -598,49 +603,80 @@ public class HashPartitionService implements PartitionService {
         }
     }
 
+    protected ServiceInfo[] resolvePartitions(List<ServiceInfo> servers, QueueKey queueKey, int partitions,
+                                              Map<TenantProfileId, List<ServiceInfo>> responsibleServices) {
+        ServiceInfo[] result = new ServiceInfo[partitions];
+        if (!rendezvousAssignment) {
+            for (int i = 0; i < partitions; i++) {
+                result[i] = resolveByPartitionIdx(servers, queueKey, i, responsibleServices);
+            }
+            return result;
+        }
+        servers = getResponsibleServers(servers, queueKey, responsibleServices);
+        if (servers.isEmpty()) {
+            return result;
+        }
+        long[] serverHashes = new long[servers.size()];
+        for (int i = 0; i < serverHashes.length; i++) {
+            serverHashes[i] = hashFunction.hashUnencodedChars(servers.get(i).getServiceId()).padToLong();
+        }
+        // queue name is not a part of the seed, so the queues of a tenant with the same size stay on the same servers
+        int[] assignment = RendezvousPartitionAssignment.assign(serverHashes, hash(queueKey), partitions);
+        for (int i = 0; i < partitions; i++) {
+            result[i] = servers.get(assignment[i]);
+        }
+        return result;
+    }
+
     protected ServiceInfo resolveByPartitionIdx(List<ServiceInfo> servers, QueueKey queueKey, int partition,
                                                 Map<TenantProfileId, List<ServiceInfo>> responsibleServices) {
-        if (servers == null || servers.isEmpty()) {
+        servers = getResponsibleServers(servers, queueKey, responsibleServices);
+        if (servers.isEmpty()) {
             return null;
         }
 
-        TenantId tenantId = queueKey.getTenantId();
         if (queueKey.getType() == ServiceType.TB_RULE_ENGINE) {
-            if (!responsibleServices.isEmpty()) { // if there are any dedicated servers
-                TenantProfileId profileId;
-                if (tenantId != null && !tenantId.isSysTenantId()) {
-                    TenantRoutingInfo routingInfo = tenantRoutingInfoService.getRoutingInfo(tenantId);
-                    profileId = routingInfo.getProfileId();
-                } else {
-                    profileId = null;
-                }
-
-                List<ServiceInfo> responsible = responsibleServices.get(profileId);
-                if (responsible == null) {
-                    // if there are no dedicated servers for this tenant profile, or for system queues,
-                    // using the servers that are not responsible for any profile
-                    responsible = servers.stream()
-                            .filter(serviceInfo -> serviceInfo.getAssignedTenantProfilesCount() == 0)
-                            .sorted(Comparator.comparing(ServiceInfo::getServiceId))
-                            .collect(Collectors.toList());
-                    if (profileId != null) {
-                        log.debug("Using servers {} for profile {}", toServiceIds(responsible), profileId);
-                    }
-                    responsibleServices.put(profileId, responsible);
-                }
-                if (responsible.isEmpty()) {
-                    return null;
-                }
-                servers = responsible;
-            }
-
-            int hash = hash(tenantId.getId());
+            int hash = hash(queueKey.getTenantId().getId());
             return servers.get(Math.abs((hash + partition) % servers.size()));
         } else {
             return servers.get(partition % servers.size());
         }
     }
 
+    private List<ServiceInfo> getResponsibleServers(List<ServiceInfo> servers, QueueKey queueKey,
+                                                    Map<TenantProfileId, List<ServiceInfo>> responsibleServices) {
+        if (servers == null || servers.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (queueKey.getType() != ServiceType.TB_RULE_ENGINE || responsibleServices.isEmpty()) {
+            return servers;
+        }
+        // if there are any dedicated servers
+        TenantId tenantId = queueKey.getTenantId();
+        TenantProfileId profileId;
+        if (tenantId != null && !tenantId.isSysTenantId()) {
+            TenantRoutingInfo routingInfo = tenantRoutingInfoService.getRoutingInfo(tenantId);
+            profileId = routingInfo.getProfileId();
+        } else {
+            profileId = null;
+        }
+
+        List<ServiceInfo> responsible = responsibleServices.get(profileId);
+        if (responsible == null) {
+            // if there are no dedicated servers for this tenant profile, or for system queues,
+            // using the servers that are not responsible for any profile
+            responsible = servers.stream()
+                    .filter(serviceInfo -> serviceInfo.getAssignedTenantProfilesCount() == 0)
+                    .sorted(Comparator.comparing(ServiceInfo::getServiceId))
+                    .collect(Collectors.toList());
+            if (profileId != null) {
+                log.debug("Using servers {} for profile {}", toServiceIds(responsible), profileId);
+            }
+            responsibleServices.put(profileId, responsible);
+        }
+        return responsible;
+    }
+
     private int hash(UUID key) {
         return hashFunction.newHasher()
                 .putLong(key.getMostSignificantBits())
@@ -648,6 +684,26 @@ public class HashPartitionService implements PartitionService {
                 .hash().asInt();
     }
 
+    private long hash(QueueKey queueKey) {
+        TenantId tenantId = queueKey.getTenantId() != null ? queueKey.getTenantId() : TenantId.SYS_TENANT_ID;
+        return hashFunction.newHasher()
+                .putUnencodedChars(queueKey.getType().name())
+                .putLong(tenantId.getId().getMostSignificantBits())
+                .putLong(tenantId.getId().getLeastSignificantBits())
+                .hash().padToLong();
+    }
+
+    private static boolean isRendezvousAssignment(String strategy) {
+        switch (strategy) {
+            case "modulo":
+                return false;
+            case "rendezvous":
+                return true;
+            default:
+                throw new IllegalArgumentException("Unknown partition assignment strategy " + strategy);
+        }
+    }
+
     public static HashFunction forName(String name) {
         switch (name) {
             case "murmur3_32":
@@ -0,0 +1,78 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.queue.discovery;
+
+/**
+ * Assigns partitions to servers with rendezvous (highest random weight) hashing: every partition goes to the
+ * server with the highest weight for it, so adding or removing a server moves only the partitions that this
+ * server gains or loses instead of reshuffling the whole queue like the modulo assignment does.
+ * <p>
+ * Each server is limited to the fair share of partitions ({@code ceil(partitions / servers)}), otherwise
+ * a queue with a few partitions may end up on a few servers. When the preferred server is full, the partition
+ * goes to the server with the next highest weight, which keeps the movement on scale events close to the
+ * minimal {@code 1 / servers} share.
+ */
+public final class RendezvousPartitionAssignment {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private RendezvousPartitionAssignment() {
+    }
+
+    /**
+     * @param serverHashes stable hashes of the server ids
+     * @param seed         hash of the queue, so that queues with the same number of partitions are spread differently
+     * @param partitions   number of partitions of the queue
+     * @return index of the responsible server for every partition
+     */
+    public static int[] assign(long[] serverHashes, long seed, int partitions) {
+        int serversCount = serverHashes.length;
+        if (serversCount == 0) {
+            throw new IllegalArgumentException("No servers to assign partitions to");
+        }
+        int maxLoad = (partitions + serversCount - 1) / serversCount;
+        int[] load = new int[serversCount];
+        int[] result = new int[partitions];
+        for (int partition = 0; partition < partitions; partition++) {
+            long partitionHash = mix(seed + partition * GOLDEN_GAMMA);
+            int selected = -1;
+            long selectedWeight = 0;
+            for (int server = 0; server < serversCount; server++) {
+                if (load[server] < maxLoad) {
+                    long weight = mix(serverHashes[server] ^ partitionHash);
+                    if (selected < 0 || weight > selectedWeight) {
+                        selected = server;
+                        selectedWeight = weight;
+                    }
+                }
+            }
+            load[selected]++;
+            result[partition] = selected;
+        }
+        return result;
+    }
+
+    // MurmurHash3 64-bit finalizer
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93fe53ba6d3L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+}
@@ -17,10 +17,14 @@ package org.winstarcloud.server.queue.kafka;
 
 import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
 import org.springframework.util.StopWatch;
 import org.winstarcloud.server.queue.TbQueueAdmin;
 import org.winstarcloud.server.queue.TbQueueMsg;
@@ -28,10 +32,16 @@ import org.winstarcloud.server.queue.common.AbstractTbQueueConsumerTemplate;
 
 import java.io.IOException;
 import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 /**
  * Created by ashvayka on 24.09.18.
@@ -40,16 +50,22 @@ import java.util.Properties;
 public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQueueConsumerTemplate<ConsumerRecord<String, byte[]>, T> {
 
     private final TbQueueAdmin admin;
-    private final KafkaConsumer<String, byte[]> consumer;
+    private final Consumer<String, byte[]> consumer;
     private final TbKafkaDecoder<T> decoder;
 
     private final TbKafkaConsumerStatsService statsService;
     private final String groupId;
 
+    // next offsets to commit for each non-empty poll that is not committed yet, guarded by the consumer lock.
+    // Only tracked when poll commits are enabled
+    private final boolean pollCommitsEnabled;
+    private final Deque<Map<TopicPartition, OffsetAndMetadata>> uncommittedPolls = new ArrayDeque<>();
+
     @Builder
     private TbKafkaConsumerTemplate(TbKafkaSettings settings, TbKafkaDecoder<T> decoder,
                                     String clientId, String groupId, String topic,
-                                    TbQueueAdmin admin, TbKafkaConsumerStatsService statsService) {
+                                    TbQueueAdmin admin, TbKafkaConsumerStatsService statsService,
+                                    boolean pollCommitsEnabled) {
         super(topic);
         Properties props = settings.toConsumerProps(topic);
         props.put(ConsumerConfig.CLIENT_ID_CONFIG, clientId);
@@ -67,13 +83,39 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
         this.admin = admin;
         this.consumer = new KafkaConsumer<>(props);
         this.decoder = decoder;
+        this.pollCommitsEnabled = pollCommitsEnabled;
+    }
+
+    TbKafkaConsumerTemplate(Consumer<String, byte[]> consumer, TbKafkaDecoder<T> decoder, String topic,
+                            TbQueueAdmin admin, boolean pollCommitsEnabled) {
+        super(topic);
+        this.consumer = consumer;
+        this.decoder = decoder;
+        this.admin = admin;
+        this.statsService = null;
+        this.groupId = null;
+        this.pollCommitsEnabled = pollCommitsEnabled;
     }
 
     @Override
     protected void doSubscribe(List<String> topicNames) {
         if (!topicNames.isEmpty()) {
             topicNames.forEach(admin::createTopicIfNotExists);
-            consumer.subscribe(topicNames);
+            consumer.subscribe(topicNames, new ConsumerRebalanceListener() {
+                @Override
+                public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                    onPartitionsUnassigned(partitions);
+                }
+
+                @Override
+                public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                }
+
+                @Override
+                public void onPartitionsLost(Collection<TopicPartition> partitions) {
+                    onPartitionsUnassigned(partitions);
+                }
+            });
         } else {
             log.info("unsubscribe due to empty topic list");
             consumer.unsubscribe();
@@ -97,6 +139,14 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
         } else {
             List<ConsumerRecord<String, byte[]>> recordList = new ArrayList<>(256);
             records.forEach(recordList::add);
+            if (pollCommitsEnabled) {
+                Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+                for (TopicPartition partition : records.partitions()) {
+                    List<ConsumerRecord<String, byte[]>> partitionRecords = records.records(partition);
+                    offsets.put(partition, new OffsetAndMetadata(partitionRecords.get(partitionRecords.size() - 1).offset() + 1));
+                }
+                uncommittedPolls.add(offsets);
+            }
             return recordList;
         }
     }
@@ -109,6 +159,44 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
     @Override
     protected void doCommit() {
         consumer.commitSync();
+        uncommittedPolls.clear();
+    }
+
+    @Override
+    protected void doCommitOldestPoll() {
+        if (!pollCommitsEnabled) {
+            doCommit();
+            return;
+        }
+        Map<TopicPartition, OffsetAndMetadata> offsets = uncommittedPolls.poll();
+        if (offsets != null) {
+            // the partitions could have been reassigned while the records were processed
+            offsets.keySet().retainAll(consumer.assignment());
+            if (!offsets.isEmpty()) {
+                consumer.commitSync(offsets);
+            }
+        }
+    }
+
+    @Override
+    protected void doDiscardLastPoll() {
+        uncommittedPolls.pollLast();
+    }
+
+    @Override
+    public boolean isPollCommitSupported() {
+        return pollCommitsEnabled;
+    }
+
+    /*
+     * Drops the offsets of the partitions that are no longer assigned to this consumer. The polls themselves are kept,
+     * so that every commitOldestPoll() call still corresponds to the poll it was made for.
+     */
+    void onPartitionsUnassigned(Collection<TopicPartition> partitions) {
+        if (!partitions.isEmpty()) {
+            Set<TopicPartition> revoked = Set.copyOf(partitions);
+            uncommittedPolls.forEach(offsets -> offsets.keySet().removeAll(revoked));
+        }
     }
 
     @Override
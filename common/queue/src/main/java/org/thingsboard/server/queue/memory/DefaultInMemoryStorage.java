@@ -16,6 +16,7 @@
 package org.winstarcloud.server.queue.memory;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.stereotype.Component;
 import org.winstarcloud.server.queue.TbQueueMsg;
 
@@ -30,6 +31,7 @@ import java.util.concurrent.LinkedBlockingQueue;
 
 @Component
 @Slf4j
+@ConditionalOnExpression("'${queue.type:null}'!='in-memory-persistent'")
 public final class DefaultInMemoryStorage implements InMemoryStorage {
     private final ConcurrentHashMap<String, BlockingQueue<TbQueueMsg>> storage = new ConcurrentHashMap<>();
 
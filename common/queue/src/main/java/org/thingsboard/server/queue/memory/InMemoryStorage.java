@@ -16,6 +16,7 @@
 package org.winstarcloud.server.queue.memory;
 
 import org.winstarcloud.server.queue.TbQueueMsg;
+import org.winstarcloud.server.queue.TbQueueMsgDecoder;
 
 import java.util.List;
 
@@ -31,4 +32,17 @@ public interface InMemoryStorage {
 
     <T extends TbQueueMsg> List<T> get(String topic) throws InterruptedException;
 
+    /**
+     * Polls the topic and decodes the messages if the storage keeps them in serialized form.
+     */
+    default <T extends TbQueueMsg> List<T> get(String topic, TbQueueMsgDecoder<T> decoder) throws InterruptedException {
+        return get(topic);
+    }
+
+    /**
+     * Marks all messages polled from the topic so far as processed.
+     */
+    default void commit(String topic) {
+    }
+
 }
@@ -19,6 +19,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.winstarcloud.server.common.msg.queue.TopicPartitionInfo;
 import org.winstarcloud.server.queue.TbQueueConsumer;
 import org.winstarcloud.server.queue.TbQueueMsg;
+import org.winstarcloud.server.queue.TbQueueMsgDecoder;
 
 import java.util.Collections;
 import java.util.List;
@@ -28,13 +29,19 @@ import java.util.stream.Collectors;
 @Slf4j
 public class InMemoryTbQueueConsumer<T extends TbQueueMsg> implements TbQueueConsumer<T> {
     private final InMemoryStorage storage;
+    private final TbQueueMsgDecoder<T> decoder;
     private volatile Set<TopicPartitionInfo> partitions;
     private volatile boolean stopped;
     private volatile boolean subscribed;
 
     public InMemoryTbQueueConsumer(InMemoryStorage storage, String topic) {
+        this(storage, topic, null);
+    }
+
+    public InMemoryTbQueueConsumer(InMemoryStorage storage, String topic, TbQueueMsgDecoder<T> decoder) {
         this.storage = storage;
         this.topic = topic;
+        this.decoder = decoder;
         stopped = false;
     }
 
@@ -76,7 +83,7 @@ public class InMemoryTbQueueConsumer<T extends TbQueueMsg> implements TbQueueCon
                     .stream()
                     .map(tpi -> {
                         try {
-                            return storage.get(tpi.getFullTopicName());
+                            return pollTopic(tpi.getFullTopicName());
                         } catch (InterruptedException e) {
                             if (!stopped) {
                                 log.error("Queue was interrupted.", e);
@@ -100,8 +107,15 @@ public class InMemoryTbQueueConsumer<T extends TbQueueMsg> implements TbQueueCon
         return Collections.emptyList();
     }
 
+    private List<T> pollTopic(String fullTopicName) throws InterruptedException {
+        return decoder != null ? storage.get(fullTopicName, decoder) : storage.get(fullTopicName);
+    }
+
     @Override
     public void commit() {
+        if (subscribed) {
+            partitions.forEach(tpi -> storage.commit(tpi.getFullTopicName()));
+        }
     }
 
     @Override
@@ -0,0 +1,286 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.queue.memory;
+
+import lombok.Data;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.winstarcloud.server.queue.TbQueueMsg;
+import org.winstarcloud.server.queue.TbQueueMsgHeaders;
+import org.winstarcloud.server.queue.common.DefaultTbQueueMsgHeaders;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of a single topic stored in memory-mapped segment files.
+ * <p>
+ * Each segment file is named after the offset of its first record and contains records in the format
+ * {@code [int length][long keyMsb][long keyLsb][int headersCount]([short nameLength][name][int valueLength][value])*[int dataLength][data]}.
+ * A zero length marks the end of the written data, so the length of a record is written only after its payload.
+ * The committed consumer position is kept in a separate mapped file and segments are deleted once fully committed.
+ * <p>
+ * Not thread safe, callers must synchronize on the log.
+ */
+@Slf4j
+class MappedTopicLog implements Closeable {
+
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String OFFSET_FILE = "consumer.offset";
+    private static final int OFFSET_FILE_SIZE = 3 * Long.BYTES;
+    private static final int LENGTH_SIZE = Integer.BYTES;
+
+    private final String topic;
+    private final Path dir;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final FileChannel offsetChannel;
+    private final MappedByteBuffer offsetBuffer;
+
+    private Segment writeSegment;
+    private int writePosition;
+    @Getter
+    private long writeOffset;
+
+    private Segment readSegment;
+    private int readPosition;
+    @Getter
+    private long readOffset;
+
+    MappedTopicLog(String topic, Path dir, int segmentSize, int maxSegments) throws IOException {
+        this.topic = topic;
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        Files.createDirectories(dir);
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String fileName = file.getFileName().toString();
+                if (fileName.endsWith(SEGMENT_SUFFIX)) {
+                    long baseOffset = Long.parseLong(fileName.substring(0, fileName.length() - SEGMENT_SUFFIX.length()));
+                    segments.put(baseOffset, new Segment(baseOffset, file, segmentSize));
+                }
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.put(0L, new Segment(0L, segmentPath(0L), segmentSize));
+        }
+        recoverWritePosition();
+
+        offsetChannel = FileChannel.open(dir.resolve(OFFSET_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        offsetBuffer = offsetChannel.map(FileChannel.MapMode.READ_WRITE, 0, OFFSET_FILE_SIZE);
+        recoverReadPosition();
+        log.info("[{}] Opened topic log with {} segment(s), read offset [{}], write offset [{}]", topic, segments.size(), readOffset, writeOffset);
+    }
+
+    boolean append(TbQueueMsg msg) throws IOException {
+        Map<String, byte[]> headers = msg.getHeaders() != null ? msg.getHeaders().getData() : Collections.emptyMap();
+        byte[] data = msg.getData() != null ? msg.getData() : new byte[0];
+        List<byte[]> headerNames = new ArrayList<>(headers.size());
+        int recordSize = 2 * Long.BYTES + Integer.BYTES + Integer.BYTES + data.length;
+        for (Map.Entry<String, byte[]> header : headers.entrySet()) {
+            byte[] name = header.getKey().getBytes(StandardCharsets.UTF_8);
+            headerNames.add(name);
+            recordSize += Short.BYTES + name.length + Integer.BYTES + header.getValue().length;
+        }
+        if (LENGTH_SIZE + recordSize + LENGTH_SIZE > segmentSize) {
+            log.warn("[{}] Message of {} bytes exceeds the segment size {}", topic, recordSize, segmentSize);
+            return false;
+        }
+        if (writePosition + LENGTH_SIZE + recordSize + LENGTH_SIZE > segmentSize) {
+            if (segments.size() >= maxSegments) {
+                return false;
+            }
+            writeSegment = new Segment(writeOffset, segmentPath(writeOffset), segmentSize);
+            segments.put(writeOffset, writeSegment);
+            writePosition = 0;
+        }
+        MappedByteBuffer buffer = writeSegment.getBuffer();
+        int position = writePosition + LENGTH_SIZE;
+        UUID key = msg.getKey();
+        buffer.putLong(position, key.getMostSignificantBits());
+        position += Long.BYTES;
+        buffer.putLong(position, key.getLeastSignificantBits());
+        position += Long.BYTES;
+        buffer.putInt(position, headers.size());
+        position += Integer.BYTES;
+        int headerIdx = 0;
+        for (byte[] value : headers.values()) {
+            byte[] name = headerNames.get(headerIdx++);
+            buffer.putShort(position, (short) name.length);
+            position += Short.BYTES;
+            buffer.put(position, name);
+            position += name.length;
+            buffer.putInt(position, value.length);
+            position += Integer.BYTES;
+            buffer.put(position, value);
+            position += value.length;
+        }
+        buffer.putInt(position, data.length);
+        position += Integer.BYTES;
+        buffer.put(position, data);
+        buffer.putInt(writePosition, recordSize);
+        writePosition += LENGTH_SIZE + recordSize;
+        writeOffset++;
+        return true;
+    }
+
+    List<TbQueueMsg> read(int maxRecords) {
+        if (readOffset >= writeOffset) {
+            return Collections.emptyList();
+        }
+        List<TbQueueMsg> result = new ArrayList<>((int) Math.min(maxRecords, writeOffset - readOffset));
+        while (result.size() < maxRecords && readOffset < writeOffset) {
+            MappedByteBuffer buffer = readSegment.getBuffer();
+            int length = readPosition + LENGTH_SIZE <= segmentSize ? buffer.getInt(readPosition) : 0;
+            if (length == 0) {
+                readSegment = segments.higherEntry(readSegment.getBaseOffset()).getValue();
+                readPosition = 0;
+                continue;
+            }
+            int position = readPosition + LENGTH_SIZE;
+            UUID key = new UUID(buffer.getLong(position), buffer.getLong(position + Long.BYTES));
+            position += 2 * Long.BYTES;
+            int headersCount = buffer.getInt(position);
+            position += Integer.BYTES;
+            DefaultTbQueueMsgHeaders headers = new DefaultTbQueueMsgHeaders();
+            for (int i = 0; i < headersCount; i++) {
+                byte[] name = new byte[buffer.getShort(position)];
+                position += Short.BYTES;
+                buffer.get(position, name);
+                position += name.length;
+                byte[] value = new byte[buffer.getInt(position)];
+                position += Integer.BYTES;
+                buffer.get(position, value);
+                position += value.length;
+                headers.put(new String(name, StandardCharsets.UTF_8), value);
+            }
+            byte[] data = new byte[buffer.getInt(position)];
+            position += Integer.BYTES;
+            buffer.get(position, data);
+            result.add(new PersistedTbQueueMsg(key, headers, data));
+            readPosition += LENGTH_SIZE + length;
+            readOffset++;
+        }
+        return result;
+    }
+
+    void commit() throws IOException {
+        offsetBuffer.putLong(Long.BYTES, readSegment.getBaseOffset());
+        offsetBuffer.putLong(2 * Long.BYTES, readPosition);
+        offsetBuffer.putLong(0, readOffset);
+        while (segments.firstKey() < readSegment.getBaseOffset()) {
+            Segment segment = segments.pollFirstEntry().getValue();
+            segment.close();
+            Files.deleteIfExists(segment.getPath());
+            log.debug("[{}] Deleted fully consumed segment {}", topic, segment.getPath());
+        }
+    }
+
+    long getLag() {
+        return writeOffset - readOffset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        offsetBuffer.force();
+        offsetChannel.close();
+        for (Segment segment : segments.values()) {
+            segment.getBuffer().force();
+            segment.close();
+        }
+        segments.clear();
+    }
+
+    private void recoverWritePosition() {
+        writeSegment = segments.lastEntry().getValue();
+        MappedByteBuffer buffer = writeSegment.getBuffer();
+        int position = 0;
+        long offset = writeSegment.getBaseOffset();
+        while (position + LENGTH_SIZE <= segmentSize) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + LENGTH_SIZE + length > segmentSize) {
+                break;
+            }
+            position += LENGTH_SIZE + length;
+            offset++;
+        }
+        writePosition = position;
+        writeOffset = offset;
+    }
+
+    private void recoverReadPosition() {
+        long committedOffset = offsetBuffer.getLong(0);
+        long committedSegment = offsetBuffer.getLong(Long.BYTES);
+        long committedPosition = offsetBuffer.getLong(2 * Long.BYTES);
+        Segment segment = segments.get(committedSegment);
+        if (segment != null && committedOffset <= writeOffset && committedPosition < segmentSize) {
+            readSegment = segment;
+            readPosition = (int) committedPosition;
+            readOffset = committedOffset;
+        } else {
+            readSegment = segments.firstEntry().getValue();
+            readPosition = 0;
+            readOffset = readSegment.getBaseOffset();
+        }
+    }
+
+    private Path segmentPath(long baseOffset) {
+        return dir.resolve(String.format("%020d", baseOffset) + SEGMENT_SUFFIX);
+    }
+
+    @Getter
+    private static class Segment implements Closeable {
+        private final long baseOffset;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        Segment(long baseOffset, Path path, int segmentSize) throws IOException {
+            this.baseOffset = baseOffset;
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    @Data
+    static class PersistedTbQueueMsg implements TbQueueMsg {
+        private final UUID key;
+        private final TbQueueMsgHeaders headers;
+        private final byte[] data;
+    }
+
+}
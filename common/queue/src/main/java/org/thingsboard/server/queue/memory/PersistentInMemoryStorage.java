@@ -0,0 +1,183 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.queue.memory;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+import org.winstarcloud.server.queue.TbQueueMsg;
+import org.winstarcloud.server.queue.TbQueueMsgDecoder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link InMemoryStorage} that keeps every topic in an append-only log of memory-mapped segment files.
+ * Messages survive a restart of the node until the consumer commits them and the heap usage does not depend on the queue lag.
+ */
+@Component
+@Slf4j
+@ConditionalOnExpression("'${queue.type:null}'=='in-memory-persistent'")
+public class PersistentInMemoryStorage implements InMemoryStorage {
+
+    private final ConcurrentHashMap<String, MappedTopicLog> logs = new ConcurrentHashMap<>();
+
+    @Value("${queue.in_memory.persistent.dir:./queue-data}")
+    private String dir;
+    @Value("${queue.in_memory.persistent.segment_size:67108864}")
+    private int segmentSize;
+    @Value("${queue.in_memory.persistent.max_segments_per_topic:16}")
+    private int maxSegmentsPerTopic;
+    @Value("${queue.in_memory.persistent.max_poll_records:1000}")
+    private int maxPollRecords;
+
+    private Path root;
+
+    public PersistentInMemoryStorage() {
+    }
+
+    PersistentInMemoryStorage(String dir, int segmentSize, int maxSegmentsPerTopic, int maxPollRecords) {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.maxSegmentsPerTopic = maxSegmentsPerTopic;
+        this.maxPollRecords = maxPollRecords;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(dir).toAbsolutePath();
+        Files.createDirectories(root);
+        log.info("Persistent in-memory queue storage directory: {}", root);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        logs.forEach((topic, topicLog) -> {
+            synchronized (topicLog) {
+                try {
+                    topicLog.close();
+                } catch (IOException e) {
+                    log.warn("[{}] Failed to close topic log", topic, e);
+                }
+            }
+        });
+        logs.clear();
+    }
+
+    @Override
+    public void printStats() {
+        if (log.isDebugEnabled()) {
+            logs.forEach((topic, topicLog) -> {
+                long lag = getLag(topicLog);
+                if (lag > 0) {
+                    log.debug("[{}] Queue Size [{}]", topic, lag);
+                }
+            });
+        }
+    }
+
+    @Override
+    public int getLagTotal() {
+        return (int) logs.values().stream().mapToLong(this::getLag).sum();
+    }
+
+    @Override
+    public int getLag(String topic) {
+        MappedTopicLog topicLog = logs.get(topic);
+        return topicLog != null ? (int) getLag(topicLog) : 0;
+    }
+
+    @Override
+    public boolean put(String topic, TbQueueMsg msg) {
+        MappedTopicLog topicLog = getOrCreateLog(topic);
+        synchronized (topicLog) {
+            try {
+                return topicLog.append(msg);
+            } catch (IOException e) {
+                log.error("[{}] Failed to append message", topic, e);
+                return false;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T extends TbQueueMsg> List<T> get(String topic) {
+        return (List<T>) read(topic);
+    }
+
+    @Override
+    public <T extends TbQueueMsg> List<T> get(String topic, TbQueueMsgDecoder<T> decoder) {
+        List<TbQueueMsg> msgs = read(topic);
+        List<T> result = new ArrayList<>(msgs.size());
+        for (TbQueueMsg msg : msgs) {
+            try {
+                result.add(decoder.decode(msg));
+            } catch (InvalidProtocolBufferException e) {
+                log.error("[{}] Failed to decode message with key [{}]", topic, msg.getKey(), e);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void commit(String topic) {
+        MappedTopicLog topicLog = logs.get(topic);
+        if (topicLog != null) {
+            synchronized (topicLog) {
+                try {
+                    topicLog.commit();
+                } catch (IOException e) {
+                    log.warn("[{}] Failed to commit topic log", topic, e);
+                }
+            }
+        }
+    }
+
+    private List<TbQueueMsg> read(String topic) {
+        MappedTopicLog topicLog = getOrCreateLog(topic);
+        synchronized (topicLog) {
+            return topicLog.read(maxPollRecords);
+        }
+    }
+
+    private long getLag(MappedTopicLog topicLog) {
+        synchronized (topicLog) {
+            return topicLog.getLag();
+        }
+    }
+
+    private MappedTopicLog getOrCreateLog(String topic) {
+        return logs.computeIfAbsent(topic, t -> {
+            try {
+                return new MappedTopicLog(t, root.resolve(t.replaceAll("[^A-Za-z0-9._-]", "_")), segmentSize, maxSegmentsPerTopic);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open log of topic " + t, e);
+            }
+        });
+    }
+
+}
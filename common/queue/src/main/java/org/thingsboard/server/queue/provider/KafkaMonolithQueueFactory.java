@@ -16,6 +16,7 @@
 package org.winstarcloud.server.queue.provider;
 
 import com.google.protobuf.util.JsonFormat;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.context.annotation.Bean;
 import org.springframework.stereotype.Component;
@@ -88,6 +89,9 @@ public class KafkaMonolithQueueFactory implements TbCoreQueueFactory, TbRuleEngi
 
     private final AtomicLong consumerCount = new AtomicLong();
 
+    @Value("${queue.rule-engine.pipeline.enabled:false}")
+    private boolean ruleEnginePipelineEnabled;
+
     public KafkaMonolithQueueFactory(TopicService topicService, TbKafkaSettings kafkaSettings,
                                      TbServiceInfoProvider serviceInfoProvider,
                                      TbQueueCoreSettings coreSettings,
@@ -206,6 +210,7 @@ public class KafkaMonolithQueueFactory implements TbCoreQueueFactory, TbRuleEngi
         consumerBuilder.decoder(msg -> new TbProtoQueueMsg<>(msg.getKey(), ToRuleEngineMsg.parseFrom(msg.getData()), msg.getHeaders()));
         consumerBuilder.admin(ruleEngineAdmin);
         consumerBuilder.statsService(consumerStatsService);
+        consumerBuilder.pollCommitsEnabled(ruleEnginePipelineEnabled);
         return consumerBuilder.build();
     }
 
@@ -0,0 +1,169 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.queue.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.winstarcloud.server.queue.TbQueueAdmin;
+import org.winstarcloud.server.queue.TbQueueMsg;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class TbKafkaConsumerTemplateTest {
+
+    private static final String TOPIC = "tb_rule_engine.main";
+    private static final TopicPartition TP0 = new TopicPartition(TOPIC, 0);
+    private static final TopicPartition TP1 = new TopicPartition(TOPIC, 1);
+
+    private final RecordingConsumer kafkaConsumer = new RecordingConsumer();
+    private TbKafkaConsumerTemplate<TbQueueMsg> consumer;
+
+    @AfterEach
+    void tearDown() {
+        if (consumer != null) {
+            consumer.unsubscribe();
+        }
+    }
+
+    @Test
+    void commitOldestPollCommitsPollsInOrder() {
+        createConsumer(true);
+
+        addRecord(TP0, 0, "a");
+        addRecord(TP0, 1, "b");
+        addRecord(TP1, 0, "c");
+        assertThat(consumer.poll(10)).hasSize(3);
+        addRecord(TP0, 2, "d");
+        assertThat(consumer.poll(10)).hasSize(1);
+
+        consumer.commitOldestPoll();
+        assertThat(kafkaConsumer.commits).containsExactly(Map.of(TP0, new OffsetAndMetadata(2), TP1, new OffsetAndMetadata(1)));
+
+        consumer.commitOldestPoll();
+        assertThat(kafkaConsumer.commits).last().isEqualTo(Map.of(TP0, new OffsetAndMetadata(3)));
+
+        consumer.commitOldestPoll();
+        assertThat(kafkaConsumer.commits).hasSize(2);
+        assertThat(kafkaConsumer.fullCommits).isZero();
+    }
+
+    @Test
+    void failedDecodeDoesNotLeaveStalePoll() {
+        createConsumer(true);
+
+        addRecord(TP0, 0, "a");
+        assertThat(consumer.poll(10)).hasSize(1);
+        addRecord(TP0, 1, "bad");
+        assertThatThrownBy(() -> consumer.poll(10)).isInstanceOf(RuntimeException.class);
+        addRecord(TP0, 2, "c");
+        assertThat(consumer.poll(10)).hasSize(1);
+
+        consumer.commitOldestPoll();
+        consumer.commitOldestPoll();
+        assertThat(kafkaConsumer.commits).containsExactly(
+                Map.of(TP0, new OffsetAndMetadata(1)),
+                Map.of(TP0, new OffsetAndMetadata(3)));
+    }
+
+    @Test
+    void revokedPartitionsAreNotCommitted() {
+        createConsumer(true);
+
+        addRecord(TP0, 0, "a");
+        addRecord(TP1, 0, "b");
+        assertThat(consumer.poll(10)).hasSize(2);
+        addRecord(TP1, 1, "c");
+        assertThat(consumer.poll(10)).hasSize(1);
+
+        kafkaConsumer.rebalance(List.of(TP0));
+        consumer.onPartitionsUnassigned(List.of(TP1));
+
+        consumer.commitOldestPoll();
+        assertThat(kafkaConsumer.commits).containsExactly(Map.of(TP0, new OffsetAndMetadata(1)));
+
+        // the second poll only had records of the revoked partition, so there is nothing left to commit
+        consumer.commitOldestPoll();
+        assertThat(kafkaConsumer.commits).hasSize(1);
+    }
+
+    @Test
+    void offsetsAreNotTrackedWhenPollCommitsAreDisabled() {
+        createConsumer(false);
+        assertThat(consumer.isPollCommitSupported()).isFalse();
+
+        addRecord(TP0, 0, "a");
+        assertThat(consumer.poll(10)).hasSize(1);
+
+        consumer.commitOldestPoll();
+        assertThat(kafkaConsumer.commits).isEmpty();
+        assertThat(kafkaConsumer.fullCommits).isEqualTo(1);
+    }
+
+    private void createConsumer(boolean pollCommitsEnabled) {
+        consumer = new TbKafkaConsumerTemplate<>(kafkaConsumer, msg -> {
+            if ("bad".equals(new String(msg.getData(), StandardCharsets.UTF_8))) {
+                throw new IOException("Failed to parse message");
+            }
+            return msg;
+        }, TOPIC, mock(TbQueueAdmin.class), pollCommitsEnabled);
+        consumer.subscribe();
+        assertThat(consumer.poll(10)).isEmpty();
+        kafkaConsumer.updateBeginningOffsets(Map.of(TP0, 0L, TP1, 0L));
+        kafkaConsumer.rebalance(List.of(TP0, TP1));
+    }
+
+    private void addRecord(TopicPartition partition, long offset, String data) {
+        kafkaConsumer.addRecord(new ConsumerRecord<>(partition.topic(), partition.partition(), offset,
+                UUID.randomUUID().toString(), data.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static class RecordingConsumer extends MockConsumer<String, byte[]> {
+
+        private final List<Map<TopicPartition, OffsetAndMetadata>> commits = new ArrayList<>();
+        private int fullCommits;
+
+        RecordingConsumer() {
+            super(OffsetResetStrategy.EARLIEST);
+        }
+
+        @Override
+        public synchronized void commitSync() {
+            fullCommits++;
+        }
+
+        @Override
+        public synchronized void commitSync(Map<TopicPartition, OffsetAndMetadata> offsets) {
+            commits.add(Map.copyOf(offsets));
+            super.commitSync(offsets);
+        }
+
+    }
+
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.queue.memory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.winstarcloud.server.queue.TbQueueMsg;
+import org.winstarcloud.server.queue.common.DefaultTbQueueMsgHeaders;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PersistentInMemoryStorageTest {
+
+    static final int SEGMENT_SIZE = 4096;
+    static final int MAX_POLL_SIZE = 100;
+    final String topic = "tb_rule_engine.main.0";
+
+    @TempDir
+    Path dir;
+
+    PersistentInMemoryStorage storage;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        storage = newStorage(16);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        storage.destroy();
+    }
+
+    @Test
+    public void givenMessages_whenPoll_thenReturnInOrderWithHeaders() {
+        putMessages(0, 250);
+        assertThat(storage.getLag(topic)).isEqualTo(250);
+
+        List<TbQueueMsg> msgs = storage.get(topic);
+        assertThat(msgs).hasSize(MAX_POLL_SIZE);
+        assertThat(getIndexes(msgs)).isEqualTo(range(0, MAX_POLL_SIZE));
+        assertThat(new String(msgs.get(7).getHeaders().get("idx"), StandardCharsets.UTF_8)).isEqualTo("7");
+
+        assertThat(getIndexes(storage.get(topic))).isEqualTo(range(100, 200));
+        assertThat(getIndexes(storage.get(topic))).isEqualTo(range(200, 250));
+        assertThat(storage.get(topic)).isEmpty();
+        assertThat(storage.getLagTotal()).isEqualTo(0);
+    }
+
+    @Test
+    public void givenUncommittedMessages_whenRestart_thenRedeliverFromCommittedOffset() throws IOException {
+        putMessages(0, 150);
+        storage.get(topic);
+        storage.commit(topic);
+        storage.get(topic);
+
+        storage.destroy();
+        storage = newStorage(16);
+
+        assertThat(storage.getLag(topic)).isEqualTo(50);
+        assertThat(getIndexes(storage.get(topic))).isEqualTo(range(100, 150));
+    }
+
+    @Test
+    public void givenMaxSegmentsReached_whenPut_thenRejectUntilCommitted() throws IOException {
+        storage.destroy();
+        storage = newStorage(2);
+
+        int accepted = 0;
+        while (storage.put(topic, newMsg(accepted))) {
+            accepted++;
+        }
+        assertThat(accepted).isGreaterThan(0);
+
+        while (!storage.get(topic).isEmpty()) {
+            storage.commit(topic);
+        }
+        storage.commit(topic);
+        assertThat(storage.put(topic, newMsg(accepted))).isTrue();
+    }
+
+    private PersistentInMemoryStorage newStorage(int maxSegments) throws IOException {
+        PersistentInMemoryStorage storage = new PersistentInMemoryStorage(dir.toString(), SEGMENT_SIZE, maxSegments, MAX_POLL_SIZE);
+        storage.init();
+        return storage;
+    }
+
+    private void putMessages(int from, int to) {
+        for (int i = from; i < to; i++) {
+            assertThat(storage.put(topic, newMsg(i))).isTrue();
+        }
+    }
+
+    private static TbQueueMsg newMsg(int idx) {
+        DefaultTbQueueMsgHeaders headers = new DefaultTbQueueMsgHeaders();
+        headers.put("idx", Integer.toString(idx).getBytes(StandardCharsets.UTF_8));
+        return new MappedTopicLog.PersistedTbQueueMsg(new UUID(0, idx), headers, ("data-" + idx).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<Integer> getIndexes(List<TbQueueMsg> msgs) {
+        return msgs.stream().map(msg -> (int) msg.getKey().getLeastSignificantBits()).collect(Collectors.toList());
+    }
+
+    private static List<Integer> range(int from, int to) {
+        return IntStream.range(from, to).boxed().collect(Collectors.toList());
+    }
+
+}
@@ -34,6 +34,9 @@ import org.winstarcloud.server.common.adaptor.JsonConverter;
 import org.winstarcloud.server.gen.transport.TransportProtos;
 import org.winstarcloud.server.transport.coap.CoapTransportResource;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -43,9 +46,8 @@ public class JsonCoapAdaptor implements CoapTransportAdaptor {
 
     @Override
     public TransportProtos.PostTelemetryMsg convertToPostTelemetry(UUID sessionId, Request inbound, Descriptors.Descriptor telemetryMsgDescriptor) throws AdaptorException {
-        String payload = validatePayload(sessionId, inbound, false);
         try {
-            return JsonConverter.convertToTelemetryProto(JsonParser.parseString(payload));
+            return JsonConverter.convertToTelemetryProto(new InputStreamReader(new ByteArrayInputStream(inbound.getPayload()), StandardCharsets.UTF_8));
         } catch (IllegalStateException | JsonSyntaxException ex) {
             throw new AdaptorException(ex);
         }
@@ -69,6 +69,7 @@ import org.winstarcloud.server.gen.transport.TransportProtos.ToServerRpcResponse
 import org.winstarcloud.server.gen.transport.TransportProtos.ValidateDeviceTokenRequestMsg;
 
 import jakarta.servlet.http.HttpServletRequest;
+import java.io.StringReader;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
@@ -205,7 +206,7 @@ public class DeviceApiController implements TbTransportService {
         transportContext.getTransportService().process(DeviceTransportType.DEFAULT, ValidateDeviceTokenRequestMsg.newBuilder().setToken(deviceToken).build(),
                 new DeviceAuthCallback(transportContext, responseWriter, sessionInfo -> {
                     TransportService transportService = transportContext.getTransportService();
-                    transportService.process(sessionInfo, JsonConverter.convertToTelemetryProto(JsonParser.parseString(json)),
+                    transportService.process(sessionInfo, JsonConverter.convertToTelemetryProto(new StringReader(json)),
                             new HttpOkCallback(responseWriter));
                 }));
         return responseWriter;
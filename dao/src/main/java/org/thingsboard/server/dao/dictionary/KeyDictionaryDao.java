@@ -15,11 +15,23 @@
  */
 package org.winstarcloud.server.dao.dictionary;
 
+import java.util.Collection;
+import java.util.Map;
 
 public interface KeyDictionaryDao {
 
     Integer getOrSaveKeyId(String strKey);
 
+    /**
+     * Resolves the ids of all keys, loading the keys missing in the local dictionary with a single query.
+     */
+    Map<String, Integer> getOrSaveKeyIds(Collection<String> strKeys);
+
     String getKey(Integer keyId);
 
+    /**
+     * Adds the keys created by other services to the local dictionary without accessing the database.
+     */
+    void addKeys(Map<String, Integer> keyIds);
+
 }
@@ -0,0 +1,128 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.dao.sql;
+
+import lombok.extern.slf4j.Slf4j;
+import org.winstarcloud.common.util.WinstarCloudThreadFactory;
+import org.winstarcloud.server.common.stats.MessagesStats;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Polling loop shared by the SQL write-behind queues: waits up to {@code maxDelay} for the first item,
+ * drains up to {@code batchSize} items, saves their elements with one call of the save function and completes the futures.
+ *
+ * @param <T> type of the items in the queue
+ * @param <E> type of the saved entities
+ */
+@Slf4j
+public abstract class AbstractTbSqlPollingQueue<T, E> {
+
+    protected final BlockingQueue<T> queue = new LinkedBlockingQueue<>();
+    protected final TbSqlBlockingQueueParams params;
+    protected final MessagesStats stats;
+
+    private ExecutorService executor;
+
+    protected AbstractTbSqlPollingQueue(TbSqlBlockingQueueParams params, MessagesStats stats) {
+        this.params = params;
+        this.stats = stats;
+    }
+
+    /**
+     * Adds the elements to save for the polled items. Items that have nothing to save are skipped.
+     */
+    protected abstract void resolveElements(List<T> items, List<TbSqlQueueElement<E>> elements);
+
+    protected void startPolling(Consumer<List<E>> saveFunction, Comparator<E> batchUpdateComparator, int index) {
+        executor = Executors.newSingleThreadExecutor(WinstarCloudThreadFactory.forName("sql-queue-" + index + "-" + params.getLogName().toLowerCase()));
+        executor.submit(() -> {
+            String logName = params.getLogName();
+            int batchSize = params.getBatchSize();
+            long maxDelay = params.getMaxDelay();
+            final List<T> items = new ArrayList<>(batchSize);
+            final List<TbSqlQueueElement<E>> elements = new ArrayList<>(batchSize);
+            final List<E> entities = new ArrayList<>(batchSize);
+            while (!Thread.interrupted()) {
+                try {
+                    long currentTs = System.currentTimeMillis();
+                    T item = queue.poll(maxDelay, TimeUnit.MILLISECONDS);
+                    if (item == null) {
+                        continue;
+                    }
+                    items.add(item);
+                    queue.drainTo(items, batchSize - 1);
+                    boolean fullPack = items.size() == batchSize;
+                    resolveElements(items, elements);
+                    if (!elements.isEmpty()) {
+                        for (TbSqlQueueElement<E> element : elements) {
+                            entities.add(element.getEntity());
+                        }
+                        if (log.isDebugEnabled()) {
+                            log.debug("[{}] Going to save {} entities", logName, entities.size());
+                            log.trace("[{}] Going to save entities: {}", logName, entities);
+                        }
+                        if (params.isBatchSortEnabled()) {
+                            entities.sort(batchUpdateComparator);
+                        }
+                        saveFunction.accept(entities);
+                        elements.forEach(v -> v.getFuture().set(null));
+                        stats.incrementSuccessful(elements.size());
+                    }
+                    if (!fullPack) {
+                        long remainingDelay = maxDelay - (System.currentTimeMillis() - currentTs);
+                        if (remainingDelay > 0) {
+                            Thread.sleep(remainingDelay);
+                        }
+                    }
+                } catch (Throwable t) {
+                    if (t instanceof InterruptedException) {
+                        log.info("[{}] Queue polling was interrupted", logName);
+                        break;
+                    } else {
+                        log.error("[{}] Failed to save {} entities", logName, elements.size(), t);
+                        try {
+                            stats.incrementFailed(elements.size());
+                            elements.forEach(entityFutureWrapper -> entityFutureWrapper.getFuture().setException(t));
+                        } catch (Throwable th) {
+                            log.error("[{}] Failed to set future exception", logName, th);
+                        }
+                    }
+                } finally {
+                    items.clear();
+                    elements.clear();
+                    entities.clear();
+                }
+            }
+            log.info("[{}] Queue polling completed", logName);
+        });
+    }
+
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+}
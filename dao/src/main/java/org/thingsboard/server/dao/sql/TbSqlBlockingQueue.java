@@ -18,90 +18,23 @@ package org.winstarcloud.server.dao.sql;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import lombok.extern.slf4j.Slf4j;
-import org.winstarcloud.common.util.WinstarCloudThreadFactory;
 import org.winstarcloud.server.common.stats.MessagesStats;
 
-import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 @Slf4j
-public class TbSqlBlockingQueue<E> implements TbSqlQueue<E> {
-
-    private final BlockingQueue<TbSqlQueueElement<E>> queue = new LinkedBlockingQueue<>();
-    private final TbSqlBlockingQueueParams params;
-
-    private ExecutorService executor;
-    private final MessagesStats stats;
+public class TbSqlBlockingQueue<E> extends AbstractTbSqlPollingQueue<TbSqlQueueElement<E>, E> implements TbSqlQueue<E> {
 
     public TbSqlBlockingQueue(TbSqlBlockingQueueParams params, MessagesStats stats) {
-        this.params = params;
-        this.stats = stats;
+        super(params, stats);
     }
 
     @Override
     public void init(ScheduledLogExecutorComponent logExecutor, Consumer<List<E>> saveFunction, Comparator<E> batchUpdateComparator, int index) {
-        executor = Executors.newSingleThreadExecutor(WinstarCloudThreadFactory.forName("sql-queue-" + index + "-" + params.getLogName().toLowerCase()));
-        executor.submit(() -> {
-            String logName = params.getLogName();
-            int batchSize = params.getBatchSize();
-            long maxDelay = params.getMaxDelay();
-            final List<TbSqlQueueElement<E>> entities = new ArrayList<>(batchSize);
-            while (!Thread.interrupted()) {
-                try {
-                    long currentTs = System.currentTimeMillis();
-                    TbSqlQueueElement<E> attr = queue.poll(maxDelay, TimeUnit.MILLISECONDS);
-                    if (attr == null) {
-                        continue;
-                    } else {
-                        entities.add(attr);
-                    }
-                    queue.drainTo(entities, batchSize - 1);
-                    boolean fullPack = entities.size() == batchSize;
-                    if (log.isDebugEnabled()) {
-                        log.debug("[{}] Going to save {} entities", logName, entities.size());
-                        log.trace("[{}] Going to save entities: {}", logName, entities);
-                    }
-                    Stream<E> entitiesStream = entities.stream().map(TbSqlQueueElement::getEntity);
-                    saveFunction.accept(
-                            (params.isBatchSortEnabled() ? entitiesStream.sorted(batchUpdateComparator) : entitiesStream)
-                                    .collect(Collectors.toList())
-                    );
-                    entities.forEach(v -> v.getFuture().set(null));
-                    stats.incrementSuccessful(entities.size());
-                    if (!fullPack) {
-                        long remainingDelay = maxDelay - (System.currentTimeMillis() - currentTs);
-                        if (remainingDelay > 0) {
-                            Thread.sleep(remainingDelay);
-                        }
-                    }
-                } catch (Throwable t) {
-                    if (t instanceof InterruptedException) {
-                        log.info("[{}] Queue polling was interrupted", logName);
-                        break;
-                    } else {
-                        log.error("[{}] Failed to save {} entities", logName, entities.size(), t);
-                        try {
-                            stats.incrementFailed(entities.size());
-                            entities.forEach(entityFutureWrapper -> entityFutureWrapper.getFuture().setException(t));
-                        } catch (Throwable th) {
-                            log.error("[{}] Failed to set future exception", logName, th);
-                        }
-                    }
-                } finally {
-                    entities.clear();
-                }
-            }
-            log.info("[{}] Queue polling completed", logName);
-        });
+        startPolling(saveFunction, batchUpdateComparator, index);
 
         logExecutor.scheduleAtFixedRate(() -> {
             if (queue.size() > 0 || stats.getTotal() > 0 || stats.getSuccessful() > 0 || stats.getFailed() > 0) {
@@ -113,10 +46,8 @@ public class TbSqlBlockingQueue<E> implements TbSqlQueue<E> {
     }
 
     @Override
-    public void destroy() {
-        if (executor != null) {
-            executor.shutdownNow();
-        }
+    protected void resolveElements(List<TbSqlQueueElement<E>> items, List<TbSqlQueueElement<E>> elements) {
+        elements.addAll(items);
     }
 
     @Override
@@ -30,7 +30,7 @@ import java.util.function.Function;
 @Slf4j
 @Data
 public class TbSqlBlockingQueueWrapper<E> {
-    private final CopyOnWriteArrayList<TbSqlBlockingQueue<E>> queues = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<TbSqlQueue<E>> queues = new CopyOnWriteArrayList<>();
     private final TbSqlBlockingQueueParams params;
     private ScheduledLogExecutorComponent logExecutor;
     private final Function<E, Integer> hashCodeFunction;
@@ -38,7 +38,7 @@ public class TbSqlBlockingQueueWrapper<E> {
     private final StatsFactory statsFactory;
 
     /**
-     * Starts TbSqlBlockingQueues.
+     * Starts TbSqlBlockingQueues, or TbSqlRingBufferQueues if the ring buffer size is set.
      *
      * @param  logExecutor  executor that will be printing logs and statistics
      * @param  saveFunction function to save entities in database
@@ -48,7 +48,7 @@ public class TbSqlBlockingQueueWrapper<E> {
     public void init(ScheduledLogExecutorComponent logExecutor, Consumer<List<E>> saveFunction, Comparator<E> batchUpdateComparator) {
         for (int i = 0; i < maxThreads; i++) {
             MessagesStats stats = statsFactory.createMessagesStats(params.getStatsNamePrefix() + ".queue." + i);
-            TbSqlBlockingQueue<E> queue = new TbSqlBlockingQueue<>(params, stats);
+            TbSqlQueue<E> queue = params.getRingBufferSize() > 0 ? new TbSqlRingBufferQueue<>(params, stats) : new TbSqlBlockingQueue<>(params, stats);
             queues.add(queue);
             queue.init(logExecutor, saveFunction, batchUpdateComparator, i);
         }
@@ -60,6 +60,6 @@ public class TbSqlBlockingQueueWrapper<E> {
     }
 
     public void destroy() {
-        queues.forEach(TbSqlBlockingQueue::destroy);
+        queues.forEach(TbSqlQueue::destroy);
     }
 }
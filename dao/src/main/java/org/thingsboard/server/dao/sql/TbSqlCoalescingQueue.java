@@ -0,0 +1,98 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.dao.sql;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import lombok.extern.slf4j.Slf4j;
+import org.winstarcloud.server.common.stats.MessagesStats;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Write-behind queue that keeps at most one pending element per key.
+ * A newer element overwrites the pending one in place and the future of the superseded element is completed immediately,
+ * so only the newest element per key reaches the save function.
+ */
+@Slf4j
+public class TbSqlCoalescingQueue<K, E> extends AbstractTbSqlPollingQueue<K, E> {
+
+    private final ConcurrentMap<K, TbSqlQueueElement<E>> pending = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final ToLongFunction<E> versionFunction;
+
+    public TbSqlCoalescingQueue(TbSqlBlockingQueueParams params, ToLongFunction<E> versionFunction, MessagesStats stats) {
+        super(params, stats);
+        this.versionFunction = versionFunction;
+    }
+
+    public void init(ScheduledLogExecutorComponent logExecutor, Consumer<List<E>> saveFunction, Comparator<E> batchUpdateComparator, int index) {
+        startPolling(saveFunction, batchUpdateComparator, index);
+
+        logExecutor.scheduleAtFixedRate(() -> {
+            if (!pending.isEmpty() || stats.getTotal() > 0 || stats.getSuccessful() > 0 || stats.getFailed() > 0) {
+                log.info("Queue-{} [{}] pendingKeys [{}] totalAdded [{}] totalCoalesced [{}] totalSaved [{}] totalFailed [{}]", index,
+                        params.getLogName(), pending.size(), stats.getTotal(), coalesced.getAndSet(0), stats.getSuccessful(), stats.getFailed());
+                stats.reset();
+            }
+        }, params.getStatsPrintIntervalMs(), params.getStatsPrintIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    protected void resolveElements(List<K> keys, List<TbSqlQueueElement<E>> elements) {
+        for (K key : keys) {
+            TbSqlQueueElement<E> element = pending.remove(key);
+            if (element != null) {
+                elements.add(element);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public ListenableFuture<Void> add(K key, E element) {
+        SettableFuture<Void> future = SettableFuture.create();
+        TbSqlQueueElement<E> newElement = new TbSqlQueueElement<>(future, element);
+        long version = versionFunction.applyAsLong(element);
+        TbSqlQueueElement<E>[] superseded = new TbSqlQueueElement[1];
+        pending.compute(key, (k, existing) -> {
+            if (existing == null) {
+                queue.add(k);
+                return newElement;
+            } else if (versionFunction.applyAsLong(existing.getEntity()) <= version) {
+                superseded[0] = existing;
+                return newElement;
+            } else {
+                superseded[0] = newElement;
+                return existing;
+            }
+        });
+        stats.incrementTotal();
+        if (superseded[0] != null) {
+            coalesced.incrementAndGet();
+            stats.incrementSuccessful();
+            superseded[0].getFuture().set(null);
+        }
+        return future;
+    }
+
+}
@@ -0,0 +1,249 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.dao.sql;
+
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.ListenableFuture;
+import lombok.extern.slf4j.Slf4j;
+import org.winstarcloud.common.util.WinstarCloudThreadFactory;
+import org.winstarcloud.server.common.stats.MessagesStats;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * {@link TbSqlQueue} backed by a preallocated multi-producer single-consumer ring buffer.
+ * <p>
+ * Elements added between two flushes share one group future that is completed once all of them are saved,
+ * so no wrapper object and future are allocated per element. The polling delay adapts to the load: it is halved
+ * while the drained packs are at least half full and doubled up to {@code maxDelay} while the queue is idle.
+ */
+@Slf4j
+public class TbSqlRingBufferQueue<E> implements TbSqlQueue<E> {
+
+    private static final long MIN_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long FULL_BUFFER_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final TbSqlBlockingQueueParams params;
+    private final MessagesStats stats;
+    private final int mask;
+    private final AtomicReferenceArray<E> entities;
+    private final AtomicReferenceArray<FlushGroup> groups;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile FlushGroup currentGroup = new FlushGroup();
+
+    private ExecutorService executor;
+    private long head;
+
+    public TbSqlRingBufferQueue(TbSqlBlockingQueueParams params, MessagesStats stats) {
+        this.params = params;
+        this.stats = stats;
+        int capacity = Integer.highestOneBit(Math.max(2, Math.max(params.getRingBufferSize(), params.getBatchSize())) - 1) << 1;
+        this.mask = capacity - 1;
+        this.entities = new AtomicReferenceArray<>(capacity);
+        this.groups = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    @Override
+    public void init(ScheduledLogExecutorComponent logExecutor, Consumer<List<E>> saveFunction, Comparator<E> batchUpdateComparator, int index) {
+        executor = Executors.newSingleThreadExecutor(WinstarCloudThreadFactory.forName("sql-queue-" + index + "-" + params.getLogName().toLowerCase()));
+        executor.submit(() -> {
+            String logName = params.getLogName();
+            int batchSize = params.getBatchSize();
+            long maxDelayNanos = Math.max(MIN_DELAY_NANOS, TimeUnit.MILLISECONDS.toNanos(params.getMaxDelay()));
+            long delayNanos = maxDelayNanos;
+            final List<E> batch = new ArrayList<>(batchSize);
+            final List<FlushGroup> batchGroups = new ArrayList<>();
+            final List<Integer> batchGroupCounts = new ArrayList<>();
+            while (!Thread.interrupted()) {
+                try {
+                    FlushGroup retired = currentGroup;
+                    currentGroup = new FlushGroup();
+                    retired.retire();
+
+                    drain(batch, batchGroups, batchGroupCounts, batchSize);
+                    if (!batch.isEmpty()) {
+                        if (log.isDebugEnabled()) {
+                            log.debug("[{}] Going to save {} entities", logName, batch.size());
+                            log.trace("[{}] Going to save entities: {}", logName, batch);
+                        }
+                        if (params.isBatchSortEnabled()) {
+                            batch.sort(batchUpdateComparator);
+                        }
+                        saveFunction.accept(batch);
+                        stats.incrementSuccessful(batch.size());
+                        for (int i = 0; i < batchGroups.size(); i++) {
+                            batchGroups.get(i).release(batchGroupCounts.get(i));
+                        }
+                    }
+                    if (batch.size() == batchSize) {
+                        delayNanos = MIN_DELAY_NANOS;
+                        continue;
+                    } else if (batch.size() >= batchSize / 2) {
+                        delayNanos = Math.max(MIN_DELAY_NANOS, delayNanos / 2);
+                    } else if (batch.isEmpty()) {
+                        delayNanos = Math.min(maxDelayNanos, delayNanos * 2);
+                    }
+                    LockSupport.parkNanos(this, delayNanos);
+                } catch (Throwable t) {
+                    log.error("[{}] Failed to save {} entities", logName, batch.size(), t);
+                    try {
+                        stats.incrementFailed(batch.size());
+                        for (int i = 0; i < batchGroups.size(); i++) {
+                            batchGroups.get(i).fail(t, batchGroupCounts.get(i));
+                        }
+                    } catch (Throwable th) {
+                        log.error("[{}] Failed to set future exception", logName, th);
+                    }
+                } finally {
+                    batch.clear();
+                    batchGroups.clear();
+                    batchGroupCounts.clear();
+                }
+            }
+            log.info("[{}] Queue polling completed", logName);
+        });
+
+        logExecutor.scheduleAtFixedRate(() -> {
+            long size = tail.get() - head;
+            if (size > 0 || stats.getTotal() > 0 || stats.getSuccessful() > 0 || stats.getFailed() > 0) {
+                log.info("Queue-{} [{}] queueSize [{}] totalAdded [{}] totalSaved [{}] totalFailed [{}]", index,
+                        params.getLogName(), size, stats.getTotal(), stats.getSuccessful(), stats.getFailed());
+                stats.reset();
+            }
+        }, params.getStatsPrintIntervalMs(), params.getStatsPrintIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public ListenableFuture<Void> add(E element) {
+        FlushGroup group = acquireGroup();
+        long pos;
+        while (true) {
+            pos = tail.get();
+            int idx = (int) pos & mask;
+            long seq = sequences.get(idx);
+            if (seq == pos) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    entities.lazySet(idx, element);
+                    groups.lazySet(idx, group);
+                    sequences.set(idx, pos + 1);
+                    break;
+                }
+            } else if (seq < pos) {
+                LockSupport.parkNanos(FULL_BUFFER_PARK_NANOS);
+            }
+        }
+        stats.incrementTotal();
+        return group;
+    }
+
+    private FlushGroup acquireGroup() {
+        while (true) {
+            FlushGroup group = currentGroup;
+            group.pending.incrementAndGet();
+            if (group == currentGroup) {
+                return group;
+            }
+            group.release(1);
+        }
+    }
+
+    private void drain(List<E> batch, List<FlushGroup> batchGroups, List<Integer> batchGroupCounts, int batchSize) {
+        FlushGroup lastGroup = null;
+        int lastGroupCount = 0;
+        while (batch.size() < batchSize) {
+            int idx = (int) head & mask;
+            if (sequences.get(idx) != head + 1) {
+                break;
+            }
+            batch.add(entities.get(idx));
+            FlushGroup group = groups.get(idx);
+            entities.lazySet(idx, null);
+            groups.lazySet(idx, null);
+            sequences.set(idx, head + mask + 1);
+            head++;
+            if (group != lastGroup) {
+                if (lastGroup != null) {
+                    batchGroups.add(lastGroup);
+                    batchGroupCounts.add(lastGroupCount);
+                }
+                lastGroup = group;
+                lastGroupCount = 0;
+            }
+            lastGroupCount++;
+        }
+        if (lastGroup != null) {
+            batchGroups.add(lastGroup);
+            batchGroupCounts.add(lastGroupCount);
+        }
+    }
+
+    /**
+     * Future shared by all the elements added between two flushes.
+     * It is completed when the group is retired and all of its elements are saved or, exceptionally, on the first failed save.
+     */
+    private static final class FlushGroup extends AbstractFuture<Void> {
+
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile boolean retired;
+
+        void retire() {
+            retired = true;
+            if (pending.get() == 0) {
+                set(null);
+            }
+        }
+
+        void release(int count) {
+            if (pending.addAndGet(-count) == 0 && retired) {
+                set(null);
+            }
+        }
+
+        void fail(Throwable t, int count) {
+            pending.addAndGet(-count);
+            setException(t);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+    }
+
+}
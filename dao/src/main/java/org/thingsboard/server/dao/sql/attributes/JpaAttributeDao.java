@@ -88,6 +88,9 @@ public class JpaAttributeDao extends JpaAbstractDaoListeningExecutorService impl
     @Value("${sql.batch_sort:true}")
     private boolean batchSortEnabled;
 
+    @Value("${sql.ring_buffer_size:0}")
+    private int ringBufferSize;
+
     private TbSqlBlockingQueueWrapper<AttributeKvEntity> queue;
 
     @PostConstruct
@@ -99,6 +102,7 @@ public class JpaAttributeDao extends JpaAbstractDaoListeningExecutorService impl
                 .statsPrintIntervalMs(statsPrintIntervalMs)
                 .statsNamePrefix("attributes")
                 .batchSortEnabled(batchSortEnabled)
+                .ringBufferSize(ringBufferSize)
                 .build();
 
         Function<AttributeKvEntity, Integer> hashcodeFunction = entity -> entity.getId().getEntityId().hashCode();
@@ -133,10 +137,10 @@ public class JpaAttributeDao extends JpaAbstractDaoListeningExecutorService impl
     @Override
     public List<AttributeKvEntry> find(TenantId tenantId, EntityId entityId, AttributeScope attributeScope, Collection<String> attributeKeys) {
         List<AttributeKvCompositeKey> compositeKeys =
-                attributeKeys
+                keyDictionaryDao.getOrSaveKeyIds(attributeKeys).values()
                         .stream()
-                        .map(attributeKey ->
-                                getAttributeKvCompositeKey(entityId, attributeScope.getId(), keyDictionaryDao.getOrSaveKeyId(attributeKey)))
+                        .map(keyId ->
+                                getAttributeKvCompositeKey(entityId, attributeScope.getId(), keyId))
                         .collect(Collectors.toList());
         List<AttributeKvEntity> attributes = attributeKvRepository.findAllById(compositeKeys);
         attributes.forEach(attributeKvEntity -> attributeKvEntity.setStrKey(keyDictionaryDao.getKey(attributeKvEntity.getId().getAttributeKey())));
@@ -82,6 +82,9 @@ public class JpaBaseEdgeEventDao extends JpaPartitionedAbstractDao<EdgeEventEnti
     @Value("${sql.edge_events.stats_print_interval_ms:10000}")
     private long statsPrintIntervalMs;
 
+    @Value("${sql.ring_buffer_size:0}")
+    private int ringBufferSize;
+
     @Value("${sql.edge_events.partition_size:168}")
     private int partitionSizeInHours;
 
@@ -111,6 +114,7 @@ public class JpaBaseEdgeEventDao extends JpaPartitionedAbstractDao<EdgeEventEnti
                 .statsPrintIntervalMs(statsPrintIntervalMs)
                 .statsNamePrefix("edge.events")
                 .batchSortEnabled(true)
+                .ringBufferSize(ringBufferSize)
                 .build();
         Function<EdgeEventEntity, Integer> hashcodeFunction = entity -> {
             if (entity.getEntityId() != null) {
@@ -21,6 +21,7 @@ import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort.Direction;
 import org.winstarcloud.server.common.data.id.EntityId;
@@ -38,17 +39,27 @@ import org.winstarcloud.server.dao.model.sql.AbstractTsKvEntity;
 import org.winstarcloud.server.dao.model.sqlts.ts.TsKvEntity;
 import org.winstarcloud.server.dao.sql.TbSqlBlockingQueueParams;
 import org.winstarcloud.server.dao.sql.TbSqlBlockingQueueWrapper;
+import org.winstarcloud.server.dao.sqlts.aggregation.TsBucketAggregator;
+import org.winstarcloud.server.dao.sqlts.compressed.CompressedTsKvRepository;
+import org.winstarcloud.server.dao.sqlts.compressed.TsBlockCodec;
 import org.winstarcloud.server.dao.sqlts.insert.InsertTsRepository;
+import org.winstarcloud.server.dao.sqlts.rollup.SqlTsRollupDao;
+import org.winstarcloud.server.dao.sqlts.sql.SqlAggregationRepository;
 import org.winstarcloud.server.dao.sqlts.ts.TsKvRepository;
 import org.winstarcloud.server.dao.timeseries.TimeseriesDao;
 import org.winstarcloud.server.dao.util.TimeUtils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @SuppressWarnings("UnstableApiUsage")
 @Slf4j
@@ -67,6 +78,21 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
     @Autowired
     private KeyDictionaryDao keyDictionaryDao;
 
+    @Autowired
+    private SqlAggregationRepository aggregationRepository;
+
+    @Autowired
+    protected CompressedTsKvRepository compressedTsKvRepository;
+
+    @Autowired
+    protected SqlTsRollupDao rollupDao;
+
+    @Value("${sql.ts.bucketed_aggregation:true}")
+    private boolean bucketedAggregation;
+
+    @Value("${sql.ts.compression.enabled:false}")
+    protected boolean compressionEnabled;
+
     @PostConstruct
     protected void init() {
         TbSqlBlockingQueueParams tsParams = TbSqlBlockingQueueParams.builder()
@@ -76,6 +102,7 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
                 .statsPrintIntervalMs(tsStatsPrintIntervalMs)
                 .statsNamePrefix("ts")
                 .batchSortEnabled(batchSortEnabled)
+                .ringBufferSize(ringBufferSize)
                 .build();
 
         Function<TsKvEntity, Integer> hashcodeFunction = entity -> entity.getEntityId().hashCode();
@@ -97,11 +124,16 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
     @Override
     public ListenableFuture<Void> remove(TenantId tenantId, EntityId entityId, DeleteTsKvQuery query) {
         return service.submit(() -> {
+            Integer keyId = keyDictionaryDao.getOrSaveKeyId(query.getKey());
             tsKvRepository.delete(
                     entityId.getId(),
-                    keyDictionaryDao.getOrSaveKeyId(query.getKey()),
+                    keyId,
                     query.getStartTs(),
                     query.getEndTs());
+            if (compressionEnabled) {
+                compressedTsKvRepository.deletePoints(entityId.getId(), keyId, query.getStartTs(), query.getEndTs());
+            }
+            rollupDao.onRemove(entityId.getId(), keyId, query.getKey(), query.getStartTs(), query.getEndTs());
             return null;
         });
     }
@@ -113,6 +145,10 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
 
     @Override
     public ListenableFuture<List<ReadTsKvQueryResult>> findAllAsync(TenantId tenantId, EntityId entityId, List<ReadTsKvQuery> queries) {
+        if (queries.size() > 1) {
+            // resolves all keys missing in the local dictionary with one query instead of a query per key
+            keyDictionaryDao.getOrSaveKeyIds(queries.stream().map(ReadTsKvQuery::getKey).collect(Collectors.toSet()));
+        }
         return processFindAllAsync(tenantId, entityId, queries);
     }
 
@@ -121,6 +157,8 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
         var aggParams = query.getAggParameters();
         if (Aggregation.NONE.equals(aggParams.getAggregation())) {
             return Futures.immediateFuture(findAllAsyncWithLimit(entityId, query));
+        } else if (bucketedAggregation || compressionEnabled || rollupDao.isEnabled(query.getKey())) {
+            return getReadTsKvQueryResultFuture(query, service.submit(() -> findAllAndAggregate(entityId, query)));
         } else {
             List<ListenableFuture<Optional<TsKvEntity>>> futures = new ArrayList<>();
             var intervalType = aggParams.getIntervalType();
@@ -154,10 +192,95 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
                 PageRequest.ofSize(query.getLimit()).withSort(Direction.fromString(query.getOrder()), "ts"));
         tsKvEntities.forEach(tsKvEntity -> tsKvEntity.setStrKey(query.getKey()));
         List<TsKvEntry> tsKvEntries = DaoUtil.convertDataList(tsKvEntities);
+        if (compressionEnabled) {
+            tsKvEntries = mergeCompressedPoints(entityId, keyId, query, tsKvEntries);
+        }
         long lastTs = tsKvEntries.stream().map(TsKvEntry::getTs).max(Long::compare).orElse(query.getStartTs());
         return new ReadTsKvQueryResult(query.getId(), tsKvEntries, lastTs);
     }
 
+    private List<Optional<? extends AbstractTsKvEntity>> findAllAndAggregate(EntityId entityId, ReadTsKvQuery query) {
+        var aggParams = query.getAggParameters();
+        var intervalType = aggParams.getIntervalType();
+        long startPeriod = query.getStartTs();
+        long endPeriod = Math.max(query.getStartTs() + 1, query.getEndTs());
+        long interval = IntervalType.MILLISECONDS.equals(intervalType) ? aggParams.getInterval() : 0;
+        long[] bucketStarts;
+        if (IntervalType.MILLISECONDS.equals(intervalType)) {
+            int bucketsCount = (int) ((endPeriod - startPeriod + interval - 1) / interval);
+            bucketStarts = new long[bucketsCount];
+            for (int i = 0; i < bucketsCount; i++) {
+                bucketStarts[i] = startPeriod + i * interval;
+            }
+        } else {
+            List<Long> starts = new ArrayList<>();
+            long startTs = startPeriod;
+            while (startTs < endPeriod) {
+                starts.add(startTs);
+                startTs = TimeUtils.calculateIntervalEnd(startTs, intervalType, aggParams.getTzId());
+            }
+            bucketStarts = starts.stream().mapToLong(Long::longValue).toArray();
+        }
+        Integer keyId = keyDictionaryDao.getOrSaveKeyId(query.getKey());
+        List<Optional<TsKvEntity>> entities = rollupDao.findAggregated(entityId.getId(), keyId, query.getKey(), bucketStarts, endPeriod,
+                query.getAggregation(), (starts, endTs) -> findAggregated(entityId.getId(), keyId, query, starts, endTs, interval));
+        List<Optional<? extends AbstractTsKvEntity>> result = new ArrayList<>(entities.size());
+        for (Optional<TsKvEntity> entity : entities) {
+            entity.ifPresent(e -> {
+                e.setEntityId(entityId.getId());
+                e.setStrKey(query.getKey());
+            });
+            result.add(entity);
+        }
+        return result;
+    }
+
+    private List<TsKvEntry> mergeCompressedPoints(EntityId entityId, int keyId, ReadTsKvQuery query, List<TsKvEntry> rawPoints) {
+        boolean asc = Direction.fromString(query.getOrder()).isAscending();
+        List<TsKvEntry> compressedPoints = compressedTsKvRepository.findPoints(entityId.getId(), keyId, query.getKey(),
+                query.getStartTs(), query.getEndTs(), query.getLimit(), asc);
+        if (compressedPoints.isEmpty()) {
+            return rawPoints;
+        }
+        List<TsKvEntry> points = TsBlockCodec.merge(compressedPoints, rawPoints);
+        if (!asc) {
+            Collections.reverse(points);
+        }
+        return points.size() > query.getLimit() ? new ArrayList<>(points.subList(0, query.getLimit())) : points;
+    }
+
+    private List<Optional<TsKvEntity>> findAggregated(UUID entityId, int keyId, ReadTsKvQuery query, long[] bucketStarts, long endTs, long interval) {
+        Aggregation aggregation = query.getAggregation();
+        Long lastCompressedTs = compressionEnabled ? compressedTsKvRepository.findLastCompressedTs(entityId, keyId, bucketStarts[0], endTs) : null;
+        if (lastCompressedTs == null) {
+            return aggregationRepository.findAggregated(entityId, keyId, bucketStarts, endTs, interval, aggregation);
+        }
+        // buckets up to the last compressed point are aggregated in memory, the rest with a single GROUP BY query
+        int compressedBuckets = 0;
+        while (compressedBuckets < bucketStarts.length && bucketStarts[compressedBuckets] <= lastCompressedTs) {
+            compressedBuckets++;
+        }
+        long compressedEndTs = compressedBuckets < bucketStarts.length ? bucketStarts[compressedBuckets] : endTs;
+        TsBucketAggregator aggregator = new TsBucketAggregator(bucketStarts, compressedBuckets, compressedEndTs, aggregation);
+        // raw points are read first and take precedence, so that a concurrent compaction can't lose or duplicate them
+        Set<Long> rawTs = new HashSet<>();
+        compressedTsKvRepository.processRawPoints(entityId, keyId, query.getKey(), bucketStarts[0], compressedEndTs, point -> {
+            rawTs.add(point.getTs());
+            aggregator.add(point);
+        });
+        compressedTsKvRepository.processPoints(entityId, keyId, query.getKey(), bucketStarts[0], compressedEndTs, point -> {
+            if (!rawTs.contains(point.getTs())) {
+                aggregator.add(point);
+            }
+        });
+        List<Optional<TsKvEntity>> result = aggregator.getResult();
+        if (compressedBuckets < bucketStarts.length) {
+            result.addAll(aggregationRepository.findAggregated(entityId, keyId,
+                    Arrays.copyOfRange(bucketStarts, compressedBuckets, bucketStarts.length), endTs, interval, aggregation));
+        }
+        return result;
+    }
+
     ListenableFuture<Optional<TsKvEntity>> findAndAggregateAsync(EntityId entityId, String key, long startTs, long endTs, long ts, Aggregation aggregation) {
         return service.submit(() -> {
             TsKvEntity entity = switchAggregation(entityId, key, startTs, endTs, aggregation);
@@ -46,6 +46,7 @@ import org.winstarcloud.server.dao.model.sqlts.latest.TsKvLatestEntity;
 import org.winstarcloud.server.dao.sql.ScheduledLogExecutorComponent;
 import org.winstarcloud.server.dao.sql.TbSqlBlockingQueueParams;
 import org.winstarcloud.server.dao.sql.TbSqlBlockingQueueWrapper;
+import org.winstarcloud.server.dao.sql.TbSqlCoalescingQueueWrapper;
 import org.winstarcloud.server.dao.sqlts.insert.latest.InsertLatestTsRepository;
 import org.winstarcloud.server.dao.sqlts.latest.SearchTsKvLatestRepository;
 import org.winstarcloud.server.dao.sqlts.latest.TsKvLatestRepository;
@@ -53,11 +54,15 @@ import org.winstarcloud.server.dao.timeseries.TimeseriesLatestDao;
 import org.winstarcloud.server.dao.util.SqlTsLatestAnyDao;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -68,6 +73,7 @@ import java.util.stream.Collectors;
 public class SqlTimeseriesLatestDao extends BaseAbstractSqlTimeseriesDao implements TimeseriesLatestDao {
 
     private static final String DESC_ORDER = "DESC";
+    private static final int FIND_LATEST_ENTITIES_BATCH_SIZE = 1000;
 
     @Autowired
     private TsKvLatestRepository tsKvLatestRepository;
@@ -83,6 +89,8 @@ public class SqlTimeseriesLatestDao extends BaseAbstractSqlTimeseriesDao impleme
 
     private TbSqlBlockingQueueWrapper<TsKvLatestEntity> tsLatestQueue;
 
+    private TbSqlCoalescingQueueWrapper<TsKey, TsKvLatestEntity> tsLatestCoalescingQueue;
+
     @Value("${sql.ts_latest.batch_size:1000}")
     private int tsLatestBatchSize;
 
@@ -95,9 +103,15 @@ public class SqlTimeseriesLatestDao extends BaseAbstractSqlTimeseriesDao impleme
     @Value("${sql.ts_latest.batch_threads:4}")
     private int tsLatestBatchThreads;
 
+    @Value("${sql.ts_latest.coalescing:false}")
+    private boolean tsLatestCoalescing;
+
     @Value("${sql.batch_sort:true}")
     protected boolean batchSortEnabled;
 
+    @Value("${sql.ring_buffer_size:0}")
+    private int ringBufferSize;
+
     @Autowired
     protected ScheduledLogExecutorComponent logExecutor;
 
@@ -115,25 +129,33 @@ public class SqlTimeseriesLatestDao extends BaseAbstractSqlTimeseriesDao impleme
                 .maxDelay(tsLatestMaxDelay)
                 .statsPrintIntervalMs(tsLatestStatsPrintIntervalMs)
                 .statsNamePrefix("ts.latest")
-                .batchSortEnabled(false)
+                .batchSortEnabled(tsLatestCoalescing && batchSortEnabled)
+                .ringBufferSize(ringBufferSize)
                 .build();
 
-        java.util.function.Function<TsKvLatestEntity, Integer> hashcodeFunction = entity -> entity.getEntityId().hashCode();
-        tsLatestQueue = new TbSqlBlockingQueueWrapper<>(tsLatestParams, hashcodeFunction, tsLatestBatchThreads, statsFactory);
-
-        tsLatestQueue.init(logExecutor, v -> {
-            Map<TsKey, TsKvLatestEntity> trueLatest = new HashMap<>();
-            v.forEach(ts -> {
-                TsKey key = new TsKey(ts.getEntityId(), ts.getKey());
-                trueLatest.merge(key, ts, (oldTs, newTs) -> oldTs.getTs() <= newTs.getTs() ? newTs : oldTs);
-            });
-            List<TsKvLatestEntity> latestEntities = new ArrayList<>(trueLatest.values());
-            if (batchSortEnabled) {
-                latestEntities.sort(Comparator.comparing((Function<TsKvLatestEntity, UUID>) AbstractTsKvEntity::getEntityId)
-                        .thenComparingInt(AbstractTsKvEntity::getKey));
-            }
-            insertLatestTsRepository.saveOrUpdate(latestEntities);
-        }, (l, r) -> 0);
+        if (tsLatestCoalescing) {
+            tsLatestCoalescingQueue = new TbSqlCoalescingQueueWrapper<>(tsLatestParams,
+                    entity -> new TsKey(entity.getEntityId(), entity.getKey()), TsKvLatestEntity::getTs, tsLatestBatchThreads, statsFactory);
+            tsLatestCoalescingQueue.init(logExecutor, insertLatestTsRepository::saveOrUpdate,
+                    Comparator.comparing((Function<TsKvLatestEntity, UUID>) AbstractTsKvEntity::getEntityId)
+                            .thenComparingInt(AbstractTsKvEntity::getKey));
+        } else {
+            java.util.function.Function<TsKvLatestEntity, Integer> hashcodeFunction = entity -> entity.getEntityId().hashCode();
+            tsLatestQueue = new TbSqlBlockingQueueWrapper<>(tsLatestParams, hashcodeFunction, tsLatestBatchThreads, statsFactory);
+            tsLatestQueue.init(logExecutor, v -> {
+                Map<TsKey, TsKvLatestEntity> trueLatest = new HashMap<>();
+                v.forEach(ts -> {
+                    TsKey key = new TsKey(ts.getEntityId(), ts.getKey());
+                    trueLatest.merge(key, ts, (oldTs, newTs) -> oldTs.getTs() <= newTs.getTs() ? newTs : oldTs);
+                });
+                List<TsKvLatestEntity> latestEntities = new ArrayList<>(trueLatest.values());
+                if (batchSortEnabled) {
+                    latestEntities.sort(Comparator.comparing((Function<TsKvLatestEntity, UUID>) AbstractTsKvEntity::getEntityId)
+                            .thenComparingInt(AbstractTsKvEntity::getKey));
+                }
+                insertLatestTsRepository.saveOrUpdate(latestEntities);
+            }, (l, r) -> 0);
+        }
     }
 
     @PreDestroy
@@ -141,6 +163,9 @@ public class SqlTimeseriesLatestDao extends BaseAbstractSqlTimeseriesDao impleme
         if (tsLatestQueue != null) {
             tsLatestQueue.destroy();
         }
+        if (tsLatestCoalescingQueue != null) {
+            tsLatestCoalescingQueue.destroy();
+        }
     }
 
     @Override
@@ -163,6 +188,14 @@ public class SqlTimeseriesLatestDao extends BaseAbstractSqlTimeseriesDao impleme
         return service.submit(() -> getLatestTsKvEntry(entityId, key));
     }
 
+    @Override
+    public ListenableFuture<Map<EntityId, List<TsKvEntry>>> findLatest(TenantId tenantId, Map<EntityId, Collection<String>> keysByEntityId) {
+        if (keysByEntityId.isEmpty()) {
+            return Futures.immediateFuture(Collections.emptyMap());
+        }
+        return service.submit(() -> doFindLatest(keysByEntityId));
+    }
+
     @Override
     public ListenableFuture<List<TsKvEntry>> findAllLatest(TenantId tenantId, EntityId entityId) {
         return getFindAllLatestFuture(entityId);
@@ -219,6 +252,30 @@ public class SqlTimeseriesLatestDao extends BaseAbstractSqlTimeseriesDao impleme
         }
     }
 
+    protected Map<EntityId, List<TsKvEntry>> doFindLatest(Map<EntityId, Collection<String>> keysByEntityId) {
+        Set<String> keys = new HashSet<>();
+        keysByEntityId.values().forEach(keys::addAll);
+        Map<String, Integer> keyIds = keyDictionaryDao.getOrSaveKeyIds(keys);
+        Map<Integer, String> keysById = new HashMap<>();
+        keyIds.forEach((key, keyId) -> keysById.put(keyId, key));
+        Map<UUID, EntityId> entityIds = new HashMap<>();
+        keysByEntityId.keySet().forEach(entityId -> entityIds.put(entityId.getId(), entityId));
+
+        Map<EntityId, List<TsKvEntry>> result = new HashMap<>();
+        for (List<UUID> batch : Lists.partition(new ArrayList<>(entityIds.keySet()), FIND_LATEST_ENTITIES_BATCH_SIZE)) {
+            for (TsKvLatestEntity latestEntity : tsKvLatestRepository.findAllByEntityIdInAndKeyIn(batch, keyIds.values())) {
+                EntityId entityId = entityIds.get(latestEntity.getEntityId());
+                String key = keysById.get(latestEntity.getKey());
+                // the query returns all keys requested for any of the entities, only the ones requested for the entity are kept
+                if (keysByEntityId.get(entityId).contains(key)) {
+                    latestEntity.setStrKey(key);
+                    result.computeIfAbsent(entityId, id -> new ArrayList<>()).add(DaoUtil.getData(latestEntity));
+                }
+            }
+        }
+        return result;
+    }
+
     protected ListenableFuture<TsKvLatestRemovingResult> getRemoveLatestFuture(TenantId tenantId, EntityId entityId, DeleteTsKvQuery query) {
         ListenableFuture<TsKvEntry> latestFuture = service.submit(() -> doFindLatest(entityId, query.getKey()));
         return Futures.transformAsync(latestFuture, latest -> {
@@ -258,7 +315,7 @@ public class SqlTimeseriesLatestDao extends BaseAbstractSqlTimeseriesDao impleme
         latestEntity.setBooleanValue(tsKvEntry.getBooleanValue().orElse(null));
         latestEntity.setJsonValue(tsKvEntry.getJsonValue().orElse(null));
 
-        return tsLatestQueue.add(latestEntity);
+        return tsLatestCoalescing ? tsLatestCoalescingQueue.add(latestEntity) : tsLatestQueue.add(latestEntity);
     }
 
     private TsKvEntry getLatestTsKvEntry(EntityId entityId, String key) {
@@ -0,0 +1,127 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.dao.sqlts.aggregation;
+
+import lombok.Data;
+import org.winstarcloud.server.common.data.kv.Aggregation;
+import org.winstarcloud.server.common.data.kv.TsKvEntry;
+import org.winstarcloud.server.dao.model.sqlts.ts.TsKvEntity;
+
+/**
+ * Partial aggregate of the points of a single key: counts per data type, sums, minimums and maximums.
+ * Partial aggregates of adjacent periods may be merged, and converted to the result of any {@link Aggregation}
+ * with the same semantics as the GROUP BY queries of {@link org.winstarcloud.server.dao.sqlts.sql.SqlAggregationRepository}.
+ */
+@Data
+public class TsAggregate {
+
+    public static final long LONG_MIN_SENTINEL = -9223372036854775807L;
+    public static final long LONG_MAX_SENTINEL = 9223372036854775807L;
+    public static final double DOUBLE_MIN_SENTINEL = -1.79769E+308;
+    public static final double DOUBLE_MAX_SENTINEL = 1.79769E+308;
+
+    private long lastTs = Long.MIN_VALUE;
+    private long booleanCount;
+    private long strCount;
+    private long jsonCount;
+    private long longCount;
+    private long doubleCount;
+    private long longSum;
+    private double doubleSum;
+    private long longMin = LONG_MAX_SENTINEL;
+    private long longMax = LONG_MIN_SENTINEL;
+    private double doubleMin = DOUBLE_MAX_SENTINEL;
+    private double doubleMax = DOUBLE_MIN_SENTINEL;
+    private String strMin;
+    private String strMax;
+
+    public void add(TsKvEntry entry) {
+        lastTs = Math.max(lastTs, entry.getTs());
+        switch (entry.getDataType()) {
+            case BOOLEAN -> booleanCount++;
+            case JSON -> jsonCount++;
+            case STRING -> {
+                strCount++;
+                String value = entry.getStrValue().get();
+                strMin = minStr(strMin, value);
+                strMax = maxStr(strMax, value);
+            }
+            case LONG -> {
+                long value = entry.getLongValue().get();
+                longCount++;
+                longSum += value;
+                longMin = Math.min(longMin, value);
+                longMax = Math.max(longMax, value);
+            }
+            case DOUBLE -> {
+                double value = entry.getDoubleValue().get();
+                doubleCount++;
+                doubleSum += value;
+                doubleMin = Math.min(doubleMin, value);
+                doubleMax = Math.max(doubleMax, value);
+            }
+        }
+    }
+
+    public void merge(TsAggregate other) {
+        lastTs = Math.max(lastTs, other.lastTs);
+        booleanCount += other.booleanCount;
+        strCount += other.strCount;
+        jsonCount += other.jsonCount;
+        longCount += other.longCount;
+        doubleCount += other.doubleCount;
+        longSum += other.longSum;
+        doubleSum += other.doubleSum;
+        longMin = Math.min(longMin, other.longMin);
+        longMax = Math.max(longMax, other.longMax);
+        doubleMin = Math.min(doubleMin, other.doubleMin);
+        doubleMax = Math.max(doubleMax, other.doubleMax);
+        strMin = minStr(strMin, other.strMin);
+        strMax = maxStr(strMax, other.strMax);
+    }
+
+    public boolean isEmpty() {
+        return booleanCount == 0 && strCount == 0 && jsonCount == 0 && longCount == 0 && doubleCount == 0;
+    }
+
+    public TsKvEntity toEntity(Aggregation aggregation) {
+        switch (aggregation) {
+            case COUNT:
+                return new TsKvEntity(booleanCount, strCount, longCount, doubleCount, jsonCount, lastTs);
+            case MIN:
+            case MAX:
+                boolean max = Aggregation.MAX.equals(aggregation);
+                if (longCount == 0 && doubleCount == 0) {
+                    return new TsKvEntity(max ? strMax : strMin, lastTs);
+                }
+                return new TsKvEntity(max ? longMax : longMin, max ? doubleMax : doubleMin, longCount, doubleCount, aggregation.name(), lastTs);
+            case AVG:
+            case SUM:
+                return new TsKvEntity(longSum, doubleSum, longCount, doubleCount, aggregation.name(), lastTs);
+            default:
+                throw new IllegalArgumentException("Not supported aggregation type: " + aggregation);
+        }
+    }
+
+    private static String minStr(String a, String b) {
+        return a == null || (b != null && b.compareTo(a) < 0) ? b : a;
+    }
+
+    private static String maxStr(String a, String b) {
+        return a == null || (b != null && b.compareTo(a) > 0) ? b : a;
+    }
+
+}
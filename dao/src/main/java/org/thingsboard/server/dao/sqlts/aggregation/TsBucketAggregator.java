@@ -0,0 +1,97 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.dao.sqlts.aggregation;
+
+import org.winstarcloud.server.common.data.kv.Aggregation;
+import org.winstarcloud.server.common.data.kv.TsKvEntry;
+import org.winstarcloud.server.dao.model.sqlts.ts.TsKvEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Aggregates points and partial aggregates into buckets in memory, with the same semantics as the GROUP BY queries of
+ * {@link org.winstarcloud.server.dao.sqlts.sql.SqlAggregationRepository}.
+ */
+public class TsBucketAggregator {
+
+    private final long[] bucketStarts;
+    private final int bucketsCount;
+    private final long endTs;
+    private final Aggregation aggregation;
+    private final TsAggregate[] buckets;
+
+    /**
+     * @param bucketStarts ascending start timestamps of the buckets
+     * @param bucketsCount number of the buckets to aggregate, starting from the first one
+     * @param endTs        exclusive end of the last aggregated bucket
+     */
+    public TsBucketAggregator(long[] bucketStarts, int bucketsCount, long endTs, Aggregation aggregation) {
+        this.bucketStarts = bucketStarts;
+        this.bucketsCount = bucketsCount;
+        this.endTs = endTs;
+        this.aggregation = aggregation;
+        this.buckets = new TsAggregate[bucketsCount];
+    }
+
+    public void add(TsKvEntry entry) {
+        long ts = entry.getTs();
+        if (bucketsCount == 0 || ts < bucketStarts[0] || ts >= endTs) {
+            return;
+        }
+        int idx = Arrays.binarySearch(bucketStarts, 0, bucketsCount, ts);
+        if (idx < 0) {
+            idx = -idx - 2;
+        }
+        getBucket(idx).add(entry);
+    }
+
+    public void merge(int bucket, TsAggregate aggregate) {
+        getBucket(bucket).merge(aggregate);
+    }
+
+    /**
+     * @return list with one element per bucket, empty for the buckets without data
+     */
+    public List<Optional<TsKvEntity>> getResult() {
+        List<Optional<TsKvEntity>> result = new ArrayList<>(bucketsCount);
+        for (int i = 0; i < bucketsCount; i++) {
+            TsAggregate bucket = buckets[i];
+            TsKvEntity entity = bucket != null && !bucket.isEmpty() ? bucket.toEntity(aggregation) : null;
+            if (entity != null && entity.isNotEmpty()) {
+                long bucketStart = bucketStarts[i];
+                long bucketEnd = i + 1 < bucketsCount ? bucketStarts[i + 1] : endTs;
+                entity.setTs(bucketStart + (bucketEnd - bucketStart) / 2);
+                result.add(Optional.of(entity));
+            } else {
+                result.add(Optional.empty());
+            }
+        }
+        return result;
+    }
+
+    private TsAggregate getBucket(int idx) {
+        TsAggregate bucket = buckets[idx];
+        if (bucket == null) {
+            bucket = new TsAggregate();
+            buckets[idx] = bucket;
+        }
+        return bucket;
+    }
+
+}
@@ -0,0 +1,423 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.dao.sqlts.compressed;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.winstarcloud.server.common.data.kv.BasicTsKvEntry;
+import org.winstarcloud.server.common.data.kv.BooleanDataEntry;
+import org.winstarcloud.server.common.data.kv.DoubleDataEntry;
+import org.winstarcloud.server.common.data.kv.JsonDataEntry;
+import org.winstarcloud.server.common.data.kv.KvEntry;
+import org.winstarcloud.server.common.data.kv.LongDataEntry;
+import org.winstarcloud.server.common.data.kv.StringDataEntry;
+import org.winstarcloud.server.common.data.kv.TsKvEntry;
+import org.winstarcloud.server.dao.timeseries.SqlPartition;
+import org.winstarcloud.server.dao.util.SqlTsDao;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stores the points of closed ts_kv partitions as compressed blocks (see {@link TsBlockCodec}).
+ * Each block holds up to a configured number of points of a single entity and key.
+ */
+@SqlTsDao
+@Repository
+@Slf4j
+public class CompressedTsKvRepository {
+
+    private static final String SELECT_BLOCKS = "SELECT entity_id, key, block_start, block_end, points, data FROM compressed_ts_kv " +
+            "WHERE entity_id = ? AND key = ? AND block_end >= ? AND block_start < ? ";
+    private static final String FIND_BLOCKS_ASC = SELECT_BLOCKS + "ORDER BY block_start";
+    private static final String FIND_BLOCKS_DESC = SELECT_BLOCKS + "ORDER BY block_end DESC";
+    private static final String FIND_LAST_COMPRESSED_TS = "SELECT max(block_end) FROM compressed_ts_kv " +
+            "WHERE entity_id = ? AND key = ? AND block_end >= ? AND block_start < ?";
+    private static final String INSERT_BLOCK = "INSERT INTO compressed_ts_kv (entity_id, key, block_start, block_end, points, data) VALUES (?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (entity_id, key, block_start, block_end) DO UPDATE SET points = EXCLUDED.points, data = EXCLUDED.data";
+    private static final String DELETE_BLOCK = "DELETE FROM compressed_ts_kv WHERE entity_id = ? AND key = ? AND block_start = ? AND block_end = ?";
+    private static final String DELETE_BLOCKS_BEFORE = "DELETE FROM compressed_ts_kv WHERE block_end < ?";
+    private static final String EXISTS_BLOCKS = "SELECT EXISTS (SELECT 1 FROM compressed_ts_kv WHERE block_end >= ? AND block_start < ?)";
+    private static final String FIND_RAW_POINTS = "SELECT ts, bool_v, str_v, long_v, dbl_v, json_v FROM ts_kv " +
+            "WHERE entity_id = ? AND key = ? AND ts >= ? AND ts < ?";
+    private static final String FIND_TS_KV_PARTITIONS = "SELECT c.relname AS name, pg_get_expr(c.relpartbound, c.oid) AS bound FROM pg_inherits i " +
+            "JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class p ON p.oid = i.inhparent WHERE p.relname = 'ts_kv'";
+    private static final Pattern PARTITION_BOUND_PATTERN = Pattern.compile("FROM \\('?(-?\\d+)'?\\) TO \\('?(-?\\d+)'?\\)");
+
+    private static final String DEFAULT_PARTITION = SqlPartition.TS_KV + "_indefinite";
+
+    private static final int FETCH_SIZE = 10000;
+    private static final int COMPACTION_CHUNK_ENTITIES = 1000;
+    private static final int INSERT_BATCH_SIZE = 500;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Returns the compressed points of the key within [startTs, endTs), sorted by timestamp in ascending order.
+     * The blocks are read in the query order, and reading stops once the remaining blocks can't contain any
+     * of the first {@code limit} points.
+     */
+    public List<TsKvEntry> findPoints(UUID entityId, int key, String strKey, long startTs, long endTs, int limit, boolean asc) {
+        ResultSetExtractor<List<TsKvEntry>> extractor = rs -> {
+            List<TsKvEntry> result = new ArrayList<>();
+            long boundaryTs = asc ? Long.MIN_VALUE : Long.MAX_VALUE;
+            while (rs.next()) {
+                if (result.size() >= limit && (asc ? rs.getLong("block_start") > boundaryTs : rs.getLong("block_end") < boundaryTs)) {
+                    break;
+                }
+                for (TsKvEntry entry : TsBlockCodec.decode(strKey, rs.getBytes("data"))) {
+                    long ts = entry.getTs();
+                    if (ts >= startTs && ts < endTs) {
+                        result.add(entry);
+                        boundaryTs = asc ? Math.max(boundaryTs, ts) : Math.min(boundaryTs, ts);
+                    }
+                }
+            }
+            return result;
+        };
+        List<TsKvEntry> points = jdbcTemplate.query(asc ? FIND_BLOCKS_ASC : FIND_BLOCKS_DESC, extractor, entityId, key, startTs, endTs);
+        points.sort(Comparator.comparingLong(TsKvEntry::getTs));
+        return points;
+    }
+
+    /**
+     * Returns the timestamp of the last compressed point of the blocks overlapping [startTs, endTs),
+     * or null if there are no such blocks.
+     */
+    public Long findLastCompressedTs(UUID entityId, int key, long startTs, long endTs) {
+        return jdbcTemplate.queryForObject(FIND_LAST_COMPRESSED_TS, Long.class, entityId, key, startTs, endTs);
+    }
+
+    /**
+     * Decodes the compressed points of the key within [startTs, endTs) block by block, without keeping them in memory.
+     */
+    public void processPoints(UUID entityId, int key, String strKey, long startTs, long endTs, Consumer<TsKvEntry> consumer) {
+        jdbcTemplate.query(FIND_BLOCKS_ASC, (RowCallbackHandler) rs -> {
+            for (TsKvEntry entry : TsBlockCodec.decode(strKey, rs.getBytes("data"))) {
+                if (entry.getTs() >= startTs && entry.getTs() < endTs) {
+                    consumer.accept(entry);
+                }
+            }
+        }, entityId, key, startTs, endTs);
+    }
+
+    /**
+     * Reads the uncompressed points of the key within [startTs, endTs) in no particular order, without keeping them in memory.
+     */
+    public void processRawPoints(UUID entityId, int key, String strKey, long startTs, long endTs, Consumer<TsKvEntry> consumer) {
+        jdbcTemplate.query(FIND_RAW_POINTS, (RowCallbackHandler) rs -> {
+            TsKvEntry entry = toEntry(rs, strKey);
+            if (entry != null) {
+                consumer.accept(entry);
+            }
+        }, entityId, key, startTs, endTs);
+    }
+
+    public void deletePoints(UUID entityId, int key, long startTs, long endTs) {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (CompressedTsBlock block : findBlocks(entityId, key, startTs, endTs)) {
+                jdbcTemplate.update(DELETE_BLOCK, entityId, key, block.getStartTs(), block.getEndTs());
+                if (block.getStartTs() < startTs || block.getEndTs() >= endTs) {
+                    List<TsKvEntry> remaining = TsBlockCodec.decode(null, block.getData()).stream()
+                            .filter(entry -> entry.getTs() < startTs || entry.getTs() >= endTs)
+                            .toList();
+                    saveBlocks(toBlocks(entityId, key, remaining, Integer.MAX_VALUE));
+                }
+            }
+        });
+    }
+
+    public int deleteBlocksBefore(long ts) {
+        return jdbcTemplate.update(DELETE_BLOCKS_BEFORE, ts);
+    }
+
+    /**
+     * Returns the range partitions of ts_kv, the default partition is not included.
+     */
+    public List<SqlPartition> findTsKvPartitions() {
+        List<SqlPartition> partitions = new ArrayList<>();
+        jdbcTemplate.query(FIND_TS_KV_PARTITIONS, (RowCallbackHandler) rs -> {
+            String name = rs.getString("name");
+            String bound = rs.getString("bound");
+            Matcher matcher = bound != null ? PARTITION_BOUND_PATTERN.matcher(bound) : null;
+            String prefix = SqlPartition.TS_KV + "_";
+            if (matcher != null && matcher.find() && name.startsWith(prefix)) {
+                partitions.add(new SqlPartition(SqlPartition.TS_KV, Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2)),
+                        name.substring(prefix.length())));
+            }
+        });
+        return partitions;
+    }
+
+    /**
+     * Rewrites all points of the partition into compressed blocks and drops the partition.
+     * The points are moved in chunks of {@link #COMPACTION_CHUNK_ENTITIES} entities: each chunk is compressed and deleted
+     * from the partition in its own transaction that holds a lock blocking concurrent writes to the partition, so a point
+     * written while the chunk is compressed is never deleted without being compressed. The points written to the chunks that
+     * are already compacted are moved in the last transaction, that detaches the partition before reading it.
+     * If the period of the partition was compacted before (the partition was re-created by late writes),
+     * the new points are merged with the existing blocks, the new points take precedence.
+     *
+     * @return number of compacted points
+     */
+    public long compactPartition(SqlPartition partition, int blockSize) {
+        String table = SqlPartition.TS_KV + "_" + partition.getPartitionDate();
+        boolean mergeWithExisting = Boolean.TRUE.equals(jdbcTemplate.queryForObject(EXISTS_BLOCKS, Boolean.class, partition.getStart(), partition.getEnd()));
+        long points = compactChunks(table, null, new Object[0], blockSize, mergeWithExisting);
+        Long remainingPoints = transactionTemplate.execute(status -> {
+            // the partition is detached first, so that no point can be written to it after it is read
+            jdbcTemplate.execute("ALTER TABLE " + SqlPartition.TS_KV + " DETACH PARTITION " + table);
+            long compacted = compactRows(table, "", new Object[0], blockSize, true);
+            jdbcTemplate.execute("DROP TABLE " + table);
+            return compacted;
+        });
+        return points + (remainingPoints != null ? remainingPoints : 0);
+    }
+
+    /**
+     * Moves the points of the default partition within [startTs, endTs) into compressed blocks, merging them with the
+     * existing blocks. The points of a compacted period land in the default partition when they are written by a node
+     * that still considers the dropped partition to exist.
+     *
+     * @return number of compacted points
+     */
+    public long compactDefaultPartition(long startTs, long endTs, int blockSize) {
+        return compactChunks(DEFAULT_PARTITION, "ts >= ? AND ts < ?", new Object[]{startTs, endTs}, blockSize, true);
+    }
+
+    private long compactChunks(String table, String rangeFilter, Object[] rangeArgs, int blockSize, boolean mergeWithExisting) {
+        long points = 0;
+        UUID lastEntityId = null;
+        while (true) {
+            UUID fromEntityId = lastEntityId;
+            UUID[] toEntityId = new UUID[1];
+            Long chunkPoints = transactionTemplate.execute(status -> {
+                jdbcTemplate.execute("LOCK TABLE " + table + " IN SHARE ROW EXCLUSIVE MODE");
+                List<String> conditions = new ArrayList<>();
+                List<Object> args = new ArrayList<>();
+                if (rangeFilter != null) {
+                    conditions.add(rangeFilter);
+                    args.addAll(List.of(rangeArgs));
+                }
+                if (fromEntityId != null) {
+                    conditions.add("entity_id > ?");
+                    args.add(fromEntityId);
+                }
+                String entityFilter = toWhereClause(conditions);
+                List<Object> entityArgs = new ArrayList<>(args);
+                entityArgs.add(COMPACTION_CHUNK_ENTITIES);
+                List<UUID> lastChunkEntity = jdbcTemplate.queryForList("SELECT entity_id FROM (SELECT DISTINCT entity_id FROM " + table +
+                        entityFilter + " ORDER BY entity_id LIMIT ?) e ORDER BY entity_id DESC LIMIT 1", UUID.class, entityArgs.toArray());
+                if (lastChunkEntity.isEmpty()) {
+                    return 0L;
+                }
+                toEntityId[0] = lastChunkEntity.get(0);
+                conditions.add("entity_id <= ?");
+                args.add(toEntityId[0]);
+                String chunkFilter = toWhereClause(conditions);
+                Object[] chunkArgs = args.toArray();
+                long compacted = compactRows(table, chunkFilter, chunkArgs, blockSize, mergeWithExisting);
+                jdbcTemplate.update("DELETE FROM " + table + chunkFilter, chunkArgs);
+                return compacted;
+            });
+            if (toEntityId[0] == null) {
+                return points;
+            }
+            points += chunkPoints != null ? chunkPoints : 0;
+            lastEntityId = toEntityId[0];
+        }
+    }
+
+    private static String toWhereClause(List<String> conditions) {
+        return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+    }
+
+    private long compactRows(String table, String filter, Object[] args, int blockSize, boolean mergeWithExisting) {
+        BlockWriter writer = new BlockWriter(blockSize, mergeWithExisting);
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement("SELECT entity_id, key, ts, bool_v, str_v, long_v, dbl_v, json_v FROM " + table +
+                    filter + " ORDER BY entity_id, key, ts");
+            for (int i = 0; i < args.length; i++) {
+                ps.setObject(i + 1, args[i]);
+            }
+            ps.setFetchSize(FETCH_SIZE);
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            TsKvEntry entry = toEntry(rs, null);
+            if (entry != null) {
+                writer.add(rs.getObject("entity_id", UUID.class), rs.getInt("key"), entry);
+            }
+        });
+        writer.flush();
+        return writer.getPoints();
+    }
+
+    private List<CompressedTsBlock> findBlocks(UUID entityId, int key, long startTs, long endTs) {
+        return jdbcTemplate.query(FIND_BLOCKS_ASC, (rs, rowNum) -> new CompressedTsBlock(entityId, key,
+                rs.getLong("block_start"), rs.getLong("block_end"), rs.getInt("points"), rs.getBytes("data")), entityId, key, startTs, endTs);
+    }
+
+    private void saveBlocks(List<CompressedTsBlock> blocks) {
+        if (blocks.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_BLOCK, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                CompressedTsBlock block = blocks.get(i);
+                ps.setObject(1, block.getEntityId());
+                ps.setInt(2, block.getKey());
+                ps.setLong(3, block.getStartTs());
+                ps.setLong(4, block.getEndTs());
+                ps.setInt(5, block.getPoints());
+                ps.setBytes(6, block.getData());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return blocks.size();
+            }
+        });
+    }
+
+    private static List<CompressedTsBlock> toBlocks(UUID entityId, int key, List<TsKvEntry> points, int blockSize) {
+        List<CompressedTsBlock> blocks = new ArrayList<>();
+        for (int from = 0; from < points.size(); from += blockSize) {
+            List<TsKvEntry> blockPoints = points.subList(from, (int) Math.min(points.size(), (long) from + blockSize));
+            blocks.add(new CompressedTsBlock(entityId, key, blockPoints.get(0).getTs(), blockPoints.get(blockPoints.size() - 1).getTs(),
+                    blockPoints.size(), TsBlockCodec.encode(blockPoints)));
+        }
+        return blocks;
+    }
+
+    private static TsKvEntry toEntry(ResultSet rs, String strKey) throws SQLException {
+        KvEntry kvEntry = null;
+        String strValue = rs.getString("str_v");
+        if (strValue != null) {
+            kvEntry = new StringDataEntry(strKey, strValue);
+        } else {
+            long longValue = rs.getLong("long_v");
+            if (!rs.wasNull()) {
+                kvEntry = new LongDataEntry(strKey, longValue);
+            } else {
+                double doubleValue = rs.getDouble("dbl_v");
+                if (!rs.wasNull()) {
+                    kvEntry = new DoubleDataEntry(strKey, doubleValue);
+                } else {
+                    boolean booleanValue = rs.getBoolean("bool_v");
+                    if (!rs.wasNull()) {
+                        kvEntry = new BooleanDataEntry(strKey, booleanValue);
+                    } else {
+                        String jsonValue = rs.getString("json_v");
+                        if (jsonValue != null) {
+                            kvEntry = new JsonDataEntry(strKey, jsonValue);
+                        }
+                    }
+                }
+            }
+        }
+        return kvEntry != null ? new BasicTsKvEntry(rs.getLong("ts"), kvEntry) : null;
+    }
+
+    private class BlockWriter {
+
+        private final int blockSize;
+        private final boolean mergeWithExisting;
+        private final List<TsKvEntry> groupPoints = new ArrayList<>();
+        private final List<CompressedTsBlock> pendingBlocks = new ArrayList<>();
+        private UUID entityId;
+        private int key;
+        private long points;
+
+        BlockWriter(int blockSize, boolean mergeWithExisting) {
+            this.blockSize = blockSize;
+            this.mergeWithExisting = mergeWithExisting;
+        }
+
+        void add(UUID entityId, int key, TsKvEntry entry) {
+            if (!entityId.equals(this.entityId) || key != this.key) {
+                flushGroup();
+                this.entityId = entityId;
+                this.key = key;
+            }
+            groupPoints.add(entry);
+            points++;
+            // when merging, the whole group is needed to find the overlapping blocks
+            if (!mergeWithExisting && groupPoints.size() >= blockSize) {
+                flushGroup();
+            }
+        }
+
+        void flush() {
+            flushGroup();
+            flushPendingBlocks();
+        }
+
+        long getPoints() {
+            return points;
+        }
+
+        private void flushGroup() {
+            if (groupPoints.isEmpty()) {
+                return;
+            }
+            List<TsKvEntry> blockPoints = groupPoints;
+            if (mergeWithExisting) {
+                long startTs = groupPoints.get(0).getTs();
+                long endTs = groupPoints.get(groupPoints.size() - 1).getTs();
+                List<CompressedTsBlock> existingBlocks = findBlocks(entityId, key, startTs, endTs + 1);
+                if (!existingBlocks.isEmpty()) {
+                    List<TsKvEntry> existingPoints = new ArrayList<>();
+                    for (CompressedTsBlock block : existingBlocks) {
+                        existingPoints.addAll(TsBlockCodec.decode(null, block.getData()));
+                        jdbcTemplate.update(DELETE_BLOCK, entityId, key, block.getStartTs(), block.getEndTs());
+                    }
+                    blockPoints = TsBlockCodec.merge(existingPoints, groupPoints);
+                }
+            }
+            pendingBlocks.addAll(toBlocks(entityId, key, blockPoints, blockSize));
+            groupPoints.clear();
+            if (pendingBlocks.size() >= INSERT_BATCH_SIZE) {
+                flushPendingBlocks();
+            }
+        }
+
+        private void flushPendingBlocks() {
+            saveBlocks(pendingBlocks);
+            pendingBlocks.clear();
+        }
+
+    }
+
+}
@@ -0,0 +1,365 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.dao.sqlts.compressed;
+
+import org.winstarcloud.server.common.data.kv.BasicTsKvEntry;
+import org.winstarcloud.server.common.data.kv.BooleanDataEntry;
+import org.winstarcloud.server.common.data.kv.DoubleDataEntry;
+import org.winstarcloud.server.common.data.kv.JsonDataEntry;
+import org.winstarcloud.server.common.data.kv.KvEntry;
+import org.winstarcloud.server.common.data.kv.LongDataEntry;
+import org.winstarcloud.server.common.data.kv.StringDataEntry;
+import org.winstarcloud.server.common.data.kv.TsKvEntry;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Encodes the data points of a single entity and key into a compact block.
+ * <p>
+ * The block stores all timestamps first, as delta-of-delta values, followed by the value types and the values.
+ * Doubles use the Gorilla XOR encoding, longs are stored as zig-zag deltas, booleans as single bits,
+ * strings and JSON values as length-prefixed UTF-8 bytes.
+ */
+public final class TsBlockCodec {
+
+    private static final int VERSION = 1;
+
+    private static final int BOOLEAN = 0;
+    private static final int LONG = 1;
+    private static final int DOUBLE = 2;
+    private static final int STRING = 3;
+    private static final int JSON = 4;
+
+    private TsBlockCodec() {
+    }
+
+    /**
+     * @param entries data points of one key, sorted by timestamp in ascending order
+     */
+    public static byte[] encode(List<? extends TsKvEntry> entries) {
+        BitWriter out = new BitWriter(Math.max(64, entries.size() * 4));
+        int count = entries.size();
+        out.writeBits(VERSION, 8);
+        out.writeUnsigned(count);
+        if (count == 0) {
+            return out.toByteArray();
+        }
+
+        long prevTs = entries.get(0).getTs();
+        long prevDelta = 0;
+        out.writeBits(prevTs, 64);
+        for (int i = 1; i < count; i++) {
+            long ts = entries.get(i).getTs();
+            long delta = ts - prevTs;
+            out.writeSigned(delta - prevDelta);
+            prevDelta = delta;
+            prevTs = ts;
+        }
+
+        int[] types = new int[count];
+        boolean sameType = true;
+        for (int i = 0; i < count; i++) {
+            types[i] = toType(entries.get(i));
+            sameType &= types[i] == types[0];
+        }
+        out.writeBit(sameType);
+        if (sameType) {
+            out.writeBits(types[0], 3);
+        } else {
+            for (int type : types) {
+                out.writeBits(type, 3);
+            }
+        }
+
+        long prevLong = 0;
+        DoubleState doubleState = new DoubleState();
+        for (int i = 0; i < count; i++) {
+            TsKvEntry entry = entries.get(i);
+            switch (types[i]) {
+                case BOOLEAN -> out.writeBit(entry.getBooleanValue().get());
+                case LONG -> {
+                    long value = entry.getLongValue().get();
+                    out.writeSigned(value - prevLong);
+                    prevLong = value;
+                }
+                case DOUBLE -> doubleState.write(out, entry.getDoubleValue().get());
+                case STRING -> out.writeString(entry.getStrValue().get());
+                case JSON -> out.writeString(entry.getJsonValue().get());
+            }
+        }
+        return out.toByteArray();
+    }
+
+    public static List<TsKvEntry> decode(String key, byte[] data) {
+        BitReader in = new BitReader(data);
+        int version = (int) in.readBits(8);
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported compressed block version: " + version);
+        }
+        int count = (int) in.readUnsigned();
+        if (count == 0) {
+            return new ArrayList<>();
+        }
+
+        long[] timestamps = new long[count];
+        timestamps[0] = in.readBits(64);
+        long delta = 0;
+        for (int i = 1; i < count; i++) {
+            delta += in.readSigned();
+            timestamps[i] = timestamps[i - 1] + delta;
+        }
+
+        int[] types = new int[count];
+        if (in.readBit()) {
+            Arrays.fill(types, (int) in.readBits(3));
+        } else {
+            for (int i = 0; i < count; i++) {
+                types[i] = (int) in.readBits(3);
+            }
+        }
+
+        List<TsKvEntry> result = new ArrayList<>(count);
+        long prevLong = 0;
+        DoubleState doubleState = new DoubleState();
+        for (int i = 0; i < count; i++) {
+            KvEntry kvEntry = switch (types[i]) {
+                case BOOLEAN -> new BooleanDataEntry(key, in.readBit());
+                case LONG -> {
+                    prevLong += in.readSigned();
+                    yield new LongDataEntry(key, prevLong);
+                }
+                case DOUBLE -> new DoubleDataEntry(key, doubleState.read(in));
+                case STRING -> new StringDataEntry(key, in.readString());
+                case JSON -> new JsonDataEntry(key, in.readString());
+                default -> throw new IllegalArgumentException("Unsupported value type in compressed block: " + types[i]);
+            };
+            result.add(new BasicTsKvEntry(timestamps[i], kvEntry));
+        }
+        return result;
+    }
+
+    /**
+     * Merges the points of the same key into a single list sorted by timestamp.
+     * If both lists contain a point with the same timestamp, the point from {@code newer} is kept.
+     */
+    public static List<TsKvEntry> merge(List<? extends TsKvEntry> older, List<? extends TsKvEntry> newer) {
+        TreeMap<Long, TsKvEntry> merged = new TreeMap<>();
+        older.forEach(entry -> merged.put(entry.getTs(), entry));
+        newer.forEach(entry -> merged.put(entry.getTs(), entry));
+        return new ArrayList<>(merged.values());
+    }
+
+    private static int toType(TsKvEntry entry) {
+        return switch (entry.getDataType()) {
+            case BOOLEAN -> BOOLEAN;
+            case LONG -> LONG;
+            case DOUBLE -> DOUBLE;
+            case STRING -> STRING;
+            case JSON -> JSON;
+        };
+    }
+
+    private static final class DoubleState {
+
+        private long prevBits;
+        private int prevLeading = -1;
+        private int prevTrailing;
+
+        void write(BitWriter out, double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            long xor = bits ^ prevBits;
+            prevBits = bits;
+            if (xor == 0) {
+                out.writeBit(false);
+                return;
+            }
+            out.writeBit(true);
+            int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (prevLeading >= 0 && leading >= prevLeading && trailing >= prevTrailing) {
+                out.writeBit(false);
+                out.writeBits(xor >>> prevTrailing, 64 - prevLeading - prevTrailing);
+            } else {
+                int meaningful = 64 - leading - trailing;
+                out.writeBit(true);
+                out.writeBits(leading, 5);
+                out.writeBits(meaningful - 1, 6);
+                out.writeBits(xor >>> trailing, meaningful);
+                prevLeading = leading;
+                prevTrailing = trailing;
+            }
+        }
+
+        double read(BitReader in) {
+            if (in.readBit()) {
+                long xor;
+                if (!in.readBit()) {
+                    xor = in.readBits(64 - prevLeading - prevTrailing) << prevTrailing;
+                } else {
+                    int leading = (int) in.readBits(5);
+                    int meaningful = (int) in.readBits(6) + 1;
+                    int trailing = 64 - leading - meaningful;
+                    xor = in.readBits(meaningful) << trailing;
+                    prevLeading = leading;
+                    prevTrailing = trailing;
+                }
+                prevBits ^= xor;
+            }
+            return Double.longBitsToDouble(prevBits);
+        }
+
+    }
+
+    private static final class BitWriter {
+
+        private byte[] buffer;
+        private int position;
+
+        BitWriter(int initialCapacity) {
+            this.buffer = new byte[initialCapacity];
+        }
+
+        void writeBit(boolean bit) {
+            writeBits(bit ? 1 : 0, 1);
+        }
+
+        void writeBits(long value, int bits) {
+            ensureCapacity(bits);
+            while (bits > 0) {
+                int free = 8 - (position & 7);
+                int chunkBits = Math.min(free, bits);
+                int chunk = (int) (value >>> (bits - chunkBits)) & ((1 << chunkBits) - 1);
+                buffer[position >>> 3] |= (byte) (chunk << (free - chunkBits));
+                position += chunkBits;
+                bits -= chunkBits;
+            }
+        }
+
+        /**
+         * Writes the value with a prefix code: the smaller the value, the fewer bits it takes.
+         */
+        void writeUnsigned(long value) {
+            if (value == 0) {
+                writeBits(0b0, 1);
+            } else if (value >>> 7 == 0) {
+                writeBits(0b10, 2);
+                writeBits(value, 7);
+            } else if (value >>> 12 == 0) {
+                writeBits(0b110, 3);
+                writeBits(value, 12);
+            } else if (value >>> 20 == 0) {
+                writeBits(0b1110, 4);
+                writeBits(value, 20);
+            } else if (value >>> 32 == 0) {
+                writeBits(0b11110, 5);
+                writeBits(value, 32);
+            } else {
+                writeBits(0b11111, 5);
+                writeBits(value, 64);
+            }
+        }
+
+        void writeSigned(long value) {
+            writeUnsigned((value << 1) ^ (value >> 63));
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeUnsigned(bytes.length);
+            for (byte b : bytes) {
+                writeBits(b, 8);
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, (position + 7) >>> 3);
+        }
+
+        private void ensureCapacity(int bits) {
+            int required = (position + bits + 7) >>> 3;
+            if (required > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length * 2));
+            }
+        }
+
+    }
+
+    private static final class BitReader {
+
+        private final byte[] buffer;
+        private int position;
+
+        BitReader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        boolean readBit() {
+            return readBits(1) == 1;
+        }
+
+        long readBits(int bits) {
+            if (position + bits > buffer.length * 8) {
+                throw new IllegalArgumentException("Unexpected end of compressed block");
+            }
+            long result = 0;
+            while (bits > 0) {
+                int available = 8 - (position & 7);
+                int chunkBits = Math.min(available, bits);
+                int chunk = ((buffer[position >>> 3] & 0xFF) >>> (available - chunkBits)) & ((1 << chunkBits) - 1);
+                result = (result << chunkBits) | chunk;
+                position += chunkBits;
+                bits -= chunkBits;
+            }
+            return result;
+        }
+
+        long readUnsigned() {
+            if (!readBit()) {
+                return 0;
+            } else if (!readBit()) {
+                return readBits(7);
+            } else if (!readBit()) {
+                return readBits(12);
+            } else if (!readBit()) {
+                return readBits(20);
+            } else if (!readBit()) {
+                return readBits(32);
+            } else {
+                return readBits(64);
+            }
+        }
+
+        long readSigned() {
+            long value = readUnsigned();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        String readString() {
+            int length = (int) readUnsigned();
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = (byte) readBits(8);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+    }
+
+}
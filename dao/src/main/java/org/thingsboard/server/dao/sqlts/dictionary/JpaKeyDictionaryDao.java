@@ -15,20 +15,30 @@
  */
 package org.winstarcloud.server.dao.sqlts.dictionary;
 
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Component;
 import org.winstarcloud.server.dao.dictionary.KeyDictionaryDao;
+import org.winstarcloud.server.dao.dictionary.KeyDictionaryEntryCreatedEvent;
 import org.winstarcloud.server.dao.model.sqlts.dictionary.KeyDictionaryCompositeKey;
 import org.winstarcloud.server.dao.model.sqlts.dictionary.KeyDictionaryEntry;
 import org.winstarcloud.server.dao.sql.JpaAbstractDaoListeningExecutorService;
 import org.winstarcloud.server.dao.util.SqlDao;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.locks.ReentrantLock;
 
 @Component
@@ -36,12 +46,41 @@ import java.util.concurrent.locks.ReentrantLock;
 @SqlDao
 public class JpaKeyDictionaryDao extends JpaAbstractDaoListeningExecutorService implements KeyDictionaryDao {
 
+    private static final int INITIAL_KEYS_CAPACITY = 1024;
+    // Key ids are generated by a sequence, so they are dense and may index an array directly.
+    // Ids above the limit (e.g. after manual sequence changes) are kept in a map instead.
+    private static final int MAX_DENSE_KEY_ID = 1 << 20;
+
     private final ConcurrentMap<String, Integer> keyDictionaryMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, String> sparseKeysById = new ConcurrentHashMap<>();
+    private volatile AtomicReferenceArray<String> keysById = new AtomicReferenceArray<>(INITIAL_KEYS_CAPACITY);
     protected static final ReentrantLock creationLock = new ReentrantLock();
 
     @Autowired
     private KeyDictionaryRepository keyDictionaryRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${sql.key_dictionary_preload:true}")
+    private boolean preloadEnabled;
+
+    @PostConstruct
+    public void init() {
+        if (!preloadEnabled) {
+            return;
+        }
+        try {
+            long startTs = System.currentTimeMillis();
+            List<KeyDictionaryEntry> entries = keyDictionaryRepository.findAll();
+            entries.forEach(entry -> cacheKey(entry.getKey(), entry.getKeyId()));
+            log.info("Loaded {} keys to the key dictionary in {} ms", entries.size(), System.currentTimeMillis() - startTs);
+        } catch (Exception e) {
+            // the table may not exist yet, e.g. during the installation
+            log.warn("Failed to preload the key dictionary: {}", e.getMessage());
+        }
+    }
+
     @Override
     public Integer getOrSaveKeyId(String strKey) {
         Integer keyId = keyDictionaryMap.get(strKey);
@@ -61,32 +100,103 @@ public class JpaKeyDictionaryDao extends JpaAbstractDaoListeningExecutorService
                         keyDictionaryEntry.setKey(strKey);
                         try {
                             KeyDictionaryEntry saved = keyDictionaryRepository.save(keyDictionaryEntry);
-                            keyDictionaryMap.put(saved.getKey(), saved.getKeyId());
+                            cacheKey(saved.getKey(), saved.getKeyId());
                             keyId = saved.getKeyId();
+                            eventPublisher.publishEvent(new KeyDictionaryEntryCreatedEvent(saved.getKey(), saved.getKeyId()));
                         } catch (DataIntegrityViolationException | ConstraintViolationException e) {
                             tsKvDictionaryOptional = keyDictionaryRepository.findById(new KeyDictionaryCompositeKey(strKey));
                             KeyDictionaryEntry dictionary = tsKvDictionaryOptional.orElseThrow(() -> new RuntimeException("Failed to get KeyDictionaryEntry entity from DB!"));
-                            keyDictionaryMap.put(dictionary.getKey(), dictionary.getKeyId());
+                            cacheKey(dictionary.getKey(), dictionary.getKeyId());
                             keyId = dictionary.getKeyId();
                         }
                     } else {
                         keyId = tsKvDictionaryOptional.get().getKeyId();
+                        cacheKey(strKey, keyId);
                     }
                 } finally {
                     creationLock.unlock();
                 }
             } else {
                 keyId = tsKvDictionaryOptional.get().getKeyId();
-                keyDictionaryMap.put(strKey, keyId);
+                cacheKey(strKey, keyId);
             }
         }
         return keyId;
     }
 
+    @Override
+    public Map<String, Integer> getOrSaveKeyIds(Collection<String> strKeys) {
+        Map<String, Integer> result = new LinkedHashMap<>(strKeys.size() * 2);
+        List<String> missingKeys = null;
+        for (String strKey : strKeys) {
+            Integer keyId = keyDictionaryMap.get(strKey);
+            if (keyId != null) {
+                result.put(strKey, keyId);
+            } else {
+                if (missingKeys == null) {
+                    missingKeys = new ArrayList<>();
+                }
+                missingKeys.add(strKey);
+            }
+        }
+        if (missingKeys != null) {
+            for (KeyDictionaryEntry entry : keyDictionaryRepository.findAllByKeyIn(missingKeys)) {
+                cacheKey(entry.getKey(), entry.getKeyId());
+                result.put(entry.getKey(), entry.getKeyId());
+            }
+            for (String strKey : missingKeys) {
+                if (!result.containsKey(strKey)) {
+                    result.put(strKey, getOrSaveKeyId(strKey));
+                }
+            }
+        }
+        return result;
+    }
+
     @Override
     public String getKey(Integer keyId) {
-        Optional<KeyDictionaryEntry> byKeyId = keyDictionaryRepository.findByKeyId(keyId);
-        return byKeyId.map(KeyDictionaryEntry::getKey).orElse(null);
+        String key = lookupKey(keyId);
+        if (key == null) {
+            Optional<KeyDictionaryEntry> byKeyId = keyDictionaryRepository.findByKeyId(keyId);
+            if (byKeyId.isPresent()) {
+                key = byKeyId.get().getKey();
+                cacheKey(key, keyId);
+            }
+        }
+        return key;
+    }
+
+    @Override
+    public void addKeys(Map<String, Integer> keyIds) {
+        keyIds.forEach(this::cacheKey);
+    }
+
+    private String lookupKey(int keyId) {
+        if (keyId >= 0 && keyId < MAX_DENSE_KEY_ID) {
+            AtomicReferenceArray<String> keys = keysById;
+            return keyId < keys.length() ? keys.get(keyId) : null;
+        } else {
+            return sparseKeysById.get(keyId);
+        }
+    }
+
+    private synchronized void cacheKey(String key, int keyId) {
+        keyDictionaryMap.put(key, keyId);
+        if (keyId >= 0 && keyId < MAX_DENSE_KEY_ID) {
+            AtomicReferenceArray<String> keys = keysById;
+            if (keyId >= keys.length()) {
+                int newLength = Math.min(MAX_DENSE_KEY_ID, Math.max(keyId + 1, keys.length() * 2));
+                AtomicReferenceArray<String> newKeys = new AtomicReferenceArray<>(newLength);
+                for (int i = 0; i < keys.length(); i++) {
+                    newKeys.set(i, keys.get(i));
+                }
+                keys = newKeys;
+                keysById = newKeys;
+            }
+            keys.set(keyId, key);
+        } else {
+            sparseKeysById.put(keyId, key);
+        }
     }
 
 }
@@ -19,11 +19,14 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.winstarcloud.server.dao.model.sqlts.dictionary.KeyDictionaryEntry;
 import org.winstarcloud.server.dao.model.sqlts.dictionary.KeyDictionaryCompositeKey;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface KeyDictionaryRepository extends JpaRepository<KeyDictionaryEntry, KeyDictionaryCompositeKey> {
 
     Optional<KeyDictionaryEntry> findByKeyId(int keyId);
 
+    List<KeyDictionaryEntry> findAllByKeyIn(Collection<String> keys);
 
 }
\ No newline at end of file
@@ -0,0 +1,155 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.dao.sqlts.insert;
+
+import jakarta.annotation.PostConstruct;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.winstarcloud.server.dao.model.sql.AbstractTsKvEntity;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Statement;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Base class for the ts_kv insert repositories. Depending on {@code sql.ts.insert_mode} the batch is either saved
+ * with a batched INSERT ... ON CONFLICT statement or streamed with COPY (FORMAT binary) into a temporary staging table
+ * and merged into ts_kv with a single set-based upsert. Either way the batch is saved within a single transaction,
+ * which also keeps the staged rows until the merge.
+ */
+public abstract class AbstractTsKvInsertRepository<T extends AbstractTsKvEntity> extends AbstractInsertRepository implements InsertTsRepository<T> {
+
+    private static final String BATCH_MODE = "batch";
+    private static final String COPY_MODE = "copy";
+
+    private static final String CREATE_STAGING_TABLE = "CREATE TEMP TABLE IF NOT EXISTS ts_kv_copy_staging (" +
+            "seq bigserial, entity_id uuid, key int, ts bigint, bool_v boolean, str_v varchar(10000000), " +
+            "long_v bigint, dbl_v double precision, json_v json) ON COMMIT DELETE ROWS";
+
+    private static final String COPY_TO_STAGING_TABLE = "COPY ts_kv_copy_staging (entity_id, key, ts, bool_v, str_v, long_v, dbl_v, json_v) " +
+            "FROM STDIN (FORMAT binary)";
+
+    private static final String MERGE_FROM_STAGING_TABLE = "INSERT INTO ts_kv (entity_id, key, ts, bool_v, str_v, long_v, dbl_v, json_v) " +
+            "SELECT DISTINCT ON (entity_id, key, ts) entity_id, key, ts, bool_v, str_v, long_v, dbl_v, json_v " +
+            "FROM ts_kv_copy_staging ORDER BY entity_id, key, ts, seq DESC " +
+            "ON CONFLICT (entity_id, key, ts) DO UPDATE SET bool_v = EXCLUDED.bool_v, str_v = EXCLUDED.str_v, " +
+            "long_v = EXCLUDED.long_v, dbl_v = EXCLUDED.dbl_v, json_v = EXCLUDED.json_v";
+
+    private static final byte[] COPY_BINARY_SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final short COPY_FIELDS_COUNT = 8;
+
+    @Value("${sql.ts.insert_mode:batch}")
+    private String insertMode;
+
+    private boolean copyMode;
+
+    @PostConstruct
+    public void init() {
+        if (!BATCH_MODE.equalsIgnoreCase(insertMode) && !COPY_MODE.equalsIgnoreCase(insertMode)) {
+            throw new IllegalArgumentException("Unknown sql.ts.insert_mode: " + insertMode + ", expected " + BATCH_MODE + " or " + COPY_MODE);
+        }
+        copyMode = COPY_MODE.equalsIgnoreCase(insertMode);
+    }
+
+    @Override
+    public void saveOrUpdate(List<T> entities) {
+        if (entities.isEmpty()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            if (copyMode) {
+                copyAndMerge(entities);
+            } else {
+                batchInsert(entities);
+            }
+        });
+    }
+
+    protected abstract void batchInsert(List<T> entities);
+
+    private void copyAndMerge(List<T> entities) {
+        jdbcTemplate.execute((ConnectionCallback<Integer>) con -> {
+            try (Statement statement = con.createStatement()) {
+                statement.execute(CREATE_STAGING_TABLE);
+            }
+            PGConnection pgConnection = con.unwrap(PGConnection.class);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new PGCopyOutputStream(pgConnection, COPY_TO_STAGING_TABLE), 65536))) {
+                out.write(COPY_BINARY_SIGNATURE);
+                out.writeInt(0);
+                out.writeInt(0);
+                for (T entity : entities) {
+                    writeRow(out, entity);
+                }
+                out.writeShort(-1);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            try (Statement statement = con.createStatement()) {
+                return statement.executeUpdate(MERGE_FROM_STAGING_TABLE);
+            }
+        });
+    }
+
+    private void writeRow(DataOutputStream out, T entity) throws IOException {
+        out.writeShort(COPY_FIELDS_COUNT);
+        UUID entityId = entity.getEntityId();
+        out.writeInt(16);
+        out.writeLong(entityId.getMostSignificantBits());
+        out.writeLong(entityId.getLeastSignificantBits());
+        out.writeInt(4);
+        out.writeInt(entity.getKey());
+        out.writeInt(8);
+        out.writeLong(entity.getTs());
+        if (entity.getBooleanValue() != null) {
+            out.writeInt(1);
+            out.writeBoolean(entity.getBooleanValue());
+        } else {
+            out.writeInt(-1);
+        }
+        writeText(out, replaceNullChars(entity.getStrValue()));
+        if (entity.getLongValue() != null) {
+            out.writeInt(8);
+            out.writeLong(entity.getLongValue());
+        } else {
+            out.writeInt(-1);
+        }
+        if (entity.getDoubleValue() != null) {
+            out.writeInt(8);
+            out.writeDouble(entity.getDoubleValue());
+        } else {
+            out.writeInt(-1);
+        }
+        writeText(out, replaceNullChars(entity.getJsonValue()));
+    }
+
+    private static void writeText(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+}
@@ -19,8 +19,7 @@ import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import org.winstarcloud.server.dao.model.sqlts.ts.TsKvEntity;
-import org.winstarcloud.server.dao.sqlts.insert.AbstractInsertRepository;
-import org.winstarcloud.server.dao.sqlts.insert.InsertTsRepository;
+import org.winstarcloud.server.dao.sqlts.insert.AbstractTsKvInsertRepository;
 import org.winstarcloud.server.dao.util.SqlTsDao;
 
 import java.sql.PreparedStatement;
@@ -31,13 +30,13 @@ import java.util.List;
 @SqlTsDao
 @Repository
 @Transactional
-public class SqlInsertTsRepository extends AbstractInsertRepository implements InsertTsRepository<TsKvEntity> {
+public class SqlInsertTsRepository extends AbstractTsKvInsertRepository<TsKvEntity> {
 
     private static final String INSERT_ON_CONFLICT_DO_UPDATE = "INSERT INTO ts_kv (entity_id, key, ts, bool_v, str_v, long_v, dbl_v, json_v) VALUES (?, ?, ?, ?, ?, ?, ?, cast(? AS json)) " +
             "ON CONFLICT (entity_id, key, ts) DO UPDATE SET bool_v = ?, str_v = ?, long_v = ?, dbl_v = ?, json_v = cast(? AS json);";
 
     @Override
-    public void saveOrUpdate(List<TsKvEntity> entities) {
+    protected void batchInsert(List<TsKvEntity> entities) {
         jdbcTemplate.batchUpdate(INSERT_ON_CONFLICT_DO_UPDATE, new BatchPreparedStatementSetter() {
             @Override
             public void setValues(PreparedStatement ps, int i) throws SQLException {
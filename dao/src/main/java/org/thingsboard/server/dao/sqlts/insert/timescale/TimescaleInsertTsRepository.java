@@ -19,8 +19,7 @@ import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import org.winstarcloud.server.dao.model.sqlts.timescale.ts.TimescaleTsKvEntity;
-import org.winstarcloud.server.dao.sqlts.insert.AbstractInsertRepository;
-import org.winstarcloud.server.dao.sqlts.insert.InsertTsRepository;
+import org.winstarcloud.server.dao.sqlts.insert.AbstractTsKvInsertRepository;
 import org.winstarcloud.server.dao.util.TimescaleDBTsDao;
 
 import java.sql.PreparedStatement;
@@ -31,14 +30,14 @@ import java.util.List;
 @TimescaleDBTsDao
 @Repository
 @Transactional
-public class TimescaleInsertTsRepository extends AbstractInsertRepository implements InsertTsRepository<TimescaleTsKvEntity> {
+public class TimescaleInsertTsRepository extends AbstractTsKvInsertRepository<TimescaleTsKvEntity> {
 
     private static final String INSERT_OR_UPDATE =
             "INSERT INTO ts_kv (entity_id, key, ts, bool_v, str_v, long_v, dbl_v, json_v) VALUES(?, ?, ?, ?, ?, ?, ?, cast(? AS json)) " +
                     "ON CONFLICT (entity_id, key, ts) DO UPDATE SET bool_v = ?, str_v = ?, long_v = ?, dbl_v = ?, json_v = cast(? AS json);";
 
     @Override
-    public void saveOrUpdate(List<TimescaleTsKvEntity> entities) {
+    protected void batchInsert(List<TimescaleTsKvEntity> entities) {
         jdbcTemplate.batchUpdate(INSERT_OR_UPDATE, new BatchPreparedStatementSetter() {
             @Override
             public void setValues(PreparedStatement ps, int i) throws SQLException {
@@ -21,6 +21,7 @@ import org.springframework.data.repository.query.Param;
 import org.winstarcloud.server.dao.model.sqlts.latest.TsKvLatestCompositeKey;
 import org.winstarcloud.server.dao.model.sqlts.latest.TsKvLatestEntity;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -41,4 +42,6 @@ public interface TsKvLatestRepository extends JpaRepository<TsKvLatestEntity, Ts
             "WHERE ts_kv_latest.entity_id IN :entityIds ORDER BY key_dictionary.key", nativeQuery = true)
     List<String> findAllKeysByEntityIds(@Param("entityIds") List<UUID> entityIds);
 
+    List<TsKvLatestEntity> findAllByEntityIdInAndKeyIn(Collection<UUID> entityIds, Collection<Integer> keys);
+
 }
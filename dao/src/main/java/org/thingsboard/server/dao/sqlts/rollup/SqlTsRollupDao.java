@@ -0,0 +1,525 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.dao.sqlts.rollup;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.tuple.Pair;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.winstarcloud.common.util.WinstarCloudThreadFactory;
+import org.winstarcloud.server.common.data.StringUtils;
+import org.winstarcloud.server.common.data.kv.Aggregation;
+import org.winstarcloud.server.common.data.kv.TsKvEntry;
+import org.winstarcloud.server.common.stats.StatsFactory;
+import org.winstarcloud.server.dao.dictionary.KeyDictionaryDao;
+import org.winstarcloud.server.dao.model.sqlts.ts.TsKvEntity;
+import org.winstarcloud.server.dao.sql.ScheduledLogExecutorComponent;
+import org.winstarcloud.server.dao.sql.TbSqlBlockingQueueParams;
+import org.winstarcloud.server.dao.sql.TbSqlBlockingQueueWrapper;
+import org.winstarcloud.server.dao.sqlts.aggregation.TsAggregate;
+import org.winstarcloud.server.dao.sqlts.aggregation.TsBucketAggregator;
+import org.winstarcloud.server.dao.sqlts.compressed.CompressedTsKvRepository;
+import org.winstarcloud.server.dao.util.SqlTsDao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains the rollups (partial aggregates per fixed interval, e.g. minute, hour and day) of the configured keys
+ * and answers the aggregated queries from them.
+ * <p>
+ * The rollups are built from ts_kv by a periodic job for the periods that ended at least the configured delay ago,
+ * so that the queued points have reached the database. The entities of the saved points are registered for the builds
+ * through a batched queue, that is drained well within the delay as well. The rollups of a built range are replaced as a whole,
+ * so the builds are idempotent and may run on every node. The points that are older than half of the delay on arrival,
+ * and the removed ranges, cause the rebuild of the affected periods of the entity.
+ * <p>
+ * A query bucket is decomposed into the longest aligned rollup periods it contains, the remaining edges are aggregated
+ * from the raw data. Rollups are used only after the moment they were enabled for the key, and up to the built range.
+ */
+@Component
+@SqlTsDao
+@Slf4j
+public class SqlTsRollupDao {
+
+    private static final int MARKS_BATCH_SIZE = 1000;
+
+    @Autowired
+    private TsRollupRepository rollupRepository;
+
+    @Autowired
+    private CompressedTsKvRepository compressedTsKvRepository;
+
+    @Autowired
+    private KeyDictionaryDao keyDictionaryDao;
+
+    @Autowired
+    private ScheduledLogExecutorComponent logExecutor;
+
+    @Autowired
+    private StatsFactory statsFactory;
+
+    @Value("${sql.ts.rollup.enabled:false}")
+    private boolean enabled;
+
+    @Value("${sql.ts.rollup.intervals:60000,3600000,86400000}")
+    private String intervalsConfig;
+
+    @Value("${sql.ts.rollup.keys:}")
+    private String keysConfig;
+
+    @Value("${sql.ts.rollup.build_interval_ms:10000}")
+    private long buildInterval;
+
+    @Value("${sql.ts.rollup.delay_ms:60000}")
+    private long delay;
+
+    @Value("${sql.ts.compression.enabled:false}")
+    private boolean compressionEnabled;
+
+    @Value("${sql.ts.batch_size:1000}")
+    private int batchSize;
+
+    @Value("${sql.ts.batch_max_delay:100}")
+    private long maxDelay;
+
+    @Value("${sql.ts.stats_print_interval_ms:1000}")
+    private long statsPrintIntervalMs;
+
+    @Value("${sql.batch_sort:true}")
+    private boolean batchSortEnabled;
+
+    @Value("${sql.ring_buffer_size:0}")
+    private int ringBufferSize;
+
+    private long[] intervals;
+    private Set<String> keys;
+
+    private final ConcurrentMap<Integer, TsRollupState> states = new ConcurrentHashMap<>();
+    private Cache<Pair<Integer, UUID>, Boolean> savedEntities;
+    private Cache<TsRollupKey, Boolean> savedMarks;
+    private ScheduledExecutorService buildExecutor;
+    private TbSqlBlockingQueueWrapper<TsRollupUpdate> updateQueue;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            clearStates();
+            return;
+        }
+        intervals = Arrays.stream(intervalsConfig.split(",")).map(String::trim).mapToLong(Long::parseLong).toArray();
+        if (intervals.length == 0 || intervals[0] <= 0) {
+            throw new IllegalArgumentException("Invalid rollup intervals: " + intervalsConfig);
+        }
+        for (int i = 1; i < intervals.length; i++) {
+            if (intervals[i] <= intervals[i - 1] || intervals[i] % intervals[i - 1] != 0) {
+                throw new IllegalArgumentException("Each rollup interval must be a multiple of the previous one: " + intervalsConfig);
+            }
+        }
+        keys = StringUtils.isBlank(keysConfig) ? Set.of() : Arrays.stream(keysConfig.split(","))
+                .map(String::trim).filter(StringUtils::isNotEmpty).collect(Collectors.toUnmodifiableSet());
+        savedEntities = Caffeine.newBuilder()
+                .expireAfterAccess(24, TimeUnit.HOURS)
+                .maximumSize(1000000).build();
+        // a period is marked again after a quarter of the delay, so that its rebuild can't miss a point still in the queue
+        savedMarks = Caffeine.newBuilder()
+                .expireAfterWrite(delay / 4, TimeUnit.MILLISECONDS)
+                .maximumSize(100000).build();
+        clearStates();
+        TbSqlBlockingQueueParams params = TbSqlBlockingQueueParams.builder()
+                .logName("TS rollup")
+                .batchSize(batchSize)
+                .maxDelay(maxDelay)
+                .statsPrintIntervalMs(statsPrintIntervalMs)
+                .statsNamePrefix("ts.rollup")
+                .batchSortEnabled(batchSortEnabled)
+                .ringBufferSize(ringBufferSize)
+                .build();
+        // a single thread, so that a new key gets a single state
+        updateQueue = new TbSqlBlockingQueueWrapper<>(params, update -> update.getEntityId().hashCode(), 1, statsFactory);
+        updateQueue.init(logExecutor, this::saveUpdates, Comparator.comparing(TsRollupUpdate::getEntityId)
+                .thenComparingInt(TsRollupUpdate::getKey)
+                .thenComparingLong(TsRollupUpdate::getTs));
+        buildExecutor = Executors.newSingleThreadScheduledExecutor(WinstarCloudThreadFactory.forName("sql-ts-rollup"));
+        buildExecutor.scheduleWithFixedDelay(() -> build(System.currentTimeMillis()), buildInterval, buildInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (buildExecutor != null) {
+            buildExecutor.shutdownNow();
+        }
+        if (updateQueue != null) {
+            updateQueue.destroy();
+        }
+    }
+
+    public boolean isEnabled(String key) {
+        return enabled && (keys.isEmpty() || keys.contains(key));
+    }
+
+    /**
+     * Queues the registration of the entity of the point to be saved, and the mark of the period of the point for the rebuild
+     * if it is late. Called before the point is queued, so the registration reaches the database before the period
+     * of the point is built, same as the point itself. The returned future completes once the updates are saved.
+     */
+    public ListenableFuture<Void> onSave(UUID entityId, int keyId, TsKvEntry entry) {
+        if (!isEnabled(entry.getKey())) {
+            return Futures.immediateVoidFuture();
+        }
+        long now = System.currentTimeMillis();
+        Pair<Integer, UUID> entity = Pair.of(keyId, entityId);
+        boolean newEntity = savedEntities.getIfPresent(entity) == null;
+        TsRollupKey period = null;
+        if (entry.getTs() < now - delay / 2) {
+            period = new TsRollupKey(entityId, keyId, getMaxInterval(), floor(entry.getTs(), getMaxInterval()));
+            if (savedMarks.getIfPresent(period) != null) {
+                period = null;
+            }
+        }
+        if (!newEntity && period == null && states.containsKey(keyId)) {
+            return Futures.immediateVoidFuture();
+        }
+        if (newEntity) {
+            savedEntities.put(entity, Boolean.TRUE);
+        }
+        if (period != null) {
+            savedMarks.put(period, Boolean.TRUE);
+        }
+        return updateQueue.add(new TsRollupUpdate(entityId, keyId, entry.getTs(), now, newEntity));
+    }
+
+    private void saveUpdates(List<TsRollupUpdate> updates) {
+        long maxInterval = getMaxInterval();
+        try {
+            List<Pair<Integer, UUID>> entities = new ArrayList<>();
+            Map<TsRollupKey, TsRollupMark> marks = new LinkedHashMap<>();
+            for (TsRollupUpdate update : updates) {
+                TsRollupState state = states.get(update.getKey());
+                if (state == null) {
+                    // the entities that had no points since are not registered, so the rollups are complete starting from the next period only
+                    state = rollupRepository.findOrSaveState(update.getKey(), ceil(System.currentTimeMillis(), maxInterval));
+                    states.put(update.getKey(), state);
+                }
+                if (update.isNewEntity()) {
+                    entities.add(Pair.of(update.getKey(), update.getEntityId()));
+                }
+                if (update.getTs() >= state.getSince() && update.getTs() < update.getReceivedTs() - delay / 2) {
+                    long periodTs = floor(update.getTs(), maxInterval);
+                    marks.merge(new TsRollupKey(update.getEntityId(), update.getKey(), maxInterval, periodTs),
+                            new TsRollupMark(update.getEntityId(), update.getKey(), periodTs, update.getReceivedTs()),
+                            (mark, newMark) -> newMark.getMarkedTs() > mark.getMarkedTs() ? newMark : mark);
+                }
+            }
+            rollupRepository.saveEntities(entities);
+            rollupRepository.saveMarks(new ArrayList<>(marks.values()));
+        } catch (RuntimeException e) {
+            // the updates are queued again by the next points of the entities
+            for (TsRollupUpdate update : updates) {
+                if (update.isNewEntity()) {
+                    savedEntities.invalidate(Pair.of(update.getKey(), update.getEntityId()));
+                }
+                savedMarks.invalidate(new TsRollupKey(update.getEntityId(), update.getKey(), maxInterval, floor(update.getTs(), maxInterval)));
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Invalidates the rollups of the removed range: the rollups of the periods overlapping the range are deleted,
+     * and the ones of the edge periods are rebuilt from the remaining points.
+     */
+    public void onRemove(UUID entityId, int keyId, String key, long startTs, long endTs) {
+        if (!isEnabled(key)) {
+            return;
+        }
+        long maxInterval = getMaxInterval();
+        long periodStart = floor(startTs, maxInterval);
+        long periodEnd = endTs > Long.MAX_VALUE - maxInterval ? Long.MAX_VALUE : ceil(endTs, maxInterval);
+        rollupRepository.replace(entityId, keyId, periodStart, periodEnd, () -> {
+            Map<TsRollupKey, TsAggregate> rollups = new HashMap<>();
+            processPoints(entityId, keyId, key, periodStart, Math.min(periodStart + maxInterval, periodEnd),
+                    point -> addToRollups(rollups, entityId, keyId, point));
+            if (periodEnd != Long.MAX_VALUE && periodEnd - maxInterval > periodStart) {
+                processPoints(entityId, keyId, key, periodEnd - maxInterval, periodEnd, point -> addToRollups(rollups, entityId, keyId, point));
+            }
+            return rollups;
+        });
+    }
+
+    public void cleanup(long ttlTs) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            int removed = rollupRepository.deleteBefore(ttlTs);
+            log.info("Total timeseries rollups removed by TTL: [{}]", removed);
+        } catch (Exception e) {
+            log.error("Failed to cleanup timeseries rollups", e);
+        }
+    }
+
+    /**
+     * Aggregates the buckets, using the rollups for the buckets that contain at least one complete rollup period.
+     * The leading and trailing buckets without such periods are aggregated by the given fallback.
+     *
+     * @param fallback aggregates the raw data of the given bucket starts and the exclusive end of the last bucket
+     */
+    public List<Optional<TsKvEntity>> findAggregated(UUID entityId, int keyId, String key, long[] bucketStarts, long endTs, Aggregation aggregation,
+                                                     BiFunction<long[], Long, List<Optional<TsKvEntity>>> fallback) {
+        TsRollupState state = isEnabled(key) ? getState(keyId) : null;
+        if (state == null) {
+            return fallback.apply(bucketStarts, endTs);
+        }
+        int bucketsCount = bucketStarts.length;
+        int from = -1;
+        int to = -1;
+        for (int i = 0; i < bucketsCount; i++) {
+            long bucketEnd = i + 1 < bucketsCount ? bucketStarts[i + 1] : endTs;
+            long start = Math.max(bucketStarts[i], state.getSince());
+            long end = Math.min(bucketEnd, state.getBuilt());
+            if (start < end && ceil(start, intervals[0]) < floor(end, intervals[0])) {
+                if (from < 0) {
+                    from = i;
+                }
+                to = i + 1;
+            }
+        }
+        if (from < 0) {
+            return fallback.apply(bucketStarts, endTs);
+        }
+        List<Optional<TsKvEntity>> result = new ArrayList<>(bucketsCount);
+        if (from > 0) {
+            result.addAll(fallback.apply(Arrays.copyOfRange(bucketStarts, 0, from), bucketStarts[from]));
+        }
+        long rollupEndTs = to < bucketsCount ? bucketStarts[to] : endTs;
+        result.addAll(aggregate(entityId, keyId, key, Arrays.copyOfRange(bucketStarts, from, to), rollupEndTs, aggregation, state));
+        if (to < bucketsCount) {
+            result.addAll(fallback.apply(Arrays.copyOfRange(bucketStarts, to, bucketsCount), endTs));
+        }
+        return result;
+    }
+
+    private List<Optional<TsKvEntity>> aggregate(UUID entityId, int keyId, String key, long[] bucketStarts, long endTs, Aggregation aggregation,
+                                                 TsRollupState state) {
+        TsRanges[] ranges = split(intervals, bucketStarts, endTs, state.getSince(), state.getBuilt());
+        TsBucketAggregator aggregator = new TsBucketAggregator(bucketStarts, bucketStarts.length, endTs, aggregation);
+        for (int j = 0; j < intervals.length; j++) {
+            if (!ranges[j].isEmpty()) {
+                rollupRepository.findRollups(entityId, keyId, intervals[j], ranges[j], aggregator);
+            }
+        }
+        if (!ranges[intervals.length].isEmpty()) {
+            aggregateRaw(entityId, keyId, key, ranges[intervals.length], aggregator);
+        }
+        return aggregator.getResult();
+    }
+
+    /**
+     * Splits the buckets into the ranges of the rollups of each interval and the ranges of the raw data.
+     * The part of a bucket within [since, built) aligned to the finest interval is covered by the coarsest intervals
+     * that fit, the rest of the bucket is left to the raw data.
+     *
+     * @return the ranges of each interval, followed by the raw ranges
+     */
+    static TsRanges[] split(long[] intervals, long[] bucketStarts, long endTs, long since, long built) {
+        TsRanges[] ranges = new TsRanges[intervals.length + 1];
+        for (int j = 0; j < ranges.length; j++) {
+            ranges[j] = new TsRanges();
+        }
+        TsRanges rawRanges = ranges[intervals.length];
+        for (int i = 0; i < bucketStarts.length; i++) {
+            long bucketStart = bucketStarts[i];
+            long bucketEnd = i + 1 < bucketStarts.length ? bucketStarts[i + 1] : endTs;
+            long start = Math.max(bucketStart, since);
+            long end = Math.min(bucketEnd, built);
+            long alignedStart = ceil(start, intervals[0]);
+            long alignedEnd = floor(end, intervals[0]);
+            if (start >= end || alignedStart >= alignedEnd) {
+                rawRanges.add(bucketStart, bucketEnd, i);
+                continue;
+            }
+            rawRanges.add(bucketStart, alignedStart, i);
+            rawRanges.add(alignedEnd, bucketEnd, i);
+            // the edges are covered by the finer intervals, the middle by the coarsest interval that fits
+            for (int j = 0; ; j++) {
+                if (j == intervals.length - 1) {
+                    ranges[j].add(alignedStart, alignedEnd, i);
+                    break;
+                }
+                long coarserStart = ceil(alignedStart, intervals[j + 1]);
+                long coarserEnd = floor(alignedEnd, intervals[j + 1]);
+                if (coarserStart >= coarserEnd) {
+                    ranges[j].add(alignedStart, alignedEnd, i);
+                    break;
+                }
+                ranges[j].add(alignedStart, coarserStart, i);
+                ranges[j].add(coarserEnd, alignedEnd, i);
+                alignedStart = coarserStart;
+                alignedEnd = coarserEnd;
+            }
+        }
+        return ranges;
+    }
+
+    private void aggregateRaw(UUID entityId, int keyId, String key, TsRanges ranges, TsBucketAggregator aggregator) {
+        Long lastCompressedTs = compressionEnabled ? compressedTsKvRepository.findLastCompressedTs(entityId, keyId,
+                ranges.getStart(0), ranges.getEnd(ranges.size() - 1)) : null;
+        if (lastCompressedTs == null) {
+            rollupRepository.findRawAggregates(entityId, keyId, ranges, aggregator);
+            return;
+        }
+        // the ranges with compressed points are merged point by point, the raw points take precedence
+        TsRanges uncompressedRanges = new TsRanges();
+        for (int i = 0; i < ranges.size(); i++) {
+            if (ranges.getStart(i) <= lastCompressedTs) {
+                processPoints(entityId, keyId, key, ranges.getStart(i), ranges.getEnd(i), aggregator::add);
+            } else {
+                uncompressedRanges.add(ranges.getStart(i), ranges.getEnd(i), ranges.getBucket(i));
+            }
+        }
+        if (!uncompressedRanges.isEmpty()) {
+            rollupRepository.findRawAggregates(entityId, keyId, uncompressedRanges, aggregator);
+        }
+    }
+
+    private void build(long now) {
+        try {
+            long targetTs = floor(now - delay, intervals[0]);
+            Map<Integer, TsRollupState> builtStates = rollupRepository.findStates();
+            states.keySet().retainAll(builtStates.keySet());
+            states.putAll(builtStates);
+            builtStates.forEach((keyId, state) -> {
+                Long built = state.getBuilt();
+                while (built != null && built < targetTs) {
+                    built = rollupRepository.build(keyId, intervals, targetTs);
+                    if (built != null) {
+                        states.put(keyId, new TsRollupState(state.getSince(), built));
+                    }
+                }
+            });
+            // the late points reach the database within the delay after their period is marked
+            List<TsRollupMark> marks = rollupRepository.findMarks(now - delay, MARKS_BATCH_SIZE);
+            for (TsRollupMark mark : marks) {
+                rebuild(mark);
+                rollupRepository.deleteMark(mark);
+            }
+            log.trace("Built timeseries rollups up to [{}], rebuilt {} periods", targetTs, marks.size());
+        } catch (Exception e) {
+            log.warn("Failed to build timeseries rollups, will retry", e);
+        }
+    }
+
+    private void rebuild(TsRollupMark mark) {
+        UUID entityId = mark.getEntityId();
+        int keyId = mark.getKey();
+        String key = keyDictionaryDao.getKey(keyId);
+        long periodEnd = mark.getPeriodTs() + getMaxInterval();
+        rollupRepository.replace(entityId, keyId, mark.getPeriodTs(), periodEnd, () -> {
+            Map<TsRollupKey, TsAggregate> rollups = new HashMap<>();
+            processPoints(entityId, keyId, key, mark.getPeriodTs(), periodEnd, point -> addToRollups(rollups, entityId, keyId, point));
+            return rollups;
+        });
+    }
+
+    private void processPoints(UUID entityId, int keyId, String key, long startTs, long endTs, Consumer<TsKvEntry> consumer) {
+        Set<Long> rawTs = new HashSet<>();
+        compressedTsKvRepository.processRawPoints(entityId, keyId, key, startTs, endTs, point -> {
+            rawTs.add(point.getTs());
+            consumer.accept(point);
+        });
+        if (compressionEnabled) {
+            compressedTsKvRepository.processPoints(entityId, keyId, key, startTs, endTs, point -> {
+                if (!rawTs.contains(point.getTs())) {
+                    consumer.accept(point);
+                }
+            });
+        }
+    }
+
+    private void addToRollups(Map<TsRollupKey, TsAggregate> rollups, UUID entityId, int keyId, TsKvEntry entry) {
+        for (long interval : intervals) {
+            TsRollupKey rollupKey = new TsRollupKey(entityId, keyId, interval, floor(entry.getTs(), interval));
+            rollups.computeIfAbsent(rollupKey, k -> new TsAggregate()).add(entry);
+        }
+    }
+
+    private TsRollupState getState(int keyId) {
+        TsRollupState state = states.get(keyId);
+        if (state == null) {
+            state = rollupRepository.findState(keyId);
+            if (state != null) {
+                states.put(keyId, state);
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Forgets the rollups of the keys that are not rolled up anymore,
+     * so that the rollups missing the points ingested in the meantime are not used once re-enabled.
+     */
+    private void clearStates() {
+        states.clear();
+        try {
+            if (!enabled) {
+                rollupRepository.deleteAllStates();
+            } else if (!keys.isEmpty()) {
+                rollupRepository.deleteStatesExcept(keyDictionaryDao.getOrSaveKeyIds(keys).values().toArray(Integer[]::new));
+            }
+        } catch (Exception e) {
+            // the table may not exist yet, e.g. during the installation
+            log.warn("Failed to clear the state of the timeseries rollups: {}", e.getMessage());
+        }
+    }
+
+    private long getMaxInterval() {
+        return intervals[intervals.length - 1];
+    }
+
+    static long floor(long ts, long interval) {
+        return Math.floorDiv(ts, interval) * interval;
+    }
+
+    static long ceil(long ts, long interval) {
+        return -Math.floorDiv(-ts, interval) * interval;
+    }
+
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.dao.sqlts.rollup;
+
+import java.util.Arrays;
+
+/**
+ * Time ranges [start, end) with the index of the aggregation bucket each range belongs to.
+ */
+class TsRanges {
+
+    private long[] starts = new long[16];
+    private long[] ends = new long[16];
+    private int[] buckets = new int[16];
+    private int size;
+
+    void add(long start, long end, int bucket) {
+        if (start >= end) {
+            return;
+        }
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            ends = Arrays.copyOf(ends, size * 2);
+            buckets = Arrays.copyOf(buckets, size * 2);
+        }
+        starts[size] = start;
+        ends[size] = end;
+        buckets[size] = bucket;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    long getStart(int i) {
+        return starts[i];
+    }
+
+    long getEnd(int i) {
+        return ends[i];
+    }
+
+    int getBucket(int i) {
+        return buckets[i];
+    }
+
+    Long[] getStarts() {
+        return Arrays.stream(starts, 0, size).boxed().toArray(Long[]::new);
+    }
+
+    Long[] getEnds() {
+        return Arrays.stream(ends, 0, size).boxed().toArray(Long[]::new);
+    }
+
+    Integer[] getBuckets() {
+        return Arrays.stream(buckets, 0, size).boxed().toArray(Integer[]::new);
+    }
+
+}
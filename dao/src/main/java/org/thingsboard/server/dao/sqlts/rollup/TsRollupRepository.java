@@ -0,0 +1,328 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.dao.sqlts.rollup;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.winstarcloud.server.dao.sqlts.aggregation.TsAggregate;
+import org.winstarcloud.server.dao.sqlts.aggregation.TsBucketAggregator;
+import org.winstarcloud.server.dao.util.SqlTsDao;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.winstarcloud.server.dao.sqlts.rollup.SqlTsRollupDao.floor;
+
+@SqlTsDao
+@Repository
+public class TsRollupRepository {
+
+    private static final String RANGES = "unnest(?::bigint[], ?::bigint[], ?::int[]) AS r(start_ts, end_ts, bucket) ";
+
+    private static final String ROLLUP_COLUMNS = "entity_id, key, interval_ms, bucket_ts, last_ts, bool_count, str_count, json_count, " +
+            "long_count, dbl_count, long_sum, dbl_sum, long_min, long_max, dbl_min, dbl_max, str_min, str_max";
+
+    private static final String RAW_AGGREGATES = "MAX(tskv.ts) AS last_ts, " +
+            "COUNT(tskv.bool_v) AS bool_count, COUNT(tskv.str_v) AS str_count, COUNT(tskv.json_v) AS json_count, " +
+            "COUNT(tskv.long_v) AS long_count, COUNT(tskv.dbl_v) AS dbl_count, " +
+            "COALESCE(SUM(tskv.long_v), 0) AS long_sum, COALESCE(SUM(tskv.dbl_v), 0.0) AS dbl_sum, " +
+            "COALESCE(MIN(tskv.long_v), 9223372036854775807) AS long_min, COALESCE(MAX(tskv.long_v), -9223372036854775807) AS long_max, " +
+            "COALESCE(MIN(tskv.dbl_v), 1.79769E+308) AS dbl_min, COALESCE(MAX(tskv.dbl_v), -1.79769E+308) AS dbl_max, " +
+            "MIN(tskv.str_v) AS str_min, MAX(tskv.str_v) AS str_max ";
+
+    private static final String ROLLUP_AGGREGATES = "MAX(ro.last_ts) AS last_ts, " +
+            "SUM(ro.bool_count) AS bool_count, SUM(ro.str_count) AS str_count, SUM(ro.json_count) AS json_count, " +
+            "SUM(ro.long_count) AS long_count, SUM(ro.dbl_count) AS dbl_count, SUM(ro.long_sum) AS long_sum, SUM(ro.dbl_sum) AS dbl_sum, " +
+            "MIN(ro.long_min) AS long_min, MAX(ro.long_max) AS long_max, MIN(ro.dbl_min) AS dbl_min, MAX(ro.dbl_max) AS dbl_max, " +
+            "MIN(ro.str_min) AS str_min, MAX(ro.str_max) AS str_max ";
+
+    private static final String FIND_ROLLUPS = "SELECT r.bucket AS bucket, " + ROLLUP_AGGREGATES +
+            "FROM " + RANGES + "JOIN rollup_ts_kv ro ON ro.entity_id = ? AND ro.key = ? AND ro.interval_ms = ? " +
+            "AND ro.bucket_ts >= r.start_ts AND ro.bucket_ts < r.end_ts GROUP BY r.bucket";
+
+    private static final String FIND_RAW_AGGREGATES = "SELECT r.bucket AS bucket, " + RAW_AGGREGATES +
+            "FROM " + RANGES + "JOIN ts_kv tskv ON tskv.entity_id = ? AND tskv.key = ? " +
+            "AND tskv.ts >= r.start_ts AND tskv.ts < r.end_ts GROUP BY r.bucket";
+
+    private static final String INSERT_ROLLUP = "INSERT INTO rollup_ts_kv (" + ROLLUP_COLUMNS + ") " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // the rollups of the finest interval are aggregated from the points of all entities that ever had the key
+    private static final String BUILD_RAW_ROLLUPS = "INSERT INTO rollup_ts_kv (" + ROLLUP_COLUMNS + ") " +
+            "SELECT e.entity_id, e.key, ?, tskv.ts / ? * ?, " + RAW_AGGREGATES +
+            "FROM rollup_ts_kv_entity e JOIN ts_kv tskv ON tskv.entity_id = e.entity_id AND tskv.key = e.key " +
+            "AND tskv.ts >= ? AND tskv.ts < ? WHERE e.key = ? GROUP BY 1, 2, 4";
+
+    private static final String BUILD_ROLLUPS = "INSERT INTO rollup_ts_kv (" + ROLLUP_COLUMNS + ") " +
+            "SELECT ro.entity_id, ro.key, ?, ro.bucket_ts / ? * ?, " + ROLLUP_AGGREGATES +
+            "FROM rollup_ts_kv ro WHERE ro.key = ? AND ro.interval_ms = ? AND ro.bucket_ts >= ? AND ro.bucket_ts < ? GROUP BY 1, 2, 4";
+
+    private static final String DELETE_ROLLUPS = "DELETE FROM rollup_ts_kv WHERE entity_id = ? AND key = ? AND bucket_ts >= ? AND bucket_ts < ?";
+    private static final String DELETE_INTERVAL_ROLLUPS = "DELETE FROM rollup_ts_kv WHERE key = ? AND interval_ms = ? AND bucket_ts >= ? AND bucket_ts < ?";
+    private static final String DELETE_ROLLUPS_BEFORE = "DELETE FROM rollup_ts_kv WHERE bucket_ts < ? AND bucket_ts + interval_ms <= ?";
+
+    private static final String INSERT_STATE = "INSERT INTO rollup_ts_kv_key (key, since_ts, built_ts) VALUES (?, ?, ?) ON CONFLICT (key) DO NOTHING";
+    private static final String FIND_STATE = "SELECT key, since_ts, built_ts FROM rollup_ts_kv_key WHERE key = ?";
+    private static final String FIND_ALL_STATES = "SELECT key, since_ts, built_ts FROM rollup_ts_kv_key";
+    private static final String LOCK_STATE = "SELECT built_ts FROM rollup_ts_kv_key WHERE key = ? FOR UPDATE";
+    private static final String LOCK_STATE_SKIP_LOCKED = LOCK_STATE + " SKIP LOCKED";
+    private static final String UPDATE_BUILT = "UPDATE rollup_ts_kv_key SET built_ts = ? WHERE key = ?";
+    private static final String DELETE_ALL_STATES = "DELETE FROM rollup_ts_kv_key";
+    private static final String DELETE_STATES_EXCEPT = "DELETE FROM rollup_ts_kv_key WHERE NOT (key = ANY(?))";
+
+    private static final String INSERT_ENTITY = "INSERT INTO rollup_ts_kv_entity (key, entity_id) VALUES (?, ?) ON CONFLICT DO NOTHING";
+
+    private static final String INSERT_MARK = "INSERT INTO rollup_ts_kv_stale (entity_id, key, period_ts, marked_ts) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (entity_id, key, period_ts) DO UPDATE SET marked_ts = GREATEST(rollup_ts_kv_stale.marked_ts, EXCLUDED.marked_ts)";
+    private static final String FIND_MARKS = "SELECT entity_id, key, period_ts, marked_ts FROM rollup_ts_kv_stale WHERE marked_ts < ? ORDER BY marked_ts LIMIT ?";
+    private static final String DELETE_MARK = "DELETE FROM rollup_ts_kv_stale WHERE entity_id = ? AND key = ? AND period_ts = ? AND marked_ts = ?";
+    private static final String DELETE_MARKS_BEFORE = "DELETE FROM rollup_ts_kv_stale WHERE period_ts < ?";
+
+    private static final Comparator<TsRollupKey> ROLLUP_KEY_COMPARATOR = Comparator.comparing(TsRollupKey::getEntityId)
+            .thenComparingInt(TsRollupKey::getKey)
+            .thenComparingLong(TsRollupKey::getInterval)
+            .thenComparingLong(TsRollupKey::getBucketTs);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Builds the rollups of the key for the period following the one built already, but not beyond the given timestamp.
+     * The rollups of the finest interval are aggregated from ts_kv, the coarser ones from the finer ones.
+     * The rollups of the built range are replaced within a single transaction, so the build is idempotent,
+     * and the key is locked, so that the nodes don't build the same range concurrently.
+     *
+     * @param targetTs the timestamp aligned to the finest interval to build the rollups up to
+     * @return the timestamp the rollups are built up to, or null if the key is locked or not rolled up anymore
+     */
+    public Long build(int key, long[] intervals, long targetTs) {
+        return transactionTemplate.execute(status -> {
+            List<Long> built = jdbcTemplate.queryForList(LOCK_STATE_SKIP_LOCKED, Long.class, key);
+            if (built.isEmpty()) {
+                return null;
+            }
+            long startTs = built.get(0);
+            long endTs = Math.min(targetTs, floor(startTs, intervals[intervals.length - 1]) + intervals[intervals.length - 1]);
+            if (startTs >= endTs) {
+                return startTs;
+            }
+            jdbcTemplate.update(DELETE_INTERVAL_ROLLUPS, key, intervals[0], startTs, endTs);
+            jdbcTemplate.update(BUILD_RAW_ROLLUPS, intervals[0], intervals[0], intervals[0], startTs, endTs, key);
+            for (int i = 1; i < intervals.length; i++) {
+                // the coarser periods completed by the built range, their finer rollups are all built by now
+                long periodStart = floor(startTs, intervals[i]);
+                long periodEnd = floor(endTs, intervals[i]);
+                if (periodStart < periodEnd) {
+                    jdbcTemplate.update(DELETE_INTERVAL_ROLLUPS, key, intervals[i], periodStart, periodEnd);
+                    jdbcTemplate.update(BUILD_ROLLUPS, intervals[i], intervals[i], intervals[i], key, intervals[i - 1], periodStart, periodEnd);
+                }
+            }
+            jdbcTemplate.update(UPDATE_BUILT, endTs, key);
+            return endTs;
+        });
+    }
+
+    /**
+     * Replaces the rollups of the entity within the range with the given ones, evaluated while the key is locked.
+     * Does nothing if the key is not rolled up anymore.
+     */
+    public void replace(UUID entityId, int key, long startTs, long endTs, Supplier<Map<TsRollupKey, TsAggregate>> rollups) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (jdbcTemplate.queryForList(LOCK_STATE, Long.class, key).isEmpty()) {
+                return;
+            }
+            jdbcTemplate.update(DELETE_ROLLUPS, entityId, key, startTs, endTs);
+            insert(rollups.get());
+        });
+    }
+
+    /**
+     * Merges the rollups of the given interval that start within the ranges into the buckets of the ranges.
+     */
+    public void findRollups(UUID entityId, int key, long interval, TsRanges ranges, TsBucketAggregator aggregator) {
+        query(FIND_ROLLUPS, ranges, aggregator, entityId, key, interval);
+    }
+
+    /**
+     * Aggregates the raw points of ts_kv within the ranges and merges the result into the buckets of the ranges.
+     */
+    public void findRawAggregates(UUID entityId, int key, TsRanges ranges, TsBucketAggregator aggregator) {
+        query(FIND_RAW_AGGREGATES, ranges, aggregator, entityId, key);
+    }
+
+    /**
+     * Removes the rollups of the periods that end before the given timestamp.
+     */
+    public int deleteBefore(long ts) {
+        jdbcTemplate.update(DELETE_MARKS_BEFORE, ts);
+        return jdbcTemplate.update(DELETE_ROLLUPS_BEFORE, ts, ts);
+    }
+
+    /**
+     * Returns the state of the rollups of the key, saving the one starting from the given timestamp if there is none yet.
+     */
+    public TsRollupState findOrSaveState(int key, long sinceTs) {
+        jdbcTemplate.update(INSERT_STATE, key, sinceTs, sinceTs);
+        return findState(key);
+    }
+
+    public TsRollupState findState(int key) {
+        List<TsRollupState> states = jdbcTemplate.query(FIND_STATE, (rs, rowNum) -> toState(rs), key);
+        return states.isEmpty() ? null : states.get(0);
+    }
+
+    public Map<Integer, TsRollupState> findStates() {
+        Map<Integer, TsRollupState> states = new HashMap<>();
+        jdbcTemplate.query(FIND_ALL_STATES, (RowCallbackHandler) rs -> states.put(rs.getInt("key"), toState(rs)));
+        return states;
+    }
+
+    public void deleteAllStates() {
+        jdbcTemplate.update(DELETE_ALL_STATES);
+    }
+
+    public void deleteStatesExcept(Integer[] keys) {
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(DELETE_STATES_EXCEPT);
+            ps.setArray(1, con.createArrayOf("int", keys));
+            return ps;
+        });
+    }
+
+    /**
+     * Registers the entities, so that their points of the keys are included into the built rollups.
+     */
+    public void saveEntities(List<Pair<Integer, UUID>> entities) {
+        if (entities.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_ENTITY, entities.stream()
+                .map(entity -> new Object[]{entity.getLeft(), entity.getRight()})
+                .toList());
+    }
+
+    public void saveMarks(List<TsRollupMark> marks) {
+        if (marks.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_MARK, marks.stream()
+                .map(mark -> new Object[]{mark.getEntityId(), mark.getKey(), mark.getPeriodTs(), mark.getMarkedTs()})
+                .toList());
+    }
+
+    public List<TsRollupMark> findMarks(long markedBefore, int limit) {
+        return jdbcTemplate.query(FIND_MARKS, (rs, rowNum) -> new TsRollupMark(rs.getObject("entity_id", UUID.class),
+                rs.getInt("key"), rs.getLong("period_ts"), rs.getLong("marked_ts")), markedBefore, limit);
+    }
+
+    /**
+     * Removes the mark unless the period was marked again in the meantime.
+     */
+    public void deleteMark(TsRollupMark mark) {
+        jdbcTemplate.update(DELETE_MARK, mark.getEntityId(), mark.getKey(), mark.getPeriodTs(), mark.getMarkedTs());
+    }
+
+    private void insert(Map<TsRollupKey, TsAggregate> rollups) {
+        if (rollups.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<TsRollupKey, TsAggregate>> entries = rollups.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(ROLLUP_KEY_COMPARATOR))
+                .toList();
+        jdbcTemplate.batchUpdate(INSERT_ROLLUP, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                TsRollupKey key = entries.get(i).getKey();
+                TsAggregate aggregate = entries.get(i).getValue();
+                ps.setObject(1, key.getEntityId());
+                ps.setInt(2, key.getKey());
+                ps.setLong(3, key.getInterval());
+                ps.setLong(4, key.getBucketTs());
+                ps.setLong(5, aggregate.getLastTs());
+                ps.setLong(6, aggregate.getBooleanCount());
+                ps.setLong(7, aggregate.getStrCount());
+                ps.setLong(8, aggregate.getJsonCount());
+                ps.setLong(9, aggregate.getLongCount());
+                ps.setLong(10, aggregate.getDoubleCount());
+                ps.setLong(11, aggregate.getLongSum());
+                ps.setDouble(12, aggregate.getDoubleSum());
+                ps.setLong(13, aggregate.getLongMin());
+                ps.setLong(14, aggregate.getLongMax());
+                ps.setDouble(15, aggregate.getDoubleMin());
+                ps.setDouble(16, aggregate.getDoubleMax());
+                ps.setString(17, aggregate.getStrMin());
+                ps.setString(18, aggregate.getStrMax());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return entries.size();
+            }
+        });
+    }
+
+    private void query(String query, TsRanges ranges, TsBucketAggregator aggregator, Object... params) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(query);
+            ps.setArray(1, con.createArrayOf("bigint", ranges.getStarts()));
+            ps.setArray(2, con.createArrayOf("bigint", ranges.getEnds()));
+            ps.setArray(3, con.createArrayOf("int", ranges.getBuckets()));
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 4, params[i]);
+            }
+            return ps;
+        }, (RowCallbackHandler) rs -> aggregator.merge(rs.getInt("bucket"), toAggregate(rs)));
+    }
+
+    private static TsRollupState toState(ResultSet rs) throws SQLException {
+        return new TsRollupState(rs.getLong("since_ts"), rs.getLong("built_ts"));
+    }
+
+    private static TsAggregate toAggregate(ResultSet rs) throws SQLException {
+        TsAggregate aggregate = new TsAggregate();
+        aggregate.setLastTs(rs.getLong("last_ts"));
+        aggregate.setBooleanCount(rs.getLong("bool_count"));
+        aggregate.setStrCount(rs.getLong("str_count"));
+        aggregate.setJsonCount(rs.getLong("json_count"));
+        aggregate.setLongCount(rs.getLong("long_count"));
+        aggregate.setDoubleCount(rs.getLong("dbl_count"));
+        aggregate.setLongSum(rs.getLong("long_sum"));
+        aggregate.setDoubleSum(rs.getDouble("dbl_sum"));
+        aggregate.setLongMin(rs.getLong("long_min"));
+        aggregate.setLongMax(rs.getLong("long_max"));
+        aggregate.setDoubleMin(rs.getDouble("dbl_min"));
+        aggregate.setDoubleMax(rs.getDouble("dbl_max"));
+        aggregate.setStrMin(rs.getString("str_min"));
+        aggregate.setStrMax(rs.getString("str_max"));
+        return aggregate;
+    }
+
+}
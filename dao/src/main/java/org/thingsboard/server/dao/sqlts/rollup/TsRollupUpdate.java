@@ -0,0 +1,34 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.dao.sqlts.rollup;
+
+import lombok.Data;
+
+import java.util.UUID;
+
+/**
+ * The bookkeeping required by a saved point: the registration of its entity and/or the mark of its late period.
+ */
+@Data
+public class TsRollupUpdate {
+
+    private final UUID entityId;
+    private final int key;
+    private final long ts;
+    private final long receivedTs;
+    private final boolean newEntity;
+
+}
@@ -44,6 +44,8 @@ import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
@@ -68,6 +70,12 @@ public class JpaSqlTimeseriesDao extends AbstractChunkedAggregationTimeseriesDao
     @Value("${sql.postgres.ts_key_value_partitioning:MONTHS}")
     private String partitioning;
 
+    @Value("${sql.ts.compression.min_partition_age_ms:604800000}")
+    private long compressionMinPartitionAge;
+
+    @Value("${sql.ts.compression.block_size:1000}")
+    private int compressionBlockSize;
+
 
     @Override
     protected void init() {
@@ -97,17 +105,68 @@ public class JpaSqlTimeseriesDao extends AbstractChunkedAggregationTimeseriesDao
         entity.setBooleanValue(tsKvEntry.getBooleanValue().orElse(null));
         entity.setJsonValue(tsKvEntry.getJsonValue().orElse(null));
         log.trace("Saving entity: {}", entity);
-        return Futures.transform(tsQueue.add(entity), v -> dataPointDays, MoreExecutors.directExecutor());
+        ListenableFuture<Void> rollupFuture = rollupDao.onSave(entityId.getId(), keyId, tsKvEntry);
+        return Futures.transform(Futures.allAsList(rollupFuture, tsQueue.add(entity)), v -> dataPointDays, MoreExecutors.directExecutor());
     }
 
     @Override
     public void cleanup(long systemTtl) {
         if (systemTtl > 0) {
             cleanupPartitions(systemTtl);
+            if (compressionEnabled) {
+                cleanupCompressedBlocks(systemTtl);
+            }
+            rollupDao.cleanup(System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(systemTtl));
         }
         super.cleanup(systemTtl);
     }
 
+    @Override
+    public void compact() {
+        if (!compressionEnabled) {
+            return;
+        }
+        if (tsFormat.equals(SqlTsPartitionDate.INDEFINITE)) {
+            log.warn("Timeseries compaction is not supported for the INDEFINITE partitioning");
+            return;
+        }
+        long maxPartitionEndTs = System.currentTimeMillis() - compressionMinPartitionAge;
+        List<SqlPartition> closedPartitions = compressedTsKvRepository.findTsKvPartitions().stream()
+                .filter(partition -> partition.getEnd() <= maxPartitionEndTs)
+                .sorted(Comparator.comparingLong(SqlPartition::getStart))
+                .toList();
+        for (SqlPartition partition : closedPartitions) {
+            log.info("Compacting timeseries partition [{}]", partition.getPartitionDate());
+            long startTs = System.currentTimeMillis();
+            try {
+                long points = compressedTsKvRepository.compactPartition(partition, compressionBlockSize);
+                // late writes of this node re-create the partition, it will be merged into the blocks on the next run
+                partitions.remove(partition.getStart());
+                log.info("Compacted {} points of timeseries partition [{}] in {} ms", points, partition.getPartitionDate(), System.currentTimeMillis() - startTs);
+            } catch (Exception e) {
+                log.error("Failed to compact timeseries partition [{}]", partition.getPartitionDate(), e);
+            }
+        }
+        // other nodes keep the dropped partitions cached and write late points of the compacted periods to the default partition
+        try {
+            long points = compressedTsKvRepository.compactDefaultPartition(0, maxPartitionEndTs, compressionBlockSize);
+            if (points > 0) {
+                log.info("Compacted {} late points of the ts_kv_indefinite (DEFAULT) partition", points);
+            }
+        } catch (Exception e) {
+            log.error("Failed to compact the ts_kv_indefinite (DEFAULT) partition", e);
+        }
+    }
+
+    private void cleanupCompressedBlocks(long systemTtl) {
+        try {
+            int removed = compressedTsKvRepository.deleteBlocksBefore(System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(systemTtl));
+            log.info("Total compressed timeseries blocks removed by TTL: [{}]", removed);
+        } catch (Exception e) {
+            log.error("Failed to cleanup compressed timeseries blocks", e);
+        }
+    }
+
     private void cleanupPartitions(long systemTtl) {
         log.info("Going to cleanup old timeseries data partitions using partition type: {} and ttl: {}s", partitioning, systemTtl);
         try (Connection connection = dataSource.getConnection();
@@ -0,0 +1,151 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.dao.sqlts.sql;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.winstarcloud.server.common.data.kv.Aggregation;
+import org.winstarcloud.server.dao.model.sqlts.ts.TsKvEntity;
+import org.winstarcloud.server.dao.util.SqlTsDao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Computes all aggregation buckets of a single key with one GROUP BY query instead of a query per interval.
+ * Fixed-size intervals are bucketed arithmetically, calendar intervals (week, month, quarter) are bucketed
+ * with width_bucket over the precomputed, timezone-aware bucket boundaries.
+ */
+@SqlTsDao
+@Repository
+public class SqlAggregationRepository {
+
+    private static final String FROM_WHERE_GROUP_BY_CLAUSE = "FROM ts_kv tskv WHERE " +
+            "tskv.entity_id = ? AND tskv.key = ? AND tskv.ts >= ? AND tskv.ts < ? " +
+            "GROUP BY bucket ORDER BY bucket";
+
+    private static final String FIXED_BUCKET = "(tskv.ts - ?) / ? AS bucket, ";
+    private static final String CALENDAR_BUCKET = "width_bucket(tskv.ts, ?) - 1 AS bucket, ";
+
+    private static final String SUM_AVG_COLUMNS = "SUM(COALESCE(tskv.long_v, 0)) AS longValue, " +
+            "SUM(COALESCE(tskv.dbl_v, 0.0)) AS doubleValue, " +
+            "SUM(CASE WHEN tskv.long_v IS NULL THEN 0 ELSE 1 END) AS longCountValue, " +
+            "SUM(CASE WHEN tskv.dbl_v IS NULL THEN 0 ELSE 1 END) AS doubleCountValue, " +
+            "MAX(tskv.ts) AS maxAggTs ";
+
+    private static final String MAX_COLUMNS = "MAX(COALESCE(tskv.long_v, -9223372036854775807)) AS longValue, " +
+            "MAX(COALESCE(tskv.dbl_v, -1.79769E+308)) AS doubleValue, " +
+            "SUM(CASE WHEN tskv.long_v IS NULL THEN 0 ELSE 1 END) AS longCountValue, " +
+            "SUM(CASE WHEN tskv.dbl_v IS NULL THEN 0 ELSE 1 END) AS doubleCountValue, " +
+            "MAX(tskv.str_v) AS strValue, MAX(tskv.ts) AS maxAggTs ";
+
+    private static final String MIN_COLUMNS = "MIN(COALESCE(tskv.long_v, 9223372036854775807)) AS longValue, " +
+            "MIN(COALESCE(tskv.dbl_v, 1.79769E+308)) AS doubleValue, " +
+            "SUM(CASE WHEN tskv.long_v IS NULL THEN 0 ELSE 1 END) AS longCountValue, " +
+            "SUM(CASE WHEN tskv.dbl_v IS NULL THEN 0 ELSE 1 END) AS doubleCountValue, " +
+            "MIN(tskv.str_v) AS strValue, MAX(tskv.ts) AS maxAggTs ";
+
+    private static final String COUNT_COLUMNS = "SUM(CASE WHEN tskv.bool_v IS NULL THEN 0 ELSE 1 END) AS booleanValueCount, " +
+            "SUM(CASE WHEN tskv.str_v IS NULL THEN 0 ELSE 1 END) AS strValueCount, " +
+            "SUM(CASE WHEN tskv.long_v IS NULL THEN 0 ELSE 1 END) AS longValueCount, " +
+            "SUM(CASE WHEN tskv.dbl_v IS NULL THEN 0 ELSE 1 END) AS doubleValueCount, " +
+            "SUM(CASE WHEN tskv.json_v IS NULL THEN 0 ELSE 1 END) AS jsonValueCount, " +
+            "MAX(tskv.ts) AS maxAggTs ";
+
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+
+    /**
+     * @param bucketStarts ascending start timestamps of the buckets; the first element is the query start
+     * @param endTs        exclusive end of the last bucket
+     * @param interval     fixed bucket size in milliseconds, or 0 if the buckets are calendar based
+     * @return list with one element per bucket, empty for the buckets without data
+     */
+    public List<Optional<TsKvEntity>> findAggregated(UUID entityId, int keyId, long[] bucketStarts, long endTs, long interval, Aggregation aggregation) {
+        int bucketsCount = bucketStarts.length;
+        long startTs = bucketStarts[0];
+        List<Optional<TsKvEntity>> result = new ArrayList<>(Collections.nCopies(bucketsCount, Optional.empty()));
+        String query = "SELECT " + (interval > 0 ? FIXED_BUCKET : CALENDAR_BUCKET) + getColumns(aggregation) + FROM_WHERE_GROUP_BY_CLAUSE;
+        jdbcTemplate.query(con -> {
+            var ps = con.prepareStatement(query);
+            int idx = 1;
+            if (interval > 0) {
+                ps.setLong(idx++, startTs);
+                ps.setLong(idx++, interval);
+            } else {
+                Long[] thresholds = new Long[bucketsCount];
+                for (int i = 0; i < bucketsCount; i++) {
+                    thresholds[i] = bucketStarts[i];
+                }
+                ps.setArray(idx++, con.createArrayOf("bigint", thresholds));
+            }
+            ps.setObject(idx++, entityId);
+            ps.setInt(idx++, keyId);
+            ps.setLong(idx++, startTs);
+            ps.setLong(idx, endTs);
+            return ps;
+        }, rs -> {
+            int bucket = rs.getInt("bucket");
+            if (bucket >= 0 && bucket < bucketsCount) {
+                TsKvEntity entity = toEntity(rs, aggregation);
+                if (entity.isNotEmpty()) {
+                    long bucketStart = bucketStarts[bucket];
+                    long bucketEnd = bucket + 1 < bucketsCount ? bucketStarts[bucket + 1] : endTs;
+                    entity.setTs(bucketStart + (bucketEnd - bucketStart) / 2);
+                    result.set(bucket, Optional.of(entity));
+                }
+            }
+        });
+        return result;
+    }
+
+    private static String getColumns(Aggregation aggregation) {
+        switch (aggregation) {
+            case AVG:
+            case SUM:
+                return SUM_AVG_COLUMNS;
+            case MAX:
+                return MAX_COLUMNS;
+            case MIN:
+                return MIN_COLUMNS;
+            case COUNT:
+                return COUNT_COLUMNS;
+            default:
+                throw new IllegalArgumentException("Not supported aggregation type: " + aggregation);
+        }
+    }
+
+    private static TsKvEntity toEntity(ResultSet rs, Aggregation aggregation) throws SQLException {
+        long maxAggTs = rs.getLong("maxAggTs");
+        if (Aggregation.COUNT.equals(aggregation)) {
+            return new TsKvEntity(rs.getLong("booleanValueCount"), rs.getLong("strValueCount"),
+                    rs.getLong("longValueCount"), rs.getLong("doubleValueCount"), rs.getLong("jsonValueCount"), maxAggTs);
+        }
+        long longCount = rs.getLong("longCountValue");
+        long doubleCount = rs.getLong("doubleCountValue");
+        if ((Aggregation.MIN.equals(aggregation) || Aggregation.MAX.equals(aggregation)) && longCount == 0 && doubleCount == 0) {
+            return new TsKvEntity(rs.getString("strValue"), maxAggTs);
+        }
+        return new TsKvEntity(rs.getLong("longValue"), rs.getDouble("doubleValue"), longCount, doubleCount, aggregation.name(), maxAggTs);
+    }
+
+}
@@ -56,6 +56,13 @@ public class AggregatePartitionsFunction implements com.google.common.util.concu
     private static final int STR_POS = 9;
     private static final int JSON_POS = 10;
 
+    private static final int RAW_LONG_POS = 0;
+    private static final int RAW_DOUBLE_POS = 1;
+    private static final int RAW_BOOL_POS = 2;
+    private static final int RAW_STR_POS = 3;
+    private static final int RAW_JSON_POS = 4;
+    static final int RAW_TS_POS = 6;
+
 
     private final Aggregation aggregation;
     private final String key;
@@ -96,6 +103,40 @@ public class AggregatePartitionsFunction implements com.google.common.util.concu
     }
 
     private void processResultSetRow(Row row, AggregationResult aggResult) {
+        long longCount = row.getLong(LONG_CNT_POS);
+        long doubleCount = row.getLong(DOUBLE_CNT_POS);
+        long boolCount = row.getLong(BOOL_CNT_POS);
+        long strCount = row.getLong(STR_CNT_POS);
+        long jsonCount = row.getLong(JSON_CNT_POS);
+        long aggValuesLastTs = row.getLong(MAX_TS_POS);
+
+        processValues(aggResult, aggValuesLastTs, longCount, doubleCount, boolCount, strCount, jsonCount,
+                longCount > 0 ? getLongValue(row) : null,
+                doubleCount > 0 ? getDoubleValue(row) : null,
+                boolCount > 0 ? getBooleanValue(row) : null,
+                strCount > 0 ? getStringValue(row) : null,
+                jsonCount > 0 ? getJsonValue(row) : null);
+    }
+
+    /**
+     * Adds a raw ts_kv row, as returned by the fetch statement of {@link Aggregation#NONE}, to the aggregation result.
+     */
+    void processRawRow(Row row, AggregationResult aggResult) {
+        Long longValue = row.isNull(RAW_LONG_POS) ? null : row.getLong(RAW_LONG_POS);
+        Double doubleValue = row.isNull(RAW_DOUBLE_POS) ? null : row.getDouble(RAW_DOUBLE_POS);
+        Boolean boolValue = row.isNull(RAW_BOOL_POS) ? null : row.getBoolean(RAW_BOOL_POS);
+        String strValue = row.getString(RAW_STR_POS);
+        String jsonValue = row.getString(RAW_JSON_POS);
+
+        processValues(aggResult, row.getLong(RAW_TS_POS),
+                longValue != null ? 1 : 0, doubleValue != null ? 1 : 0, boolValue != null ? 1 : 0,
+                strValue != null ? 1 : 0, jsonValue != null ? 1 : 0,
+                longValue, doubleValue, boolValue, strValue, jsonValue);
+    }
+
+    private void processValues(AggregationResult aggResult, long aggValuesLastTs,
+                               long longCount, long doubleCount, long boolCount, long strCount, long jsonCount,
+                               Long lValue, Double dValue, Boolean bValue, String sValue, String jValue) {
         long curCount = 0L;
 
         Long curLValue = null;
@@ -104,37 +145,30 @@ public class AggregatePartitionsFunction implements com.google.common.util.concu
         String curSValue = null;
         String curJValue = null;
 
-        long longCount = row.getLong(LONG_CNT_POS);
-        long doubleCount = row.getLong(DOUBLE_CNT_POS);
-        long boolCount = row.getLong(BOOL_CNT_POS);
-        long strCount = row.getLong(STR_CNT_POS);
-        long jsonCount = row.getLong(JSON_CNT_POS);
-        long aggValuesLastTs = row.getLong(MAX_TS_POS);
-
         if (longCount > 0 || doubleCount > 0) {
             if (longCount > 0) {
                 aggResult.dataType = DataType.LONG;
                 curCount += longCount;
-                curLValue = getLongValue(row);
+                curLValue = lValue;
             }
             if (doubleCount > 0) {
                 aggResult.hasDouble = true;
                 aggResult.dataType = DataType.DOUBLE;
                 curCount += doubleCount;
-                curDValue = getDoubleValue(row);
+                curDValue = dValue;
             }
         } else if (boolCount > 0) {
             aggResult.dataType = DataType.BOOLEAN;
             curCount = boolCount;
-            curBValue = getBooleanValue(row);
+            curBValue = bValue;
         } else if (strCount > 0) {
             aggResult.dataType = DataType.STRING;
             curCount = strCount;
-            curSValue = getStringValue(row);
+            curSValue = sValue;
         } else if (jsonCount > 0) {
             aggResult.dataType = DataType.JSON;
             curCount = jsonCount;
-            curJValue = getJsonValue(row);
+            curJValue = jValue;
         } else {
             return;
         }
@@ -238,7 +272,7 @@ public class AggregatePartitionsFunction implements com.google.common.util.concu
         }
     }
 
-    private Optional<TsKvEntryAggWrapper> processAggregationResult(AggregationResult aggResult) {
+    Optional<TsKvEntryAggWrapper> processAggregationResult(AggregationResult aggResult) {
         Optional<TsKvEntry> result;
         if (aggResult.dataType == null) {
             result = Optional.empty();
@@ -292,7 +326,7 @@ public class AggregatePartitionsFunction implements com.google.common.util.concu
         }
     }
 
-    private class AggregationResult {
+    static class AggregationResult {
         DataType dataType = null;
         Boolean bValue = null;
         String sValue = null;
@@ -33,9 +33,11 @@ import org.winstarcloud.server.common.data.id.TenantId;
 import org.winstarcloud.server.common.data.kv.Aggregation;
 import org.winstarcloud.server.common.data.kv.BaseDeleteTsKvQuery;
 import org.winstarcloud.server.common.data.kv.BaseReadTsKvQuery;
+import org.winstarcloud.server.common.data.kv.BasicTsKvEntry;
 import org.winstarcloud.server.common.data.kv.DeleteTsKvQuery;
 import org.winstarcloud.server.common.data.kv.ReadTsKvQuery;
 import org.winstarcloud.server.common.data.kv.ReadTsKvQueryResult;
+import org.winstarcloud.server.common.data.kv.StringDataEntry;
 import org.winstarcloud.server.common.data.kv.TsKvEntry;
 import org.winstarcloud.server.common.data.kv.TsKvLatestRemovingResult;
 import org.winstarcloud.server.dao.entityview.EntityViewService;
@@ -45,7 +47,9 @@ import org.winstarcloud.server.dao.service.Validator;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -134,6 +138,29 @@ public class BaseTimeseriesService implements TimeseriesService {
         return Futures.allAsList(futures);
     }
 
+    @Override
+    public ListenableFuture<Map<EntityId, List<TsKvEntry>>> findLatest(TenantId tenantId, Map<EntityId, Collection<String>> keysByEntityId) {
+        keysByEntityId.forEach((entityId, keys) -> {
+            validate(entityId);
+            keys.forEach(key -> Validator.validateString(key, k -> "Incorrect key " + k));
+        });
+        return Futures.transform(timeseriesLatestDao.findLatest(tenantId, keysByEntityId), latest -> {
+            long ts = System.currentTimeMillis();
+            Map<EntityId, List<TsKvEntry>> result = new HashMap<>();
+            keysByEntityId.forEach((entityId, keys) -> {
+                Map<String, TsKvEntry> entries = new HashMap<>();
+                latest.getOrDefault(entityId, Collections.emptyList()).forEach(entry -> entries.put(entry.getKey(), entry));
+                List<TsKvEntry> entityLatest = new ArrayList<>(keys.size());
+                for (String key : keys) {
+                    TsKvEntry entry = entries.get(key);
+                    entityLatest.add(entry != null ? entry : new BasicTsKvEntry(ts, new StringDataEntry(key, null)));
+                }
+                result.put(entityId, entityLatest);
+            });
+            return result;
+        }, MoreExecutors.directExecutor());
+    }
+
     @Override
     public ListenableFuture<List<TsKvEntry>> findAllLatest(TenantId tenantId, EntityId entityId) {
         validate(entityId);
@@ -155,6 +182,11 @@ public class BaseTimeseriesService implements TimeseriesService {
         timeseriesDao.cleanup(systemTtl);
     }
 
+    @Override
+    public void compact() {
+        timeseriesDao.compact();
+    }
+
     @Override
     public ListenableFuture<Integer> save(TenantId tenantId, EntityId entityId, TsKvEntry tsKvEntry) {
         validate(entityId);
@@ -48,6 +48,7 @@ import org.winstarcloud.server.common.data.kv.ReadTsKvQueryResult;
 import org.winstarcloud.server.common.data.kv.TsKvEntry;
 import org.winstarcloud.server.common.data.kv.TsKvEntryAggWrapper;
 import org.winstarcloud.server.common.data.kv.TsKvQuery;
+import org.winstarcloud.server.common.stats.StatsFactory;
 import org.winstarcloud.server.dao.model.ModelConstants;
 import org.winstarcloud.server.dao.nosql.TbResultSet;
 import org.winstarcloud.server.dao.nosql.TbResultSetFuture;
@@ -62,14 +63,17 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static com.datastax.oss.driver.api.querybuilder.QueryBuilder.literal;
@@ -122,6 +126,29 @@ public class CassandraBaseTimeseriesDao extends AbstractCassandraBaseTimeseriesD
     @Value("${cassandra.query.set_null_values_enabled}")
     private boolean setNullValuesEnabled;
 
+    @Value("${cassandra.query.ts_batch.enabled:false}")
+    private boolean batchEnabled;
+
+    @Value("${cassandra.query.ts_batch.max_size:20}")
+    private int batchMaxSize;
+
+    @Value("${cassandra.query.ts_batch.linger_ms:10}")
+    private long batchLingerMs;
+
+    @Value("${cassandra.query.ts_read_prefetch_partitions:1}")
+    private int readPrefetchPartitions;
+
+    @Value("${cassandra.query.streaming_aggregation_enabled:false}")
+    private boolean streamingAggregationEnabled;
+
+    @Value("${cassandra.query.rate_limit_print_interval_ms:10000}")
+    private long printStatsIntervalMs;
+
+    @Autowired
+    private StatsFactory statsFactory;
+
+    private CassandraTsWriteBatcher writeBatcher;
+
     private NoSqlTsPartitionDate tsFormat;
 
     private PreparedStatement partitionInsertStmt;
@@ -155,10 +182,17 @@ public class CassandraBaseTimeseriesDao extends AbstractCassandraBaseTimeseriesD
             log.warn("Incorrect configuration of partitioning {}", partitioning);
             throw new RuntimeException("Failed to parse partitioning property: " + partitioning + "!");
         }
+        if (batchEnabled && batchMaxSize > 1) {
+            writeBatcher = new CassandraTsWriteBatcher(batchMaxSize, batchLingerMs, printStatsIntervalMs, statsFactory,
+                    (tenantId, stmt) -> getFuture(executeAsyncWrite(tenantId, stmt), rs -> null));
+        }
     }
 
     @PreDestroy
     public void stop() {
+        if (writeBatcher != null) {
+            writeBatcher.stop();
+        }
         super.stopExecutor();
     }
 
@@ -207,7 +241,11 @@ public class CassandraBaseTimeseriesDao extends AbstractCassandraBaseTimeseriesD
             }
         }
         BoundStatement stmt = stmtBuilder.build();
-        futures.add(getFuture(executeAsyncWrite(tenantId, stmt), rs -> null));
+        if (writeBatcher != null) {
+            futures.add(writeBatcher.add(tenantId, entityType, entityIdId, entryKey, partition, stmt));
+        } else {
+            futures.add(getFuture(executeAsyncWrite(tenantId, stmt), rs -> null));
+        }
         return Futures.transform(Futures.allAsList(futures), result -> dataPointDays, MoreExecutors.directExecutor());
     }
 
@@ -263,6 +301,8 @@ public class CassandraBaseTimeseriesDao extends AbstractCassandraBaseTimeseriesD
         var aggParams = query.getAggParameters();
         if (Aggregation.NONE.equals(aggParams.getAggregation())) {
             return findAllAsyncWithLimit(tenantId, entityId, query);
+        } else if (streamingAggregationEnabled) {
+            return findAllAsyncStreaming(tenantId, entityId, query);
         } else {
             long startPeriod = query.getStartTs();
             long endPeriod = Math.max(query.getStartTs() + 1, query.getEndTs());
@@ -321,12 +361,19 @@ public class CassandraBaseTimeseriesDao extends AbstractCassandraBaseTimeseriesD
             @Override
             public void onSuccess(@Nullable List<Long> partitions) {
                 TsKvQueryCursor cursor = new TsKvQueryCursor(entityId.getEntityType().name(), entityId.getId(), query, partitions);
-                findAllAsyncSequentiallyWithLimit(tenantId, cursor, resultFuture);
+                if (readPrefetchPartitions > 1) {
+                    Deque<ListenableFuture<List<TsKvEntry>>> window = new ArrayDeque<>(readPrefetchPartitions);
+                    prefetchPartitions(tenantId, cursor, window);
+                    findAllAsyncWithPrefetchAndLimit(tenantId, cursor, window, resultFuture);
+                } else {
+                    findAllAsyncSequentiallyWithLimit(tenantId, cursor, resultFuture);
+                }
             }
 
             @Override
             public void onFailure(Throwable t) {
                 log.error("[{}][{}] Failed to fetch partitions for interval {}-{}", entityId.getEntityType().name(), entityId.getId(), toPartitionTs(query.getStartTs()), toPartitionTs(query.getEndTs()), t);
+                resultFuture.setException(t);
             }
         }, readResultsProcessingExecutor);
 
@@ -348,52 +395,116 @@ public class CassandraBaseTimeseriesDao extends AbstractCassandraBaseTimeseriesD
         if (cursor.isFull() || !cursor.hasNextPartition()) {
             resultFuture.set(cursor.getData());
         } else {
-            PreparedStatement proto = getFetchStmt(Aggregation.NONE, cursor.getOrderBy());
-            BoundStatementBuilder stmtBuilder = new BoundStatementBuilder(proto.bind());
-
-            stmtBuilder.setString(0, cursor.getEntityType());
-            stmtBuilder.setUuid(1, cursor.getEntityId());
-            stmtBuilder.setString(2, cursor.getKey());
-            stmtBuilder.setLong(3, cursor.getNextPartition());
-            stmtBuilder.setLong(4, cursor.getStartTs());
-            stmtBuilder.setLong(5, cursor.getEndTs());
-            stmtBuilder.setInt(6, cursor.getCurrentLimit());
-
-            BoundStatement stmt = stmtBuilder.build();
-
-            Futures.addCallback(executeAsyncRead(tenantId, stmt), new FutureCallback<TbResultSet>() {
+            Futures.addCallback(fetchPartitionAsync(tenantId, cursor), new FutureCallback<>() {
                 @Override
-                public void onSuccess(@Nullable TbResultSet result) {
-                    if (result == null) {
-                        cursor.addData(convertResultToTsKvEntryList(Collections.emptyList()));
-                        findAllAsyncSequentiallyWithLimit(tenantId, cursor, resultFuture);
-                    } else {
-                        Futures.addCallback(result.allRows(readResultsProcessingExecutor), new FutureCallback<List<Row>>() {
-
-                            @Override
-                            public void onSuccess(@Nullable List<Row> result) {
-                                cursor.addData(convertResultToTsKvEntryList(result == null ? Collections.emptyList() : result));
-                                findAllAsyncSequentiallyWithLimit(tenantId, cursor, resultFuture);
-                            }
-
-                            @Override
-                            public void onFailure(Throwable t) {
-                                log.error("[{}][{}] Failed to fetch data for query {}-{}", stmt, t);
-                            }
-                        }, readResultsProcessingExecutor);
-
-
-                    }
+                public void onSuccess(@Nullable List<TsKvEntry> entries) {
+                    cursor.addData(entries == null ? Collections.emptyList() : entries);
+                    findAllAsyncSequentiallyWithLimit(tenantId, cursor, resultFuture);
                 }
 
                 @Override
                 public void onFailure(Throwable t) {
-                    log.error("[{}][{}] Failed to fetch data for query {}-{}", stmt, t);
+                    log.error("[{}][{}] Failed to fetch data for key {}", cursor.getEntityType(), cursor.getEntityId(), cursor.getKey(), t);
+                    resultFuture.setException(t);
                 }
             }, readResultsProcessingExecutor);
         }
     }
 
+    /**
+     * Reads the partitions in the cursor order, keeping up to {@code readPrefetchPartitions} partition queries in flight.
+     * The results are merged in the cursor order, the queries that are not needed any more are cancelled once the limit is reached.
+     */
+    private void findAllAsyncWithPrefetchAndLimit(TenantId tenantId, final TsKvQueryCursor cursor,
+                                                  final Deque<ListenableFuture<List<TsKvEntry>>> window,
+                                                  final SimpleListenableFuture<List<TsKvEntry>> resultFuture) {
+        if (cursor.isFull() || window.isEmpty()) {
+            window.forEach(future -> future.cancel(false));
+            resultFuture.set(cursor.getData());
+            return;
+        }
+        Futures.addCallback(window.poll(), new FutureCallback<>() {
+            @Override
+            public void onSuccess(@Nullable List<TsKvEntry> entries) {
+                if (entries != null) {
+                    int limit = cursor.getCurrentLimit();
+                    cursor.addData(entries.size() > limit ? entries.subList(0, limit) : entries);
+                }
+                if (!cursor.isFull()) {
+                    prefetchPartitions(tenantId, cursor, window);
+                }
+                findAllAsyncWithPrefetchAndLimit(tenantId, cursor, window, resultFuture);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                log.error("[{}][{}] Failed to fetch data for key {}", cursor.getEntityType(), cursor.getEntityId(), cursor.getKey(), t);
+                window.forEach(future -> future.cancel(false));
+                resultFuture.setException(t);
+            }
+        }, readResultsProcessingExecutor);
+    }
+
+    private void prefetchPartitions(TenantId tenantId, TsKvQueryCursor cursor, Deque<ListenableFuture<List<TsKvEntry>>> window) {
+        while (window.size() < readPrefetchPartitions && cursor.hasNextPartition()) {
+            window.add(fetchPartitionAsync(tenantId, cursor));
+        }
+    }
+
+    /**
+     * Queries the next partition of the cursor for up to the remaining limit of entries.
+     */
+    ListenableFuture<List<TsKvEntry>> fetchPartitionAsync(TenantId tenantId, TsKvQueryCursor cursor) {
+        BoundStatementBuilder stmtBuilder = new BoundStatementBuilder(getFetchStmt(Aggregation.NONE, cursor.getOrderBy()).bind());
+        stmtBuilder.setString(0, cursor.getEntityType());
+        stmtBuilder.setUuid(1, cursor.getEntityId());
+        stmtBuilder.setString(2, cursor.getKey());
+        stmtBuilder.setLong(3, cursor.getNextPartition());
+        stmtBuilder.setLong(4, cursor.getStartTs());
+        stmtBuilder.setLong(5, cursor.getEndTs());
+        // with prefetch the previous partitions may return fewer rows than the remaining limit, so each partition is queried with the whole of it
+        stmtBuilder.setInt(6, cursor.getCurrentLimit());
+        ListenableFuture<List<Row>> rowsFuture = Futures.transformAsync(executeAsyncRead(tenantId, stmtBuilder.build()),
+                rs -> rs.allRows(readResultsProcessingExecutor), readResultsProcessingExecutor);
+        return Futures.transform(rowsFuture, this::convertResultToTsKvEntryList, readResultsProcessingExecutor);
+    }
+
+    private ListenableFuture<ReadTsKvQueryResult> findAllAsyncStreaming(TenantId tenantId, EntityId entityId, ReadTsKvQuery query) {
+        long startTs = query.getStartTs();
+        long endTs = Math.max(query.getStartTs() + 1, query.getEndTs());
+        StreamingPartitionsAggregation streamingAggregation = new StreamingPartitionsAggregation(query, endTs, MIN_AGGREGATION_STEP_MS, readResultsProcessingExecutor);
+        ListenableFuture<List<Long>> partitionsFuture = getPartitionsFuture(tenantId, query, entityId, toPartitionTs(startTs), toPartitionTs(endTs));
+        ListenableFuture<Void> streamFuture = Futures.transformAsync(partitionsFuture, partitions -> {
+            List<Long> sortedPartitions = new ArrayList<>(partitions);
+            Collections.sort(sortedPartitions);
+            return streamPartitionsAsync(tenantId, entityId, query.getKey(), startTs, endTs, sortedPartitions, 0, streamingAggregation);
+        }, readResultsProcessingExecutor);
+        return Futures.transform(streamFuture, v -> streamingAggregation.getResult(), readResultsProcessingExecutor);
+    }
+
+    private ListenableFuture<Void> streamPartitionsAsync(TenantId tenantId, EntityId entityId, String key, long startTs, long endTs,
+                                                         List<Long> partitions, int partitionIdx, Consumer<Row> consumer) {
+        if (partitionIdx >= partitions.size()) {
+            return Futures.immediateFuture(null);
+        }
+        long partition = partitions.get(partitionIdx);
+        log.trace("Streaming data of partition [{}] for entityType {} and entityId {}", partition, entityId.getEntityType(), entityId.getId());
+        BoundStatementBuilder stmtBuilder = new BoundStatementBuilder(getFetchStmt(Aggregation.NONE, ASC_ORDER).bind());
+        stmtBuilder.setString(0, entityId.getEntityType().name());
+        stmtBuilder.setUuid(1, entityId.getId());
+        stmtBuilder.setString(2, key);
+        stmtBuilder.setLong(3, partition);
+        stmtBuilder.setLong(4, startTs);
+        stmtBuilder.setLong(5, endTs);
+        stmtBuilder.setInt(6, Integer.MAX_VALUE);
+        BoundStatement stmt = stmtBuilder.build();
+        ListenableFuture<Void> partitionFuture = Futures.transformAsync(executeAsyncRead(tenantId, stmt),
+                rs -> rs.forEachRow(consumer, readResultsProcessingExecutor), readResultsProcessingExecutor);
+        return Futures.transformAsync(partitionFuture,
+                v -> streamPartitionsAsync(tenantId, entityId, key, startTs, endTs, partitions, partitionIdx + 1, consumer),
+                MoreExecutors.directExecutor());
+    }
+
     private ListenableFuture<Optional<TsKvEntryAggWrapper>> findAndAggregateAsync(TenantId tenantId, EntityId entityId, ReadTsKvQuery query, long minPartition, long maxPartition) {
         final Aggregation aggregation = query.getAggregation();
         final String key = query.getKey();
@@ -415,7 +526,7 @@ public class CassandraBaseTimeseriesDao extends AbstractCassandraBaseTimeseriesD
                         readResultsProcessingExecutor);
     }
 
-    private ListenableFuture<List<Long>> getPartitionsFuture(TenantId tenantId, TsKvQuery query, EntityId entityId, long minPartition, long maxPartition) {
+    ListenableFuture<List<Long>> getPartitionsFuture(TenantId tenantId, TsKvQuery query, EntityId entityId, long minPartition, long maxPartition) {
         if (isFixedPartitioning()) { //no need to fetch partitions from DB
             return Futures.immediateFuture(FIXED_PARTITION);
         }
@@ -41,8 +41,12 @@ import org.winstarcloud.server.dao.nosql.TbResultSet;
 import org.winstarcloud.server.dao.sqlts.AggregationTimeseriesDao;
 import org.winstarcloud.server.dao.util.NoSqlTsLatestDao;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static com.datastax.oss.driver.api.querybuilder.QueryBuilder.literal;
@@ -58,6 +62,7 @@ public class CassandraBaseTimeseriesLatestDao extends AbstractCassandraBaseTimes
     private PreparedStatement latestInsertStmt;
     private PreparedStatement findLatestStmt;
     private PreparedStatement findAllLatestStmt;
+    private PreparedStatement findLatestByKeysStmt;
 
     @Override
     public ListenableFuture<Optional<TsKvEntry>> findLatestOpt(TenantId tenantId, EntityId entityId, String key) {
@@ -79,6 +84,35 @@ public class CassandraBaseTimeseriesLatestDao extends AbstractCassandraBaseTimes
         return getFuture(executeAsyncRead(tenantId, stmt), function);
     }
 
+    @Override
+    public ListenableFuture<Map<EntityId, List<TsKvEntry>>> findLatest(TenantId tenantId, Map<EntityId, Collection<String>> keysByEntityId) {
+        // multi-partition IN queries overload the coordinator, so there is a query per partition that fetches all keys of the entity
+        List<EntityId> entityIds = new ArrayList<>(keysByEntityId.size());
+        List<ListenableFuture<List<TsKvEntry>>> futures = new ArrayList<>(keysByEntityId.size());
+        keysByEntityId.forEach((entityId, keys) -> {
+            if (keys.isEmpty()) {
+                return;
+            }
+            BoundStatementBuilder stmtBuilder = new BoundStatementBuilder(getFindLatestByKeysStmt().bind());
+            stmtBuilder.setString(0, entityId.getEntityType().name());
+            stmtBuilder.setUuid(1, entityId.getId());
+            stmtBuilder.setList(2, new ArrayList<>(keys), String.class);
+            BoundStatement stmt = stmtBuilder.build();
+            log.debug(GENERATED_QUERY_FOR_ENTITY_TYPE_AND_ENTITY_ID, stmt, entityId.getEntityType(), entityId.getId());
+            entityIds.add(entityId);
+            futures.add(getFutureAsync(executeAsyncRead(tenantId, stmt), rs -> convertAsyncResultSetToTsKvEntryList(rs)));
+        });
+        return Futures.transform(Futures.allAsList(futures), entries -> {
+            Map<EntityId, List<TsKvEntry>> result = new HashMap<>();
+            for (int i = 0; i < entityIds.size(); i++) {
+                if (!entries.get(i).isEmpty()) {
+                    result.put(entityIds.get(i), entries.get(i));
+                }
+            }
+            return result;
+        }, MoreExecutors.directExecutor());
+    }
+
     @Override
     public ListenableFuture<List<TsKvEntry>> findAllLatest(TenantId tenantId, EntityId entityId) {
         BoundStatementBuilder stmtBuilder = new BoundStatementBuilder(getFindAllLatestStmt().bind());
@@ -234,4 +268,22 @@ public class CassandraBaseTimeseriesLatestDao extends AbstractCassandraBaseTimes
         }
         return findAllLatestStmt;
     }
+
+    private PreparedStatement getFindLatestByKeysStmt() {
+        if (findLatestByKeysStmt == null) {
+            findLatestByKeysStmt = prepare(SELECT_PREFIX +
+                    ModelConstants.KEY_COLUMN + "," +
+                    ModelConstants.TS_COLUMN + "," +
+                    ModelConstants.STRING_VALUE_COLUMN + "," +
+                    ModelConstants.BOOLEAN_VALUE_COLUMN + "," +
+                    ModelConstants.LONG_VALUE_COLUMN + "," +
+                    ModelConstants.DOUBLE_VALUE_COLUMN + "," +
+                    ModelConstants.JSON_VALUE_COLUMN + " " +
+                    "FROM " + ModelConstants.TS_KV_LATEST_CF + " " +
+                    "WHERE " + ModelConstants.ENTITY_TYPE_COLUMN + EQUALS_PARAM +
+                    "AND " + ModelConstants.ENTITY_ID_COLUMN + EQUALS_PARAM +
+                    "AND " + ModelConstants.KEY_COLUMN + " IN ?");
+        }
+        return findLatestByKeysStmt;
+    }
 }
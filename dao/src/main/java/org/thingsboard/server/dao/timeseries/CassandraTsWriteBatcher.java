@@ -0,0 +1,175 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.dao.timeseries;
+
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BatchableStatement;
+import com.datastax.oss.driver.api.core.cql.DefaultBatchType;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.winstarcloud.common.util.WinstarCloudThreadFactory;
+import org.winstarcloud.server.common.data.id.TenantId;
+import org.winstarcloud.server.common.stats.StatsCounter;
+import org.winstarcloud.server.common.stats.StatsFactory;
+import org.winstarcloud.server.common.stats.StatsType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Groups the inserts into the same ts_kv partition (entity type, entity id, key, partition) that arrive within
+ * a short window and executes them as a single unlogged batch. Since all statements of a batch share the
+ * partition key, the batch is routed to a replica of that partition and takes one permit of the write executor.
+ */
+@Slf4j
+class CassandraTsWriteBatcher {
+
+    private static final String STATS_KEY = StatsType.RATE_EXECUTOR.getName() + ".tsBatch";
+
+    private final int maxBatchSize;
+    private final BiFunction<TenantId, Statement<?>, ListenableFuture<Void>> executor;
+    private final ConcurrentMap<BatchKey, Batch> batches = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flushExecutor;
+
+    private final StatsCounter batchesCount;
+    private final StatsCounter batchedRows;
+    private final StatsCounter permitsSaved;
+
+    CassandraTsWriteBatcher(int maxBatchSize, long lingerMs, long printStatsIntervalMs, StatsFactory statsFactory,
+                            BiFunction<TenantId, Statement<?>, ListenableFuture<Void>> executor) {
+        this.maxBatchSize = maxBatchSize;
+        this.executor = executor;
+        this.batchesCount = statsFactory.createStatsCounter(STATS_KEY, "batches");
+        this.batchedRows = statsFactory.createStatsCounter(STATS_KEY, "batchedRows");
+        this.permitsSaved = statsFactory.createStatsCounter(STATS_KEY, "permitsSaved");
+        this.flushExecutor = Executors.newSingleThreadScheduledExecutor(WinstarCloudThreadFactory.forName("cassandra-ts-batch-flush"));
+        this.flushExecutor.scheduleWithFixedDelay(this::flushAll, lingerMs, lingerMs, TimeUnit.MILLISECONDS);
+        this.flushExecutor.scheduleWithFixedDelay(this::printStats, printStatsIntervalMs, printStatsIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    ListenableFuture<Void> add(TenantId tenantId, String entityType, UUID entityId, String key, long partition,
+                               BatchableStatement<?> statement) {
+        BatchKey batchKey = new BatchKey(tenantId, entityType, entityId, key, partition);
+        SettableFuture<Void> future = SettableFuture.create();
+        Batch[] full = new Batch[1];
+        batches.compute(batchKey, (k, batch) -> {
+            if (batch == null) {
+                batch = new Batch(tenantId);
+            }
+            batch.statements.add(statement);
+            batch.futures.add(future);
+            if (batch.statements.size() >= maxBatchSize) {
+                full[0] = batch;
+                return null;
+            }
+            return batch;
+        });
+        if (full[0] != null) {
+            flush(full[0]);
+        }
+        return future;
+    }
+
+    void flushAll() {
+        for (BatchKey batchKey : batches.keySet()) {
+            Batch batch = batches.remove(batchKey);
+            if (batch != null) {
+                flush(batch);
+            }
+        }
+    }
+
+    void printStats() {
+        int count = batchesCount.get();
+        if (count > 0) {
+            int rows = batchedRows.get();
+            log.info("[TsBatch] batches = [{}] batchedRows = [{}] avgBatchSize = [{}] permitsSaved = [{}]",
+                    count, rows, rows / count, permitsSaved.get());
+        }
+        batchesCount.clear();
+        batchedRows.clear();
+        permitsSaved.clear();
+    }
+
+    void stop() {
+        flushExecutor.shutdownNow();
+        flushAll();
+    }
+
+    private void flush(Batch batch) {
+        List<BatchableStatement<?>> statements = batch.statements;
+        Statement<?> statement;
+        if (statements.size() == 1) {
+            statement = statements.get(0);
+        } else {
+            statement = BatchStatement.newInstance(DefaultBatchType.UNLOGGED, statements);
+            batchesCount.increment();
+            batchedRows.add(statements.size());
+            permitsSaved.add(statements.size() - 1);
+        }
+        ListenableFuture<Void> result;
+        try {
+            result = executor.apply(batch.tenantId, statement);
+        } catch (Throwable t) {
+            result = Futures.immediateFailedFuture(t);
+        }
+        Futures.addCallback(result, new FutureCallback<>() {
+            @Override
+            public void onSuccess(Void v) {
+                batch.futures.forEach(future -> future.set(null));
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                log.debug("[{}] Failed to save batch of {} time series entries", batch.tenantId, statements.size(), t);
+                batch.futures.forEach(future -> future.setException(t));
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    @Data
+    private static class BatchKey {
+        private final TenantId tenantId;
+        private final String entityType;
+        private final UUID entityId;
+        private final String key;
+        private final long partition;
+    }
+
+    private static class Batch {
+        private final TenantId tenantId;
+        private final List<BatchableStatement<?>> statements = new ArrayList<>();
+        private final List<SettableFuture<Void>> futures = new ArrayList<>();
+
+        private Batch(TenantId tenantId) {
+            this.tenantId = tenantId;
+        }
+    }
+
+}
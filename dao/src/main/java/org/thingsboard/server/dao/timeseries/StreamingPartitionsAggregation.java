@@ -0,0 +1,112 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.dao.timeseries;
+
+import com.datastax.oss.driver.api.core.cql.Row;
+import org.winstarcloud.server.common.data.kv.AggregationParams;
+import org.winstarcloud.server.common.data.kv.IntervalType;
+import org.winstarcloud.server.common.data.kv.ReadTsKvQuery;
+import org.winstarcloud.server.common.data.kv.ReadTsKvQueryResult;
+import org.winstarcloud.server.common.data.kv.TsKvEntry;
+import org.winstarcloud.server.dao.util.TimeUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Aggregates raw ts_kv rows into the interval buckets of an aggregated query in a single pass.
+ * The rows must be passed in ascending ts order, e.g. by reading the partitions one by one in ascending order.
+ * Only the bucket that is currently filled is kept in memory, completed buckets are converted to the result entries at once.
+ */
+class StreamingPartitionsAggregation implements Consumer<Row> {
+
+    private final ReadTsKvQuery query;
+    private final AggregationParams aggParams;
+    private final long minStep;
+    private final long endPeriod;
+    private final Executor executor;
+    private final List<TsKvEntry> data = new ArrayList<>();
+
+    private long bucketStartTs;
+    private long bucketEndTs;
+    private AggregatePartitionsFunction bucketFunction;
+    private AggregatePartitionsFunction.AggregationResult bucketResult;
+    private long maxTs;
+
+    StreamingPartitionsAggregation(ReadTsKvQuery query, long endPeriod, long minStep, Executor executor) {
+        this.query = query;
+        this.aggParams = query.getAggParameters();
+        this.minStep = minStep;
+        this.endPeriod = endPeriod;
+        this.executor = executor;
+        this.maxTs = query.getStartTs();
+        this.bucketStartTs = query.getStartTs();
+        this.bucketEndTs = calculateBucketEnd(bucketStartTs);
+    }
+
+    @Override
+    public void accept(Row row) {
+        long ts = row.getLong(AggregatePartitionsFunction.RAW_TS_POS);
+        if (ts < bucketStartTs) {
+            return;
+        }
+        while (ts >= bucketEndTs) {
+            completeBucket();
+            if (bucketStartTs >= endPeriod) {
+                return;
+            }
+        }
+        if (bucketResult == null) {
+            long bucketTs = bucketStartTs + (bucketEndTs - bucketStartTs) / 2;
+            bucketFunction = new AggregatePartitionsFunction(query.getAggregation(), query.getKey(), bucketTs, executor);
+            bucketResult = new AggregatePartitionsFunction.AggregationResult();
+        }
+        bucketFunction.processRawRow(row, bucketResult);
+    }
+
+    ReadTsKvQueryResult getResult() {
+        if (bucketStartTs < endPeriod) {
+            completeBucket();
+        }
+        return new ReadTsKvQueryResult(query.getId(), data, maxTs);
+    }
+
+    private void completeBucket() {
+        if (bucketResult != null) {
+            bucketFunction.processAggregationResult(bucketResult).ifPresent(wrapper -> {
+                maxTs = Math.max(maxTs, wrapper.getLastEntryTs());
+                data.add(wrapper.getEntry());
+            });
+            bucketFunction = null;
+            bucketResult = null;
+        }
+        bucketStartTs = bucketEndTs;
+        bucketEndTs = calculateBucketEnd(bucketStartTs);
+    }
+
+    private long calculateBucketEnd(long startTs) {
+        long endTs;
+        if (IntervalType.MILLISECONDS.equals(aggParams.getIntervalType())) {
+            endTs = startTs + Math.max(query.getInterval(), minStep);
+        } else {
+            endTs = TimeUtils.calculateIntervalEnd(startTs, aggParams.getIntervalType(), aggParams.getTzId());
+        }
+        return Math.min(endTs, endPeriod);
+    }
+
+}
@@ -39,4 +39,10 @@ public interface TimeseriesDao {
     ListenableFuture<Void> remove(TenantId tenantId, EntityId entityId, DeleteTsKvQuery query);
 
     void cleanup(long systemTtl);
+
+    /**
+     * Rewrites the historical data into a more compact storage format, if supported by the implementation.
+     */
+    default void compact() {
+    }
 }
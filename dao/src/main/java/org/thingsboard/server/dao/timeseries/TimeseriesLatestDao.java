@@ -23,7 +23,9 @@ import org.winstarcloud.server.common.data.kv.DeleteTsKvQuery;
 import org.winstarcloud.server.common.data.kv.TsKvEntry;
 import org.winstarcloud.server.common.data.kv.TsKvLatestRemovingResult;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface TimeseriesLatestDao {
@@ -40,6 +42,12 @@ public interface TimeseriesLatestDao {
      */
     ListenableFuture<TsKvEntry> findLatest(TenantId tenantId, EntityId entityId, String key);
 
+    /**
+     * Returns the latest values of the given keys of many entities with as few round-trips as the storage allows.
+     * Only the values present in the DB are returned, the entities without any of the values are absent in the result map.
+     */
+    ListenableFuture<Map<EntityId, List<TsKvEntry>>> findLatest(TenantId tenantId, Map<EntityId, Collection<String>> keysByEntityId);
+
     ListenableFuture<List<TsKvEntry>> findAllLatest(TenantId tenantId, EntityId entityId);
 
     ListenableFuture<Void> saveLatest(TenantId tenantId, EntityId entityId, TsKvEntry tsKvEntry);
@@ -164,6 +164,11 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
             try {
                 if (curLvl <= concurrencyLimit) {
                     taskCtx = queue.take();
+                    if (taskCtx.getFuture().isCancelled()) {
+                        // e.g. the prefetched partition query that is not needed any more
+                        logTask("Cancelled Before Execution", taskCtx);
+                        continue;
+                    }
                     final AsyncTaskContext<T, V> finalTaskCtx = taskCtx;
                     if (printQueriesFreq > 0) {
                         if (printQueriesIdx.incrementAndGet() >= printQueriesFreq) {
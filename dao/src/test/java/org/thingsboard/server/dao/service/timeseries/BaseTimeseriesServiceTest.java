@@ -47,9 +47,12 @@ import org.winstarcloud.server.dao.timeseries.TimeseriesService;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -174,6 +177,30 @@ public abstract class BaseTimeseriesServiceTest extends AbstractServiceTest {
         Assert.assertEquals(toTsEntry(TS - 1, stringKvEntry), entries.get(0));
     }
 
+    @Test
+    public void testFindLatestOfManyEntities() throws Exception {
+        DeviceId firstDeviceId = new DeviceId(Uuids.timeBased());
+        DeviceId secondDeviceId = new DeviceId(Uuids.timeBased());
+        DeviceId emptyDeviceId = new DeviceId(Uuids.timeBased());
+
+        saveEntries(firstDeviceId, TS - 1);
+        saveEntries(firstDeviceId, TS);
+        saveEntries(secondDeviceId, TS - 1);
+
+        Map<EntityId, Collection<String>> keysByEntityId = new HashMap<>();
+        keysByEntityId.put(firstDeviceId, List.of(STRING_KEY, LONG_KEY));
+        keysByEntityId.put(secondDeviceId, List.of(DOUBLE_KEY));
+        keysByEntityId.put(emptyDeviceId, List.of(STRING_KEY));
+        Map<EntityId, List<TsKvEntry>> latest = tsService.findLatest(tenantId, keysByEntityId).get(MAX_TIMEOUT, TimeUnit.SECONDS);
+
+        assertThat(latest).hasSize(3);
+        assertThat(latest.get(firstDeviceId)).containsExactly(toTsEntry(TS, stringKvEntry), toTsEntry(TS, longKvEntry));
+        assertThat(latest.get(secondDeviceId)).containsExactly(toTsEntry(TS - 1, doubleKvEntry));
+        assertThat(latest.get(emptyDeviceId)).hasSize(1);
+        assertThat(latest.get(emptyDeviceId).get(0).getKey()).isEqualTo(STRING_KEY);
+        assertThat(latest.get(emptyDeviceId).get(0).getValue()).isNull();
+    }
+
     @Test
     public void testFindByQueryAscOrder() throws Exception {
         DeviceId deviceId = new DeviceId(Uuids.timeBased());
@@ -0,0 +1,68 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.dao.service.timeseries.sql;
+
+import com.datastax.oss.driver.api.core.uuid.Uuids;
+import org.junit.Test;
+import org.springframework.test.context.TestPropertySource;
+import org.winstarcloud.server.common.data.id.DeviceId;
+import org.winstarcloud.server.common.data.kv.Aggregation;
+import org.winstarcloud.server.common.data.kv.BaseReadTsKvQuery;
+import org.winstarcloud.server.common.data.kv.BasicTsKvEntry;
+import org.winstarcloud.server.common.data.kv.BooleanDataEntry;
+import org.winstarcloud.server.common.data.kv.JsonDataEntry;
+import org.winstarcloud.server.common.data.kv.LongDataEntry;
+import org.winstarcloud.server.common.data.kv.StringDataEntry;
+import org.winstarcloud.server.common.data.kv.TsKvEntry;
+import org.winstarcloud.server.dao.service.DaoSqlTest;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DaoSqlTest
+@TestPropertySource(properties = {
+        "sql.ts.insert_mode=copy",
+})
+public class TimeseriesServiceSqlCopyInsertTest extends TimeseriesServiceSqlTest {
+
+    @Test
+    public void testCopyInsertSavesAllTypesAndKeepsLastValueOfDuplicates() throws Exception {
+        DeviceId deviceId = new DeviceId(Uuids.timeBased());
+        long ts = TimeUnit.MINUTES.toMillis(5);
+        List<TsKvEntry> entries = List.of(
+                new BasicTsKvEntry(ts, new LongDataEntry("copyLong", 1L)),
+                new BasicTsKvEntry(ts, new LongDataEntry("copyLong", 2L)),
+                new BasicTsKvEntry(ts, new StringDataEntry("copyStr", "a\u0000b")),
+                new BasicTsKvEntry(ts, new BooleanDataEntry("copyBool", true)),
+                new BasicTsKvEntry(ts, new JsonDataEntry("copyJson", "{\"value\":42}")));
+        tsService.save(tenantId, deviceId, entries, 0).get(MAX_TIMEOUT, TimeUnit.SECONDS);
+
+        assertThat(findValue(deviceId, "copyLong", ts)).isEqualTo("2");
+        assertThat(findValue(deviceId, "copyStr", ts)).isEqualTo("ab");
+        assertThat(findValue(deviceId, "copyBool", ts)).isEqualTo("true");
+        assertThat(findValue(deviceId, "copyJson", ts)).isEqualTo("{\"value\":42}");
+    }
+
+    private String findValue(DeviceId deviceId, String key, long ts) throws Exception {
+        List<TsKvEntry> entries = tsService.findAll(tenantId, deviceId, List.of(new BaseReadTsKvQuery(key, ts, ts + 1, 0, 10, Aggregation.NONE)))
+                .get(MAX_TIMEOUT, TimeUnit.SECONDS);
+        assertThat(entries).as("points of %s", key).hasSize(1);
+        return entries.get(0).getValueAsString();
+    }
+
+}
@@ -15,9 +15,246 @@
  */
 package org.winstarcloud.server.dao.service.timeseries.sql;
 
+import com.datastax.oss.driver.api.core.uuid.Uuids;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.winstarcloud.server.common.data.id.DeviceId;
+import org.winstarcloud.server.common.data.kv.Aggregation;
+import org.winstarcloud.server.common.data.kv.AggregationParams;
+import org.winstarcloud.server.common.data.kv.BaseDeleteTsKvQuery;
+import org.winstarcloud.server.common.data.kv.BaseReadTsKvQuery;
+import org.winstarcloud.server.common.data.kv.BasicTsKvEntry;
+import org.winstarcloud.server.common.data.kv.DataType;
+import org.winstarcloud.server.common.data.kv.DoubleDataEntry;
+import org.winstarcloud.server.common.data.kv.IntervalType;
+import org.winstarcloud.server.common.data.kv.KvEntry;
+import org.winstarcloud.server.common.data.kv.LongDataEntry;
+import org.winstarcloud.server.common.data.kv.ReadTsKvQuery;
+import org.winstarcloud.server.common.data.kv.StringDataEntry;
+import org.winstarcloud.server.common.data.kv.TsKvEntry;
+import org.winstarcloud.server.dao.dictionary.KeyDictionaryDao;
 import org.winstarcloud.server.dao.service.DaoSqlTest;
 import org.winstarcloud.server.dao.service.timeseries.BaseTimeseriesServiceTest;
+import org.winstarcloud.server.dao.sqlts.rollup.SqlTsRollupDao;
+import org.winstarcloud.server.dao.sqlts.rollup.TsRollupRepository;
+import org.winstarcloud.server.dao.timeseries.TimeseriesDao;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
 
 @DaoSqlTest
 public class TimeseriesServiceSqlTest extends BaseTimeseriesServiceTest {
+
+    private static final String MIXED_KEY = "mixedKey";
+    private static final String STR_KEY = "strKey";
+    private static final ZoneId TZ = ZoneId.of("America/New_York");
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    @Autowired
+    private TimeseriesDao timeseriesDao;
+
+    @Autowired
+    private SqlTsRollupDao rollupDao;
+
+    @Autowired
+    private TsRollupRepository rollupRepository;
+
+    @Autowired
+    private KeyDictionaryDao keyDictionaryDao;
+
+    private boolean bucketedAggregation;
+    private boolean rollupsEnabled;
+    private String rollupIntervals;
+    private long rollupBuildInterval;
+
+    @Before
+    public void saveBucketedAggregation() {
+        bucketedAggregation = (boolean) ReflectionTestUtils.getField(AopTestUtils.getUltimateTargetObject(timeseriesDao), "bucketedAggregation");
+        rollupsEnabled = (boolean) ReflectionTestUtils.getField(getRollupDao(), "enabled");
+        rollupIntervals = (String) ReflectionTestUtils.getField(getRollupDao(), "intervalsConfig");
+        rollupBuildInterval = (long) ReflectionTestUtils.getField(getRollupDao(), "buildInterval");
+    }
+
+    @After
+    public void restoreBucketedAggregation() {
+        setBucketedAggregation(bucketedAggregation);
+        SqlTsRollupDao target = getRollupDao();
+        target.destroy();
+        ReflectionTestUtils.setField(target, "enabled", rollupsEnabled);
+        ReflectionTestUtils.setField(target, "intervalsConfig", rollupIntervals);
+        ReflectionTestUtils.setField(target, "buildInterval", rollupBuildInterval);
+        target.init();
+    }
+
+    @Test
+    public void testBucketedAggregationEqualsPerIntervalAggregationForMilliseconds() throws Exception {
+        DeviceId deviceId = new DeviceId(Uuids.timeBased());
+        save(deviceId, new LongDataEntry(MIXED_KEY, 100L), 5000);
+        save(deviceId, new DoubleDataEntry(MIXED_KEY, 200.5), 15000);
+        save(deviceId, new LongDataEntry(MIXED_KEY, 300L), 25000);
+        // 40000 - 60000 is left empty
+        save(deviceId, new DoubleDataEntry(MIXED_KEY, 1.5), 65000);
+        save(deviceId, new DoubleDataEntry(MIXED_KEY, -4.25), 66000);
+        save(deviceId, new LongDataEntry(MIXED_KEY, 7L), 105000);
+        save(deviceId, new StringDataEntry(STR_KEY, "B"), 5000);
+        save(deviceId, new StringDataEntry(STR_KEY, "A"), 15000);
+        save(deviceId, new StringDataEntry(STR_KEY, "C"), 65000);
+
+        for (Aggregation aggregation : List.of(Aggregation.AVG, Aggregation.SUM, Aggregation.MIN, Aggregation.MAX, Aggregation.COUNT)) {
+            // the end is not aligned with the interval, so the last bucket is shorter
+            AggregationParams params = AggregationParams.milliseconds(aggregation, 20000);
+            assertSameResults(deviceId, new BaseReadTsKvQuery(MIXED_KEY, 0, 110000, params, 100));
+            assertSameResults(deviceId, new BaseReadTsKvQuery(MIXED_KEY, 1000, 110000, params, 100));
+            if (aggregation != Aggregation.AVG && aggregation != Aggregation.SUM) {
+                assertSameResults(deviceId, new BaseReadTsKvQuery(STR_KEY, 0, 110000, params, 100));
+            }
+        }
+    }
+
+    @Test
+    public void testBucketedAggregationEqualsPerIntervalAggregationForCalendarIntervals() throws Exception {
+        DeviceId deviceId = new DeviceId(Uuids.timeBased());
+        ZonedDateTime start = ZonedDateTime.of(2023, 1, 15, 0, 0, 0, 0, TZ);
+        save(deviceId, new LongDataEntry(MIXED_KEY, 10L), start.toInstant().toEpochMilli());
+        save(deviceId, new DoubleDataEntry(MIXED_KEY, 2.5), start.plusDays(3).toInstant().toEpochMilli());
+        save(deviceId, new LongDataEntry(MIXED_KEY, 4L), start.plusDays(20).toInstant().toEpochMilli());
+        // no data in April, the DST switch happens in March
+        save(deviceId, new DoubleDataEntry(MIXED_KEY, 8.75), start.plusMonths(2).toInstant().toEpochMilli());
+        save(deviceId, new LongDataEntry(MIXED_KEY, -3L), start.plusMonths(4).toInstant().toEpochMilli());
+        save(deviceId, new StringDataEntry(STR_KEY, "X"), start.plusDays(1).toInstant().toEpochMilli());
+        save(deviceId, new StringDataEntry(STR_KEY, "Y"), start.plusMonths(2).toInstant().toEpochMilli());
+
+        long startTs = start.minusDays(10).toInstant().toEpochMilli();
+        long endTs = start.plusMonths(5).toInstant().toEpochMilli();
+        for (IntervalType intervalType : List.of(IntervalType.WEEK, IntervalType.WEEK_ISO, IntervalType.MONTH, IntervalType.QUARTER)) {
+            for (Aggregation aggregation : List.of(Aggregation.AVG, Aggregation.SUM, Aggregation.MIN, Aggregation.MAX, Aggregation.COUNT)) {
+                AggregationParams params = AggregationParams.calendar(aggregation, intervalType, TZ);
+                assertSameResults(deviceId, new BaseReadTsKvQuery(MIXED_KEY, startTs, endTs, params, 1000));
+                if (aggregation != Aggregation.AVG && aggregation != Aggregation.SUM) {
+                    assertSameResults(deviceId, new BaseReadTsKvQuery(STR_KEY, startTs, endTs, params, 1000));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRollupAggregationEqualsRawAggregation() throws Exception {
+        SqlTsRollupDao target = getRollupDao();
+        target.destroy();
+        ReflectionTestUtils.setField(target, "enabled", true);
+        ReflectionTestUtils.setField(target, "intervalsConfig", "60000,600000,3600000");
+        // the rollups are built by the test only
+        ReflectionTestUtils.setField(target, "buildInterval", TimeUnit.DAYS.toMillis(1));
+        target.init();
+
+        long since = (System.currentTimeMillis() - 4 * HOUR) / HOUR * HOUR;
+        for (String key : List.of(MIXED_KEY, STR_KEY)) {
+            rollupRepository.findOrSaveState(keyDictionaryDao.getOrSaveKeyId(key), since);
+        }
+        DeviceId deviceId = new DeviceId(Uuids.timeBased());
+        save(deviceId, new LongDataEntry(MIXED_KEY, 100L), since + 5000);
+        save(deviceId, new DoubleDataEntry(MIXED_KEY, 200.5), since + MINUTE + 5000);
+        save(deviceId, new LongDataEntry(MIXED_KEY, 300L), since + 10 * MINUTE + 1);
+        save(deviceId, new DoubleDataEntry(MIXED_KEY, 1.5), since + HOUR - 1);
+        save(deviceId, new DoubleDataEntry(MIXED_KEY, -4.25), since + HOUR + 30 * MINUTE);
+        save(deviceId, new LongDataEntry(MIXED_KEY, 7L), since + 2 * HOUR + 5 * MINUTE + 30000);
+        save(deviceId, new LongDataEntry(MIXED_KEY, 42L), since + 3 * HOUR + 10 * MINUTE);
+        save(deviceId, new StringDataEntry(STR_KEY, "B"), since + 5000);
+        save(deviceId, new StringDataEntry(STR_KEY, "A"), since + 70 * MINUTE);
+        save(deviceId, new StringDataEntry(STR_KEY, "C"), since + 2 * HOUR + 1);
+
+        long now = System.currentTimeMillis();
+        ReflectionTestUtils.invokeMethod(target, "build", now);
+        assertThat(rollupRepository.findState(keyDictionaryDao.getOrSaveKeyId(MIXED_KEY)).getBuilt()).isGreaterThan(since + 3 * HOUR);
+        assertSameRollupResults(deviceId, since);
+
+        // the re-sent points replace the values instead of being counted twice, the late ones rebuild their period
+        save(deviceId, new LongDataEntry(MIXED_KEY, 100L), since + 5000);
+        save(deviceId, new LongDataEntry(MIXED_KEY, 150L), since + 10 * MINUTE + 1);
+        save(deviceId, new DoubleDataEntry(MIXED_KEY, 3.5), since + HOUR + 45 * MINUTE);
+        long delay = (long) ReflectionTestUtils.getField(target, "delay");
+        ReflectionTestUtils.invokeMethod(target, "build", System.currentTimeMillis() + delay + 1);
+        ReflectionTestUtils.invokeMethod(target, "build", System.currentTimeMillis() + delay + 1);
+        assertSameRollupResults(deviceId, since);
+
+        tsService.remove(tenantId, deviceId, List.of(new BaseDeleteTsKvQuery(MIXED_KEY, since + 10 * MINUTE, since + HOUR + 35 * MINUTE)))
+                .get(MAX_TIMEOUT, TimeUnit.SECONDS);
+        assertSameRollupResults(deviceId, since);
+    }
+
+    private void assertSameRollupResults(DeviceId deviceId, long since) throws Exception {
+        long startTs = since - 10 * MINUTE - 1234;
+        long endTs = since + 3 * HOUR + 40 * MINUTE + 5678;
+        for (Aggregation aggregation : List.of(Aggregation.AVG, Aggregation.SUM, Aggregation.MIN, Aggregation.MAX, Aggregation.COUNT)) {
+            for (AggregationParams params : List.of(AggregationParams.milliseconds(aggregation, 7 * MINUTE),
+                    AggregationParams.milliseconds(aggregation, 25 * MINUTE + 1000),
+                    AggregationParams.milliseconds(aggregation, 2 * HOUR),
+                    AggregationParams.calendar(aggregation, IntervalType.WEEK, TZ))) {
+                assertSameResults(deviceId, new BaseReadTsKvQuery(MIXED_KEY, startTs, endTs, params, 1000), this::setRollupsEnabled);
+                if (aggregation != Aggregation.AVG && aggregation != Aggregation.SUM) {
+                    assertSameResults(deviceId, new BaseReadTsKvQuery(STR_KEY, startTs, endTs, params, 1000), this::setRollupsEnabled);
+                }
+            }
+        }
+    }
+
+    private void assertSameResults(DeviceId deviceId, ReadTsKvQuery query) throws Exception {
+        assertSameResults(deviceId, query, this::setBucketedAggregation);
+    }
+
+    private void assertSameResults(DeviceId deviceId, ReadTsKvQuery query, Consumer<Boolean> optimization) throws Exception {
+        optimization.accept(false);
+        List<TsKvEntry> expected = findAll(deviceId, query);
+        optimization.accept(true);
+        List<TsKvEntry> actual = findAll(deviceId, query);
+
+        assertThat(expected).as("reference result of %s", query).isNotEmpty();
+        assertThat(actual).as("optimized result of %s", query).hasSameSizeAs(expected);
+        for (int i = 0; i < expected.size(); i++) {
+            TsKvEntry expectedEntry = expected.get(i);
+            TsKvEntry actualEntry = actual.get(i);
+            assertThat(actualEntry.getTs()).as("ts of %s", query).isEqualTo(expectedEntry.getTs());
+            assertThat(actualEntry.getDataType()).as("data type of %s", query).isEqualTo(expectedEntry.getDataType());
+            if (DataType.DOUBLE.equals(expectedEntry.getDataType())) {
+                assertThat(actualEntry.getDoubleValue().get()).as("value of %s", query)
+                        .isCloseTo(expectedEntry.getDoubleValue().get(), within(1e-9));
+            } else {
+                assertThat(actualEntry.getValueAsString()).as("value of %s", query).isEqualTo(expectedEntry.getValueAsString());
+            }
+        }
+    }
+
+    private List<TsKvEntry> findAll(DeviceId deviceId, ReadTsKvQuery query) throws Exception {
+        return new ArrayList<>(tsService.findAll(tenantId, deviceId, Collections.singletonList(query)).get(MAX_TIMEOUT, TimeUnit.SECONDS));
+    }
+
+    private void save(DeviceId deviceId, KvEntry kvEntry, long ts) throws Exception {
+        tsService.save(tenantId, deviceId, new BasicTsKvEntry(ts, kvEntry)).get(MAX_TIMEOUT, TimeUnit.SECONDS);
+    }
+
+    private void setBucketedAggregation(boolean enabled) {
+        ReflectionTestUtils.setField(AopTestUtils.getUltimateTargetObject(timeseriesDao), "bucketedAggregation", enabled);
+    }
+
+    private void setRollupsEnabled(boolean enabled) {
+        ReflectionTestUtils.setField(getRollupDao(), "enabled", enabled);
+    }
+
+    private SqlTsRollupDao getRollupDao() {
+        return AopTestUtils.getUltimateTargetObject(rollupDao);
+    }
+
 }
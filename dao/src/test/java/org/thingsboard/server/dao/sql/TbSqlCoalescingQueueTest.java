@@ -0,0 +1,131 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.dao.sql;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import lombok.Data;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.winstarcloud.server.common.stats.MessagesStats;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TbSqlCoalescingQueueTest {
+
+    private final List<List<Entry>> savedBatches = new CopyOnWriteArrayList<>();
+
+    private MessagesStats stats;
+    private ScheduledLogExecutorComponent logExecutor;
+    private TbSqlCoalescingQueue<String, Entry> queue;
+
+    @Before
+    public void setUp() {
+        stats = Mockito.mock(MessagesStats.class);
+        logExecutor = Mockito.mock(ScheduledLogExecutorComponent.class);
+        TbSqlBlockingQueueParams params = TbSqlBlockingQueueParams.builder()
+                .logName("Test")
+                .batchSize(100)
+                .maxDelay(50)
+                .statsPrintIntervalMs(60000)
+                .statsNamePrefix("test")
+                .batchSortEnabled(true)
+                .build();
+        queue = new TbSqlCoalescingQueue<>(params, Entry::getVersion, stats);
+    }
+
+    @After
+    public void tearDown() {
+        queue.destroy();
+    }
+
+    @Test
+    public void duplicateKeysCollapseToLatestValue() throws Exception {
+        List<ListenableFuture<Void>> futures = new ArrayList<>();
+        for (int version = 1; version <= 5; version++) {
+            futures.add(queue.add("a", new Entry("a", version, "a" + version)));
+            futures.add(queue.add("b", new Entry("b", version, "b" + version)));
+        }
+
+        // Superseded callers are released as soon as a newer value for the same key arrives.
+        for (int i = 0; i < futures.size() - 2; i++) {
+            assertTrue(futures.get(i).isDone());
+        }
+
+        startQueue();
+        for (ListenableFuture<Void> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+
+        List<Entry> saved = getSavedEntries();
+        assertEquals(2, saved.size());
+        assertEquals("a5", saved.get(0).getValue());
+        assertEquals("b5", saved.get(1).getValue());
+        Mockito.verify(stats, Mockito.times(10)).incrementTotal();
+    }
+
+    @Test
+    public void olderVersionDoesNotOverwritePendingValue() throws Exception {
+        ListenableFuture<Void> newer = queue.add("a", new Entry("a", 2, "new"));
+        ListenableFuture<Void> older = queue.add("a", new Entry("a", 1, "old"));
+        assertTrue(older.isDone());
+
+        startQueue();
+        newer.get(5, TimeUnit.SECONDS);
+
+        List<Entry> saved = getSavedEntries();
+        assertEquals(1, saved.size());
+        assertEquals("new", saved.get(0).getValue());
+    }
+
+    @Test
+    public void keyAddedAfterFlushIsSavedAgain() throws Exception {
+        startQueue();
+        queue.add("a", new Entry("a", 1, "first")).get(5, TimeUnit.SECONDS);
+        queue.add("a", new Entry("a", 2, "second")).get(5, TimeUnit.SECONDS);
+
+        List<Entry> saved = getSavedEntries();
+        assertEquals(2, saved.size());
+        assertEquals("first", saved.get(0).getValue());
+        assertEquals("second", saved.get(1).getValue());
+    }
+
+    private void startQueue() {
+        queue.init(logExecutor, entries -> savedBatches.add(new ArrayList<>(entries)), Comparator.comparing(Entry::getKey), 0);
+    }
+
+    private List<Entry> getSavedEntries() {
+        List<Entry> result = new ArrayList<>();
+        savedBatches.forEach(result::addAll);
+        return result;
+    }
+
+    @Data
+    private static class Entry {
+        private final String key;
+        private final long version;
+        private final String value;
+    }
+
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.dao.sql;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.winstarcloud.server.common.stats.MessagesStats;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TbSqlRingBufferQueueTest {
+
+    private static final int CAPACITY = 4;
+
+    private final List<Integer> saved = new CopyOnWriteArrayList<>();
+
+    private MessagesStats stats;
+    private ScheduledLogExecutorComponent logExecutor;
+    private TbSqlRingBufferQueue<Integer> queue;
+
+    @Before
+    public void setUp() {
+        stats = Mockito.mock(MessagesStats.class);
+        logExecutor = Mockito.mock(ScheduledLogExecutorComponent.class);
+        TbSqlBlockingQueueParams params = TbSqlBlockingQueueParams.builder()
+                .logName("Test")
+                .batchSize(2)
+                .maxDelay(10)
+                .statsPrintIntervalMs(60000)
+                .statsNamePrefix("test")
+                .batchSortEnabled(false)
+                .ringBufferSize(CAPACITY)
+                .build();
+        queue = new TbSqlRingBufferQueue<>(params, stats);
+    }
+
+    @After
+    public void tearDown() {
+        queue.destroy();
+    }
+
+    @Test
+    public void elementsAreSavedInOrderAcrossWrapAround() throws Exception {
+        startQueue(saved::addAll);
+
+        List<ListenableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < CAPACITY * 10; i++) {
+            futures.add(queue.add(i));
+        }
+        for (ListenableFuture<Void> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(IntStream.range(0, CAPACITY * 10).boxed().collect(Collectors.toList()), saved);
+        Mockito.verify(stats, Mockito.times(CAPACITY * 10)).incrementTotal();
+    }
+
+    @Test
+    public void addWaitsWhileBufferIsFull() throws Exception {
+        List<ListenableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < CAPACITY; i++) {
+            futures.add(queue.add(i));
+        }
+        CompletableFuture<ListenableFuture<Void>> overflow = CompletableFuture.supplyAsync(() -> queue.add(CAPACITY));
+        Thread.sleep(100);
+        assertFalse("Producer must wait for a free slot", overflow.isDone());
+
+        startQueue(saved::addAll);
+        futures.add(overflow.get(5, TimeUnit.SECONDS));
+        for (ListenableFuture<Void> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(IntStream.rangeClosed(0, CAPACITY).boxed().collect(Collectors.toList()), saved);
+    }
+
+    @Test
+    public void futureCompletesOnlyAfterElementIsSaved() throws Exception {
+        CountDownLatch saveStarted = new CountDownLatch(1);
+        CountDownLatch saveAllowed = new CountDownLatch(1);
+        startQueue(batch -> {
+            saveStarted.countDown();
+            try {
+                saveAllowed.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            saved.addAll(batch);
+        });
+
+        ListenableFuture<Void> future = queue.add(1);
+        assertTrue(saveStarted.await(5, TimeUnit.SECONDS));
+        assertFalse(future.isDone());
+
+        saveAllowed.countDown();
+        future.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(1), saved);
+    }
+
+    @Test
+    public void futureFailsWhenSaveFails() throws Exception {
+        RuntimeException error = new RuntimeException("save failed");
+        startQueue(batch -> {
+            throw error;
+        });
+
+        ListenableFuture<Void> future = queue.add(1);
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("Future must complete exceptionally");
+        } catch (ExecutionException e) {
+            assertEquals(error, e.getCause());
+        }
+        Mockito.verify(stats, Mockito.timeout(5000)).incrementFailed(1);
+    }
+
+    private void startQueue(Consumer<List<Integer>> saveFunction) {
+        queue.init(logExecutor, saveFunction, Comparator.naturalOrder(), 0);
+    }
+
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.dao.sqlts.aggregation;
+
+import org.junit.jupiter.api.Test;
+import org.winstarcloud.server.common.data.kv.Aggregation;
+import org.winstarcloud.server.common.data.kv.BasicTsKvEntry;
+import org.winstarcloud.server.common.data.kv.DoubleDataEntry;
+import org.winstarcloud.server.common.data.kv.LongDataEntry;
+import org.winstarcloud.server.common.data.kv.StringDataEntry;
+import org.winstarcloud.server.common.data.kv.TsKvEntry;
+import org.winstarcloud.server.dao.model.sqlts.ts.TsKvEntity;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TsBucketAggregatorTest {
+
+    private static final String KEY = "temperature";
+    private static final long[] BUCKET_STARTS = {0, 10, 20};
+
+    private static final List<TsKvEntry> POINTS = List.of(
+            new BasicTsKvEntry(1, new LongDataEntry(KEY, 10L)),
+            new BasicTsKvEntry(5, new DoubleDataEntry(KEY, 20.0)),
+            new BasicTsKvEntry(21, new StringDataEntry(KEY, "a")),
+            new BasicTsKvEntry(25, new StringDataEntry(KEY, "b")),
+            new BasicTsKvEntry(30, new LongDataEntry(KEY, 100L)));
+
+    @Test
+    public void givenMixedPoints_whenAvg_thenAveragedPerBucket() {
+        List<Optional<TsKvEntity>> result = aggregate(Aggregation.AVG);
+
+        assertThat(result).hasSize(3);
+        assertThat(result.get(0)).isPresent();
+        assertThat(result.get(0).get().getDoubleValue()).isEqualTo(15.0);
+        assertThat(result.get(0).get().getAggValuesCount()).isEqualTo(2);
+        assertThat(result.get(0).get().getAggValuesLastTs()).isEqualTo(5);
+        assertThat(result.get(0).get().getTs()).isEqualTo(5);
+        assertThat(result.get(1)).isEmpty();
+    }
+
+    @Test
+    public void givenStringPoints_whenMax_thenMaxString() {
+        List<Optional<TsKvEntity>> result = aggregate(Aggregation.MAX);
+
+        assertThat(result.get(0).get().getDoubleValue()).isEqualTo(20.0);
+        assertThat(result.get(2).get().getStrValue()).isEqualTo("b");
+        assertThat(result.get(2).get().getTs()).isEqualTo(25);
+    }
+
+    @Test
+    public void givenPointsOutsideOfRange_whenCount_thenIgnored() {
+        List<Optional<TsKvEntity>> result = aggregate(Aggregation.COUNT);
+
+        assertThat(result.get(0).get().getLongValue()).isEqualTo(2);
+        assertThat(result.get(2).get().getLongValue()).isEqualTo(2);
+    }
+
+    @Test
+    public void givenPartialAggregates_whenMerged_thenSameResultAsPoints() {
+        for (Aggregation aggregation : List.of(Aggregation.AVG, Aggregation.SUM, Aggregation.MIN, Aggregation.MAX, Aggregation.COUNT)) {
+            TsAggregate first = new TsAggregate();
+            TsAggregate second = new TsAggregate();
+            for (int i = 0; i < POINTS.size(); i++) {
+                (i % 2 == 0 ? first : second).add(POINTS.get(i));
+            }
+            TsBucketAggregator aggregator = new TsBucketAggregator(new long[]{0}, 1, 40, aggregation);
+            aggregator.merge(0, first);
+            aggregator.merge(0, second);
+
+            TsBucketAggregator expected = new TsBucketAggregator(new long[]{0}, 1, 40, aggregation);
+            POINTS.forEach(expected::add);
+
+            assertThat(aggregator.getResult()).isEqualTo(expected.getResult());
+        }
+    }
+
+    private static List<Optional<TsKvEntity>> aggregate(Aggregation aggregation) {
+        TsBucketAggregator aggregator = new TsBucketAggregator(BUCKET_STARTS, BUCKET_STARTS.length, 30, aggregation);
+        POINTS.forEach(aggregator::add);
+        return aggregator.getResult();
+    }
+
+}
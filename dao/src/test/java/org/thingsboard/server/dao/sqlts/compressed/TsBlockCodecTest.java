@@ -0,0 +1,104 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.dao.sqlts.compressed;
+
+import org.junit.jupiter.api.Test;
+import org.winstarcloud.server.common.data.kv.BasicTsKvEntry;
+import org.winstarcloud.server.common.data.kv.BooleanDataEntry;
+import org.winstarcloud.server.common.data.kv.DoubleDataEntry;
+import org.winstarcloud.server.common.data.kv.JsonDataEntry;
+import org.winstarcloud.server.common.data.kv.LongDataEntry;
+import org.winstarcloud.server.common.data.kv.StringDataEntry;
+import org.winstarcloud.server.common.data.kv.TsKvEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TsBlockCodecTest {
+
+    private static final String KEY = "temperature";
+
+    @Test
+    public void givenRegularDoubleSeries_whenEncode_thenDecodedEqualAndCompact() {
+        List<TsKvEntry> entries = new ArrayList<>();
+        Random random = new Random(7);
+        double value = 20.0;
+        for (int i = 0; i < 1000; i++) {
+            value += random.nextInt(3) - 1;
+            entries.add(new BasicTsKvEntry(1700000000000L + i * 1000L, new DoubleDataEntry(KEY, value)));
+        }
+
+        byte[] data = TsBlockCodec.encode(entries);
+
+        assertThat(TsBlockCodec.decode(KEY, data)).isEqualTo(entries);
+        // an uncompressed row takes more than 40 bytes
+        assertThat(data.length).isLessThan(entries.size() * 4);
+    }
+
+    @Test
+    public void givenMixedTypesAndIrregularTimestamps_whenEncode_thenDecodedEqual() {
+        List<TsKvEntry> entries = new ArrayList<>();
+        Random random = new Random(11);
+        long ts = -1000;
+        for (int i = 0; i < 500; i++) {
+            ts += 1 + (random.nextLong() >>> 24);
+            entries.add(new BasicTsKvEntry(ts, switch (i % 5) {
+                case 0 -> new BooleanDataEntry(KEY, random.nextBoolean());
+                case 1 -> new LongDataEntry(KEY, random.nextBoolean() ? random.nextLong() : random.nextInt(100));
+                case 2 -> new DoubleDataEntry(KEY, Double.longBitsToDouble(random.nextLong()));
+                case 3 -> new StringDataEntry(KEY, "värde " + random.nextInt());
+                default -> new JsonDataEntry(KEY, "{\"value\":" + random.nextInt() + "}");
+            }));
+        }
+
+        assertThat(TsBlockCodec.decode(KEY, TsBlockCodec.encode(entries))).isEqualTo(entries);
+    }
+
+    @Test
+    public void givenSpecialDoubles_whenEncode_thenDecodedEqual() {
+        double[] values = {0.0, -0.0, Double.NaN, Double.MAX_VALUE, Double.MIN_VALUE, Double.NEGATIVE_INFINITY, 1.5, 1.5, -1.5};
+        List<TsKvEntry> entries = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            entries.add(new BasicTsKvEntry(i, new DoubleDataEntry(KEY, values[i])));
+        }
+
+        List<TsKvEntry> decoded = TsBlockCodec.decode(KEY, TsBlockCodec.encode(entries));
+
+        for (int i = 0; i < values.length; i++) {
+            assertThat(Double.doubleToRawLongBits(decoded.get(i).getDoubleValue().get())).isEqualTo(Double.doubleToRawLongBits(values[i]));
+        }
+    }
+
+    @Test
+    public void givenEmptyList_whenEncode_thenDecodedEmpty() {
+        assertThat(TsBlockCodec.decode(KEY, TsBlockCodec.encode(List.of()))).isEmpty();
+    }
+
+    @Test
+    public void givenSameTimestamps_whenMerge_thenNewerPointKept() {
+        List<TsKvEntry> older = List.of(new BasicTsKvEntry(1, new LongDataEntry(KEY, 1L)), new BasicTsKvEntry(3, new LongDataEntry(KEY, 3L)));
+        List<TsKvEntry> newer = List.of(new BasicTsKvEntry(3, new LongDataEntry(KEY, 30L)), new BasicTsKvEntry(2, new LongDataEntry(KEY, 20L)));
+
+        assertThat(TsBlockCodec.merge(older, newer)).containsExactly(
+                new BasicTsKvEntry(1, new LongDataEntry(KEY, 1L)),
+                new BasicTsKvEntry(2, new LongDataEntry(KEY, 20L)),
+                new BasicTsKvEntry(3, new LongDataEntry(KEY, 30L)));
+    }
+
+}
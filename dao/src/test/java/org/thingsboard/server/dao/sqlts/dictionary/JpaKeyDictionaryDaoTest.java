@@ -0,0 +1,108 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.dao.sqlts.dictionary;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.winstarcloud.server.dao.dictionary.KeyDictionaryEntryCreatedEvent;
+import org.winstarcloud.server.dao.model.sqlts.dictionary.KeyDictionaryEntry;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class JpaKeyDictionaryDaoTest {
+
+    private KeyDictionaryRepository repository;
+    private ApplicationEventPublisher eventPublisher;
+    private JpaKeyDictionaryDao dao;
+
+    @BeforeEach
+    public void setUp() {
+        repository = mock(KeyDictionaryRepository.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        dao = new JpaKeyDictionaryDao();
+        ReflectionTestUtils.setField(dao, "keyDictionaryRepository", repository);
+        ReflectionTestUtils.setField(dao, "eventPublisher", eventPublisher);
+        ReflectionTestUtils.setField(dao, "preloadEnabled", true);
+    }
+
+    @Test
+    public void givenPreloadedKeys_whenResolve_thenNoDatabaseAccess() {
+        willReturn(List.of(entry("temperature", 1), entry("humidity", 2000), entry("sparse", 1 << 25))).given(repository).findAll();
+        dao.init();
+
+        assertThat(dao.getOrSaveKeyId("temperature")).isEqualTo(1);
+        assertThat(dao.getOrSaveKeyIds(List.of("humidity", "sparse"))).containsExactly(Map.entry("humidity", 2000), Map.entry("sparse", 1 << 25));
+        assertThat(dao.getKey(1)).isEqualTo("temperature");
+        assertThat(dao.getKey(2000)).isEqualTo("humidity");
+        assertThat(dao.getKey(1 << 25)).isEqualTo("sparse");
+
+        verify(repository, never()).findById(any());
+        verify(repository, never()).findByKeyId(anyInt());
+        verify(repository, never()).findAllByKeyIn(any());
+    }
+
+    @Test
+    public void givenMissingKeys_whenResolveBulk_thenSingleQueryAndSaveOfNewKeys() {
+        willReturn(List.of(entry("humidity", 2))).given(repository).findAllByKeyIn(List.of("humidity", "pressure"));
+        willReturn(Optional.empty()).given(repository).findById(any());
+        willAnswer(invocation -> {
+            KeyDictionaryEntry entry = invocation.getArgument(0);
+            entry.setKeyId(3);
+            return entry;
+        }).given(repository).save(any());
+        dao.addKeys(Map.of("temperature", 1));
+
+        Map<String, Integer> keyIds = dao.getOrSaveKeyIds(List.of("temperature", "humidity", "pressure"));
+
+        assertThat(keyIds).containsExactly(Map.entry("temperature", 1), Map.entry("humidity", 2), Map.entry("pressure", 3));
+        assertThat(dao.getKey(3)).isEqualTo("pressure");
+        verify(eventPublisher).publishEvent(new KeyDictionaryEntryCreatedEvent("pressure", 3));
+        verify(repository, never()).findByKeyId(anyInt());
+    }
+
+    @Test
+    public void givenUnknownKeyId_whenGetKey_thenLoadedOnce() {
+        willReturn(Optional.of(entry("temperature", 5000))).given(repository).findByKeyId(5000);
+
+        assertThat(dao.getKey(5000)).isEqualTo("temperature");
+        assertThat(dao.getKey(5000)).isEqualTo("temperature");
+        assertThat(dao.getOrSaveKeyId("temperature")).isEqualTo(5000);
+
+        verify(repository).findByKeyId(5000);
+        verify(repository, never()).findById(any());
+    }
+
+    private static KeyDictionaryEntry entry(String key, int keyId) {
+        KeyDictionaryEntry entry = new KeyDictionaryEntry();
+        entry.setKey(key);
+        entry.setKeyId(keyId);
+        return entry;
+    }
+
+}
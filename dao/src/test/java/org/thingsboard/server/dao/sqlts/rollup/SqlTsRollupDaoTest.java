@@ -0,0 +1,185 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.dao.sqlts.rollup;
+
+import org.junit.jupiter.api.Test;
+import org.winstarcloud.server.common.data.kv.IntervalType;
+import org.winstarcloud.server.dao.util.TimeUtils;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SqlTsRollupDaoTest {
+
+    private static final long MINUTE = 60000;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+    private static final long[] INTERVALS = {MINUTE, HOUR, DAY};
+    private static final int DAY_INDEX = 2;
+    private static final int RAW = INTERVALS.length;
+
+    // 2024-01-01T00:00:00Z
+    private static final long T0 = 1704067200000L;
+
+    @Test
+    public void givenAlignedBucket_whenSplit_thenCoarsestIntervalUsed() {
+        TsRanges[] ranges = split(new long[]{T0}, T0 + 3 * DAY, T0, Long.MAX_VALUE);
+
+        assertRanges(ranges[DAY_INDEX], T0, T0 + 3 * DAY);
+        assertThat(ranges[0].isEmpty()).isTrue();
+        assertThat(ranges[1].isEmpty()).isTrue();
+        assertThat(ranges[RAW].isEmpty()).isTrue();
+    }
+
+    @Test
+    public void givenUnalignedBucket_whenSplit_thenEdgesCoveredByFinerIntervalsAndRawData() {
+        long start = T0 + 30000;
+        long end = T0 + 3 * DAY + 90000;
+        TsRanges[] ranges = split(new long[]{start}, end, T0, Long.MAX_VALUE);
+
+        assertRanges(ranges[RAW], start, T0 + MINUTE, T0 + 3 * DAY + MINUTE, end);
+        assertRanges(ranges[0], T0 + MINUTE, T0 + HOUR, T0 + 3 * DAY, T0 + 3 * DAY + MINUTE);
+        assertRanges(ranges[1], T0 + HOUR, T0 + DAY);
+        assertRanges(ranges[DAY_INDEX], T0 + DAY, T0 + 3 * DAY);
+        assertCovered(ranges, new long[]{start}, end, T0, Long.MAX_VALUE);
+    }
+
+    @Test
+    public void givenBucketWithoutCompleteRollupPeriod_whenSplit_thenRawDataOnly() {
+        TsRanges[] ranges = split(new long[]{T0 + 1000, T0 + MINUTE + 1000}, T0 + MINUTE + 2000, T0, Long.MAX_VALUE);
+
+        assertRanges(ranges[RAW], T0 + 1000, T0 + MINUTE + 1000, T0 + MINUTE + 1000, T0 + MINUTE + 2000);
+        for (int j = 0; j < INTERVALS.length; j++) {
+            assertThat(ranges[j].isEmpty()).isTrue();
+        }
+    }
+
+    @Test
+    public void givenBucketAcrossSinceAndBuilt_whenSplit_thenRollupsUsedWithinBuiltRangeOnly() {
+        long since = T0 + DAY;
+        long built = T0 + 2 * DAY + 5 * HOUR + 30000;
+        TsRanges[] ranges = split(new long[]{T0}, T0 + 3 * DAY, since, built);
+
+        assertRanges(ranges[RAW], T0, since, T0 + 2 * DAY + 5 * HOUR, T0 + 3 * DAY);
+        assertRanges(ranges[1], T0 + 2 * DAY, T0 + 2 * DAY + 5 * HOUR);
+        assertRanges(ranges[DAY_INDEX], since, T0 + 2 * DAY);
+        assertThat(ranges[0].isEmpty()).isTrue();
+        assertCovered(ranges, new long[]{T0}, T0 + 3 * DAY, since, built);
+    }
+
+    @Test
+    public void givenMillisecondBuckets_whenSplit_thenEachBucketCovered() {
+        long[] bucketStarts = new long[50];
+        for (int i = 0; i < bucketStarts.length; i++) {
+            bucketStarts[i] = T0 + 12345 + i * (7 * HOUR + 1234);
+        }
+        long endTs = bucketStarts[bucketStarts.length - 1] + 1000;
+        long since = T0 + DAY;
+        long built = T0 + 10 * DAY + 3 * HOUR;
+
+        assertCovered(split(bucketStarts, endTs, since, built), bucketStarts, endTs, since, built);
+    }
+
+    @Test
+    public void givenCalendarBuckets_whenSplit_thenEachBucketCoveredInAnyTimeZone() {
+        for (String zone : List.of("UTC", "America/New_York", "Asia/Kolkata", "Australia/Lord_Howe")) {
+            ZoneId tz = ZoneId.of(zone);
+            long startTs = ZonedDateTime.of(2023, 12, 20, 0, 0, 0, 0, tz).toInstant().toEpochMilli();
+            long endTs = ZonedDateTime.of(2024, 5, 10, 0, 0, 0, 0, tz).toInstant().toEpochMilli();
+            long since = T0;
+            long built = endTs - 3 * DAY - 7 * MINUTE;
+            for (IntervalType intervalType : List.of(IntervalType.WEEK, IntervalType.WEEK_ISO, IntervalType.MONTH, IntervalType.QUARTER)) {
+                List<Long> starts = new ArrayList<>();
+                for (long ts = startTs; ts < endTs; ts = TimeUtils.calculateIntervalEnd(ts, intervalType, tz)) {
+                    starts.add(ts);
+                }
+                long[] bucketStarts = starts.stream().mapToLong(Long::longValue).toArray();
+                TsRanges[] ranges = split(bucketStarts, endTs, since, built);
+
+                assertCovered(ranges, bucketStarts, endTs, since, built);
+                assertThat(ranges[DAY_INDEX].isEmpty()).as("days of %s in %s", intervalType, zone).isFalse();
+            }
+        }
+    }
+
+    @Test
+    public void givenHalfHourOffsetTimeZone_whenSplitByMonth_thenMonthEdgesCoveredByHourAndMinuteRollups() {
+        ZoneId tz = ZoneId.of("Asia/Kolkata");
+        long start = ZonedDateTime.of(2024, 2, 1, 0, 0, 0, 0, tz).toInstant().toEpochMilli();
+        long end = ZonedDateTime.of(2024, 3, 1, 0, 0, 0, 0, tz).toInstant().toEpochMilli();
+        TsRanges[] ranges = split(new long[]{start}, end, T0, Long.MAX_VALUE);
+
+        // the local midnight is 18:30 UTC
+        assertRanges(ranges[0], start, start + 30 * MINUTE, end - 30 * MINUTE, end);
+        assertRanges(ranges[1], start + 30 * MINUTE, start + 30 * MINUTE + 5 * HOUR, end - 30 * MINUTE - 18 * HOUR, end - 30 * MINUTE);
+        assertThat(ranges[RAW].isEmpty()).isTrue();
+        assertCovered(ranges, new long[]{start}, end, T0, Long.MAX_VALUE);
+    }
+
+    private static TsRanges[] split(long[] bucketStarts, long endTs, long since, long built) {
+        return SqlTsRollupDao.split(INTERVALS, bucketStarts, endTs, since, built);
+    }
+
+    private static void assertRanges(TsRanges ranges, long... bounds) {
+        List<Long> actual = new ArrayList<>();
+        for (int i = 0; i < ranges.size(); i++) {
+            actual.add(ranges.getStart(i));
+            actual.add(ranges.getEnd(i));
+        }
+        assertThat(actual).containsExactly(Arrays.stream(bounds).boxed().toArray(Long[]::new));
+    }
+
+    /**
+     * Checks that the ranges of each bucket cover it without gaps and overlaps, and the rollup ranges are aligned
+     * to their interval and lie within [since, built).
+     */
+    private static void assertCovered(TsRanges[] ranges, long[] bucketStarts, long endTs, long since, long built) {
+        List<List<long[]>> rangesByBucket = new ArrayList<>();
+        for (int i = 0; i < bucketStarts.length; i++) {
+            rangesByBucket.add(new ArrayList<>());
+        }
+        for (int j = 0; j < ranges.length; j++) {
+            for (int i = 0; i < ranges[j].size(); i++) {
+                long start = ranges[j].getStart(i);
+                long end = ranges[j].getEnd(i);
+                if (j < INTERVALS.length) {
+                    assertThat(start % INTERVALS[j]).as("start of %s ms rollups", INTERVALS[j]).isZero();
+                    assertThat(end % INTERVALS[j]).as("end of %s ms rollups", INTERVALS[j]).isZero();
+                    assertThat(start).isGreaterThanOrEqualTo(since);
+                    assertThat(end).isLessThanOrEqualTo(built);
+                }
+                rangesByBucket.get(ranges[j].getBucket(i)).add(new long[]{start, end});
+            }
+        }
+        for (int i = 0; i < bucketStarts.length; i++) {
+            List<long[]> bucketRanges = rangesByBucket.get(i);
+            bucketRanges.sort(Comparator.comparingLong(range -> range[0]));
+            long ts = bucketStarts[i];
+            for (long[] range : bucketRanges) {
+                assertThat(range[0]).as("start of range in bucket %s", i).isEqualTo(ts);
+                ts = range[1];
+            }
+            assertThat(ts).as("end of bucket %s", i).isEqualTo(i + 1 < bucketStarts.length ? bucketStarts[i + 1] : endTs);
+        }
+    }
+
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.dao.sqlts.rollup;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TsRangesTest {
+
+    @Test
+    public void givenEmptyRanges_whenAdded_thenIgnored() {
+        TsRanges ranges = new TsRanges();
+        ranges.add(10, 10, 0);
+        ranges.add(20, 10, 1);
+
+        assertThat(ranges.isEmpty()).isTrue();
+        assertThat(ranges.size()).isZero();
+        assertThat(ranges.getStarts()).isEmpty();
+    }
+
+    @Test
+    public void givenManyRanges_whenAdded_thenGrowsAndKeepsOrder() {
+        TsRanges ranges = new TsRanges();
+        for (int i = 0; i < 100; i++) {
+            ranges.add(i * 10L, i * 10L + 5, i / 3);
+        }
+
+        assertThat(ranges.size()).isEqualTo(100);
+        assertThat(ranges.getStart(99)).isEqualTo(990);
+        assertThat(ranges.getEnd(99)).isEqualTo(995);
+        assertThat(ranges.getBucket(99)).isEqualTo(33);
+        assertThat(ranges.getStarts()).hasSize(100).startsWith(0L, 10L);
+        assertThat(ranges.getEnds()).hasSize(100).endsWith(985L, 995L);
+        assertThat(ranges.getBuckets()).hasSize(100).startsWith(0, 0, 0, 1);
+    }
+
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.dao.timeseries;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.winstarcloud.server.common.data.id.DeviceId;
+import org.winstarcloud.server.common.data.id.TenantId;
+import org.winstarcloud.server.common.data.kv.BaseReadTsKvQuery;
+import org.winstarcloud.server.common.data.kv.BasicTsKvEntry;
+import org.winstarcloud.server.common.data.kv.LongDataEntry;
+import org.winstarcloud.server.common.data.kv.ReadTsKvQueryResult;
+import org.winstarcloud.server.common.data.kv.TsKvEntry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CassandraBaseTimeseriesDaoPrefetchTest {
+
+    private static final String KEY = "temperature";
+    private static final List<Long> PARTITIONS = List.of(1L, 2L, 3L, 4L, 5L);
+
+    private final TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+    private final DeviceId deviceId = new DeviceId(UUID.randomUUID());
+    private final Map<Long, SettableFuture<List<TsKvEntry>>> partitionFutures = new HashMap<>();
+    private final List<Long> requestedPartitions = new ArrayList<>();
+
+    @Spy
+    private CassandraBaseTimeseriesDao tsDao;
+
+    @Before
+    public void setUp() {
+        ReflectionTestUtils.setField(tsDao, "tsFormat", NoSqlTsPartitionDate.MONTHS);
+        ReflectionTestUtils.setField(tsDao, "readResultsProcessingExecutor", MoreExecutors.newDirectExecutorService());
+        PARTITIONS.forEach(partition -> partitionFutures.put(partition, SettableFuture.create()));
+
+        doReturn(Futures.immediateFuture(PARTITIONS)).when(tsDao).getPartitionsFuture(any(), any(), any(), anyLong(), anyLong());
+        doAnswer(invocation -> {
+            TsKvQueryCursor cursor = invocation.getArgument(1);
+            long partition = cursor.getNextPartition();
+            requestedPartitions.add(partition);
+            return partitionFutures.get(partition);
+        }).when(tsDao).fetchPartitionAsync(any(), any());
+    }
+
+    @Test
+    public void testPrefetchMergesPartitionsInCursorOrder() throws Exception {
+        ReflectionTestUtils.setField(tsDao, "readPrefetchPartitions", 3);
+        ListenableFuture<ReadTsKvQueryResult> result = findAll(100);
+        assertThat(requestedPartitions).containsExactly(1L, 2L, 3L);
+
+        completePartition(3L, 2);
+        completePartition(2L, 2);
+        assertThat(result.isDone()).isFalse();
+        assertThat(requestedPartitions).containsExactly(1L, 2L, 3L);
+
+        completePartition(1L, 2);
+        assertThat(requestedPartitions).containsExactly(1L, 2L, 3L, 4L, 5L);
+        completePartition(5L, 2);
+        completePartition(4L, 2);
+
+        assertThat(getTs(result)).containsExactly(10L, 11L, 20L, 21L, 30L, 31L, 40L, 41L, 50L, 51L);
+    }
+
+    @Test
+    public void testPrefetchTruncatesToLimitAndCancelsPendingQueries() throws Exception {
+        ReflectionTestUtils.setField(tsDao, "readPrefetchPartitions", 3);
+        ListenableFuture<ReadTsKvQueryResult> result = findAll(3);
+
+        completePartition(2L, 2);
+        completePartition(1L, 2);
+
+        assertThat(getTs(result)).containsExactly(10L, 11L, 20L);
+        assertThat(requestedPartitions).containsExactly(1L, 2L, 3L, 4L);
+        assertThat(partitionFutures.get(3L).isCancelled()).isTrue();
+        assertThat(partitionFutures.get(4L).isCancelled()).isTrue();
+    }
+
+    @Test
+    public void testPrefetchFailureCompletesResult() {
+        ReflectionTestUtils.setField(tsDao, "readPrefetchPartitions", 3);
+        ListenableFuture<ReadTsKvQueryResult> result = findAll(100);
+
+        RuntimeException error = new RuntimeException("Read timeout");
+        partitionFutures.get(1L).setException(error);
+
+        assertThatThrownBy(result::get).isInstanceOf(ExecutionException.class).hasCause(error);
+        assertThat(partitionFutures.get(2L).isCancelled()).isTrue();
+        assertThat(partitionFutures.get(3L).isCancelled()).isTrue();
+    }
+
+    @Test
+    public void testSequentialReadStopsAtLimit() throws Exception {
+        ReflectionTestUtils.setField(tsDao, "readPrefetchPartitions", 1);
+        ListenableFuture<ReadTsKvQueryResult> result = findAll(3);
+        assertThat(requestedPartitions).containsExactly(1L);
+
+        completePartition(1L, 2);
+        assertThat(requestedPartitions).containsExactly(1L, 2L);
+        completePartition(2L, 1);
+
+        assertThat(getTs(result)).containsExactly(10L, 11L, 20L);
+        assertThat(requestedPartitions).containsExactly(1L, 2L);
+    }
+
+    @Test
+    public void testSequentialReadFailureCompletesResult() {
+        ReflectionTestUtils.setField(tsDao, "readPrefetchPartitions", 1);
+        ListenableFuture<ReadTsKvQueryResult> result = findAll(100);
+
+        completePartition(1L, 2);
+        RuntimeException error = new RuntimeException("Read timeout");
+        partitionFutures.get(2L).setException(error);
+
+        assertThatThrownBy(result::get).isInstanceOf(ExecutionException.class).hasCause(error);
+        assertThat(requestedPartitions).containsExactly(1L, 2L);
+    }
+
+    private ListenableFuture<ReadTsKvQueryResult> findAll(int limit) {
+        return tsDao.findAllAsync(tenantId, deviceId, new BaseReadTsKvQuery(KEY, 0, System.currentTimeMillis(), limit, "ASC"));
+    }
+
+    private void completePartition(long partition, int count) {
+        partitionFutures.get(partition).set(LongStream.range(0, count)
+                .mapToObj(i -> (TsKvEntry) new BasicTsKvEntry(partition * 10 + i, new LongDataEntry(KEY, i)))
+                .collect(Collectors.toList()));
+    }
+
+    private List<Long> getTs(ListenableFuture<ReadTsKvQueryResult> result) throws Exception {
+        assertThat(result.isDone()).isTrue();
+        return result.get().getData().stream().map(TsKvEntry::getTs).collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.dao.timeseries;
+
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.micrometer.core.instrument.Counter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.winstarcloud.server.common.data.id.TenantId;
+import org.winstarcloud.server.common.stats.StatsCounter;
+import org.winstarcloud.server.common.stats.StatsFactory;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CassandraTsWriteBatcherTest {
+
+    private static final TenantId TENANT_ID = TenantId.fromUUID(UUID.randomUUID());
+    private static final UUID ENTITY_ID = UUID.randomUUID();
+
+    private final List<Statement<?>> executed = new CopyOnWriteArrayList<>();
+    private ListenableFuture<Void> result = Futures.immediateFuture(null);
+    private CassandraTsWriteBatcher batcher;
+
+    @Before
+    public void before() {
+        StatsFactory statsFactory = mock(StatsFactory.class);
+        when(statsFactory.createStatsCounter(anyString(), anyString())).thenAnswer(inv ->
+                new StatsCounter(new AtomicInteger(), mock(Counter.class), inv.getArgument(1)));
+        batcher = new CassandraTsWriteBatcher(3, 60000, 60000, statsFactory, (tenantId, stmt) -> {
+            executed.add(stmt);
+            return result;
+        });
+    }
+
+    @After
+    public void after() {
+        batcher.stop();
+    }
+
+    @Test
+    public void testFullBatchIsFlushedImmediately() throws Exception {
+        ListenableFuture<Void> first = batcher.add(TENANT_ID, "DEVICE", ENTITY_ID, "temperature", 0L, mock(BoundStatement.class));
+        batcher.add(TENANT_ID, "DEVICE", ENTITY_ID, "temperature", 0L, mock(BoundStatement.class));
+        assertThat(executed).isEmpty();
+        assertThat(first.isDone()).isFalse();
+
+        batcher.add(TENANT_ID, "DEVICE", ENTITY_ID, "temperature", 0L, mock(BoundStatement.class));
+        assertThat(executed).hasSize(1);
+        assertThat(executed.get(0)).isInstanceOf(BatchStatement.class);
+        assertThat(((BatchStatement) executed.get(0)).size()).isEqualTo(3);
+        assertThat(first.get()).isNull();
+    }
+
+    @Test
+    public void testDifferentPartitionsAreNotMerged() {
+        BoundStatement single = mock(BoundStatement.class);
+        batcher.add(TENANT_ID, "DEVICE", ENTITY_ID, "temperature", 0L, mock(BoundStatement.class));
+        batcher.add(TENANT_ID, "DEVICE", ENTITY_ID, "temperature", 0L, mock(BoundStatement.class));
+        batcher.add(TENANT_ID, "DEVICE", ENTITY_ID, "temperature", 1L, single);
+        batcher.flushAll();
+
+        assertThat(executed).hasSize(2);
+        assertThat(executed).contains(single);
+        assertThat(executed).filteredOn(stmt -> stmt instanceof BatchStatement)
+                .singleElement().extracting(stmt -> ((BatchStatement) stmt).size()).isEqualTo(2);
+    }
+
+    @Test
+    public void testFailureIsPropagatedToAllEntries() {
+        result = Futures.immediateFailedFuture(new RuntimeException("write failed"));
+        ListenableFuture<Void> first = batcher.add(TENANT_ID, "DEVICE", ENTITY_ID, "temperature", 0L, mock(BoundStatement.class));
+        ListenableFuture<Void> second = batcher.add(TENANT_ID, "DEVICE", ENTITY_ID, "temperature", 0L, mock(BoundStatement.class));
+        batcher.flushAll();
+
+        assertThatThrownBy(first::get).isInstanceOf(ExecutionException.class).hasMessageContaining("write failed");
+        assertThatThrownBy(second::get).isInstanceOf(ExecutionException.class).hasMessageContaining("write failed");
+    }
+
+}
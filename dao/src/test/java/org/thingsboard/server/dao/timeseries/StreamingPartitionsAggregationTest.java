@@ -0,0 +1,79 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.server.dao.timeseries;
+
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Test;
+import org.winstarcloud.server.common.data.kv.Aggregation;
+import org.winstarcloud.server.common.data.kv.BaseReadTsKvQuery;
+import org.winstarcloud.server.common.data.kv.ReadTsKvQueryResult;
+import org.winstarcloud.server.common.data.kv.TsKvEntry;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class StreamingPartitionsAggregationTest {
+
+    @Test
+    public void testAvgIsAggregatedPerInterval() {
+        StreamingPartitionsAggregation aggregation = newAggregation(Aggregation.AVG);
+        aggregation.accept(longRow(100, 1));
+        aggregation.accept(longRow(200, 3));
+        aggregation.accept(longRow(2500, 10));
+        aggregation.accept(longRow(4999, 4));
+
+        ReadTsKvQueryResult result = aggregation.getResult();
+        List<TsKvEntry> data = result.getData();
+        assertThat(data).extracting(TsKvEntry::getTs).containsExactly(500L, 2500L, 4500L);
+        assertThat(data).extracting(entry -> entry.getDoubleValue().orElseThrow()).containsExactly(2.0, 10.0, 4.0);
+        assertThat(result.getLastEntryTs()).isEqualTo(4999L);
+    }
+
+    @Test
+    public void testCountAndMaxSkipEmptyIntervals() {
+        StreamingPartitionsAggregation count = newAggregation(Aggregation.COUNT);
+        StreamingPartitionsAggregation max = newAggregation(Aggregation.MAX);
+        for (Row row : List.of(longRow(1000, 5), longRow(1001, 7), longRow(1999, 6), longRow(3000, 2))) {
+            count.accept(row);
+            max.accept(row);
+        }
+
+        assertThat(count.getResult().getData()).extracting(entry -> entry.getLongValue().orElseThrow()).containsExactly(3L, 1L);
+        List<TsKvEntry> maxData = max.getResult().getData();
+        assertThat(maxData).extracting(TsKvEntry::getTs).containsExactly(1500L, 3500L);
+        assertThat(maxData).extracting(entry -> entry.getLongValue().orElseThrow()).containsExactly(7L, 2L);
+    }
+
+    private static StreamingPartitionsAggregation newAggregation(Aggregation aggregation) {
+        BaseReadTsKvQuery query = new BaseReadTsKvQuery("temperature", 0, 5000, 1000, 100, aggregation);
+        return new StreamingPartitionsAggregation(query, 5000, 1000, MoreExecutors.directExecutor());
+    }
+
+    private static Row longRow(long ts, long value) {
+        Row row = mock(Row.class);
+        when(row.isNull(0)).thenReturn(false);
+        when(row.getLong(0)).thenReturn(value);
+        when(row.isNull(1)).thenReturn(true);
+        when(row.isNull(2)).thenReturn(true);
+        when(row.getLong(AggregatePartitionsFunction.RAW_TS_POS)).thenReturn(ts);
+        return row;
+    }
+
+}
@@ -35,6 +35,11 @@ DROP TABLE IF EXISTS error_event;
 DROP TABLE IF EXISTS relation;
 DROP TABLE IF EXISTS tenant;
 DROP TABLE IF EXISTS ts_kv;
+DROP TABLE IF EXISTS compressed_ts_kv;
+DROP TABLE IF EXISTS rollup_ts_kv;
+DROP TABLE IF EXISTS rollup_ts_kv_key;
+DROP TABLE IF EXISTS rollup_ts_kv_entity;
+DROP TABLE IF EXISTS rollup_ts_kv_stale;
 DROP TABLE IF EXISTS ts_kv_latest;
 DROP TABLE IF EXISTS ts_kv_dictionary;
 DROP TABLE IF EXISTS user_credentials;
@@ -15,12 +15,11 @@
  */
 package org.winstarcloud.rule.engine.geo;
 
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
 import org.locationtech.spatial4j.context.jts.JtsSpatialContext;
 import org.locationtech.spatial4j.context.jts.JtsSpatialContextFactory;
 import org.winstarcloud.common.util.JacksonUtil;
+import org.winstarcloud.common.util.LinkedHashMapRemoveEldest;
 import org.winstarcloud.rule.engine.api.TbContext;
 import org.winstarcloud.rule.engine.api.TbNode;
 import org.winstarcloud.rule.engine.api.TbNodeConfiguration;
@@ -30,16 +29,25 @@ import org.winstarcloud.server.common.data.StringUtils;
 import org.winstarcloud.server.common.msg.TbMsg;
 
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public abstract class AbstractGeofencingNode<T extends TbGpsGeofencingFilterNodeConfiguration> implements TbNode {
 
+    // Perimeters from the message metadata usually repeat for the same device or asset, so their compiled indexes are reused
+    private static final int MAX_CACHED_PERIMETER_INDEXES = 256;
+
     protected T config;
     protected JtsSpatialContext jtsCtx;
+    private GeofenceIndex<Perimeter> configPerimeterIndex;
+    private final Map<List<Perimeter>, GeofenceIndex<Perimeter>> perimeterIndexes = new LinkedHashMapRemoveEldest<>(MAX_CACHED_PERIMETER_INDEXES, (perimeters, index) -> {});
 
     @Override
     public void init(TbContext ctx, TbNodeConfiguration configuration) throws TbNodeException {
         this.config = TbNodeUtils.convert(configuration, getConfigClazz());
+        this.configPerimeterIndex = null;
+        this.perimeterIndexes.clear();
         JtsSpatialContextFactory factory = new JtsSpatialContextFactory();
         factory.normWrapLongitude = true;
         jtsCtx = factory.newSpatialContext();
@@ -48,34 +56,41 @@ public abstract class AbstractGeofencingNode<T extends TbGpsGeofencingFilterNode
     abstract protected Class<T> getConfigClazz();
 
     protected boolean checkMatches(TbMsg msg) throws TbNodeException {
-        JsonElement msgDataElement = JsonParser.parseString(msg.getData());
-        if (!msgDataElement.isJsonObject()) {
+        JsonNode msgDataObj = msg.getDataAsJson();
+        if (msgDataObj == null || !msgDataObj.isObject()) {
             throw new TbNodeException("Incoming Message is not a valid JSON object!");
         }
-        JsonObject msgDataObj = msgDataElement.getAsJsonObject();
         double latitude = getValueFromMessageByName(msg, msgDataObj, config.getLatitudeKeyName());
         double longitude = getValueFromMessageByName(msg, msgDataObj, config.getLongitudeKeyName());
+        Coordinates coordinates = new Coordinates(latitude, longitude);
+        if (!config.isFetchPerimeterInfoFromMessageMetadata()) {
+            return getConfigPerimeterIndex().anyContains(coordinates);
+        }
         List<Perimeter> perimeters = getPerimeters(msg);
-        boolean matches = false;
-        for (Perimeter perimeter : perimeters) {
-            if (checkMatches(perimeter, latitude, longitude)) {
-                matches = true;
-                break;
-            }
+        GeofenceIndex<Perimeter> index = perimeterIndexes.get(perimeters);
+        if (index == null) {
+            index = buildIndex(perimeters);
+            perimeterIndexes.put(perimeters, index);
         }
-        return matches;
+        return index.anyContains(coordinates);
     }
 
-    protected boolean checkMatches(Perimeter perimeter, double latitude, double longitude) throws TbNodeException {
-        if (perimeter.getPerimeterType() == PerimeterType.CIRCLE) {
-            Coordinates entityCoordinates = new Coordinates(latitude, longitude);
-            Coordinates perimeterCoordinates = new Coordinates(perimeter.getCenterLatitude(), perimeter.getCenterLongitude());
-            return perimeter.getRange() > GeoUtil.distance(entityCoordinates, perimeterCoordinates, perimeter.getRangeUnit());
-        } else if (perimeter.getPerimeterType() == PerimeterType.POLYGON) {
-            return GeoUtil.contains(perimeter.getPolygonsDefinition(), new Coordinates(latitude, longitude));
-        } else {
-            throw new TbNodeException("Unsupported perimeter type: " + perimeter.getPerimeterType()  + "!");
+    private GeofenceIndex<Perimeter> getConfigPerimeterIndex() throws TbNodeException {
+        if (configPerimeterIndex == null) {
+            configPerimeterIndex = buildIndex(Collections.singletonList(getConfigPerimeter()));
+        }
+        return configPerimeterIndex;
+    }
+
+    private static GeofenceIndex<Perimeter> buildIndex(List<Perimeter> perimeters) throws TbNodeException {
+        Map<Perimeter, Perimeter> zones = new LinkedHashMap<>();
+        for (Perimeter perimeter : perimeters) {
+            if (perimeter.getPerimeterType() != PerimeterType.CIRCLE && perimeter.getPerimeterType() != PerimeterType.POLYGON) {
+                throw new TbNodeException("Unsupported perimeter type: " + perimeter.getPerimeterType() + "!");
+            }
+            zones.put(perimeter, perimeter);
         }
+        return GeofenceIndex.of(zones);
     }
 
     protected List<Perimeter> getPerimeters(TbMsg msg) throws TbNodeException {
@@ -122,21 +137,26 @@ public abstract class AbstractGeofencingNode<T extends TbGpsGeofencingFilterNode
                 }
             }
         } else {
-            Perimeter perimeter = new Perimeter();
-            perimeter.setPerimeterType(config.getPerimeterType());
-            perimeter.setCenterLatitude(config.getCenterLatitude());
-            perimeter.setCenterLongitude(config.getCenterLongitude());
-            perimeter.setRange(config.getRange());
-            perimeter.setRangeUnit(config.getRangeUnit());
-            perimeter.setPolygonsDefinition(config.getPolygonsDefinition());
-            return Collections.singletonList(perimeter);
+            return Collections.singletonList(getConfigPerimeter());
         }
     }
 
-    protected Double getValueFromMessageByName(TbMsg msg, JsonObject msgDataObj, String keyName) throws TbNodeException {
+    private Perimeter getConfigPerimeter() {
+        Perimeter perimeter = new Perimeter();
+        perimeter.setPerimeterType(config.getPerimeterType());
+        perimeter.setCenterLatitude(config.getCenterLatitude());
+        perimeter.setCenterLongitude(config.getCenterLongitude());
+        perimeter.setRange(config.getRange());
+        perimeter.setRangeUnit(config.getRangeUnit());
+        perimeter.setPolygonsDefinition(config.getPolygonsDefinition());
+        return perimeter;
+    }
+
+    protected Double getValueFromMessageByName(TbMsg msg, JsonNode msgDataObj, String keyName) throws TbNodeException {
         double value;
-        if (msgDataObj.has(keyName) && msgDataObj.get(keyName).isJsonPrimitive()) {
-            value = msgDataObj.get(keyName).getAsDouble();
+        JsonNode valueNode = msgDataObj.get(keyName);
+        if (valueNode != null && valueNode.isValueNode() && !valueNode.isNull()) {
+            value = valueNode.isNumber() ? valueNode.doubleValue() : Double.parseDouble(valueNode.asText());
         } else {
             String valueStr = msg.getMetaData().getValue(keyName);
             if (!StringUtils.isEmpty(valueStr)) {
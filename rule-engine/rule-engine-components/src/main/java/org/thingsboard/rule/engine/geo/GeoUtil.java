@@ -15,19 +15,26 @@
  */
 package org.winstarcloud.rule.engine.geo;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
 import lombok.NonNull;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
 import org.locationtech.jts.geom.util.GeometryFixer;
 import org.locationtech.spatial4j.context.SpatialContext;
 import org.locationtech.spatial4j.context.jts.JtsSpatialContext;
 import org.locationtech.spatial4j.context.jts.JtsSpatialContextFactory;
 import org.locationtech.spatial4j.distance.DistanceUtils;
 import org.locationtech.spatial4j.shape.Point;
+import org.locationtech.spatial4j.shape.Rectangle;
 import org.locationtech.spatial4j.shape.SpatialRelation;
 import org.locationtech.spatial4j.shape.jts.JtsGeometry;
 
@@ -38,6 +45,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
 public class GeoUtil {
@@ -45,33 +53,74 @@ public class GeoUtil {
     private static final SpatialContext distCtx = SpatialContext.GEO;
     private static final JtsSpatialContext jtsCtx;
 
+    // Bounded by the total number of vertices of the cached polygons, not by the number of definitions
+    private static final long POLYGONS_CACHE_MAX_VERTICES = 1_000_000;
+    private static final Cache<String, PreparedGeometry> polygonsCache = CacheBuilder.newBuilder()
+            .maximumWeight(POLYGONS_CACHE_MAX_VERTICES)
+            .<String, PreparedGeometry>weigher((definition, geometry) -> geometry.getGeometry().getNumPoints())
+            .build();
+
     static {
         JtsSpatialContextFactory factory = new JtsSpatialContextFactory();
         factory.normWrapLongitude = true;
         jtsCtx = factory.newSpatialContext();
     }
 
-    public static synchronized double distance(Coordinates x, Coordinates y, RangeUnit unit) {
+    public static double distance(Coordinates x, Coordinates y, RangeUnit unit) {
         Point xLL = distCtx.getShapeFactory().pointXY(x.getLongitude(), x.getLatitude());
         Point yLL = distCtx.getShapeFactory().pointXY(y.getLongitude(), y.getLatitude());
         return unit.fromKm(distCtx.getDistCalc().distance(xLL, yLL) * DistanceUtils.DEG_TO_KM);
     }
 
-    public static synchronized boolean contains(@NonNull String polygonInString, @NonNull Coordinates coordinates) {
+    public static boolean contains(@NonNull String polygonInString, @NonNull Coordinates coordinates) {
+        return contains(compilePolygons(polygonInString), coordinates);
+    }
+
+    public static boolean contains(@NonNull PreparedGeometry polygons, @NonNull Coordinates coordinates) {
+        return polygons.contains(toPoint(coordinates));
+    }
+
+    /**
+     * Parses the polygons definition, subtracts the holes and prepares the resulting geometry for repeated
+     * point-in-polygon tests. Compiled definitions are cached, so the same definition is parsed only once.
+     */
+    public static PreparedGeometry compilePolygons(@NonNull String polygonInString) {
         if (polygonInString.isEmpty() || polygonInString.isBlank()) {
             throw new RuntimeException("Polygon string can't be empty or null!");
         }
+        try {
+            return polygonsCache.get(polygonInString, () -> doCompilePolygons(polygonInString));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+        }
+    }
 
+    /**
+     * @return bounding box of the circle in the same axis order as the polygons: x is latitude, y is longitude
+     */
+    public static Envelope circleEnvelope(Coordinates center, double range, RangeUnit unit) {
+        Point centerLL = distCtx.getShapeFactory().pointXY(center.getLongitude(), center.getLatitude());
+        double rangeDeg = unit.toKm(range) * DistanceUtils.KM_TO_DEG;
+        Rectangle box = distCtx.getDistCalc().calcBoxByDistFromPt(centerLL, rangeDeg, distCtx, null);
+        if (box.getCrossesDateLine()) {
+            return new Envelope(box.getMinY(), box.getMaxY(), -180, 180);
+        }
+        return new Envelope(box.getMinY(), box.getMaxY(), box.getMinX(), box.getMaxX());
+    }
+
+    private static org.locationtech.jts.geom.Point toPoint(Coordinates coordinates) {
+        return jtsCtx.getShapeFactory().getGeometryFactory()
+                .createPoint(new Coordinate(coordinates.getLatitude(), coordinates.getLongitude()));
+    }
+
+    private static synchronized PreparedGeometry doCompilePolygons(String polygonInString) {
         JsonArray polygonsJson = normalizePolygonsJson(JsonParser.parseString(polygonInString).getAsJsonArray());
         List<Geometry> polygons = buildPolygonsFromJson(polygonsJson);
         Set<Geometry> holes = extractHolesFrom(polygons);
         polygons.removeIf(holes::contains);
 
-        Geometry globalGeometry = unionToGlobalGeometry(polygons, holes);
-        var point = jtsCtx.getShapeFactory().getGeometryFactory()
-                .createPoint(new Coordinate(coordinates.getLatitude(), coordinates.getLongitude()));
-
-        return globalGeometry.contains(point);
+        return PreparedGeometryFactory.prepare(unionToGlobalGeometry(polygons, holes));
     }
 
     private static Geometry unionToGlobalGeometry(List<Geometry> polygons, Set<Geometry> holes) {
@@ -0,0 +1,175 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.rule.engine.geo;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.index.strtree.STRtree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable spatial index over compiled perimeters. Polygons are compiled once into prepared geometries and all
+ * perimeters are packed into an STR-tree by their bounding boxes, so a point lookup only tests the perimeters
+ * whose bounding box contains the point instead of every perimeter.
+ * <p>
+ * Instances are safe to share between threads once built.
+ *
+ * @param <K> zone identifier
+ */
+public class GeofenceIndex<K> {
+
+    private static final int NODE_CAPACITY = 10;
+
+    private final STRtree tree;
+    private final int size;
+
+    private GeofenceIndex(STRtree tree, int size) {
+        this.tree = tree;
+        this.size = size;
+    }
+
+    public static <K> GeofenceIndex<K> of(Map<K, Perimeter> perimeters) {
+        STRtree tree = new STRtree(NODE_CAPACITY);
+        perimeters.forEach((id, perimeter) -> {
+            Zone<K> zone = compile(id, perimeter);
+            tree.insert(zone.getEnvelope(), zone);
+        });
+        tree.build();
+        return new GeofenceIndex<>(tree, perimeters.size());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean anyContains(Coordinates coordinates) {
+        for (Zone<K> zone : candidates(coordinates)) {
+            if (zone.contains(coordinates)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return identifiers of all zones that contain the point
+     */
+    public List<K> findContaining(Coordinates coordinates) {
+        List<Zone<K>> candidates = candidates(coordinates);
+        if (candidates.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<K> result = new ArrayList<>(candidates.size());
+        for (Zone<K> zone : candidates) {
+            if (zone.contains(coordinates)) {
+                result.add(zone.getId());
+            }
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Zone<K>> candidates(Coordinates coordinates) {
+        return tree.query(new Envelope(coordinates.getLatitude(), coordinates.getLatitude(),
+                coordinates.getLongitude(), coordinates.getLongitude()));
+    }
+
+    private static <K> Zone<K> compile(K id, Perimeter perimeter) {
+        if (perimeter.getPerimeterType() == PerimeterType.CIRCLE) {
+            Coordinates center = new Coordinates(perimeter.getCenterLatitude(), perimeter.getCenterLongitude());
+            return new CircleZone<>(id, center, perimeter.getRange(), perimeter.getRangeUnit());
+        } else if (perimeter.getPerimeterType() == PerimeterType.POLYGON) {
+            return new PolygonZone<>(id, GeoUtil.compilePolygons(perimeter.getPolygonsDefinition()));
+        } else {
+            throw new IllegalArgumentException("Unsupported perimeter type: " + perimeter.getPerimeterType() + "!");
+        }
+    }
+
+    private interface Zone<K> {
+
+        K getId();
+
+        Envelope getEnvelope();
+
+        boolean contains(Coordinates coordinates);
+
+    }
+
+    private static class PolygonZone<K> implements Zone<K> {
+
+        private final K id;
+        private final PreparedGeometry geometry;
+
+        PolygonZone(K id, PreparedGeometry geometry) {
+            this.id = id;
+            this.geometry = geometry;
+        }
+
+        @Override
+        public K getId() {
+            return id;
+        }
+
+        @Override
+        public Envelope getEnvelope() {
+            return geometry.getGeometry().getEnvelopeInternal();
+        }
+
+        @Override
+        public boolean contains(Coordinates coordinates) {
+            return GeoUtil.contains(geometry, coordinates);
+        }
+
+    }
+
+    private static class CircleZone<K> implements Zone<K> {
+
+        private final K id;
+        private final Coordinates center;
+        private final double range;
+        private final RangeUnit rangeUnit;
+        private final Envelope envelope;
+
+        CircleZone(K id, Coordinates center, double range, RangeUnit rangeUnit) {
+            this.id = id;
+            this.center = center;
+            this.range = range;
+            this.rangeUnit = rangeUnit;
+            this.envelope = GeoUtil.circleEnvelope(center, range, rangeUnit);
+        }
+
+        @Override
+        public K getId() {
+            return id;
+        }
+
+        @Override
+        public Envelope getEnvelope() {
+            return envelope;
+        }
+
+        @Override
+        public boolean contains(Coordinates coordinates) {
+            return range > GeoUtil.distance(coordinates, center, rangeUnit);
+        }
+
+    }
+
+}
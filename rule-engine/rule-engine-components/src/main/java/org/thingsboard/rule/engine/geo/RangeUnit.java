@@ -27,4 +27,8 @@ public enum RangeUnit {
     public double fromKm(double v) {
         return v * fromKm;
     }
+
+    public double toKm(double v) {
+        return v / fromKm;
+    }
 }
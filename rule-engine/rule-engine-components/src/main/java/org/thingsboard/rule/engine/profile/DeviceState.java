@@ -15,12 +15,15 @@
  */
 package org.winstarcloud.rule.engine.profile;
 
-import com.google.gson.JsonParser;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import lombok.extern.slf4j.Slf4j;
 import org.winstarcloud.common.util.JacksonUtil;
 import org.winstarcloud.rule.engine.api.TbContext;
 import org.winstarcloud.rule.engine.profile.state.PersistedAlarmState;
 import org.winstarcloud.rule.engine.profile.state.PersistedDeviceState;
+import org.winstarcloud.rule.engine.profile.state.PersistedDeviceStateCodec;
 import org.winstarcloud.server.common.data.AttributeScope;
 import org.winstarcloud.server.common.data.DataConstants;
 import org.winstarcloud.server.common.data.Device;
@@ -41,14 +44,17 @@ import org.winstarcloud.server.common.data.query.EntityKey;
 import org.winstarcloud.server.common.data.query.EntityKeyType;
 import org.winstarcloud.server.common.data.rule.RuleNodeState;
 import org.winstarcloud.server.common.msg.TbMsg;
+import org.winstarcloud.server.common.msg.TbMsgMetaData;
 import org.winstarcloud.server.common.adaptor.JsonConverter;
 import org.winstarcloud.server.dao.sql.query.EntityKeyMapping;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -61,6 +67,7 @@ import static org.winstarcloud.server.common.data.msg.TbMsgType.ALARM_CLEAR;
 import static org.winstarcloud.server.common.data.msg.TbMsgType.ALARM_DELETE;
 import static org.winstarcloud.server.common.data.msg.TbMsgType.ATTRIBUTES_DELETED;
 import static org.winstarcloud.server.common.data.msg.TbMsgType.ATTRIBUTES_UPDATED;
+import static org.winstarcloud.server.common.data.msg.TbMsgType.DEVICE_PROFILE_SNAPSHOT_LOADED_SELF_MSG;
 import static org.winstarcloud.server.common.data.msg.TbMsgType.ENTITY_ASSIGNED;
 import static org.winstarcloud.server.common.data.msg.TbMsgType.ENTITY_UNASSIGNED;
 import static org.winstarcloud.server.common.data.msg.TbMsgType.INACTIVITY_EVENT;
@@ -71,16 +78,24 @@ import static org.winstarcloud.server.common.data.msg.TbMsgType.POST_TELEMETRY_R
 class DeviceState {
 
     private final boolean persistState;
+    // The compact protobuf format is used with the write-behind persistence only, the state saved with every message stays JSON
+    private final boolean compactState;
     private final DeviceId deviceId;
     private final ProfileState deviceProfile;
     private RuleNodeState state;
     private PersistedDeviceState pds;
+    // The alarm rules state was changed, but not saved yet
+    private boolean stateDirty;
     private DataSnapshot latestValues;
     private final ConcurrentMap<String, AlarmState> alarmStates = new ConcurrentHashMap<>();
     private final DynamicPredicateValueCtx dynamicPredicateValueCtx;
+    // Not null while the latest values are fetched. The messages received meanwhile wait in the pending queue to keep their order
+    private ListenableFuture<Void> snapshotFuture;
+    private final Queue<TbMsg> pendingMsgs = new ArrayDeque<>();
 
     DeviceState(TbContext ctx, TbDeviceProfileNodeConfiguration config, DeviceId deviceId, ProfileState deviceProfile, RuleNodeState state) {
         this.persistState = config.isPersistAlarmRulesState();
+        this.compactState = persistState && config.getPersistAlarmRulesStateIntervalSec() > 0;
         this.deviceId = deviceId;
         this.deviceProfile = deviceProfile;
 
@@ -93,7 +108,7 @@ class DeviceState {
                 this.state = ctx.findRuleNodeStateForEntity(deviceId);
             }
             if (this.state != null) {
-                pds = JacksonUtil.fromString(this.state.getStateData(), PersistedDeviceState.class);
+                pds = PersistedDeviceStateCodec.decode(this.state.getStateData());
             } else {
                 this.state = new RuleNodeState();
                 this.state.setRuleNodeId(ctx.getSelfId());
@@ -117,7 +132,7 @@ class DeviceState {
             Set<AlarmConditionFilterKey> keysToFetch = new HashSet<>(this.deviceProfile.getEntityKeys());
             keysToFetch.removeAll(oldKeys);
             if (!keysToFetch.isEmpty()) {
-                addEntityKeysToSnapshot(ctx, deviceId, keysToFetch, latestValues);
+                loadSnapshot(ctx, addEntityKeysToSnapshot(ctx, deviceId, keysToFetch, latestValues));
             }
         }
         Set<String> newAlarmStateIds = this.deviceProfile.getAlarmSettings().stream().map(DeviceProfileAlarm::getId).collect(Collectors.toSet());
@@ -138,15 +153,75 @@ class DeviceState {
             stateChanged |= state.process(ctx, ts);
         }
         if (persistState && stateChanged) {
-            state.setStateData(JacksonUtil.toString(pds));
-            state = ctx.saveRuleNodeState(state);
+            stateDirty = true;
         }
     }
 
     public void process(TbContext ctx, TbMsg msg) throws ExecutionException, InterruptedException {
         if (latestValues == null) {
-            latestValues = fetchLatestValues(ctx, deviceId);
+            latestValues = new DataSnapshot(deviceProfile.getEntityKeys());
+            loadSnapshot(ctx, addEntityKeysToSnapshot(ctx, deviceId, deviceProfile.getEntityKeys(), latestValues));
+        }
+        if (snapshotFuture != null) {
+            pendingMsgs.add(msg);
+        } else {
+            doProcess(ctx, msg);
+        }
+    }
+
+    /**
+     * Called on the rule node thread when the latest values requested by {@link #loadSnapshot} are fetched.
+     * Processes the messages received while the values were fetched.
+     */
+    public void onSnapshotLoaded(TbContext ctx) {
+        if (snapshotFuture == null || !snapshotFuture.isDone()) {
+            return;
+        }
+        ListenableFuture<Void> future = snapshotFuture;
+        snapshotFuture = null;
+        try {
+            Futures.getDone(future);
+        } catch (ExecutionException e) {
+            log.warn("[{}] Failed to fetch latest values of the device [{}]", ctx.getSelfId(), deviceId, e.getCause());
+            latestValues = null;
+            drainPendingMsgs().forEach(msg -> ctx.tellFailure(msg, e.getCause()));
+            return;
+        }
+        while (snapshotFuture == null && !pendingMsgs.isEmpty()) {
+            TbMsg msg = pendingMsgs.poll();
+            try {
+                doProcess(ctx, msg);
+            } catch (Exception e) {
+                ctx.tellFailure(msg, e);
+            }
         }
+    }
+
+    List<TbMsg> drainPendingMsgs() {
+        List<TbMsg> msgs = new ArrayList<>(pendingMsgs);
+        pendingMsgs.clear();
+        return msgs;
+    }
+
+    private void loadSnapshot(TbContext ctx, ListenableFuture<Void> future) throws ExecutionException {
+        if (snapshotFuture != null) {
+            future = Futures.whenAllSucceed(snapshotFuture, future).call(() -> null, MoreExecutors.directExecutor());
+        } else if (future.isDone()) {
+            // The values are usually cached, so there is no need to leave the rule node thread
+            try {
+                Futures.getDone(future);
+            } catch (ExecutionException e) {
+                latestValues = null;
+                throw e;
+            }
+            return;
+        }
+        snapshotFuture = future;
+        TbMsg loadedMsg = TbMsg.newMsg(DEVICE_PROFILE_SNAPSHOT_LOADED_SELF_MSG, ctx.getTenantId(), TbMsgMetaData.EMPTY, deviceId.getId().toString());
+        future.addListener(() -> ctx.tellSelf(loadedMsg, 0L), MoreExecutors.directExecutor());
+    }
+
+    private void doProcess(TbContext ctx, TbMsg msg) throws ExecutionException, InterruptedException {
         boolean stateChanged = false;
         if (msg.isTypeOf(POST_TELEMETRY_REQUEST)) {
             stateChanged = processTelemetry(ctx, msg);
@@ -171,8 +246,7 @@ class DeviceState {
             ctx.tellSuccess(msg);
         }
         if (persistState && stateChanged) {
-            state.setStateData(JacksonUtil.toString(pds));
-            state = ctx.saveRuleNodeState(state);
+            stateDirty = true;
         }
     }
 
@@ -225,7 +299,7 @@ class DeviceState {
     private boolean processAttributesDeleteNotification(TbContext ctx, TbMsg msg) throws ExecutionException, InterruptedException {
         boolean stateChanged = false;
         List<String> keys = new ArrayList<>();
-        JsonParser.parseString(msg.getData()).getAsJsonObject().get("attributes").getAsJsonArray().forEach(e -> keys.add(e.getAsString()));
+        msg.getDataAsJson().get("attributes").forEach(e -> keys.add(e.asText()));
         String scope = msg.getMetaData().getValue(DataConstants.SCOPE);
         if (StringUtils.isEmpty(scope)) {
             scope = DataConstants.CLIENT_SCOPE;
@@ -253,7 +327,7 @@ class DeviceState {
 
     private boolean processAttributes(TbContext ctx, TbMsg msg, String scope) throws ExecutionException, InterruptedException {
         boolean stateChanged = false;
-        Set<AttributeKvEntry> attributes = JsonConverter.convertToAttributes(JsonParser.parseString(msg.getData()));
+        Set<AttributeKvEntry> attributes = JsonConverter.convertToAttributes(msg.getDataAsJson());
         if (!attributes.isEmpty()) {
             SnapshotUpdate update = merge(latestValues, attributes, scope);
             for (DeviceProfileAlarm alarm : deviceProfile.getAlarmSettings()) {
@@ -268,7 +342,7 @@ class DeviceState {
 
     protected boolean processTelemetry(TbContext ctx, TbMsg msg) throws ExecutionException, InterruptedException {
         boolean stateChanged = false;
-        Map<Long, List<KvEntry>> tsKvMap = JsonConverter.convertToSortedTelemetry(JsonParser.parseString(msg.getData()), msg.getMetaDataTs());
+        Map<Long, List<KvEntry>> tsKvMap = JsonConverter.convertToSortedTelemetry(msg.getDataAsJson(), msg.getMetaDataTs());
         // iterate over data by ts (ASC order).
         for (Map.Entry<Long, List<KvEntry>> entry : tsKvMap.entrySet()) {
             Long ts = entry.getKey();
@@ -329,18 +403,11 @@ class DeviceState {
         return EntityKeyType.ATTRIBUTE;
     }
 
-    private DataSnapshot fetchLatestValues(TbContext ctx, EntityId originator) throws ExecutionException, InterruptedException {
-        Set<AlarmConditionFilterKey> entityKeysToFetch = deviceProfile.getEntityKeys();
-        DataSnapshot result = new DataSnapshot(entityKeysToFetch);
-        addEntityKeysToSnapshot(ctx, originator, entityKeysToFetch, result);
-        return result;
-    }
-
-    private void addEntityKeysToSnapshot(TbContext ctx, EntityId originator, Set<AlarmConditionFilterKey> entityKeysToFetch, DataSnapshot result) throws InterruptedException, ExecutionException {
+    private ListenableFuture<Void> addEntityKeysToSnapshot(TbContext ctx, EntityId originator, Set<AlarmConditionFilterKey> entityKeysToFetch, DataSnapshot result) {
         Set<String> attributeKeys = new HashSet<>();
         Set<String> latestTsKeys = new HashSet<>();
+        Set<AlarmConditionFilterKey> entityFields = new HashSet<>();
 
-        Device device = null;
         for (AlarmConditionFilterKey entityKey : entityKeysToFetch) {
             String key = entityKey.getKey();
             switch (entityKey.getType()) {
@@ -351,41 +418,60 @@ class DeviceState {
                     latestTsKeys.add(key);
                     break;
                 case ENTITY_FIELD:
-                    if (device == null) {
-                        device = ctx.getDeviceService().findDeviceById(ctx.getTenantId(), new DeviceId(originator.getId()));
-                    }
-                    if (device != null) {
-                        switch (key) {
-                            case EntityKeyMapping.NAME:
-                                result.putValue(entityKey, device.getCreatedTime(), EntityKeyValue.fromString(device.getName()));
-                                break;
-                            case EntityKeyMapping.TYPE:
-                                result.putValue(entityKey, device.getCreatedTime(), EntityKeyValue.fromString(device.getType()));
-                                break;
-                            case EntityKeyMapping.CREATED_TIME:
-                                result.putValue(entityKey, device.getCreatedTime(), EntityKeyValue.fromLong(device.getCreatedTime()));
-                                break;
-                            case EntityKeyMapping.LABEL:
-                                result.putValue(entityKey, device.getCreatedTime(), EntityKeyValue.fromString(device.getLabel()));
-                                break;
-                        }
-                    }
+                    entityFields.add(entityKey);
                     break;
             }
         }
 
+        List<ListenableFuture<?>> futures = new ArrayList<>();
+        if (!entityFields.isEmpty()) {
+            futures.add(Futures.transform(ctx.getDeviceService().findDeviceByIdAsync(ctx.getTenantId(), new DeviceId(originator.getId())), device -> {
+                if (device != null) {
+                    for (AlarmConditionFilterKey entityKey : entityFields) {
+                        addToSnapshot(result, entityKey, device);
+                    }
+                }
+                return null;
+            }, MoreExecutors.directExecutor()));
+        }
         if (!latestTsKeys.isEmpty()) {
-            List<TsKvEntry> data = ctx.getTimeseriesService().findLatest(ctx.getTenantId(), originator, latestTsKeys).get();
-            for (TsKvEntry entry : data) {
-                if (entry.getValue() != null) {
-                    result.putValue(new AlarmConditionFilterKey(AlarmConditionKeyType.TIME_SERIES, entry.getKey()), entry.getTs(), toEntityValue(entry));
+            futures.add(Futures.transform(ctx.getTimeseriesService().findLatest(ctx.getTenantId(), originator, latestTsKeys), data -> {
+                for (TsKvEntry entry : data) {
+                    if (entry.getValue() != null) {
+                        result.putValue(new AlarmConditionFilterKey(AlarmConditionKeyType.TIME_SERIES, entry.getKey()), entry.getTs(), toEntityValue(entry));
+                    }
                 }
-            }
+                return null;
+            }, MoreExecutors.directExecutor()));
         }
         if (!attributeKeys.isEmpty()) {
-            addToSnapshot(result, ctx.getAttributesService().find(ctx.getTenantId(), originator, AttributeScope.CLIENT_SCOPE, attributeKeys).get());
-            addToSnapshot(result, ctx.getAttributesService().find(ctx.getTenantId(), originator, AttributeScope.SHARED_SCOPE, attributeKeys).get());
-            addToSnapshot(result, ctx.getAttributesService().find(ctx.getTenantId(), originator, AttributeScope.SERVER_SCOPE, attributeKeys).get());
+            // all scopes are fetched in parallel, but applied in the fixed order, so the server scope value wins if the key is present in several scopes
+            ListenableFuture<List<List<AttributeKvEntry>>> attributes = Futures.allAsList(
+                    ctx.getAttributesService().find(ctx.getTenantId(), originator, AttributeScope.CLIENT_SCOPE, attributeKeys),
+                    ctx.getAttributesService().find(ctx.getTenantId(), originator, AttributeScope.SHARED_SCOPE, attributeKeys),
+                    ctx.getAttributesService().find(ctx.getTenantId(), originator, AttributeScope.SERVER_SCOPE, attributeKeys));
+            futures.add(Futures.transform(attributes, data -> {
+                data.forEach(scopeData -> addToSnapshot(result, scopeData));
+                return null;
+            }, MoreExecutors.directExecutor()));
+        }
+        return Futures.whenAllSucceed(futures).call(() -> null, MoreExecutors.directExecutor());
+    }
+
+    private void addToSnapshot(DataSnapshot snapshot, AlarmConditionFilterKey entityKey, Device device) {
+        switch (entityKey.getKey()) {
+            case EntityKeyMapping.NAME:
+                snapshot.putValue(entityKey, device.getCreatedTime(), EntityKeyValue.fromString(device.getName()));
+                break;
+            case EntityKeyMapping.TYPE:
+                snapshot.putValue(entityKey, device.getCreatedTime(), EntityKeyValue.fromString(device.getType()));
+                break;
+            case EntityKeyMapping.CREATED_TIME:
+                snapshot.putValue(entityKey, device.getCreatedTime(), EntityKeyValue.fromLong(device.getCreatedTime()));
+                break;
+            case EntityKeyMapping.LABEL:
+                snapshot.putValue(entityKey, device.getCreatedTime(), EntityKeyValue.fromString(device.getLabel()));
+                break;
         }
     }
 
@@ -415,6 +501,18 @@ class DeviceState {
         }
     }
 
+    boolean isStateDirty() {
+        return stateDirty;
+    }
+
+    public void saveState(TbContext ctx) {
+        if (stateDirty) {
+            state.setStateData(compactState ? PersistedDeviceStateCodec.encode(pds) : JacksonUtil.toString(pds));
+            state = ctx.saveRuleNodeState(state);
+            stateDirty = false;
+        }
+    }
+
     public DeviceProfileId getProfileId() {
         return deviceProfile.getProfileId();
     }
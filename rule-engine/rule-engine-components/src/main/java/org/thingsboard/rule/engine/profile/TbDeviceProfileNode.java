@@ -40,11 +40,17 @@ import org.winstarcloud.server.common.msg.TbMsg;
 import org.winstarcloud.server.common.msg.TbMsgMetaData;
 import org.winstarcloud.server.common.msg.queue.PartitionChangeMsg;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
 @Slf4j
 @RuleNode(
@@ -65,6 +71,7 @@ public class TbDeviceProfileNode implements TbNode {
     private RuleEngineDeviceProfileCache cache;
     private TbContext ctx;
     private final Map<DeviceId, DeviceState> deviceStates = new ConcurrentHashMap<>();
+    private final Set<DeviceId> dirtyStates = new HashSet<>();
 
     @Override
     public void init(TbContext ctx, TbNodeConfiguration configuration) throws TbNodeException {
@@ -72,6 +79,9 @@ public class TbDeviceProfileNode implements TbNode {
         this.cache = ctx.getDeviceProfileCache();
         this.ctx = ctx;
         scheduleAlarmHarvesting(ctx, null);
+        if (isWriteBehind()) {
+            scheduleStateFlush(ctx);
+        }
         ctx.addDeviceProfileListeners(this::onProfileUpdate, this::onDeviceUpdate);
         initAlarmRuleState(false);
     }
@@ -113,8 +123,18 @@ public class TbDeviceProfileNode implements TbNode {
             harvestAlarms(ctx, System.currentTimeMillis());
         } else if (msg.isTypeOf(TbMsgType.DEVICE_PROFILE_UPDATE_SELF_MSG)) {
             updateProfile(ctx, new DeviceProfileId(UUID.fromString(msg.getData())));
+        } else if (msg.isTypeOf(TbMsgType.DEVICE_PROFILE_SNAPSHOT_LOADED_SELF_MSG)) {
+            DeviceId deviceId = new DeviceId(UUID.fromString(msg.getData()));
+            DeviceState deviceState = deviceStates.get(deviceId);
+            if (deviceState != null) {
+                deviceState.onSnapshotLoaded(ctx);
+                onStateProcessed(deviceId, deviceState);
+            }
+        } else if (msg.isTypeOf(TbMsgType.DEVICE_PROFILE_STATE_FLUSH_SELF_MSG)) {
+            scheduleStateFlush(ctx);
+            flushStates(deviceId -> true);
         } else if (msg.isTypeOf(TbMsgType.DEVICE_UPDATE_SELF_MSG)) {
-            JsonNode data = JacksonUtil.toJsonNode(msg.getData());
+            JsonNode data = msg.getDataAsJson();
             DeviceId deviceId = new DeviceId(UUID.fromString(data.get("deviceId").asText()));
             if (data.has("profileId")) {
                 invalidateDeviceProfileCache(deviceId, new DeviceProfileId(UUID.fromString(data.get("deviceProfileId").asText())));
@@ -131,13 +151,7 @@ public class TbDeviceProfileNode implements TbNode {
                     removeDeviceState(deviceId);
                     ctx.tellSuccess(msg);
                 } else {
-                    DeviceState deviceState = getOrCreateDeviceState(ctx, deviceId, null, false);
-                    if (deviceState != null) {
-                        deviceState.process(ctx, msg);
-                    } else {
-                        log.info("Device was not found! Most probably device [" + deviceId + "] has been removed from the database. Acknowledging msg.");
-                        ctx.ack(msg);
-                    }
+                    processDeviceMsg(ctx, deviceId, msg);
                 }
             } else {
                 ctx.tellSuccess(msg);
@@ -145,16 +159,57 @@ public class TbDeviceProfileNode implements TbNode {
         }
     }
 
+    private void processDeviceMsg(TbContext ctx, DeviceId deviceId, TbMsg msg) throws ExecutionException, InterruptedException {
+        DeviceState deviceState = getOrCreateDeviceState(ctx, deviceId, null, false);
+        if (deviceState != null) {
+            deviceState.process(ctx, msg);
+            onStateProcessed(deviceId, deviceState);
+        } else {
+            log.info("Device was not found! Most probably device [" + deviceId + "] has been removed from the database. Acknowledging msg.");
+            ctx.ack(msg);
+        }
+    }
+
     @Override
     public void onPartitionChangeMsg(TbContext ctx, PartitionChangeMsg msg) {
+        // Save the changed states of the entities that are no longer assigned to current server partitions
+        flushStates(deviceId -> !ctx.isLocalEntity(deviceId));
         // Cleanup the cache for all entities that are no longer assigned to current server partitions
-        deviceStates.entrySet().removeIf(entry -> !ctx.isLocalEntity(entry.getKey()));
+        List<DeviceState> removed = new ArrayList<>();
+        deviceStates.entrySet().removeIf(entry -> {
+            if (!ctx.isLocalEntity(entry.getKey())) {
+                removed.add(entry.getValue());
+                return true;
+            }
+            return false;
+        });
+        removed.forEach(this::reprocessPendingMsgs);
         initAlarmRuleState(true);
     }
 
+    // the messages waiting for the latest values of the removed device state are processed with the new state,
+    // unless the device is no longer assigned to this server: such messages are passed on without the alarm rules
+    // instead of creating the state of a foreign device
+    private void reprocessPendingMsgs(DeviceState state) {
+        for (TbMsg msg : state.drainPendingMsgs()) {
+            DeviceId deviceId = new DeviceId(msg.getOriginator().getId());
+            if (!ctx.isLocalEntity(deviceId)) {
+                log.debug("[{}] Device [{}] is no longer assigned to this server, skipping alarm rules for msg [{}]", ctx.getSelfId(), deviceId, msg.getId());
+                ctx.tellSuccess(msg);
+                continue;
+            }
+            try {
+                processDeviceMsg(ctx, deviceId, msg);
+            } catch (Exception e) {
+                ctx.tellFailure(msg, e);
+            }
+        }
+    }
+
     @Override
     public void destroy() {
         ctx.removeListeners();
+        flushStates(deviceId -> true);
         deviceStates.clear();
     }
 
@@ -179,11 +234,58 @@ public class TbDeviceProfileNode implements TbNode {
     }
 
     protected void harvestAlarms(TbContext ctx, long ts) throws ExecutionException, InterruptedException {
-        for (DeviceState state : deviceStates.values()) {
-            state.harvestAlarms(ctx, ts);
+        for (Map.Entry<DeviceId, DeviceState> entry : deviceStates.entrySet()) {
+            entry.getValue().harvestAlarms(ctx, ts);
+            onStateProcessed(entry.getKey(), entry.getValue());
         }
     }
 
+    private boolean isWriteBehind() {
+        return config.isPersistAlarmRulesState() && config.getPersistAlarmRulesStateIntervalSec() > 0;
+    }
+
+    private void onStateProcessed(DeviceId deviceId, DeviceState state) {
+        if (state.isStateDirty()) {
+            if (isWriteBehind()) {
+                dirtyStates.add(deviceId);
+            } else {
+                state.saveState(ctx);
+            }
+        }
+    }
+
+    protected void scheduleStateFlush(TbContext ctx) {
+        TbMsg flushMsg = TbMsg.newMsg(TbMsgType.DEVICE_PROFILE_STATE_FLUSH_SELF_MSG, ctx.getTenantId(), TbMsgMetaData.EMPTY, TbMsg.EMPTY_JSON_OBJECT);
+        ctx.tellSelf(flushMsg, TimeUnit.SECONDS.toMillis(config.getPersistAlarmRulesStateIntervalSec()));
+    }
+
+    private void flushStates(Predicate<DeviceId> filter) {
+        if (dirtyStates.isEmpty()) {
+            return;
+        }
+        int saved = 0;
+        Iterator<DeviceId> iterator = dirtyStates.iterator();
+        while (iterator.hasNext()) {
+            DeviceId deviceId = iterator.next();
+            if (!filter.test(deviceId)) {
+                continue;
+            }
+            DeviceState state = deviceStates.get(deviceId);
+            if (state != null) {
+                try {
+                    state.saveState(ctx);
+                    saved++;
+                } catch (Exception e) {
+                    // keep the state dirty to retry with the next flush
+                    log.warn("[{}] Failed to save alarm rules state for device [{}]", ctx.getSelfId(), deviceId, e);
+                    continue;
+                }
+            }
+            iterator.remove();
+        }
+        log.debug("[{}] Saved alarm rules state for {} devices", ctx.getSelfId(), saved);
+    }
+
     protected void updateProfile(TbContext ctx, DeviceProfileId deviceProfileId) throws ExecutionException, InterruptedException {
         DeviceProfile deviceProfile = cache.get(ctx.getTenantId(), deviceProfileId);
         if (deviceProfile != null) {
@@ -237,8 +339,12 @@ public class TbDeviceProfileNode implements TbNode {
 
     private void removeDeviceState(DeviceId deviceId) {
         DeviceState state = deviceStates.remove(deviceId);
+        dirtyStates.remove(deviceId);
         if (config.isPersistAlarmRulesState() && (state != null || !config.isFetchAlarmRulesStateOnStart())) {
             ctx.removeRuleNodeStateForEntity(deviceId);
         }
+        if (state != null) {
+            reprocessPendingMsgs(state);
+        }
     }
 }
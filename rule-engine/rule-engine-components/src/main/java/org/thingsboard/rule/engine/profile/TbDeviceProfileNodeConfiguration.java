@@ -25,9 +25,15 @@ public class TbDeviceProfileNodeConfiguration implements NodeConfiguration<TbDev
 
     private boolean persistAlarmRulesState;
     private boolean fetchAlarmRulesStateOnStart;
+    // 0 - save the changed state with every message, otherwise save the changed states with the given interval
+    private int persistAlarmRulesStateIntervalSec;
 
     @Override
     public TbDeviceProfileNodeConfiguration defaultConfiguration() {
-        return new TbDeviceProfileNodeConfiguration();
+        TbDeviceProfileNodeConfiguration configuration = new TbDeviceProfileNodeConfiguration();
+        configuration.setPersistAlarmRulesState(false);
+        configuration.setFetchAlarmRulesStateOnStart(false);
+        configuration.setPersistAlarmRulesStateIntervalSec(0);
+        return configuration;
     }
 }
@@ -0,0 +1,98 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.rule.engine.profile.state;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.winstarcloud.common.util.JacksonUtil;
+import org.winstarcloud.server.common.data.alarm.AlarmSeverity;
+import org.winstarcloud.server.gen.transport.TransportProtos.AlarmRuleStateProto;
+import org.winstarcloud.server.gen.transport.TransportProtos.AlarmStateProto;
+import org.winstarcloud.server.gen.transport.TransportProtos.DeviceAlarmRulesStateProto;
+
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodes the persisted alarm rules state as a base64 encoded protobuf message, which is several times smaller
+ * than the JSON representation. The device profile node uses it only with the write-behind persistence; the state
+ * saved with every message stays JSON. {@link #decode(String)} accepts both formats.
+ */
+public final class PersistedDeviceStateCodec {
+
+    private PersistedDeviceStateCodec() {
+    }
+
+    public static String encode(PersistedDeviceState state) {
+        DeviceAlarmRulesStateProto.Builder builder = DeviceAlarmRulesStateProto.newBuilder();
+        if (state.getAlarmStates() != null) {
+            state.getAlarmStates().forEach((alarmId, alarmState) -> builder.putAlarmStates(alarmId, toProto(alarmState)));
+        }
+        return Base64.getEncoder().encodeToString(builder.build().toByteArray());
+    }
+
+    public static PersistedDeviceState decode(String data) {
+        if (data.startsWith("{")) {
+            return JacksonUtil.fromString(data, PersistedDeviceState.class);
+        }
+        DeviceAlarmRulesStateProto proto;
+        try {
+            proto = DeviceAlarmRulesStateProto.parseFrom(Base64.getDecoder().decode(data));
+        } catch (InvalidProtocolBufferException e) {
+            throw new IllegalArgumentException("Failed to parse alarm rules state", e);
+        }
+        Map<String, PersistedAlarmState> alarmStates = new HashMap<>();
+        proto.getAlarmStatesMap().forEach((alarmId, alarmState) -> alarmStates.put(alarmId, fromProto(alarmState)));
+        PersistedDeviceState state = new PersistedDeviceState();
+        state.setAlarmStates(alarmStates);
+        return state;
+    }
+
+    private static AlarmStateProto toProto(PersistedAlarmState alarmState) {
+        AlarmStateProto.Builder builder = AlarmStateProto.newBuilder();
+        if (alarmState.getCreateRuleStates() != null) {
+            alarmState.getCreateRuleStates().forEach((severity, ruleState) -> builder.putCreateRuleStates(severity.name(), toProto(ruleState)));
+        }
+        if (alarmState.getClearRuleState() != null) {
+            builder.setClearRuleState(toProto(alarmState.getClearRuleState()));
+        }
+        return builder.build();
+    }
+
+    private static AlarmRuleStateProto toProto(PersistedAlarmRuleState ruleState) {
+        return AlarmRuleStateProto.newBuilder()
+                .setLastEventTs(ruleState.getLastEventTs())
+                .setDuration(ruleState.getDuration())
+                .setEventCount(ruleState.getEventCount())
+                .build();
+    }
+
+    private static PersistedAlarmState fromProto(AlarmStateProto proto) {
+        PersistedAlarmState alarmState = new PersistedAlarmState();
+        Map<AlarmSeverity, PersistedAlarmRuleState> createRuleStates = new HashMap<>();
+        proto.getCreateRuleStatesMap().forEach((severity, ruleState) -> createRuleStates.put(AlarmSeverity.valueOf(severity), fromProto(ruleState)));
+        alarmState.setCreateRuleStates(createRuleStates);
+        if (proto.hasClearRuleState()) {
+            alarmState.setClearRuleState(fromProto(proto.getClearRuleState()));
+        }
+        return alarmState;
+    }
+
+    private static PersistedAlarmRuleState fromProto(AlarmRuleStateProto proto) {
+        return new PersistedAlarmRuleState(proto.getLastEventTs(), proto.getDuration(), proto.getEventCount());
+    }
+
+}
@@ -15,7 +15,6 @@
  */
 package org.winstarcloud.rule.engine.telemetry;
 
-import com.google.gson.JsonParser;
 import lombok.extern.slf4j.Slf4j;
 import org.winstarcloud.rule.engine.api.RuleNode;
 import org.winstarcloud.rule.engine.api.TbContext;
@@ -87,10 +86,9 @@ public class TbMsgTimeseriesNode implements TbNode {
             return;
         }
         long ts = computeTs(msg, config.isUseServerTs());
-        String src = msg.getData();
-        Map<Long, List<KvEntry>> tsKvMap = JsonConverter.convertToTelemetry(JsonParser.parseString(src), ts);
+        Map<Long, List<KvEntry>> tsKvMap = JsonConverter.convertToTelemetry(msg.getDataAsJson(), ts);
         if (tsKvMap.isEmpty()) {
-            ctx.tellFailure(msg, new IllegalArgumentException("Msg body is empty: " + src));
+            ctx.tellFailure(msg, new IllegalArgumentException("Msg body is empty: " + msg.getData()));
             return;
         }
         List<TsKvEntry> tsKvEntryList = new ArrayList<>();
@@ -15,7 +15,9 @@
  */
 package org.winstarcloud.rule.engine.transform;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.InvalidJsonException;
 import com.jayway.jsonpath.JsonPath;
 import com.jayway.jsonpath.PathNotFoundException;
 import com.jayway.jsonpath.spi.json.JacksonJsonNodeJsonProvider;
@@ -67,7 +69,7 @@ public class TbJsonPathNode implements TbNode {
     public void onMsg(TbContext ctx, TbMsg msg) throws ExecutionException, InterruptedException, TbNodeException {
         if (!TbJsonPathNodeConfiguration.DEFAULT_JSON_PATH.equals(this.jsonPathValue)) {
             try {
-                Object jsonPathData = jsonPath.read(msg.getData(), this.configurationJsonPath);
+                Object jsonPathData = jsonPath.read(getDataAsJson(msg), this.configurationJsonPath);
                 ctx.tellSuccess(TbMsg.transformMsgData(msg, JacksonUtil.toString(jsonPathData)));
             } catch (PathNotFoundException e) {
                 ctx.tellFailure(msg, e);
@@ -76,4 +78,12 @@ public class TbJsonPathNode implements TbNode {
             ctx.tellSuccess(msg);
         }
     }
+
+    private static JsonNode getDataAsJson(TbMsg msg) {
+        try {
+            return msg.getDataAsJson();
+        } catch (IllegalArgumentException e) {
+            throw new InvalidJsonException(e, msg.getData());
+        }
+    }
 }
@@ -0,0 +1,102 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.rule.engine.geo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GeofenceIndexTest {
+
+    @Test
+    public void testFindContainingPolygonsAndCircles() {
+        Map<String, Perimeter> perimeters = new HashMap<>();
+        perimeters.put("rect", polygon(GeoUtilTest.SIMPLE_RECT));
+        perimeters.put("rectWithHole", polygon(GeoUtilTest.SIMPLE_RECT_WITH_HOLE_IN_CENTER));
+        perimeters.put("sandClock", polygon(GeoUtilTest.SAND_CLOCK));
+        perimeters.put("circle", circle(GeoUtilTest.POINT_INSIDE_SIMPLE_RECT_CENTER, 10, RangeUnit.KILOMETER));
+
+        GeofenceIndex<String> index = GeofenceIndex.of(perimeters);
+
+        assertThat(index.size()).isEqualTo(4);
+        assertThat(index.findContaining(GeoUtilTest.POINT_INSIDE_SIMPLE_RECT_CENTER))
+                .contains("rect", "circle").doesNotContain("rectWithHole");
+        assertThat(index.findContaining(GeoUtilTest.POINT_INSIDE_SIMPLE_RECT_NEAR_BORDER)).containsExactlyInAnyOrder("rect", "rectWithHole");
+        assertThat(index.findContaining(GeoUtilTest.POINT_INSIDE_SAND_CLOCK_CENTER))
+                .contains("rect", "sandClock").doesNotContain("rectWithHole", "circle");
+        assertThat(index.findContaining(GeoUtilTest.POINT_OUTSIDE_SAND_CLOCK_2)).doesNotContain("sandClock");
+        assertThat(index.findContaining(GeoUtilTest.POINT_OUTSIDE_SIMPLE_RECT)).isEmpty();
+        assertThat(index.anyContains(GeoUtilTest.POINT_OUTSIDE_SIMPLE_RECT)).isFalse();
+        assertThat(index.anyContains(GeoUtilTest.POINT_INSIDE_SIMPLE_RECT_CENTER)).isTrue();
+    }
+
+    @Test
+    public void testLookupMatchesLinearScan() {
+        Map<Integer, Perimeter> perimeters = new HashMap<>();
+        int zoneId = 0;
+        for (int lat = 40; lat < 60; lat++) {
+            for (int lon = 20; lon < 45; lon++) {
+                String square = "[[" + lat + "," + lon + "],[" + (lat + 0.5) + "," + (lon + 0.5) + "]]";
+                perimeters.put(zoneId++, polygon(square));
+                perimeters.put(zoneId++, circle(new Coordinates(lat + 0.5, lon + 0.5), 30, RangeUnit.KILOMETER));
+            }
+        }
+        GeofenceIndex<Integer> index = GeofenceIndex.of(perimeters);
+
+        List<Coordinates> points = List.of(GeoUtilTest.POINT_INSIDE_SIMPLE_RECT_CENTER, GeoUtilTest.POINT_INSIDE_SAND_CLOCK_CENTER,
+                GeoUtilTest.POINT_OUTSIDE_SELF_INTERSECTING_3, new Coordinates(45.25, 30.25), new Coordinates(45.5, 30.5));
+        for (Coordinates point : points) {
+            List<Integer> expected = perimeters.entrySet().stream()
+                    .filter(e -> contains(e.getValue(), point))
+                    .map(Map.Entry::getKey)
+                    .toList();
+            assertThat(index.findContaining(point)).containsExactlyInAnyOrderElementsOf(expected);
+            assertThat(index.anyContains(point)).isEqualTo(!expected.isEmpty());
+        }
+        assertThat(index.findContaining(points.get(3))).isNotEmpty();
+        assertThat(index.findContaining(points.get(2))).isEmpty();
+    }
+
+    private static boolean contains(Perimeter perimeter, Coordinates point) {
+        if (perimeter.getPerimeterType() == PerimeterType.POLYGON) {
+            return GeoUtil.contains(perimeter.getPolygonsDefinition(), point);
+        }
+        Coordinates center = new Coordinates(perimeter.getCenterLatitude(), perimeter.getCenterLongitude());
+        return perimeter.getRange() > GeoUtil.distance(point, center, perimeter.getRangeUnit());
+    }
+
+    private static Perimeter polygon(String definition) {
+        Perimeter perimeter = new Perimeter();
+        perimeter.setPerimeterType(PerimeterType.POLYGON);
+        perimeter.setPolygonsDefinition(definition);
+        return perimeter;
+    }
+
+    private static Perimeter circle(Coordinates center, double range, RangeUnit unit) {
+        Perimeter perimeter = new Perimeter();
+        perimeter.setPerimeterType(PerimeterType.CIRCLE);
+        perimeter.setCenterLatitude(center.getLatitude());
+        perimeter.setCenterLongitude(center.getLongitude());
+        perimeter.setRange(range);
+        perimeter.setRangeUnit(unit);
+        return perimeter;
+    }
+
+}
@@ -370,6 +370,29 @@ class TbGpsGeofencingFilterNodeTest {
         assertThat(newMsg).isSameAs(msg);
     }
 
+    @Test
+    void givenSameCirclePerimeterInMetadata_whenOnMsgTwice_thenTrueAndFalse() throws TbNodeException {
+        // GIVEN
+        var config = new TbGpsGeofencingFilterNodeConfiguration().defaultConfiguration();
+        config.setPerimeterType(PerimeterType.CIRCLE);
+        node.init(ctx, new TbNodeConfiguration(JacksonUtil.valueToTree(config)));
+
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        TbMsg insideMsg = getTbMsg(deviceId, getMetadataForNewVersionCirclePerimeter(),
+                POINT_INSIDE_CIRCLE.getLatitude(), POINT_INSIDE_CIRCLE.getLongitude());
+        TbMsg outsideMsg = getTbMsg(deviceId, getMetadataForNewVersionCirclePerimeter(),
+                POINT_OUTSIDE_CIRCLE.getLatitude(), POINT_OUTSIDE_CIRCLE.getLongitude());
+
+        // WHEN
+        node.onMsg(ctx, insideMsg);
+        node.onMsg(ctx, outsideMsg);
+
+        // THEN
+        verify(ctx, times(1)).tellNext(insideMsg, TbNodeConnectionType.TRUE);
+        verify(ctx, times(1)).tellNext(outsideMsg, TbNodeConnectionType.FALSE);
+        verify(ctx, never()).tellFailure(any(), any());
+    }
+
     @Test
     void givenTypeCircleAndConfigWithCircleDefined_whenOnMsg_thenTrue() throws TbNodeException {
         // GIVEN
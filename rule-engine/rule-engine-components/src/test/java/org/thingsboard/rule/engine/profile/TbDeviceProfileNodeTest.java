@@ -18,8 +18,11 @@ package org.winstarcloud.rule.engine.profile;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -54,6 +57,7 @@ import org.winstarcloud.server.common.data.id.DeviceId;
 import org.winstarcloud.server.common.data.id.DeviceProfileId;
 import org.winstarcloud.server.common.data.id.TenantId;
 import org.winstarcloud.server.common.data.kv.AttributeKvEntry;
+import org.winstarcloud.server.common.data.kv.TsKvEntry;
 import org.winstarcloud.server.common.data.msg.TbMsgType;
 import org.winstarcloud.server.common.data.query.BooleanFilterPredicate;
 import org.winstarcloud.server.common.data.query.DynamicValue;
@@ -64,6 +68,8 @@ import org.winstarcloud.server.common.data.query.NumericFilterPredicate;
 import org.winstarcloud.server.common.msg.TbMsg;
 import org.winstarcloud.server.common.msg.TbMsgDataType;
 import org.winstarcloud.server.common.msg.TbMsgMetaData;
+import org.winstarcloud.server.common.msg.queue.PartitionChangeMsg;
+import org.winstarcloud.server.common.msg.queue.ServiceType;
 import org.winstarcloud.server.dao.attributes.AttributesService;
 import org.winstarcloud.server.dao.device.DeviceService;
 import org.winstarcloud.server.dao.model.sql.AttributeKvCompositeKey;
@@ -81,6 +87,7 @@ import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
@@ -147,6 +154,113 @@ public class TbDeviceProfileNodeTest {
         verify(ctx, Mockito.never()).tellFailure(Mockito.any(), Mockito.any());
     }
 
+    @Test
+    public void testLatestValuesFetchedWithoutBlocking() throws Exception {
+        init();
+
+        DeviceProfile deviceProfile = new DeviceProfile();
+        DeviceProfileData deviceProfileData = new DeviceProfileData();
+
+        AlarmConditionFilter highTempFilter = new AlarmConditionFilter();
+        highTempFilter.setKey(new AlarmConditionFilterKey(AlarmConditionKeyType.TIME_SERIES, "temperature"));
+        highTempFilter.setValueType(EntityKeyValueType.NUMERIC);
+        NumericFilterPredicate highTemperaturePredicate = new NumericFilterPredicate();
+        highTemperaturePredicate.setOperation(NumericFilterPredicate.NumericOperation.GREATER);
+        highTemperaturePredicate.setValue(new FilterPredicateValue<>(30.0));
+        highTempFilter.setPredicate(highTemperaturePredicate);
+        AlarmCondition alarmCondition = new AlarmCondition();
+        alarmCondition.setCondition(Collections.singletonList(highTempFilter));
+        AlarmRule alarmRule = new AlarmRule();
+        alarmRule.setCondition(alarmCondition);
+        DeviceProfileAlarm dpa = new DeviceProfileAlarm();
+        dpa.setId("highTemperatureAlarmID");
+        dpa.setAlarmType("highTemperatureAlarm");
+        dpa.setCreateRules(new TreeMap<>(Collections.singletonMap(AlarmSeverity.CRITICAL, alarmRule)));
+
+        deviceProfileData.setAlarms(Collections.singletonList(dpa));
+        deviceProfile.setProfileData(deviceProfileData);
+
+        SettableFuture<List<TsKvEntry>> latestFuture = SettableFuture.create();
+        Mockito.when(cache.get(tenantId, deviceId)).thenReturn(deviceProfile);
+        Mockito.when(timeseriesService.findLatest(tenantId, deviceId, Collections.singleton("temperature")))
+                .thenReturn(latestFuture);
+
+        ObjectNode data = JacksonUtil.newObjectNode();
+        data.put("temperature", 20);
+        TbMsg msg = TbMsg.newMsg(TbMsgType.POST_TELEMETRY_REQUEST, deviceId, TbMsgMetaData.EMPTY,
+                TbMsgDataType.JSON, JacksonUtil.toString(data), null, null);
+        TbMsg msg2 = TbMsg.newMsg(TbMsgType.POST_TELEMETRY_REQUEST, deviceId, TbMsgMetaData.EMPTY,
+                TbMsgDataType.JSON, JacksonUtil.toString(data), null, null);
+        node.onMsg(ctx, msg);
+        node.onMsg(ctx, msg2);
+        verify(ctx, Mockito.never()).tellSuccess(any());
+
+        latestFuture.set(Collections.emptyList());
+        ArgumentCaptor<TbMsg> selfMsgCaptor = ArgumentCaptor.forClass(TbMsg.class);
+        verify(ctx, Mockito.atLeastOnce()).tellSelf(selfMsgCaptor.capture(), eq(0L));
+        TbMsg loadedMsg = selfMsgCaptor.getValue();
+        assertThat(loadedMsg.isTypeOf(TbMsgType.DEVICE_PROFILE_SNAPSHOT_LOADED_SELF_MSG)).isTrue();
+
+        node.onMsg(ctx, loadedMsg);
+        InOrder inOrder = Mockito.inOrder(ctx);
+        inOrder.verify(ctx).tellSuccess(msg);
+        inOrder.verify(ctx).tellSuccess(msg2);
+        verify(ctx, Mockito.never()).tellFailure(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void testPendingMsgsOfNonLocalDeviceAreNotReprocessedOnPartitionChange() throws Exception {
+        init();
+
+        DeviceProfile deviceProfile = new DeviceProfile();
+        DeviceProfileData deviceProfileData = new DeviceProfileData();
+
+        AlarmConditionFilter highTempFilter = new AlarmConditionFilter();
+        highTempFilter.setKey(new AlarmConditionFilterKey(AlarmConditionKeyType.TIME_SERIES, "temperature"));
+        highTempFilter.setValueType(EntityKeyValueType.NUMERIC);
+        NumericFilterPredicate highTemperaturePredicate = new NumericFilterPredicate();
+        highTemperaturePredicate.setOperation(NumericFilterPredicate.NumericOperation.GREATER);
+        highTemperaturePredicate.setValue(new FilterPredicateValue<>(30.0));
+        highTempFilter.setPredicate(highTemperaturePredicate);
+        AlarmCondition alarmCondition = new AlarmCondition();
+        alarmCondition.setCondition(Collections.singletonList(highTempFilter));
+        AlarmRule alarmRule = new AlarmRule();
+        alarmRule.setCondition(alarmCondition);
+        DeviceProfileAlarm dpa = new DeviceProfileAlarm();
+        dpa.setId("highTemperatureAlarmID");
+        dpa.setAlarmType("highTemperatureAlarm");
+        dpa.setCreateRules(new TreeMap<>(Collections.singletonMap(AlarmSeverity.CRITICAL, alarmRule)));
+
+        deviceProfileData.setAlarms(Collections.singletonList(dpa));
+        deviceProfile.setProfileData(deviceProfileData);
+
+        SettableFuture<List<TsKvEntry>> latestFuture = SettableFuture.create();
+        Mockito.when(cache.get(tenantId, deviceId)).thenReturn(deviceProfile);
+        Mockito.when(timeseriesService.findLatest(tenantId, deviceId, Collections.singleton("temperature")))
+                .thenReturn(latestFuture);
+
+        ObjectNode data = JacksonUtil.newObjectNode();
+        data.put("temperature", 42);
+        TbMsg msg = TbMsg.newMsg(TbMsgType.POST_TELEMETRY_REQUEST, deviceId, TbMsgMetaData.EMPTY,
+                TbMsgDataType.JSON, JacksonUtil.toString(data), null, null);
+        node.onMsg(ctx, msg);
+        verify(ctx, Mockito.never()).tellSuccess(any());
+
+        Mockito.when(ctx.isLocalEntity(any())).thenReturn(false);
+        node.onPartitionChangeMsg(ctx, new PartitionChangeMsg(ServiceType.TB_RULE_ENGINE));
+        verify(ctx).tellSuccess(msg);
+        verify(cache, Mockito.times(1)).get(tenantId, deviceId);
+
+        latestFuture.set(Collections.emptyList());
+        ArgumentCaptor<TbMsg> selfMsgCaptor = ArgumentCaptor.forClass(TbMsg.class);
+        verify(ctx, Mockito.atLeastOnce()).tellSelf(selfMsgCaptor.capture(), eq(0L));
+        node.onMsg(ctx, selfMsgCaptor.getValue());
+
+        verify(ctx, Mockito.times(1)).tellSuccess(any());
+        verify(alarmService, Mockito.never()).createAlarm(any());
+        verify(ctx, Mockito.never()).tellFailure(Mockito.any(), Mockito.any());
+    }
+
     @Test
     public void testAlarmCreate() throws Exception {
         init();
@@ -0,0 +1,71 @@
+/**
+ * Copyright © 2016-2024 The Winstarcloud Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.winstarcloud.rule.engine.profile.state;
+
+import org.junit.jupiter.api.Test;
+import org.winstarcloud.common.util.JacksonUtil;
+import org.winstarcloud.server.common.data.alarm.AlarmSeverity;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PersistedDeviceStateCodecTest {
+
+    @Test
+    public void testEncodeDecode() {
+        PersistedDeviceState state = createState();
+
+        String encoded = PersistedDeviceStateCodec.encode(state);
+
+        assertThat(encoded.length()).isLessThan(JacksonUtil.toString(state).length());
+        assertThat(PersistedDeviceStateCodec.decode(encoded)).isEqualTo(state);
+    }
+
+    @Test
+    public void testDecodeJsonState() {
+        PersistedDeviceState state = createState();
+        assertThat(PersistedDeviceStateCodec.decode(JacksonUtil.toString(state))).isEqualTo(state);
+    }
+
+    @Test
+    public void testEncodeDecodeEmptyState() {
+        PersistedDeviceState state = new PersistedDeviceState();
+        state.setAlarmStates(new HashMap<>());
+        assertThat(PersistedDeviceStateCodec.decode(PersistedDeviceStateCodec.encode(state))).isEqualTo(state);
+    }
+
+    private PersistedDeviceState createState() {
+        PersistedAlarmState highTemperature = new PersistedAlarmState();
+        Map<AlarmSeverity, PersistedAlarmRuleState> createRuleStates = new HashMap<>();
+        createRuleStates.put(AlarmSeverity.CRITICAL, new PersistedAlarmRuleState(1700000000000L, 60000L, 3));
+        createRuleStates.put(AlarmSeverity.MAJOR, new PersistedAlarmRuleState(1700000001000L, 0L, 1));
+        highTemperature.setCreateRuleStates(createRuleStates);
+        highTemperature.setClearRuleState(new PersistedAlarmRuleState(1700000002000L, 0L, 0));
+
+        PersistedAlarmState lowBattery = new PersistedAlarmState();
+        lowBattery.setCreateRuleStates(new HashMap<>());
+
+        PersistedDeviceState state = new PersistedDeviceState();
+        Map<String, PersistedAlarmState> alarmStates = new HashMap<>();
+        alarmStates.put("highTemperatureAlarmID", highTemperature);
+        alarmStates.put("lowBatteryAlarmID", lowBattery);
+        state.setAlarmStates(alarmStates);
+        return state;
+    }
+
+}
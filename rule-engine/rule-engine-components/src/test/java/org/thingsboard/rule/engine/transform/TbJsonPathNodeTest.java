@@ -16,6 +16,7 @@
 package org.winstarcloud.rule.engine.transform;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.jayway.jsonpath.InvalidJsonException;
 import com.jayway.jsonpath.PathNotFoundException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -156,6 +157,14 @@ public class TbJsonPathNodeTest {
         assertThat(exceptionCaptor.getValue()).isInstanceOf(PathNotFoundException.class);
     }
 
+    @Test
+    void givenInvalidJsonMsg_whenOnMsg_thenThrowInvalidJsonException() {
+        TbMsg msg = getTbMsg(deviceId, "{\"Attribute_1\":");
+
+        assertThatThrownBy(() -> node.onMsg(ctx, msg)).isInstanceOf(InvalidJsonException.class);
+        verify(ctx, never()).tellSuccess(any());
+    }
+
     private void VerifyOutputMsg(String data, int countTellSuccess, Object value) throws Exception {
         JsonNode dataNode = JacksonUtil.toJsonNode(data);
         node.onMsg(ctx, getTbMsg(deviceId, dataNode.toString()));